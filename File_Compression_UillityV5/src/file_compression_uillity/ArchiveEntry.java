@@ -0,0 +1,60 @@
+package file_compression_uillity;
+
+/**
+ * Describes one entry of an archive, as returned by Compressor.list and
+ * passed to an EntryTarget during decompression.
+ *
+ * Sizes and CRC are -1 when the format (or the position in a stream) does
+ * not make them available.
+ */
+public class ArchiveEntry {
+
+    private final String name;
+    private final long size;
+    private final long compressedSize;
+    private final long crc;
+    private final long lastModified;
+    private final boolean directory;
+
+    public ArchiveEntry(String name, long size, long compressedSize, long crc, long lastModified) {
+        this.name = name;
+        this.size = size;
+        this.compressedSize = compressedSize;
+        this.crc = crc;
+        this.lastModified = lastModified;
+        this.directory = name.endsWith("/");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Uncompressed size in bytes, or -1 if unknown
+    public long getSize() {
+        return size;
+    }
+
+    // Compressed size in bytes, or -1 if unknown
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    // CRC32 of the uncompressed data, or -1 if unknown
+    public long getCrc() {
+        return crc;
+    }
+
+    // Modification time in milliseconds since the epoch, or -1 if unknown
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + size + " bytes)";
+    }
+}
@@ -0,0 +1,199 @@
+package file_compression_uillity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Snapshot of the files behind an incremental archive, stored next to it
+ * as {@code <archive>.manifest}.
+ *
+ * Each record holds a file's size, modification time, optional SHA-256 and
+ * the name of the archive in the chain that holds its content: the archive
+ * itself for new or changed files, an older one for unchanged files. The
+ * manifest of the latest delta therefore describes the whole snapshot, and
+ * files missing from it were deleted since the base.
+ *
+ * Archive names are file names relative to the manifest's directory, so a
+ * chain can be moved as a whole.
+ */
+public class ArchiveManifest {
+
+    public static final String SUFFIX = ".manifest";
+
+    private static final int MAGIC = 0x4D414E49; // "MANI"
+    private static final int VERSION = 1;
+
+    private final String format;
+    private final String base;
+    private final Map<String, Record> records;
+
+    /**
+     * @param format extension of the compressor the chain was written with
+     * @param base   file name of the archive this one is a delta of, or null
+     */
+    public ArchiveManifest(String format, String base, Map<String, Record> records) {
+        this.format = format;
+        this.base = base;
+        this.records = Collections.unmodifiableMap(new LinkedHashMap<>(records));
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    // File name of the base archive; null for a full archive
+    public String getBase() {
+        return base;
+    }
+
+    // Records by entry name, in archive order
+    public Map<String, Record> getRecords() {
+        return records;
+    }
+
+    public static Path pathFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Reads the manifest stored next to {@code archive}.
+     */
+    public static ArchiveManifest load(Path archive) throws IOException {
+        Path path = pathFor(archive);
+        if (!Files.exists(path)) {
+            throw new IOException("No manifest found for " + archive + " (expected " + path + ")");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(Files.newInputStream(path)), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new ZipException("Not an archive manifest: " + path);
+            }
+            if (in.readUnsignedByte() != VERSION) {
+                throw new ZipException("Unsupported manifest version in " + path);
+            }
+            String format = in.readUTF();
+            String base = in.readUTF();
+            // Names of the archives holding content, referenced by index
+            String[] archives = new String[in.readInt()];
+            for (int i = 0; i < archives.length; i++) {
+                archives[i] = in.readUTF();
+            }
+            int count = in.readInt();
+            Map<String, Record> records = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                int archiveIndex = in.readInt();
+                if (archiveIndex < 0 || archiveIndex >= archives.length) {
+                    throw new ZipException("Invalid manifest record for " + name);
+                }
+                records.put(name, new Record(size, lastModified,
+                        hash.length == 0 ? null : HexFormat.of().formatHex(hash), archives[archiveIndex]));
+            }
+            return new ArchiveManifest(format, base.isEmpty() ? null : base, records);
+        }
+    }
+
+    /**
+     * Writes the manifest next to {@code archive}, replacing any previous
+     * one only once it is complete.
+     */
+    public void save(Path archive) throws IOException {
+        Path path = pathFor(archive);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<String> archives = new ArrayList<>();
+        Map<String, Integer> archiveIndexes = new HashMap<>();
+        for (Record record : records.values()) {
+            if (archiveIndexes.putIfAbsent(record.getArchive(), archives.size()) == null) {
+                archives.add(record.getArchive());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(temp)), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(format);
+            out.writeUTF(base == null ? "" : base);
+            out.writeInt(archives.size());
+            for (String name : archives) {
+                out.writeUTF(name);
+            }
+            out.writeInt(records.size());
+            for (Map.Entry<String, Record> entry : records.entrySet()) {
+                Record record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.getSize());
+                out.writeLong(record.getLastModified());
+                // Hashes are stored as raw bytes, half the size of their hex form
+                byte[] hash = record.getHash() == null ? new byte[0] : HexFormat.of().parseHex(record.getHash());
+                out.writeByte(hash.length);
+                out.write(hash);
+                out.writeInt(archiveIndexes.get(record.getArchive()));
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Metadata of one file and where its content is stored.
+     */
+    public static class Record {
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final String archive;
+
+        public Record(long size, long lastModified, String hash, String archive) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.archive = archive;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        // Hex SHA-256 of the content, or null if it was not computed
+        public String getHash() {
+            return hash;
+        }
+
+        // File name of the archive holding the content
+        public String getArchive() {
+            return archive;
+        }
+
+        // Same size and modification time as another record
+        public boolean sameMetadata(Record other) {
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package file_compression_uillity;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Seekable gzip of a single large file, in the BGZF format of bgzip.
+ *
+ * compress writes {@code <file>.gz}, valid gzip for any tool, and its block
+ * index {@code <file>.gz.gzi}. open() then reads any byte range of the
+ * uncompressed file through a SeekableByteChannel, inflating only the
+ * blocks it covers, where a plain .gz (or a ZIP entry) has to be inflated
+ * from the start. Blocks are compressed and decompressed on a worker pool.
+ *
+ * Like gzip, the format holds one file: compressMultiple only accepts a
+ * single one (TAR.GZ bundles several).
+ */
+public class BgzfCompressor implements Compressor {
+
+    // Name given to the content in the stream API
+    private static final String DEFAULT_ENTRY_NAME = "data";
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private CompressionProfile profile = CompressionProfile.BALANCED;
+    // Counts the file and archive read and written by the path-based methods
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public BgzfCompressor() {
+    }
+
+    // Threads compressing and decompressing blocks; 1 works on the calling thread
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public CompressionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".gz";
+    }
+
+    /**
+     * Opens a read-only channel over the uncompressed content of a BGZF
+     * file, positioned at 0. Closing the channel closes the file.
+     */
+    public SeekableByteChannel open(String archivePath) throws IOException {
+        return BgzfReader.open(Path.of(archivePath));
+    }
+
+    /**
+     * Writes the .gzi index of a BGZF file that has none (e.g. one made by
+     * bgzip without -i), by scanning its blocks.
+     */
+    public boolean index(String archivePath) {
+        try (FileChannel channel = FileChannel.open(Path.of(archivePath), StandardOpenOption.READ)) {
+            BgzfIndex index = BgzfIndex.scan(channel);
+            index.save(Path.of(archivePath));
+            System.out.println("Indexed " + index.getBlockCount() + " blocks of " + archivePath);
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Indexing error: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compress(String filePath) {
+        try {
+            File file = new File(filePath);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePath);
+                return false;
+            }
+
+            // Keep the full file name, as gzip does: app.log -> app.log.gz
+            String archivePath = filePath + getExtension();
+
+            System.out.println("Compressing: " + filePath + " to " + archivePath);
+            System.out.println("File size: " + file.length() + " bytes");
+            writeArchive(file, archivePath);
+
+            System.out.println("BGZF file created successfully: " + archivePath);
+            System.out.println("BGZF file size: " + new File(archivePath).length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
+        if (filePaths == null || filePaths.length != 1) {
+            System.out.println("BGZF holds a single file; use TAR.GZ to bundle several");
+            return false;
+        }
+        try {
+            File file = new File(filePaths[0]);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePaths[0]);
+                return false;
+            }
+            System.out.println("Compressing " + file.getName() + " to: " + outputArchivePath);
+            writeArchive(file, outputArchivePath);
+            System.out.println("BGZF file created successfully: " + outputArchivePath);
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // Writes the BGZF file, then its index once the file is complete, or deletes both if it fails
+    private void writeArchive(File file, String archivePath) throws IOException {
+        if (!file.isFile()) {
+            throw new IOException("BGZF compresses a plain file only: " + file);
+        }
+        ExecutorService executor = newExecutor();
+        boolean written = false;
+        try {
+            BgzfIndex index;
+            try (InputStream in = progress.input(new FileInputStream(file));
+                 OutputStream out = new BufferedOutputStream(progress.output(new FileOutputStream(archivePath)),
+                         256 * 1024)) {
+                BgzfOutputStream bgzf = new BgzfOutputStream(out, profile.levelFor(file.getName()), executor,
+                        workerCount);
+                in.transferTo(bgzf);
+                bgzf.finish();
+                index = bgzf.getIndex();
+            }
+            progress.entryDone();
+            index.save(Path.of(archivePath));
+            written = true;
+        } finally {
+            shutdown(executor);
+            if (!written) {
+                Files.deleteIfExists(Path.of(archivePath));
+                Files.deleteIfExists(BgzfIndex.pathFor(Path.of(archivePath)));
+            }
+        }
+    }
+
+    @Override
+    public boolean decompress(String filePath) {
+        try {
+            File archiveFile = new File(filePath).getAbsoluteFile();
+            String outputDir = archiveFile.getParent();
+
+            // app.log.gz extracts to the folder "app" as app.log
+            String fileName = unnamedEntryName(archiveFile.getName());
+            int dot = fileName.lastIndexOf('.');
+            String folderName = dot > 0 ? fileName.substring(0, dot) : fileName;
+            File extractFolder = new File(outputDir + File.separator + folderName);
+            extractFolder.mkdir();
+
+            Path target = EntryPaths.resolve(extractFolder.toPath(), fileName);
+            try (BgzfReader reader = new BgzfReader(archiveFile.toPath());
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                reader.setProgress(progress);
+                reader.copyTo(progress.writing(out), workerCount);
+            }
+            progress.entryDone();
+
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // Size from the index instead of inflating everything
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        Path path = Path.of(archivePath);
+        try (BgzfReader reader = new BgzfReader(path)) {
+            return List.of(new ArchiveEntry(unnamedEntryName(path.getFileName().toString()), reader.size(),
+                    Files.size(path), -1, Files.getLastModifiedTime(path).toMillis()));
+        }
+    }
+
+    // Every block is inflated and checked on the worker pool
+    @Override
+    public VerificationReport verify(String archivePath) throws IOException {
+        VerificationReport report = new VerificationReport();
+        Path path = Path.of(archivePath);
+        try (BgzfReader reader = new BgzfReader(path)) {
+            try {
+                report.addEntry(reader.copyTo(Channels.newChannel(OutputStream.nullOutputStream()), workerCount));
+            } catch (IOException e) {
+                report.addFailure(unnamedEntryName(path.getFileName().toString()), -1,
+                        String.valueOf(e.getMessage()));
+            }
+        }
+        return report;
+    }
+
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        ExecutorService executor = newExecutor();
+        try {
+            BgzfOutputStream bgzf = new BgzfOutputStream(archive, profile.levelFor(entryName), executor,
+                    workerCount);
+            source.transferTo(bgzf);
+            bgzf.finish();
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        if (entries.size() != 1) {
+            throw new IOException("BGZF holds a single stream, got " + entries.size() + " entries");
+        }
+        Map.Entry<String, EntrySource> entry = entries.entrySet().iterator().next();
+        try (InputStream in = entry.getValue().open()) {
+            compress(entry.getKey(), in, archive);
+        }
+    }
+
+    // BGZF is multi-member gzip, which GZIPInputStream reads in sequence
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        ArchiveEntry entry = new ArchiveEntry(DEFAULT_ENTRY_NAME, -1, -1, -1, -1);
+        InputStream in = new GZIPInputStream(new NonClosingInputStream(archive), 64 * 1024);
+        try (OutputStream out = target.open(entry)) {
+            if (out != null) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        long size = new GZIPInputStream(new NonClosingInputStream(archive), 64 * 1024)
+                .transferTo(OutputStream.nullOutputStream());
+        List<ArchiveEntry> entries = new ArrayList<>();
+        entries.add(new ArchiveEntry(DEFAULT_ENTRY_NAME, size, -1, -1, -1));
+        return entries;
+    }
+
+    private ExecutorService newExecutor() {
+        if (workerCount <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "bgzf-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Name of the compressed file: the archive name minus ".gz"
+    private static String unnamedEntryName(String archiveName) {
+        if (archiveName.toLowerCase().endsWith(".gz") && archiveName.length() > 3) {
+            return archiveName.substring(0, archiveName.length() - 3);
+        }
+        return archiveName;
+    }
+
+    // Keeps GZIPInputStream from closing the caller's stream
+    private static final class NonClosingInputStream extends FilterInputStream {
+
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Block offsets of a BGZF file: where each block starts in the compressed
+ * file and in the uncompressed data.
+ *
+ * Stored next to the file as {@code <file>.gzi}, in the layout used by
+ * bgzip -i and samtools: a little-endian 64-bit count, then one pair of
+ * 64-bit offsets (compressed, uncompressed) per block after the first,
+ * whose offsets are both 0. Either tool can thus use an index written
+ * here, and the other way round.
+ *
+ * A file without sidecar can still be indexed by scan(), which walks the
+ * block headers: each one gives the block's compressed length, and its
+ * trailer the uncompressed length, so nothing is inflated.
+ */
+public class BgzfIndex {
+
+    public static final String SUFFIX = ".gzi";
+
+    private long[] compressedOffsets = new long[64];
+    private long[] uncompressedOffsets = new long[64];
+    private int count;
+
+    BgzfIndex() {
+    }
+
+    public static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    // Records the next block; offsets must grow
+    void add(long compressedOffset, long uncompressedOffset) {
+        if (count == compressedOffsets.length) {
+            compressedOffsets = Arrays.copyOf(compressedOffsets, count * 2);
+            uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, count * 2);
+        }
+        compressedOffsets[count] = compressedOffset;
+        uncompressedOffsets[count] = uncompressedOffset;
+        count++;
+    }
+
+    public int getBlockCount() {
+        return count;
+    }
+
+    public long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    public long getUncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    /**
+     * Block holding byte {@code position} of the uncompressed data: the
+     * last one starting at or before it.
+     */
+    public int blockAt(long position) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (uncompressedOffsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads the sidecar index of {@code file}.
+     */
+    public static BgzfIndex load(Path file) throws IOException {
+        Path path = pathFor(file);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < 8) {
+            throw new ZipException("Truncated BGZF index: " + path);
+        }
+        long entries = data.getLong();
+        if (entries < 0 || entries != data.remaining() / 16 || data.remaining() % 16 != 0) {
+            throw new ZipException("Invalid BGZF index: " + path);
+        }
+        BgzfIndex index = new BgzfIndex();
+        index.add(0, 0);
+        for (long i = 0; i < entries; i++) {
+            long compressedOffset = data.getLong();
+            long uncompressedOffset = data.getLong();
+            if (compressedOffset <= index.compressedOffsets[index.count - 1]
+                    || uncompressedOffset < index.uncompressedOffsets[index.count - 1]) {
+                throw new ZipException("BGZF index offsets out of order: " + path);
+            }
+            index.add(compressedOffset, uncompressedOffset);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the sidecar index of {@code file}, replacing any previous one
+     * only once it is complete.
+     */
+    public void save(Path file) throws IOException {
+        Path path = pathFor(file);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int entries = Math.max(0, count - 1);
+        ByteBuffer data = ByteBuffer.allocate(8 + entries * 16).order(ByteOrder.LITTLE_ENDIAN);
+        data.putLong(entries);
+        for (int i = 1; i < count; i++) {
+            data.putLong(compressedOffsets[i]);
+            data.putLong(uncompressedOffsets[i]);
+        }
+        data.flip();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Builds the index of a BGZF file by walking its block headers. Empty
+     * blocks (end-of-file markers, also found between concatenated files)
+     * are left out. A file of zero bytes is not BGZF and fails.
+     */
+    public static BgzfIndex scan(FileChannel channel) throws IOException {
+        BgzfIndex index = new BgzfIndex();
+        ByteBuffer header = ByteBuffer.allocate(BgzfOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer isize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        long size = channel.size();
+        if (size == 0) {
+            // Even an empty file compresses to an end-of-file block
+            throw new ZipException("Empty BGZF file");
+        }
+        long compressedOffset = 0;
+        long uncompressedOffset = 0;
+        while (compressedOffset < size) {
+            header.clear();
+            readFully(channel, header, compressedOffset);
+            int blockLength = blockLength(header, compressedOffset);
+            isize.clear();
+            readFully(channel, isize, compressedOffset + blockLength - 4);
+            long length = isize.getInt(0) & 0xFFFFFFFFL;
+            if (length > 0) {
+                index.add(compressedOffset, uncompressedOffset);
+                uncompressedOffset += length;
+            }
+            compressedOffset += blockLength;
+        }
+        return index;
+    }
+
+    /**
+     * Checks the header of the block at {@code offset} and returns the
+     * block's total length, from its BC subfield.
+     */
+    static int blockLength(ByteBuffer header, long offset) throws ZipException {
+        if (header.get(0) != 0x1f || header.get(1) != (byte) 0x8b || header.get(2) != 8
+                || (header.get(3) & 4) == 0 || header.getShort(10) != 6
+                || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2) {
+            throw new ZipException("Not a BGZF block at offset " + offset);
+        }
+        return (header.getShort(16) & 0xFFFF) + 1;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new ZipException("Unexpected end of BGZF file");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF, the blocked gzip format of bgzip and samtools.
+ *
+ * The input is cut into blocks of at most 65280 bytes, and each block is
+ * written as a gzip member of its own whose extra field ("BC") records the
+ * member's compressed length. The output is therefore ordinary multi-member
+ * gzip that gzip, zcat and GZIPInputStream decompress, but every block can
+ * also be found and inflated on its own: BgzfIndex maps uncompressed
+ * positions to blocks, and BgzfReader seeks through it.
+ *
+ * Blocks do not depend on each other, so they can be compressed on an
+ * executor: up to two blocks per worker are in flight and their results
+ * are written in order, as in Lz4FrameOutputStream. The stream ends with
+ * the standard empty end-of-file block.
+ *
+ * Closing the stream finishes the BGZF data but leaves the underlying
+ * stream open.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+    // Largest uncompressed block; even stored, it fits the 64 KB limit of BSIZE
+    public static final int MAX_BLOCK_SIZE = 0xFF00;
+    // Largest complete block (header, compressed data and trailer)
+    static final int MAX_BLOCK_LENGTH = 0x10000;
+    // Fixed header: gzip header with FEXTRA, XLEN = 6, then the BC subfield
+    static final int HEADER_SIZE = 18;
+    // CRC32 and ISIZE
+    static final int TRAILER_SIZE = 8;
+
+    // Empty block marking the end of a BGZF file
+    static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0, 0x1b, 0,
+            3, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final OutputStream out;
+    private final int level;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final BgzfIndex index = new BgzfIndex();
+
+    private final ArrayDeque<Future<Block>> inFlight = new ArrayDeque<>();
+    // Finished blocks whose arrays can be filled again
+    private final ArrayDeque<Block> spare = new ArrayDeque<>();
+    private Block current = new Block();
+    private long compressedOffset;
+    private long uncompressedOffset;
+    private final byte[] single = new byte[1];
+    private boolean closed;
+
+    /**
+     * @param level    deflate level of every block
+     * @param executor compresses the blocks, or null to compress inline
+     * @param workers  number of executor threads (ignored without executor)
+     */
+    public BgzfOutputStream(OutputStream out, int level, ExecutorService executor, int workers) {
+        this.out = out;
+        this.level = level;
+        this.executor = executor;
+        this.maxInFlight = executor == null ? 0 : Math.max(1, workers) * 2;
+    }
+
+    public BgzfOutputStream(OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION, null, 1);
+    }
+
+    // Input and complete compressed member of one block
+    private final class Block {
+        final byte[] input = new byte[MAX_BLOCK_SIZE];
+        final byte[] output = new byte[MAX_BLOCK_LENGTH];
+        int length;
+        int blockLength;
+
+        Block compress() {
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(level);
+            try {
+                int compressed = deflate(deflater);
+                if (compressed < 0) {
+                    // Did not fit: store the block, which always fits
+                    deflater.reset();
+                    deflater.setLevel(Deflater.NO_COMPRESSION);
+                    CodecPool.applyParameters(deflater);
+                    compressed = deflate(deflater);
+                }
+                CRC32 crc = new CRC32();
+                crc.update(input, 0, length);
+                blockLength = HEADER_SIZE + compressed + TRAILER_SIZE;
+                writeHeader(output, blockLength);
+                writeIntLE(output, HEADER_SIZE + compressed, (int) crc.getValue());
+                writeIntLE(output, HEADER_SIZE + compressed + 4, length);
+                return this;
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+        }
+
+        // Deflates the whole input after the header, or returns -1 if it does not fit
+        private int deflate(Deflater deflater) {
+            int limit = MAX_BLOCK_LENGTH - TRAILER_SIZE;
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            int n = HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (n == limit) {
+                    return -1;
+                }
+                n += deflater.deflate(output, n, limit - n);
+            }
+            return n - HEADER_SIZE;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            int n = Math.min(len, MAX_BLOCK_SIZE - current.length);
+            System.arraycopy(b, off, current.input, current.length, n);
+            current.length += n;
+            off += n;
+            len -= n;
+            if (current.length == MAX_BLOCK_SIZE) {
+                submit();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        Block block = current;
+        if (executor == null) {
+            writeBlock(block.compress());
+            block.length = 0;
+            return;
+        }
+        if (inFlight.size() >= maxInFlight) {
+            spare.push(writeBlock(await(inFlight.poll())));
+        }
+        inFlight.add(executor.submit(block::compress));
+        current = spare.isEmpty() ? new Block() : spare.pop();
+        current.length = 0;
+    }
+
+    private Block writeBlock(Block block) throws IOException {
+        index.add(compressedOffset, uncompressedOffset);
+        out.write(block.output, 0, block.blockLength);
+        compressedOffset += block.blockLength;
+        uncompressedOffset += block.length;
+        return block;
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("BGZF block compression failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes the remaining blocks and the end-of-file block. The underlying
+     * stream is flushed but not closed.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current.length > 0) {
+                if (executor == null) {
+                    writeBlock(current.compress());
+                } else {
+                    inFlight.add(executor.submit(current::compress));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeBlock(await(inFlight.poll()));
+            }
+            out.write(EOF_BLOCK);
+            compressedOffset += EOF_BLOCK.length;
+            out.flush();
+        } finally {
+            for (Future<Block> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Offsets of the blocks written so far; complete once the stream is
+     * finished, and then ready to be saved as the .gzi sidecar.
+     */
+    public BgzfIndex getIndex() {
+        return index;
+    }
+
+    // Uncompressed bytes written
+    public long getBytesIn() {
+        return uncompressedOffset + current.length;
+    }
+
+    // Compressed bytes written to the underlying stream
+    public long getBytesOut() {
+        return compressedOffset;
+    }
+
+    // gzip header with the BC extra subfield holding the block length minus one
+    private static void writeHeader(byte[] b, int blockLength) {
+        System.arraycopy(EOF_BLOCK, 0, b, 0, 16);
+        b[16] = (byte) (blockLength - 1);
+        b[17] = (byte) ((blockLength - 1) >>> 8);
+    }
+
+    static void writeIntLE(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+        b[off + 2] = (byte) (value >>> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+}
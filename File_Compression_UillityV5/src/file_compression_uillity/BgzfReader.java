@@ -0,0 +1,359 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Random access to the uncompressed content of a BGZF file (see
+ * BgzfOutputStream).
+ *
+ * The block index comes from the .gzi sidecar when there is one, and is
+ * otherwise rebuilt by scanning the block headers. newChannel() then gives
+ * a read-only SeekableByteChannel over the uncompressed data: a read at any
+ * position inflates only the block holding it, so reading a byte range of a
+ * huge file costs about one block (at most 64 KB) more than the range.
+ *
+ * All file reads are positional, so any number of channels, on any
+ * threads, can share one reader. copyTo() decompresses the whole file with
+ * the blocks spread over a worker pool.
+ */
+public class BgzfReader implements AutoCloseable {
+
+    // Blocks inflated by one task of copyTo, about 2 MB of output
+    private static final int BLOCKS_PER_TASK = 32;
+
+    private final FileChannel channel;
+    private final BgzfIndex index;
+    private final long size;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public BgzfReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.index = loadIndex(file, channel);
+            this.size = index.getBlockCount() == 0 ? 0
+                    : index.getUncompressedOffset(index.getBlockCount() - 1)
+                            + inflatedLength(index.getBlockCount() - 1);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // The sidecar index, unless it is missing or was written for an older version of the file
+    private static BgzfIndex loadIndex(Path file, FileChannel channel) throws IOException {
+        Path sidecar = BgzfIndex.pathFor(file);
+        if (Files.exists(sidecar) && !Files.getLastModifiedTime(sidecar).toInstant()
+                .isBefore(Files.getLastModifiedTime(file).toInstant())) {
+            BgzfIndex index = BgzfIndex.load(file);
+            int last = index.getBlockCount() - 1;
+            if (index.getCompressedOffset(last) < channel.size()) {
+                return index;
+            }
+        }
+        System.out.println("No usable index for " + file + ", scanning its blocks");
+        return BgzfIndex.scan(channel);
+    }
+
+    public BgzfIndex getIndex() {
+        return index;
+    }
+
+    // Length of the uncompressed data
+    public long size() {
+        return size;
+    }
+
+    // Counts the compressed bytes of every block read
+    public void setProgress(ProgressTracker progress) {
+        if (progress == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = progress;
+    }
+
+    /**
+     * Read-only channel over the uncompressed data, starting at position 0.
+     * Closing it leaves the reader open.
+     */
+    public SeekableByteChannel newChannel() {
+        return new UncompressedChannel(false);
+    }
+
+    /**
+     * Opens a read-only channel over the uncompressed content of a BGZF
+     * file; closing the channel closes the file.
+     */
+    public static SeekableByteChannel open(Path file) throws IOException {
+        return new BgzfReader(file).new UncompressedChannel(true);
+    }
+
+    /**
+     * Inflates one block into {@code output} (at least MAX_BLOCK_LENGTH
+     * bytes), checking its CRC and length.
+     *
+     * @return the number of bytes inflated
+     */
+    public int readBlock(int block, byte[] output) throws IOException {
+        return readBlock(block, output, 0);
+    }
+
+    private int readBlock(int block, byte[] output, int outputOffset) throws IOException {
+        long offset = index.getCompressedOffset(block);
+        ByteBuffer header = ByteBuffer.allocate(BgzfOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        BgzfIndex.readFully(channel, header, offset);
+        int blockLength = BgzfIndex.blockLength(header, offset);
+        if (blockLength < BgzfOutputStream.HEADER_SIZE + BgzfOutputStream.TRAILER_SIZE) {
+            throw new ZipException("Invalid BGZF block length at offset " + offset);
+        }
+        ByteBuffer data = ByteBuffer.allocate(blockLength - BgzfOutputStream.HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        BgzfIndex.readFully(channel, data, offset + BgzfOutputStream.HEADER_SIZE);
+        int compressedLength = data.capacity() - BgzfOutputStream.TRAILER_SIZE;
+        int crc = data.getInt(compressedLength);
+        int length = data.getInt(compressedLength + 4);
+        if (length < 0 || length > output.length - outputOffset) {
+            throw new ZipException("Invalid BGZF block size at offset " + offset);
+        }
+
+        Inflater inflater = CodecPool.getInstance().acquireInflater();
+        try {
+            inflater.setInput(data.array(), 0, compressedLength);
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int inflated = inflater.inflate(output, outputOffset + n, length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != length || !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                throw new ZipException("BGZF block at offset " + offset + " does not inflate to its recorded size");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt BGZF block at offset " + offset + ": " + e.getMessage());
+        } finally {
+            CodecPool.getInstance().release(inflater);
+        }
+        CRC32 check = new CRC32();
+        check.update(output, outputOffset, length);
+        if ((int) check.getValue() != crc) {
+            throw new ZipException("CRC mismatch in BGZF block at offset " + offset);
+        }
+        progress.read(blockLength);
+        return length;
+    }
+
+    /**
+     * Writes the whole uncompressed content to {@code out}, inflating runs
+     * of blocks on {@code workers} threads and writing them in order.
+     *
+     * @return the number of bytes written
+     */
+    public long copyTo(WritableByteChannel out, int workers) throws IOException {
+        int blocks = index.getBlockCount();
+        if (workers <= 1) {
+            byte[] buffer = new byte[BgzfOutputStream.MAX_BLOCK_LENGTH];
+            long total = 0;
+            for (int block = 0; block < blocks; block++) {
+                int n = readBlock(block, buffer);
+                writeFully(out, ByteBuffer.wrap(buffer, 0, n));
+                total += n;
+            }
+            return total;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "bgzf-inflate");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<ByteBuffer>> inFlight = new ArrayDeque<>();
+        try {
+            long total = 0;
+            for (int first = 0; first < blocks; first += BLOCKS_PER_TASK) {
+                if (inFlight.size() >= workers * 2) {
+                    total += write(out, inFlight.poll());
+                }
+                int from = first;
+                int to = Math.min(blocks, first + BLOCKS_PER_TASK);
+                inFlight.add(pool.submit(() -> inflateRun(from, to)));
+            }
+            while (!inFlight.isEmpty()) {
+                total += write(out, inFlight.poll());
+            }
+            return total;
+        } finally {
+            for (Future<ByteBuffer> future : inFlight) {
+                future.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    // Inflates blocks [from, to) into one buffer
+    private ByteBuffer inflateRun(int from, int to) throws IOException {
+        long start = index.getUncompressedOffset(from);
+        long end = to < index.getBlockCount() ? index.getUncompressedOffset(to) : size;
+        byte[] output = new byte[(int) (end - start)];
+        int length = 0;
+        for (int block = from; block < to; block++) {
+            length += readBlock(block, output, length);
+        }
+        if (length != end - start) {
+            throw new ZipException("BGZF blocks " + from + "-" + (to - 1) + " are shorter than the index says");
+        }
+        return ByteBuffer.wrap(output, 0, length);
+    }
+
+    private static long write(WritableByteChannel out, Future<ByteBuffer> future) throws IOException {
+        ByteBuffer data;
+        try {
+            data = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("BGZF decompression failed", e.getCause());
+        }
+        int n = data.remaining();
+        writeFully(out, data);
+        return n;
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    // Uncompressed length of a block, from its trailer
+    private int inflatedLength(int block) throws IOException {
+        long offset = index.getCompressedOffset(block);
+        ByteBuffer header = ByteBuffer.allocate(BgzfOutputStream.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        BgzfIndex.readFully(channel, header, offset);
+        ByteBuffer isize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        BgzfIndex.readFully(channel, isize, offset + BgzfIndex.blockLength(header, offset) - 4);
+        return isize.getInt(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Read-only view of the uncompressed data, caching the last block inflated
+    private final class UncompressedChannel implements SeekableByteChannel {
+
+        private final boolean closesReader;
+        private final byte[] block = new byte[BgzfOutputStream.MAX_BLOCK_LENGTH];
+        private int cachedBlock = -1;
+        private int cachedLength;
+        private long position;
+        private boolean open = true;
+
+        UncompressedChannel(boolean closesReader) {
+            this.closesReader = closesReader;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (position >= size) {
+                return -1;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && position < size) {
+                int blockIndex = index.blockAt(position);
+                if (blockIndex != cachedBlock) {
+                    cachedBlock = -1;
+                    cachedLength = readBlock(blockIndex, block);
+                    cachedBlock = blockIndex;
+                }
+                int offset = (int) (position - index.getUncompressedOffset(blockIndex));
+                int n = Math.min(dst.remaining(), cachedLength - offset);
+                if (n <= 0) {
+                    throw new ZipException("BGZF block " + blockIndex + " is shorter than its index entry says");
+                }
+                dst.put(block, offset, n);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position: " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long newSize) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open && channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (open) {
+                open = false;
+                if (closesReader) {
+                    BgzfReader.this.close();
+                }
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (!isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+}
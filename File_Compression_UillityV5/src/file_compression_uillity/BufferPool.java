@@ -0,0 +1,64 @@
+package file_compression_uillity;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//Singleton Pattern
+/**
+ * Pool of direct I/O buffers.
+ *
+ * Direct buffers let FileChannel reads and writes skip the copy through a
+ * Java heap array, but they are expensive to allocate and are only freed by
+ * the garbage collector. Buffers are therefore kept per capacity and handed
+ * out again instead of being allocated for every file.
+ */
+public class BufferPool {
+
+    // Buffers kept per capacity; extra released buffers are simply dropped
+    private static final int MAX_POOLED_PER_SIZE = 64;
+
+    private static BufferPool instance;
+
+    private final Map<Integer, ConcurrentLinkedQueue<ByteBuffer>> pools = new ConcurrentHashMap<>();
+
+    private BufferPool() {
+    }
+
+    public static synchronized BufferPool getInstance() {
+        if (instance == null) {
+            instance = new BufferPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a cleared direct buffer with exactly the given capacity.
+     */
+    public ByteBuffer acquire(int capacity) {
+        ByteBuffer buffer = queue(capacity).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer obtained from {@link #acquire} back to the pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        ConcurrentLinkedQueue<ByteBuffer> queue = queue(buffer.capacity());
+        if (queue.size() < MAX_POOLED_PER_SIZE) {
+            queue.offer(buffer);
+        }
+    }
+
+    private ConcurrentLinkedQueue<ByteBuffer> queue(int capacity) {
+        return pools.computeIfAbsent(capacity, c -> new ConcurrentLinkedQueue<>());
+    }
+}
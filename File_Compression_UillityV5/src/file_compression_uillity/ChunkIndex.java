@@ -0,0 +1,140 @@
+package file_compression_uillity;
+
+/**
+ * Maps chunk digests to chunk numbers for deduplication.
+ *
+ * Keys are the first 128 bits of the chunk's SHA-256; at 100 million chunks
+ * the chance of two different chunks sharing them is about 1e-23. The
+ * table is open-addressed with linear probing over three primitive arrays,
+ * so an entry costs 20 bytes per slot and no objects: with the table kept
+ * between 3/8 and 3/4 full, 100M chunks take 2^27 slots, about 2.7 GB,
+ * where a HashMap of byte-array keys would need well over 10 GB. Growing
+ * doubles the table and needs the old one until it is copied, so pass the
+ * expected chunk count when it is known.
+ *
+ * Not thread-safe; DedupArchiveWriter uses it from a single thread.
+ */
+public class ChunkIndex {
+
+    private static final int MIN_CAPACITY = 1 << 10;
+    // 2^30 slots: the largest power of two a Java array can hold
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] high;
+    private long[] low;
+    // Chunk number + 1; 0 marks a free slot
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public ChunkIndex() {
+        this(0);
+    }
+
+    /**
+     * @param expectedChunks chunks to make room for up front, avoiding
+     *                       rehashing while the table grows
+     */
+    public ChunkIndex(long expectedChunks) {
+        allocate(capacityFor(expectedChunks));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number stored for a digest, or -1.
+     */
+    public int get(long keyHigh, long keyLow) {
+        for (int slot = (int) keyLow & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (low[slot] == keyLow && high[slot] == keyHigh) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores {@code value} unless the digest is already present.
+     *
+     * @return the number already stored for the digest, or -1 if
+     *         {@code value} was added
+     */
+    public int putIfAbsent(long keyHigh, long keyLow, int value) {
+        if (value < 0 || value == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk number out of range: " + value);
+        }
+        int slot = (int) keyLow & mask;
+        for (; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (low[slot] == keyLow && high[slot] == keyHigh) {
+                return values[slot] - 1;
+            }
+        }
+        high[slot] = keyHigh;
+        low[slot] = keyLow;
+        values[slot] = value + 1;
+        if (++size > threshold(values.length)) {
+            grow();
+        }
+        return -1;
+    }
+
+    // Heap used by the table arrays
+    public long memoryBytes() {
+        return bytesFor(values.length);
+    }
+
+    /**
+     * Heap the table would use for {@code chunks} entries, when grown to
+     * that size.
+     */
+    public static long estimateMemoryBytes(long chunks) {
+        return bytesFor(capacityFor(chunks));
+    }
+
+    private void grow() {
+        if (values.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Chunk index is full: " + size + " chunks");
+        }
+        long[] oldHigh = high;
+        long[] oldLow = low;
+        int[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = (int) oldLow[i] & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                high[slot] = oldHigh[i];
+                low[slot] = oldLow[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        high = new long[capacity];
+        low = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(long chunks) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && threshold(capacity) < chunks) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    // Beyond 3/4 full, linear probing chains get long
+    private static long threshold(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    private static long bytesFor(int capacity) {
+        return (long) capacity * (Long.BYTES * 2 + Integer.BYTES);
+    }
+}
@@ -0,0 +1,125 @@
+package file_compression_uillity;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//Singleton Pattern
+/**
+ * Pool of raw (nowrap) Deflater and Inflater instances.
+ *
+ * Every Deflater or Inflater owns a native zlib stream (about 256 KB for a
+ * Deflater) that is only released by end() or, much later, by the cleaner.
+ * Creating one per entry therefore churns native memory on archives of many
+ * small files. Codecs are reset and handed out again instead; the pool is
+ * shared by every codec in the application, next to BufferPool for the I/O
+ * buffers.
+ */
+public class CodecPool {
+
+    // Idle codecs kept per kind; extra released codecs are ended
+    static final int MAX_POOLED = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static CodecPool instance;
+
+    private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    // Queue sizes, tracked separately because ConcurrentLinkedQueue.size() walks the queue
+    private final AtomicInteger idleDeflaters = new AtomicInteger();
+    private final AtomicInteger idleInflaters = new AtomicInteger();
+
+    private CodecPool() {
+    }
+
+    public static synchronized CodecPool getInstance() {
+        if (instance == null) {
+            instance = new CodecPool();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a reset raw Deflater with the given level and the default
+     * strategy.
+     */
+    public Deflater acquireDeflater(int level) {
+        return acquireDeflater(level, Deflater.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * Returns a reset raw Deflater with the given level and strategy, both
+     * already in effect.
+     */
+    public Deflater acquireDeflater(int level, int strategy) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        } else {
+            idleDeflaters.decrementAndGet();
+            deflater.setLevel(level);
+        }
+        deflater.setStrategy(strategy);
+        applyParameters(deflater);
+        return deflater;
+    }
+
+    /**
+     * Makes level and strategy changes take effect now. Deflater otherwise
+     * applies them on the next deflate call, after any preset dictionary set
+     * in between, and such streams can fail to inflate ("invalid distance
+     * too far back"). Only call on a reset deflater, before its first input.
+     */
+    static void applyParameters(Deflater deflater) {
+        deflater.deflate(EMPTY, 0, 0, Deflater.NO_FLUSH);
+    }
+
+    /**
+     * Gives a Deflater obtained from {@link #acquireDeflater} back to the
+     * pool. It must not be used by the caller afterwards.
+     */
+    public void release(Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        if (idleDeflaters.incrementAndGet() <= MAX_POOLED) {
+            deflaters.offer(deflater);
+        } else {
+            idleDeflaters.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns a reset raw Inflater.
+     */
+    public Inflater acquireInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        idleInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Gives an Inflater obtained from {@link #acquireInflater} back to the
+     * pool. It must not be used by the caller afterwards.
+     */
+    public void release(Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        if (idleInflaters.incrementAndGet() <= MAX_POOLED) {
+            inflaters.offer(inflater);
+        } else {
+            idleInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+}
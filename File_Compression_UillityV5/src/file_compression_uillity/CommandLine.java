@@ -0,0 +1,485 @@
+package file_compression_uillity;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FilterInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Headless command line: compress, extract, list and verify archives from
+ * scripts, with "-" standing for stdin or stdout.
+ *
+ * It uses the compressors directly and never touches CompressionManager or
+ * the GUI classes, so no AWT or Swing class is loaded and a run costs little
+ * more than JVM startup. The build adds a class-data-sharing archive for it
+ * (see build.xml and tools/fcu).
+ *
+ * stdout carries only archive data, extracted entries and listings; the
+ * messages of the compressors go to stderr (or nowhere with -q). The exit
+ * status is 0 on success, 1 on failure (including damaged entries found by
+ * verify) and 2 on a usage error.
+ *
+ * serve runs a CompressionServer. client is a front end to it for scripts;
+ * being a JVM itself it still pays startup, so programs running many small
+ * jobs keep a CompressionClient connection open instead.
+ */
+public class CommandLine {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: fcu [-q] <command> [options] <arguments>",
+            "",
+            "  compress [-t TYPE] [-o ARCHIVE|-] [-l FAST|BALANCED|MAX] [-j THREADS]",
+            "           [-i GLOB]... [-x GLOB]... [-n NAME] FILE...|-",
+            "      Without -o, a single FILE is compressed next to itself.",
+            "      -i/-x select files of directory trees by entry name (ZIP only);",
+            "      -n names the entry read from stdin.",
+            "  extract  [-t TYPE] [-C DIR] [-e GLOB] ARCHIVE|-",
+            "  extract  [-t TYPE] -p ENTRY ARCHIVE|-      writes one entry to stdout",
+            "  list     [-t TYPE] ARCHIVE|-",
+            "  verify   [-t TYPE] [-j THREADS] ARCHIVE|-",
+            "  selftest                                   round trip of ZIP, TAR.GZ and LZ4 in a temp dir",
+            "  serve    [-s SOCKET | -P PORT] [-j THREADS]",
+            "      Keeps a warm JVM serving jobs on a Unix socket (default " + CompressionProtocol.defaultSocket() + ")",
+            "      or a loopback TCP port; -j bounds the jobs running at once.",
+            "  client   [-s SOCKET | -P PORT] [-t TYPE] [-n NAME] compress|extract|list|verify|ping",
+            "      Sends stdin to the server and writes the result to stdout.",
+            "",
+            "TYPE is one of ZIP, TAR, TAR.GZ, TAR.XZ, LZ4, BGZF, SOLID, DEDUP, RAR; by default it",
+            "follows the archive's extension, or is ZIP when reading stdin or writing stdout.");
+
+    // Exit statuses
+    private static final int OK = 0;
+    private static final int FAILED = 1;
+    private static final int USAGE_ERROR = 2;
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private CommandLine(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        // stdout is reserved for data; the compressors' messages go to stderr
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        int first = 0;
+        if (args.length > 0 && args[0].equals("-q")) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            first = 1;
+        } else {
+            System.setOut(err);
+        }
+        String[] rest = Arrays.copyOfRange(args, first, args.length);
+        int status = new CommandLine(out, err).run(rest);
+        out.flush();
+        System.exit(status);
+    }
+
+    private int run(String[] args) {
+        if (args.length == 0 || args[0].equals("-h") || args[0].equals("--help")) {
+            err.println(USAGE);
+            return args.length == 0 ? USAGE_ERROR : OK;
+        }
+        try {
+            Options options = new Options(args);
+            switch (args[0]) {
+                case "compress":
+                    return compress(options);
+                case "extract":
+                    return extract(options);
+                case "list":
+                    return list(options);
+                case "verify":
+                    return verify(options);
+                case "selftest":
+                    return selftest();
+                case "serve":
+                    return serve(options);
+                case "client":
+                    return client(options);
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("fcu: " + e.getMessage());
+            err.println(USAGE);
+            return USAGE_ERROR;
+        } catch (IOException | RuntimeException e) {
+            err.println("fcu: " + e);
+            return FAILED;
+        }
+    }
+
+    private int compress(Options options) throws IOException {
+        List<String> inputs = options.arguments;
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("No files to compress");
+        }
+        String output = options.get("o");
+        Compressor compressor = options.compressor(output);
+        if (!options.includes.isEmpty() || !options.excludes.isEmpty()) {
+            if (!(compressor instanceof ZipCompressor)) {
+                throw new IllegalArgumentException("-i and -x are only supported for ZIP");
+            }
+            ((ZipCompressor) compressor).setIncludes(options.includes.toArray(new String[0]));
+            ((ZipCompressor) compressor).setExcludes(options.excludes.toArray(new String[0]));
+        }
+
+        if (inputs.equals(List.of("-"))) {
+            // Single entry read from stdin
+            try (OutputStream archive = openOutput(output == null ? "-" : output)) {
+                compressor.compress(options.get("n", "stdin"), System.in, archive);
+            }
+            return OK;
+        }
+        if (inputs.contains("-")) {
+            throw new IllegalArgumentException("stdin cannot be combined with files");
+        }
+        if (output == null) {
+            if (inputs.size() > 1) {
+                throw new IllegalArgumentException("Several files need an archive name (-o)");
+            }
+            return compressor.compress(inputs.get(0)) ? OK : FAILED;
+        }
+        if (output.equals("-")) {
+            // Streams have no directory walk of their own: list the trees first
+            Map<String, EntrySource> entries = new LinkedHashMap<>();
+            for (String input : inputs) {
+                addTree(entries, Path.of(input), options);
+            }
+            try (OutputStream archive = openOutput("-")) {
+                compressor.compressMultiple(entries, archive);
+            }
+            return OK;
+        }
+        return compressor.compressMultiple(inputs.toArray(new String[0]), output) ? OK : FAILED;
+    }
+
+    private int extract(Options options) throws IOException {
+        String archive = options.single("archive");
+        Compressor compressor = options.compressor(archive);
+        String entryName = options.get("p");
+        if (entryName != null) {
+            boolean found;
+            try (InputStream in = openInput(archive); OutputStream target = openOutput("-")) {
+                found = compressor.decompress(in, entryName, target);
+            }
+            if (!found) {
+                err.println("fcu: no entry " + entryName + " in " + archive);
+                return FAILED;
+            }
+            return OK;
+        }
+        String outputDir = options.get("C", ".");
+        String pattern = options.get("e");
+        if (!archive.equals("-")) {
+            int extracted = compressor.extractSelected(archive, pattern, outputDir);
+            err.println("Extracted " + extracted + " entries to " + outputDir);
+            return OK;
+        }
+        Predicate<String> matcher = EntryPaths.globMatcher(pattern);
+        Path outputRoot = Path.of(outputDir);
+        int[] extracted = new int[1];
+        compressor.decompress(System.in, entry -> {
+            Path target = EntryPaths.resolve(outputRoot, entry.getName());
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+                return null;
+            }
+            if (!matcher.test(entry.getName())) {
+                return null;
+            }
+            Files.createDirectories(target.getParent());
+            extracted[0]++;
+            return Files.newOutputStream(target);
+        });
+        err.println("Extracted " + extracted[0] + " entries to " + outputDir);
+        return OK;
+    }
+
+    private int list(Options options) throws IOException {
+        String archive = options.single("archive");
+        Compressor compressor = options.compressor(archive);
+        List<ArchiveEntry> entries;
+        if (archive.equals("-")) {
+            entries = compressor.list(System.in);
+        } else {
+            entries = compressor.list(archive);
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        for (ArchiveEntry entry : entries) {
+            out.printf("%12d %12s %16s  %s%n", entry.getSize(),
+                    entry.getCompressedSize() < 0 ? "-" : Long.toString(entry.getCompressedSize()),
+                    entry.getLastModified() <= 0 ? "-" : format.format(new Date(entry.getLastModified())),
+                    entry.getName());
+        }
+        return OK;
+    }
+
+    private int verify(Options options) throws IOException {
+        String archive = options.single("archive");
+        Compressor compressor = options.compressor(archive);
+        VerificationReport report;
+        if (archive.equals("-")) {
+            report = compressor.verify(System.in);
+        } else {
+            report = compressor.verify(archive);
+        }
+        out.println(report);
+        for (VerificationReport.Failure failure : report.getFailures()) {
+            out.println("Damaged: " + failure);
+        }
+        return report.isOk() ? OK : FAILED;
+    }
+
+    /**
+     * Round trip of a few formats in a temp dir. The build runs it to record
+     * the classes a typical run loads in the class-data-sharing archive.
+     */
+    private int selftest() throws IOException {
+        Path dir = Files.createTempDirectory("fcu-selftest");
+        try {
+            Path data = dir.resolve("data");
+            Files.createDirectories(data.resolve("logs"));
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                text.append(i).append(" selftest line of text for the compressors\n");
+            }
+            Files.writeString(data.resolve("notes.txt"), text);
+            Files.writeString(data.resolve("logs/app.log"), text.reverse());
+            for (String type : new String[] { "ZIP", "TAR.GZ", "LZ4" }) {
+                Compressor compressor = CompressionFactory.createCompressor(type);
+                String archive = dir.resolve("test" + compressor.getExtension()).toString();
+                // LZ4 archives hold flat files only
+                String[] inputs = type.equals("LZ4") ? new String[] { data.resolve("notes.txt").toString() }
+                        : new String[] { data.toString() };
+                if (!compressor.compressMultiple(inputs, archive)) {
+                    err.println("selftest: " + type + " compression failed");
+                    return FAILED;
+                }
+                Path extracted = dir.resolve("out-" + type);
+                compressor.extractSelected(archive, null, extracted.toString());
+                boolean same = Files.mismatch(data.resolve("notes.txt"),
+                        extracted.resolve(type.equals("LZ4") ? "notes.txt" : "data/notes.txt")) < 0;
+                if (!same || compressor.list(archive).isEmpty() || !compressor.verify(archive).isOk()) {
+                    err.println("selftest: " + type + " round trip failed");
+                    return FAILED;
+                }
+            }
+            err.println("selftest: ok");
+            return OK;
+        } finally {
+            try (Stream<Path> walk = Files.walk(dir)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private int serve(Options options) throws IOException {
+        int workers = Integer.parseInt(options.get("j",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        String port = options.get("P");
+        CompressionServer server = port != null ? CompressionServer.bind(Integer.parseInt(port), workers)
+                : CompressionServer.bind(Path.of(options.get("s", CompressionProtocol.defaultSocket().toString())),
+                        workers);
+        // Removes the socket file on Ctrl-C or kill
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Exiting anyway
+            }
+        }, "compression-server-shutdown"));
+        err.println("Serving on " + server.getAddress());
+        server.serve();
+        return OK;
+    }
+
+    private int client(Options options) throws IOException {
+        byte operation = CompressionProtocol.operation(options.single("operation"));
+        String port = options.get("P");
+        try (CompressionClient client = port != null ? CompressionClient.connect(Integer.parseInt(port))
+                : CompressionClient.connect(Path.of(options.get("s", CompressionProtocol.defaultSocket().toString())));
+                OutputStream target = openOutput("-")) {
+            InputStream data = operation == CompressionProtocol.PING ? null : System.in;
+            CompressionClient.Response response = client.call(operation, options.get("t"), options.get("n"), data,
+                    target);
+            target.flush();
+            if (!response.getMessage().isEmpty()) {
+                err.println(response.getMessage());
+            }
+            return response.isOk() ? OK : FAILED;
+        }
+    }
+
+    // Files of a tree under names relative to its parent, as compressMultiple names them
+    private static void addTree(Map<String, EntrySource> entries, Path root, Options options) throws IOException {
+        Path base = root.toAbsolutePath().getParent();
+        Predicate<String> included = name -> options.includes.isEmpty()
+                || options.includes.stream().anyMatch(glob -> EntryPaths.globMatcher(glob).test(name));
+        Predicate<String> excluded = name -> options.excludes.stream()
+                .anyMatch(glob -> EntryPaths.globMatcher(glob).test(name));
+        try (Stream<Path> walk = Files.walk(root.toAbsolutePath())) {
+            for (Path path : walk.toList()) {
+                String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+                if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && included.test(name)
+                        && !excluded.test(name)) {
+                    if (entries.containsKey(name)) {
+                        throw new IOException("duplicate entry: " + name);
+                    }
+                    File file = path.toFile();
+                    entries.put(name, () -> new FileInputStream(file));
+                }
+            }
+        }
+    }
+
+    private static InputStream openInput(String path) throws IOException {
+        return path.equals("-") ? new NonClosingInputStream(System.in) : new FileInputStream(path);
+    }
+
+    // "-" is the real stdout, which System.out no longer is
+    private static OutputStream openOutput(String path) throws IOException {
+        if (path.equals("-")) {
+            return new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+        }
+        return new BufferedOutputStream(new FileOutputStream(path), 64 * 1024);
+    }
+
+    // Keeps stdin open for the rest of the run
+    private static final class NonClosingInputStream extends FilterInputStream {
+
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Options after the command: "-x value" pairs (-i and -x may repeat) and
+     * the remaining arguments.
+     */
+    private static final class Options {
+
+        private final Map<String, String> values = new LinkedHashMap<>();
+        private final List<String> includes = new ArrayList<>();
+        private final List<String> excludes = new ArrayList<>();
+        private final List<String> arguments = new ArrayList<>();
+
+        Options(String[] args) {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.length() == 2 && arg.charAt(0) == '-' && arg.charAt(1) != '-') {
+                    if (i + 1 == args.length) {
+                        throw new IllegalArgumentException("Missing value of " + arg);
+                    }
+                    String value = args[++i];
+                    switch (arg) {
+                        case "-i":
+                            includes.add(value);
+                            break;
+                        case "-x":
+                            excludes.add(value);
+                            break;
+                        case "-t":
+                        case "-o":
+                        case "-l":
+                        case "-p":
+                        case "-j":
+                        case "-n":
+                        case "-C":
+                        case "-e":
+                        case "-s":
+                        case "-P":
+                            values.put(arg.substring(1), value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                } else {
+                    arguments.add(arg);
+                }
+            }
+        }
+
+        String get(String name) {
+            return values.get(name);
+        }
+
+        String get(String name, String defaultValue) {
+            return values.getOrDefault(name, defaultValue);
+        }
+
+        String single(String what) {
+            if (arguments.size() != 1) {
+                throw new IllegalArgumentException("Expected one " + what + ", got " + arguments.size());
+            }
+            return arguments.get(0);
+        }
+
+        // -t, or the type of the archive's extension, or ZIP for stdin and stdout
+        String type(String archive) {
+            String type = get("t");
+            if (type != null) {
+                return type.toUpperCase();
+            }
+            if (archive == null || archive.equals("-")) {
+                return "ZIP";
+            }
+            String name = archive.toLowerCase();
+            if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                return "TAR.GZ";
+            }
+            if (name.endsWith(".tar.xz") || name.endsWith(".txz")) {
+                return "TAR.XZ";
+            }
+            String[][] suffixes = { { ".tar", "TAR" }, { ".zip", "ZIP" }, { ".lz4", "LZ4" }, { ".gz", "BGZF" },
+                    { ".solid", "SOLID" }, { ".dedup", "DEDUP" }, { ".rar", "RAR" } };
+            for (String[] suffix : suffixes) {
+                if (name.endsWith(suffix[0])) {
+                    return suffix[1];
+                }
+            }
+            throw new IllegalArgumentException("Cannot tell the type of " + archive + "; use -t");
+        }
+
+        Compressor compressor(String archive) {
+            Compressor compressor = CompressionFactory.createCompressor(type(archive));
+            String profile = get("l");
+            if (profile != null) {
+                compressor.setProfile(CompressionProfile.valueOf(profile.toUpperCase()));
+            }
+            String threads = get("j");
+            if (threads != null) {
+                compressor.setWorkerCount(Integer.parseInt(threads));
+            }
+            return compressor;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package file_compression_uillity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of a CompressionServer over one connection.
+ *
+ * call() sends a request and reads its response. For pipelining, send()
+ * and receive() can be used separately: responses arrive in the order of
+ * the requests, and should be read on another thread than the one sending,
+ * because the server stops reading once unread responses fill the socket.
+ */
+public class CompressionClient implements AutoCloseable {
+
+    /**
+     * Status and message of a response; its payload went to the caller's
+     * stream.
+     */
+    public static final class Response {
+        private final byte status;
+        private final String message;
+
+        Response(byte status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        public boolean isOk() {
+            return status == CompressionProtocol.OK;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return (isOk() ? "OK" : "FAILED") + (message.isEmpty() ? "" : ": " + message);
+        }
+    }
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final OutputStream out;
+    // Not synchronized: a virtual thread blocked on the socket there would pin its carrier
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final ReentrantLock receiveLock = new ReentrantLock();
+
+    private CompressionClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), CompressionProtocol.CHUNK_SIZE));
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), CompressionProtocol.CHUNK_SIZE);
+    }
+
+    public static CompressionClient connect(Path socketPath) throws IOException {
+        return new CompressionClient(SocketChannel.open(UnixDomainSocketAddress.of(socketPath)));
+    }
+
+    public static CompressionClient connect(int port) throws IOException {
+        return new CompressionClient(SocketChannel.open(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port)));
+    }
+
+    /**
+     * Sends a request, streaming its payload from {@code data} (null for
+     * none). The response is left for receive().
+     */
+    public void send(byte operation, String type, String name, InputStream data) throws IOException {
+        sendLock.lock();
+        try {
+            out.write(operation);
+            CompressionProtocol.writeString(out, type == null ? "" : type);
+            CompressionProtocol.writeString(out, name == null ? "" : name);
+            CompressionProtocol.ChunkedOutputStream payload = new CompressionProtocol.ChunkedOutputStream(out);
+            if (data != null) {
+                data.transferTo(payload);
+            }
+            payload.close();
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the next response, writing its payload to {@code target} (null
+     * discards it).
+     */
+    public Response receive(OutputStream target) throws IOException {
+        receiveLock.lock();
+        try {
+            CompressionProtocol.ChunkedInputStream payload = new CompressionProtocol.ChunkedInputStream(in);
+            if (target != null) {
+                payload.transferTo(target);
+            }
+            payload.close();
+            byte status = in.readByte();
+            return new Response(status, CompressionProtocol.readString(in));
+        } finally {
+            receiveLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a request and reads its response. The payload is sent on a
+     * virtual thread while the response streams in, so payloads of any size
+     * pass through without filling the socket.
+     */
+    public Response call(byte operation, String type, String name, InputStream data, OutputStream target)
+            throws IOException {
+        IOException[] failure = new IOException[1];
+        Thread sender = Thread.ofVirtual().name("compression-client-send").start(() -> {
+            try {
+                send(operation, type, name, data);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        Response response;
+        try {
+            response = receive(target);
+        } catch (IOException e) {
+            sender.interrupt();
+            throw e;
+        }
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending");
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -13,6 +13,28 @@ public class CompressionFactory {
             case "RAR":
                 // Adapter Pattern - wraps external RAR command-line tool
                 return new RarCompressorAdapter();
+            case "TAR":
+                return new TarCompressor();
+            case "TAR.GZ":
+            case "TGZ":
+                // Gzip layer compressed in parallel blocks
+                return new TarCompressor(TarCompressor.Compression.GZIP);
+            case "TAR.XZ":
+            case "TXZ":
+                // Adapter Pattern - xz layer piped through the xz command-line tool
+                return new TarCompressor(TarCompressor.Compression.XZ);
+            case "LZ4":
+                // Pure-Java LZ4 frames: fast, lower ratio than ZIP
+                return new Lz4Compressor();
+            case "BGZF":
+                // Blocked gzip of one file, with an index for seeking in the uncompressed data
+                return new BgzfCompressor();
+            case "SOLID":
+                // Files grouped by type into large blocks, with an index for single-file extraction
+                return new SolidCompressor();
+            case "DEDUP":
+                // Content-defined chunks stored once across all files
+                return new DedupCompressor();
             default:
                 throw new IllegalArgumentException("Unknown compression type: " + type);
         }
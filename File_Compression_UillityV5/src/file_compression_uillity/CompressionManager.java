@@ -4,40 +4,87 @@ package file_compression_uillity;
 //Lazy Singleton 
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 
 public class CompressionManager {
-    private static CompressionManager instance;
+    private static volatile CompressionManager instance;
+
+    // Engine for asynchronous jobs, created on first use
+    private volatile JobEngine jobEngine;
 
     // Private constructor to prevent instantiation
     private CompressionManager() {
     }
 
-    // Singleton instance getter
+    // Singleton instance getter (double-checked, safe to call from any thread)
     public static CompressionManager getInstance() {
-        if (instance == null) {
-            instance = new CompressionManager();
+        CompressionManager manager = instance;
+        if (manager == null) {
+            synchronized (CompressionManager.class) {
+                manager = instance;
+                if (manager == null) {
+                    manager = new CompressionManager();
+                    instance = manager;
+                }
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Engine running compress, decompress and verify jobs asynchronously for
+     * concurrent callers (see JobEngine). The methods below instead block
+     * their caller, and each needs a compressor of its own per thread.
+     */
+    public JobEngine getJobEngine() {
+        JobEngine engine = jobEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = jobEngine;
+                if (engine == null) {
+                    engine = new JobEngine();
+                    jobEngine = engine;
+                }
+            }
         }
-        return instance;
+        return engine;
     }
 
     // Compression method
     public boolean compressFile(String filePath, Compressor compressor, javax.swing.JProgressBar progressBar) {
+        return compressFile(filePath, compressor, null, progressBar);
+    }
+
+    // Compression with a per-job profile (null keeps the compressor's current profile)
+    public boolean compressFile(String filePath, Compressor compressor, CompressionProfile profile,
+            javax.swing.JProgressBar progressBar) {
+        return compressFile(filePath, compressor, profile, listenerFor(progressBar));
+    }
+
+    // Compression reporting bytes, entries, throughput and ETA to a listener (may be null)
+    public boolean compressFile(String filePath, Compressor compressor, CompressionProfile profile,
+            ProgressListener listener) {
         try {
             File file = new File(filePath);
             if (!file.exists()) {
                 return false;
             }
 
-            // Simulate progress updates
-            if (progressBar != null) {
-                for (int i = 0; i <= 100; i += 10) {
-                    progressBar.setValue(i);
-                    Thread.sleep(100); // Simulate work
-                }
+            if (profile != null) {
+                compressor.setProfile(profile);
             }
-
-            // Perform actual compression
-            return compressor.compress(filePath);
+            ProgressTracker tracker = trackerFor(listener);
+            if (tracker.isEnabled()) {
+                long[] input = measureInput(new String[] { filePath });
+                tracker.setTotals(input[0], input[1]);
+            }
+            return run(compressor, tracker, () -> compressor.compress(filePath));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -47,22 +94,22 @@ public class CompressionManager {
 
     // Decompression method
     public boolean decompressFile(String filePath, Compressor compressor, javax.swing.JProgressBar progressBar) {
+        return decompressFile(filePath, compressor, listenerFor(progressBar));
+    }
+
+    // Decompression measured against the archive size, reporting to a listener (may be null)
+    public boolean decompressFile(String filePath, Compressor compressor, ProgressListener listener) {
         try {
             File file = new File(filePath);
             if (!file.exists()) {
                 return false;
             }
 
-            // Simulate progress updates
-            if (progressBar != null) {
-                for (int i = 0; i <= 100; i += 10) {
-                    progressBar.setValue(i);
-                    Thread.sleep(100); // Simulate work
-                }
+            ProgressTracker tracker = trackerFor(listener);
+            if (tracker.isEnabled()) {
+                tracker.setTotals(archiveSize(file.toPath()), -1);
             }
-
-            // Perform actual decompression
-            return compressor.decompress(filePath);
+            return run(compressor, tracker, () -> compressor.decompress(filePath));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -73,6 +120,18 @@ public class CompressionManager {
     // Multi-file compression method
     public boolean compressFiles(String[] filePaths, String outputArchivePath, Compressor compressor,
             javax.swing.JProgressBar progressBar) {
+        return compressFiles(filePaths, outputArchivePath, compressor, null, progressBar);
+    }
+
+    // Multi-file compression with a per-job profile (null keeps the compressor's current profile)
+    public boolean compressFiles(String[] filePaths, String outputArchivePath, Compressor compressor,
+            CompressionProfile profile, javax.swing.JProgressBar progressBar) {
+        return compressFiles(filePaths, outputArchivePath, compressor, profile, listenerFor(progressBar));
+    }
+
+    // Multi-file compression reporting to a listener (may be null)
+    public boolean compressFiles(String[] filePaths, String outputArchivePath, Compressor compressor,
+            CompressionProfile profile, ProgressListener listener) {
         try {
             if (filePaths == null || filePaths.length == 0) {
                 return false;
@@ -87,16 +146,107 @@ public class CompressionManager {
                 }
             }
 
-            // Simulate progress updates
-            if (progressBar != null) {
-                for (int i = 0; i <= 100; i += 10) {
-                    progressBar.setValue(i);
-                    Thread.sleep(100); // Simulate work
+            if (profile != null) {
+                compressor.setProfile(profile);
+            }
+            ProgressTracker tracker = trackerFor(listener);
+            if (tracker.isEnabled()) {
+                if (compressor.measuresTrees()) {
+                    // Counted as the compressor's walk finds the files, instead of walking every tree twice
+                    tracker.setTotals(0, 0);
+                } else {
+                    long[] input = measureInput(filePaths);
+                    tracker.setTotals(input[0], input[1]);
+                }
+            }
+            return run(compressor, tracker, () -> compressor.compressMultiple(filePaths, outputArchivePath));
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static ProgressListener listenerFor(javax.swing.JProgressBar progressBar) {
+        return progressBar == null ? null : new ProgressBarListener(progressBar);
+    }
+
+    private static ProgressTracker trackerFor(ProgressListener listener) {
+        return listener == null ? ProgressTracker.NONE : new ProgressTracker(listener);
+    }
+
+    // Runs a job with the tracker attached to the compressor, then reports its end
+    private static boolean run(Compressor compressor, ProgressTracker tracker, BooleanSupplier job) {
+        compressor.setProgressTracker(tracker);
+        tracker.start();
+        boolean success = false;
+        try {
+            success = job.getAsBoolean();
+            if (!success && tracker.getFailure() != null) {
+                // Handed to the tracker instead of printed by the compressor
+                tracker.getFailure().printStackTrace();
+            }
+            return success;
+        } finally {
+            compressor.setProgressTracker(ProgressTracker.NONE);
+            tracker.finish(success);
+        }
+    }
+
+    // Total size and number of the regular files at or below the given paths.
+    // Formats other than ZIP walk their trees without reporting what they
+    // find, so their input is measured up front.
+    private static long[] measureInput(String[] filePaths) throws IOException {
+        long[] total = new long[2];
+        for (String filePath : filePaths) {
+            // Symbolic links are not followed, as the compressors do not follow them
+            try (Stream<Path> walk = Files.walk(Path.of(filePath))) {
+                walk.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)).forEach(path -> {
+                    total[0] += path.toFile().length();
+                    total[1]++;
+                });
+            }
+        }
+        return total;
+    }
+
+    // Size of an archive, including the earlier volumes of a split ZIP archive
+    private static long archiveSize(Path archive) throws IOException {
+        long size = Files.size(archive);
+        if (archive.toString().toLowerCase().endsWith(".zip") && SplitZipChannel.isSplit(archive)) {
+            for (int disk = 0; Files.exists(SplitZipChannel.volumePath(archive, disk)); disk++) {
+                size += Files.size(SplitZipChannel.volumePath(archive, disk));
+            }
+        }
+        return size;
+    }
+
+    // Incremental compression: only files that are new or changed since the base archive are compressed.
+    // baseArchivePath is the previous archive of the chain, or null for a full archive with its manifest.
+    public boolean compressFilesIncremental(String[] filePaths, String outputArchivePath, String baseArchivePath,
+            Compressor compressor, boolean hashContent, javax.swing.JProgressBar progressBar) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                return false;
+            }
+
+            // Validate all files exist
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.err.println("File does not exist: " + filePath);
+                    return false;
                 }
             }
 
-            // Perform actual multi-file compression
-            return compressor.compressMultiple(filePaths, outputArchivePath);
+            IncrementalArchiver archiver = new IncrementalArchiver(compressor);
+            archiver.setHashContent(hashContent);
+            archiver.compress(filePaths, Path.of(outputArchivePath),
+                    baseArchivePath == null ? null : Path.of(baseArchivePath));
+            if (progressBar != null) {
+                progressBar.setValue(100);
+            }
+            return true;
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -104,4 +254,77 @@ public class CompressionManager {
         }
     }
 
+    // Restores the snapshot of an incremental archive, merging it with its chain of bases (-1 on failure)
+    public int restoreIncremental(String archivePath, String outputDir, Compressor compressor) {
+        try {
+            File file = new File(archivePath);
+            if (!file.exists()) {
+                System.err.println("Archive does not exist: " + archivePath);
+                return -1;
+            }
+            int restored = new IncrementalArchiver(compressor).restore(file.toPath(), Path.of(outputDir));
+            System.out.println("Restored " + restored + " files to " + outputDir);
+            return restored;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    // Lists the entries of an archive (null if it cannot be read)
+    public List<ArchiveEntry> listArchive(String archivePath, Compressor compressor) {
+        try {
+            File file = new File(archivePath);
+            if (!file.exists()) {
+                System.err.println("Archive does not exist: " + archivePath);
+                return null;
+            }
+            return compressor.list(archivePath);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Checks every entry of an archive without extracting it (null if it cannot be read)
+    public VerificationReport verifyArchive(String archivePath, Compressor compressor) {
+        try {
+            File file = new File(archivePath);
+            if (!file.exists()) {
+                System.err.println("Archive does not exist: " + archivePath);
+                return null;
+            }
+            VerificationReport report = compressor.verify(archivePath);
+            System.out.println("Verified " + archivePath + ": " + report);
+            for (VerificationReport.Failure failure : report.getFailures()) {
+                System.err.println("Damaged: " + failure);
+            }
+            return report;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Extracts only the entries matching a glob pattern (-1 on failure)
+    public int extractSelected(String archivePath, String pattern, String outputDir, Compressor compressor) {
+        try {
+            File file = new File(archivePath);
+            if (!file.exists()) {
+                System.err.println("Archive does not exist: " + archivePath);
+                return -1;
+            }
+            int extracted = compressor.extractSelected(archivePath, pattern, outputDir);
+            System.out.println("Extracted " + extracted + " entries matching " + pattern + " to " + outputDir);
+            return extracted;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
 }
@@ -0,0 +1,61 @@
+package file_compression_uillity;
+
+import java.util.zip.Deflater;
+
+/**
+ * Named trade-offs between compression ratio and throughput, chosen per job.
+ *
+ * The profile gives the base Deflater level; the FileTypeProcessor of each
+ * entry turns it into the level and strategy actually used for that file.
+ * It also sizes the shared ZIP dictionary: loading the dictionary into each
+ * entry's deflater costs time in proportion to its size, for a small gain.
+ */
+public enum CompressionProfile {
+
+    // Interactive jobs where latency matters more than size
+    FAST(Deflater.BEST_SPEED, 4 * 1024),
+
+    // Same level as ZipOutputStream's default
+    BALANCED(6, 16 * 1024),
+
+    // Nightly and cold-archive jobs
+    MAX(Deflater.BEST_COMPRESSION, ZipDictionary.MAX_SIZE);
+
+    private final int level;
+    private final int dictionarySize;
+
+    CompressionProfile(int level, int dictionarySize) {
+        this.level = level;
+        this.dictionarySize = dictionarySize;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // Size of the shared ZIP dictionary, when one is used
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Sets the level and strategy that the file type of {@code entryName}
+     * asks for under this profile.
+     */
+    public void configure(Deflater deflater, String entryName) {
+        deflater.setLevel(levelFor(entryName));
+        deflater.setStrategy(strategyFor(entryName));
+    }
+
+    public int levelFor(String entryName) {
+        return processorFor(entryName).getCompressionLevel(this);
+    }
+
+    public int strategyFor(String entryName) {
+        return processorFor(entryName).getCompressionStrategy(this, FileTypeFactory.getFileExtension(entryName));
+    }
+
+    private static FileTypeProcessor processorFor(String entryName) {
+        return FileTypeFactory.getProcessor(FileTypeFactory.getFileExtension(entryName));
+    }
+}
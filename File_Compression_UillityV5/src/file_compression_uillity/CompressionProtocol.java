@@ -0,0 +1,237 @@
+package file_compression_uillity;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Wire format between CompressionServer and CompressionClient.
+ *
+ * A request is an operation byte, the compression type and an entry name
+ * (both as strings: an unsigned short byte count, then UTF-8), then its
+ * payload as chunks: a big-endian int length followed by that many bytes,
+ * ended by a chunk of length 0. A response is its payload in the same
+ * chunks, then a status byte and a message string. Payloads are streamed in both directions, so neither side
+ * needs to know their length up front or hold them in memory. The payload
+ * of a FAILED response may be incomplete and is to be discarded.
+ *
+ * A connection carries any number of requests. A client may send requests
+ * before the earlier responses have arrived (pipelining); the server
+ * answers them in order. Because a response may be streamed while its
+ * request is still being sent, a client has to read while it writes.
+ *
+ * Operations and their payloads:
+ *   COMPRESS    data in, an archive holding it as entry "name" out
+ *   DECOMPRESS  archive in, entry "name" (or the first file if empty) out
+ *   LIST        archive in, one "size TAB name" line per entry out
+ *   VERIFY      archive in, damaged entries out; FAILED if there are any
+ *   PING        nothing in, nothing out
+ *
+ * Frames are written with the helpers below rather than DataOutputStream,
+ * whose write methods are synchronized: a virtual thread blocked on the
+ * socket inside them would pin its carrier thread.
+ */
+public final class CompressionProtocol {
+
+    public static final byte COMPRESS = 1;
+    public static final byte DECOMPRESS = 2;
+    public static final byte LIST = 3;
+    public static final byte VERIFY = 4;
+    public static final byte PING = 5;
+
+    public static final byte OK = 0;
+    public static final byte FAILED = 1;
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private CompressionProtocol() {
+    }
+
+    // Default address of the server: a Unix domain socket in the temp dir, one per user
+    public static Path defaultSocket() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "fcu-" + System.getProperty("user.name") + ".sock");
+    }
+
+    public static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    public static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a frame: " + bytes.length + " bytes");
+        }
+        out.write(bytes.length >>> 8);
+        out.write(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static byte operation(String name) {
+        switch (name.toLowerCase()) {
+            case "compress":
+                return COMPRESS;
+            case "extract":
+            case "decompress":
+                return DECOMPRESS;
+            case "list":
+                return LIST;
+            case "verify":
+                return VERIFY;
+            case "ping":
+                return PING;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    /**
+     * Writes a payload as chunks. close() writes the end chunk but leaves
+     * the connection open.
+     */
+    public static final class ChunkedOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean closed;
+
+        public ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (closed) {
+                throw new IOException("Payload already ended");
+            }
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Payload already ended");
+            }
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeInt(out, count);
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushChunk();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                flushChunk();
+                writeInt(out, 0);
+                closed = true;
+            }
+        }
+    }
+
+    /**
+     * Reads a payload sent as chunks. close() skips whatever the reader left,
+     * so the next frame starts where it should.
+     */
+    public static final class ChunkedInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private int remaining;
+        private boolean ended;
+
+        public ChunkedInputStream(DataInputStream in) {
+            this.in = in;
+        }
+
+        // Moves to the next chunk when the current one is used up; false at the end
+        private boolean fill() throws IOException {
+            while (remaining == 0) {
+                if (ended) {
+                    return false;
+                }
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Corrupt frame: chunk length " + length);
+                }
+                if (length == 0) {
+                    ended = true;
+                    return false;
+                }
+                remaining = length;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed inside a chunk");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("Connection closed inside a chunk");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            while (fill()) {
+                in.skipNBytes(remaining);
+                remaining = 0;
+            }
+        }
+    }
+}
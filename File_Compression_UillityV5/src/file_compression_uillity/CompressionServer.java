@@ -0,0 +1,335 @@
+package file_compression_uillity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running compression server for many short jobs (see
+ * CompressionProtocol for the wire format and CompressionClient).
+ *
+ * A command-line run pays JVM startup, class loading and JIT warm-up for
+ * every job. The server pays them once: its deflate and LZ4 loops stay
+ * compiled, and CodecPool and BufferPool keep their deflaters and buffers
+ * between jobs. It listens on a Unix domain socket, or on a TCP port bound
+ * to the loopback address only, since requests name no credentials.
+ *
+ * Every connection is served on its own thread, one request after the
+ * other. At most cpuWorkers requests run their compressor at the same time;
+ * a request gives up its slot while it waits on its socket, so a client
+ * that stops sending or reading holds up only itself.
+ * These are platform threads, not virtual ones: the compressors write
+ * through JDK streams with synchronized methods (ZipOutputStream,
+ * GZIPOutputStream), and a virtual thread blocked on the socket inside one
+ * of them pins its carrier, so a client that stops reading would stall
+ * every other connection.
+ */
+public class CompressionServer implements AutoCloseable {
+
+    private final ServerSocketChannel server;
+    private final Path socketPath;
+    private final Semaphore cpuSlots;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "compression-connection-" + connectionCount.getAndIncrement());
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong requests = new AtomicLong();
+    private volatile boolean closed;
+
+    private CompressionServer(ServerSocketChannel server, Path socketPath, int cpuWorkers) {
+        if (cpuWorkers < 1) {
+            throw new IllegalArgumentException("CPU worker count must be at least 1: " + cpuWorkers);
+        }
+        this.server = server;
+        this.socketPath = socketPath;
+        this.cpuSlots = new Semaphore(cpuWorkers);
+    }
+
+    /**
+     * Listens on a Unix domain socket. A socket file left behind by a server
+     * that is no longer running is replaced.
+     */
+    public static CompressionServer bind(Path socketPath, int cpuWorkers) throws IOException {
+        if (Files.exists(socketPath)) {
+            if (isListening(socketPath)) {
+                throw new IOException("A server is already listening on " + socketPath);
+            }
+            Files.delete(socketPath);
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(socketPath));
+        return new CompressionServer(channel, socketPath, cpuWorkers);
+    }
+
+    private static boolean isListening(Path socketPath) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Listens on a loopback TCP port; 0 picks a free one (see getAddress)
+    public static CompressionServer bind(int port, int cpuWorkers) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return new CompressionServer(channel, null, cpuWorkers);
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() throws IOException {
+        while (!closed) {
+            SocketChannel connection;
+            try {
+                connection = server.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            }
+            connections.execute(() -> handle(connection));
+        }
+    }
+
+    private void handle(SocketChannel connection) {
+        try (connection) {
+            CpuSlot slot = new CpuSlot();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    slot.guard(Channels.newInputStream(connection)), CompressionProtocol.CHUNK_SIZE));
+            OutputStream out = new BufferedOutputStream(slot.guard(Channels.newOutputStream(connection)),
+                    CompressionProtocol.CHUNK_SIZE);
+            while (true) {
+                int operation = in.read();
+                if (operation < 0) {
+                    return;
+                }
+                String type = CompressionProtocol.readString(in);
+                String name = CompressionProtocol.readString(in);
+                requests.incrementAndGet();
+                CompressionProtocol.ChunkedInputStream payload = new CompressionProtocol.ChunkedInputStream(in);
+                CompressionProtocol.ChunkedOutputStream result = new CompressionProtocol.ChunkedOutputStream(out);
+                byte status = CompressionProtocol.OK;
+                String message = "";
+                try {
+                    slot.acquire();
+                    try {
+                        message = run((byte) operation, type, name, payload, result);
+                    } finally {
+                        slot.release();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (DamagedArchiveException e) {
+                    status = CompressionProtocol.FAILED;
+                    message = e.getMessage();
+                } catch (IOException | RuntimeException e) {
+                    status = CompressionProtocol.FAILED;
+                    message = String.valueOf(e);
+                }
+                // Skips what the job did not read, so the next request starts in the right place
+                payload.close();
+                result.close();
+                out.write(status);
+                CompressionProtocol.writeString(out, message);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // Client went away in the middle of a request
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Connection failed: " + e);
+            }
+        }
+    }
+
+    // Runs one request; returns the message of a successful response
+    private static String run(byte operation, String type, String name, CompressionProtocol.ChunkedInputStream in,
+            CompressionProtocol.ChunkedOutputStream out) throws IOException {
+        if (operation == CompressionProtocol.PING) {
+            return "pong";
+        }
+        Compressor compressor = CompressionFactory.createCompressor(type.isEmpty() ? "ZIP" : type);
+        // Small jobs would only pay for starting workers
+        compressor.setWorkerCount(1);
+        switch (operation) {
+            case CompressionProtocol.COMPRESS:
+                compressor.compress(name.isEmpty() ? "data" : name, in, out);
+                return "";
+            case CompressionProtocol.DECOMPRESS: {
+                boolean[] found = new boolean[1];
+                compressor.decompress(in, entry -> {
+                    if (found[0] || entry.isDirectory() || !(name.isEmpty() || entry.getName().equals(name))) {
+                        return null;
+                    }
+                    found[0] = true;
+                    return new NonClosingOutputStream(out);
+                });
+                if (!found[0]) {
+                    throw new IOException(name.isEmpty() ? "Archive holds no file" : "No entry " + name);
+                }
+                return "";
+            }
+            case CompressionProtocol.LIST: {
+                PrintStream lines = new PrintStream(new NonClosingOutputStream(out), false, StandardCharsets.UTF_8);
+                for (ArchiveEntry entry : compressor.list(in)) {
+                    lines.print(entry.getSize() + "\t" + entry.getName() + "\n");
+                }
+                lines.flush();
+                return "";
+            }
+            case CompressionProtocol.VERIFY: {
+                VerificationReport report = compressor.verify(in);
+                if (!report.isOk()) {
+                    OutputStream lines = new NonClosingOutputStream(out);
+                    for (VerificationReport.Failure failure : report.getFailures()) {
+                        lines.write(("Damaged: " + failure + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                    throw new DamagedArchiveException(report.toString());
+                }
+                return report.toString();
+            }
+            default:
+                throw new IOException("Unknown operation: " + operation);
+        }
+    }
+
+    /**
+     * The CPU slot of one connection's running request. guard() wraps the
+     * socket streams so that the slot is given up for every read and write
+     * that may block, and taken back before the compressor continues.
+     */
+    private final class CpuSlot {
+        private boolean held;
+        private boolean paused;
+
+        void acquire() throws InterruptedException {
+            cpuSlots.acquire();
+            held = true;
+        }
+
+        void release() {
+            if (held) {
+                held = false;
+                cpuSlots.release();
+            }
+        }
+
+        private void pause() {
+            if (held) {
+                release();
+                paused = true;
+            }
+        }
+
+        private void resume() throws IOException {
+            if (paused) {
+                paused = false;
+                try {
+                    acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a CPU slot");
+                }
+            }
+        }
+
+        InputStream guard(InputStream socket) {
+            return new FilterInputStream(socket) {
+                @Override
+                public int read() throws IOException {
+                    pause();
+                    try {
+                        return super.read();
+                    } finally {
+                        resume();
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    pause();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        resume();
+                    }
+                }
+            };
+        }
+
+        OutputStream guard(OutputStream socket) {
+            return new FilterOutputStream(socket) {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    pause();
+                    try {
+                        out.write(b, off, len);
+                    } finally {
+                        resume();
+                    }
+                }
+            };
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdownNow();
+        if (socketPath != null) {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    // Verify found damage: the response says FAILED, with the report as its message
+    private static final class DamagedArchiveException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        DamagedArchiveException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,5 +1,19 @@
 package file_compression_uillity;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
 public interface Compressor {
     
     boolean compress(String filePath);
@@ -8,4 +22,191 @@ public interface Compressor {
     
     // Multi-file compression - compress multiple files into a single archive
     boolean compressMultiple(String[] filePaths, String outputArchivePath);
+
+    /**
+     * Selects the ratio/speed trade-off for the following compress calls.
+     * Formats without a tunable level ignore it.
+     */
+    default void setProfile(CompressionProfile profile) {
+    }
+
+    /**
+     * Reports the progress of the following compress, compressMultiple and
+     * decompress calls to {@code tracker}, counted inside the I/O loops;
+     * ProgressTracker.NONE turns reporting off. Formats that cannot measure
+     * their work (RAR runs an external tool) only record errors in it, and
+     * the job only reports its end.
+     */
+    default void setProgressTracker(ProgressTracker tracker) {
+    }
+
+    /**
+     * Sets how many threads the following calls may use for their parallel
+     * stages. Formats that compress on one thread ignore it.
+     */
+    default void setWorkerCount(int workerCount) {
+    }
+
+    /**
+     * Whether compressMultiple adds the files of directory trees to the
+     * progress totals as its walk finds them (ProgressTracker.discovered).
+     * Callers then start the totals at 0 instead of walking every tree up
+     * front; for the other formats they measure the input first.
+     */
+    default boolean measuresTrees() {
+        return false;
+    }
+
+    // Listing and selective extraction of an archive file.
+    // The defaults stream through the whole archive; formats with an index
+    // (such as ZIP's central directory) override them to seek instead.
+
+    /**
+     * Lists the entries of an archive file.
+     */
+    default List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (InputStream in = new FileInputStream(archivePath)) {
+            return list(in);
+        }
+    }
+
+    /**
+     * Extracts the entries whose names match a glob pattern (e.g. "conf/*.xml")
+     * into {@code outputDir}, keeping their relative paths.
+     *
+     * @return the number of entries extracted
+     */
+    default int extractSelected(String archivePath, String pattern, String outputDir) throws IOException {
+        Predicate<String> matcher = EntryPaths.globMatcher(pattern);
+        Path outputRoot = Path.of(outputDir);
+        int[] extracted = new int[1];
+        try (InputStream in = new FileInputStream(archivePath)) {
+            decompress(in, entry -> {
+                if (entry.isDirectory() || !matcher.test(entry.getName())) {
+                    return null;
+                }
+                Path target = EntryPaths.resolve(outputRoot, entry.getName());
+                Files.createDirectories(target.getParent());
+                extracted[0]++;
+                return Files.newOutputStream(target);
+            });
+        }
+        return extracted[0];
+    }
+
+    /**
+     * Checks that every entry decompresses to its recorded size and CRC,
+     * without writing anything to disk.
+     *
+     * The default streams through the archive once. A damaged entry usually
+     * leaves the rest of a stream unreadable, so checking stops there;
+     * formats with an index override this to check entries independently.
+     * A stream without a single entry fails: an empty archive cannot be told
+     * apart from one cut off before its first entry.
+     *
+     * @throws IOException if the archive cannot be opened at all
+     */
+    default VerificationReport verify(String archivePath) throws IOException {
+        VerificationReport report = new VerificationReport();
+        VerificationReport.EntrySink[] last = new VerificationReport.EntrySink[1];
+        boolean[] found = new boolean[1];
+        try (InputStream in = new FileInputStream(archivePath)) {
+            try {
+                decompress(in, entry -> {
+                    found[0] = true;
+                    if (entry.isDirectory()) {
+                        return null;
+                    }
+                    last[0] = report.newSink(entry);
+                    return last[0];
+                });
+            } catch (IOException e) {
+                if (last[0] != null && !last[0].isIntact()) {
+                    report.replaceFailure(last[0].getEntry().getName(), -1, String.valueOf(e.getMessage()));
+                } else {
+                    // Damage between entries, or in the stream's own trailer
+                    report.addFailure(archivePath, -1, (last[0] == null ? "" : "after "
+                            + last[0].getEntry().getName() + ": ") + e.getMessage());
+                }
+            }
+        }
+        if (!found[0] && report.isOk()) {
+            report.addFailure(archivePath, -1, "No entries: the archive is empty or ends before its first entry");
+        }
+        return report;
+    }
+
+    /**
+     * Verifies an archive read from a stream. It is spooled to a temp file
+     * first, so formats with an index can still check entries by seeking.
+     */
+    default VerificationReport verify(InputStream archive) throws IOException {
+        Path spooled = Files.createTempFile("verify", getExtension());
+        try {
+            Files.copy(archive, spooled, StandardCopyOption.REPLACE_EXISTING);
+            return verify(spooled.toString());
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    // Stream-based API - works on any source/sink (network, pipes, memory)
+    // without going through the filesystem. Streams passed in are never closed.
+
+    /**
+     * Writes an archive holding a single entry read from {@code source}.
+     */
+    void compress(String entryName, InputStream source, OutputStream archive) throws IOException;
+
+    /**
+     * Writes an archive holding all given entries, in the map's iteration order.
+     */
+    void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException;
+
+    /**
+     * Reads an archive and hands every entry to {@code target}.
+     */
+    void decompress(InputStream archive, EntryTarget target) throws IOException;
+
+    /**
+     * Lists the entries of an archive without extracting them.
+     */
+    List<ArchiveEntry> list(InputStream archive) throws IOException;
+
+    /**
+     * Extracts a single entry to {@code target}.
+     *
+     * @return false if the archive has no entry with that name
+     */
+    default boolean decompress(InputStream archive, String entryName, OutputStream target) throws IOException {
+        boolean[] found = new boolean[1];
+        decompress(archive, entry -> {
+            if (!entry.getName().equals(entryName)) {
+                return null;
+            }
+            found[0] = true;
+            return new NonClosingOutputStream(target);
+        });
+        return found[0];
+    }
+
+    // Channel-based variants of the stream API
+
+    default void compress(String entryName, ReadableByteChannel source, WritableByteChannel archive)
+            throws IOException {
+        compress(entryName, Channels.newInputStream(source), Channels.newOutputStream(archive));
+    }
+
+    default void compressMultiple(Map<String, EntrySource> entries, WritableByteChannel archive)
+            throws IOException {
+        compressMultiple(entries, Channels.newOutputStream(archive));
+    }
+
+    default void decompress(ReadableByteChannel archive, EntryTarget target) throws IOException {
+        decompress(Channels.newInputStream(archive), target);
+    }
+
+    default List<ArchiveEntry> list(ReadableByteChannel archive) throws IOException {
+        return list(Channels.newInputStream(archive));
+    }
 }
@@ -0,0 +1,335 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a deduplicating archive written by DedupArchiveWriter.
+ *
+ * An entry is rebuilt by concatenating its chunks. Chunks shared between
+ * files often live in packs written long before, so the last few inflated
+ * packs are kept in a small cache instead of inflating a pack per chunk.
+ */
+public class DedupArchiveReader implements AutoCloseable {
+
+    // Inflated packs kept for reuse
+    private static final int PACK_CACHE_SIZE = 8;
+
+    private final FileChannel channel;
+    private final long base;
+    private final boolean ownsChannel;
+
+    private final long[] packOffsets;
+    private final int[] compressedLengths;
+    private final int[] packLengths;
+    private final byte[] methods;
+    private final int[] packCrcs;
+    // Pack and offset of every chunk, by chunk number
+    private final int[] chunkPacks;
+    private final int[] chunkOffsets;
+    private final int[] chunkLengths;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName = new HashMap<>();
+
+    private final Map<Integer, byte[]> packCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > PACK_CACHE_SIZE;
+        }
+    };
+    private byte[] compressed;
+    // Packs that failed to read back, so each is only read once
+    private final Map<Integer, String> damagedPacks = new HashMap<>();
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public DedupArchiveReader(Path archive) throws IOException {
+        this(FileChannel.open(archive, StandardOpenOption.READ), 0, true);
+    }
+
+    // The archive starts at {@code base} and runs to the end of the channel
+    DedupArchiveReader(FileChannel channel, long base, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.base = base;
+        this.ownsChannel = ownsChannel;
+        try {
+            SolidArchiveReader.Index index = SolidArchiveReader.readIndex(channel, base, DedupArchiveWriter.MAGIC,
+                    "dedup");
+            int packCount = index.readCount();
+            packOffsets = new long[packCount];
+            compressedLengths = new int[packCount];
+            packLengths = new int[packCount];
+            methods = new byte[packCount];
+            packCrcs = new int[packCount];
+            int[] packChunks = new int[packCount];
+            long offset = SolidArchiveWriter.HEADER_SIZE;
+            long chunkCount = 0;
+            for (int i = 0; i < packCount; i++) {
+                packOffsets[i] = offset;
+                compressedLengths[i] = index.readLength();
+                packLengths[i] = index.readLength();
+                methods[i] = index.readByte();
+                packCrcs[i] = index.readInt();
+                packChunks[i] = index.readLength();
+                offset += compressedLengths[i];
+                chunkCount += packChunks[i];
+            }
+            if (offset != index.offset || chunkCount > Integer.MAX_VALUE) {
+                throw new ZipException("Dedup archive pack table does not match the index");
+            }
+
+            chunkPacks = new int[(int) chunkCount];
+            chunkOffsets = new int[(int) chunkCount];
+            chunkLengths = new int[(int) chunkCount];
+            int chunk = 0;
+            for (int pack = 0; pack < packCount; pack++) {
+                int position = 0;
+                for (int i = 0; i < packChunks[pack]; i++, chunk++) {
+                    chunkPacks[chunk] = pack;
+                    chunkOffsets[chunk] = position;
+                    chunkLengths[chunk] = index.readLength();
+                    position += chunkLengths[chunk];
+                }
+                if (position != packLengths[pack]) {
+                    throw new ZipException("Dedup archive chunk table does not match pack " + pack);
+                }
+            }
+            entries = Collections.unmodifiableList(readEntries(index));
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.getName(), entry);
+        }
+    }
+
+    /**
+     * Opens an archive read from a stream; see SolidArchiveReader.open.
+     */
+    public static DedupArchiveReader open(InputStream in) throws IOException {
+        return SolidArchiveReader.open(in, DedupArchiveReader::new);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Entries whose names match a glob pattern (see EntryPaths.globMatcher).
+     */
+    public List<Entry> getEntries(String pattern) {
+        Predicate<String> matcher = EntryPaths.globMatcher(pattern);
+        List<Entry> matching = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (matcher.test(entry.getName())) {
+                matching.add(entry);
+            }
+        }
+        return matching;
+    }
+
+    // Counts the packs read and the files written by extract()
+    public void setProgress(ProgressTracker progress) {
+        if (progress == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = progress;
+    }
+
+    public int getPackCount() {
+        return packOffsets.length;
+    }
+
+    public int getChunkCount() {
+        return chunkLengths.length;
+    }
+
+    /**
+     * Writes the content of one entry to {@code out}.
+     */
+    public void extract(Entry entry, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        for (int chunk : entry.chunks) {
+            byte[] pack = pack(chunkPacks[chunk]);
+            crc.update(pack, chunkOffsets[chunk], chunkLengths[chunk]);
+            out.write(pack, chunkOffsets[chunk], chunkLengths[chunk]);
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            throw new ZipException("CRC mismatch for " + entry.getName());
+        }
+    }
+
+    /**
+     * Checks every entry against its size and CRC without writing anything.
+     * A damaged pack fails each entry with chunks in it and is not read
+     * again.
+     */
+    public VerificationReport verify() {
+        VerificationReport report = new VerificationReport();
+        OutputStream sink = OutputStream.nullOutputStream();
+        for (Entry entry : entries) {
+            try {
+                extract(entry, sink);
+                report.addEntry(entry.getSize());
+            } catch (IOException | RuntimeException e) {
+                long offset = entry.chunks.length == 0 ? -1 : base + packOffsets[chunkPacks[entry.chunks[0]]];
+                report.addFailure(entry.getName(), offset, String.valueOf(e.getMessage()));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Hands every entry to {@code target} in archive order.
+     */
+    public void read(EntryTarget target) throws IOException {
+        for (Entry entry : entries) {
+            OutputStream out = target.open(entry);
+            if (out != null) {
+                try (out) {
+                    extract(entry, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the given entries below {@code outputDir}.
+     */
+    public void extract(List<Entry> selected, Path outputDir) throws IOException {
+        for (Entry entry : selected) {
+            Path target = EntryPaths.resolve(outputDir, entry.getName());
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = progress.entryOutput(Files.newOutputStream(target))) {
+                extract(entry, out);
+            }
+        }
+    }
+
+    // Final: the constructor calls it when the archive cannot be read
+    @Override
+    public final void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    // An inflated pack, from the cache if possible
+    private byte[] pack(int index) throws IOException {
+        byte[] pack = packCache.get(index);
+        if (pack != null) {
+            return pack;
+        }
+        String damage = damagedPacks.get(index);
+        if (damage != null) {
+            throw new ZipException(damage);
+        }
+        try {
+            pack = readPack(index);
+        } catch (ZipException e) {
+            damagedPacks.put(index, e.getMessage());
+            throw e;
+        }
+        packCache.put(index, pack);
+        return pack;
+    }
+
+    private byte[] readPack(int index) throws IOException {
+        int length = packLengths[index];
+        byte[] pack = new byte[length];
+        if (methods[index] == SolidArchiveWriter.METHOD_STORED) {
+            SolidArchiveReader.readFully(channel, ByteBuffer.wrap(pack), base + packOffsets[index]);
+        } else if (methods[index] == SolidArchiveWriter.METHOD_DEFLATED) {
+            int stored = compressedLengths[index];
+            if (compressed == null || compressed.length < stored) {
+                compressed = new byte[stored];
+            }
+            SolidArchiveReader.readFully(channel, ByteBuffer.wrap(compressed, 0, stored), base + packOffsets[index]);
+            SolidArchiveReader.inflate(compressed, stored, pack, length, "dedup pack " + index);
+        } else {
+            throw new ZipException("Unsupported method " + methods[index] + " for pack " + index);
+        }
+        SolidArchiveReader.checkCrc(pack, length, packCrcs[index], "dedup pack " + index);
+        progress.read(compressedLengths[index]);
+        return pack;
+    }
+
+    private List<Entry> readEntries(SolidArchiveReader.Index index) throws ZipException {
+        int count = index.readCount();
+        List<Entry> result = new ArrayList<>(count);
+        byte[] name = new byte[0];
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            int shared = index.readLength();
+            int suffix = index.readLength();
+            if (shared > name.length) {
+                throw new ZipException("Invalid archive index");
+            }
+            name = Arrays.copyOf(name, shared + suffix);
+            index.readBytes(name, shared, suffix);
+            long size = index.readVarLong();
+            time += SolidArchiveReader.unZigZag(index.readVarLong());
+            long crc = index.readInt() & 0xFFFFFFFFL;
+            int[] chunks = new int[index.readCount()];
+            long chunk = 0;
+            long total = 0;
+            for (int c = 0; c < chunks.length; c++) {
+                chunk += SolidArchiveReader.unZigZag(index.readVarLong());
+                if (chunk < 0 || chunk >= chunkLengths.length) {
+                    throw new ZipException("Invalid chunk number in dedup archive index");
+                }
+                chunks[c] = (int) chunk;
+                total += chunkLengths[(int) chunk];
+            }
+            Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), size, crc, time, chunks);
+            if (total != size) {
+                throw new ZipException("Chunk sizes do not add up for " + entry.getName());
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Index entry: the public ArchiveEntry information plus the chunks the
+     * data is made of.
+     */
+    public static class Entry extends ArchiveEntry {
+
+        private final int[] chunks;
+
+        Entry(String name, long size, long crc, long lastModified, int[] chunks) {
+            super(name, size, -1, crc, lastModified);
+            this.chunks = chunks;
+        }
+
+        public int getChunkCount() {
+            return chunks.length;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a deduplicating archive: entries are cut into content-defined
+ * chunks (FastCdcChunker), each distinct chunk is stored once, and entries
+ * become lists of chunk numbers.
+ *
+ * Layout, framed like a solid archive:
+ * <pre>
+ *   "DDUP" version
+ *   pack 0, pack 1, ...            unique chunks back to back; raw deflate or stored
+ *   index                          raw deflate
+ *   trailer (24 bytes)             index offset, sizes and CRC, "INDX"
+ * </pre>
+ * The index holds the packs (sizes, method, CRC, chunk count), the length
+ * of every chunk in pack order, and the entries (prefix-shared name, size,
+ * mtime, CRC, chunk count and the chunk numbers as varint deltas).
+ *
+ * Entry data is read in segments of up to 16 MB. Worker threads find the
+ * chunk boundaries of a segment and hash its chunks with SHA-256; the
+ * calling thread then looks the digests up in a ChunkIndex, in order, and
+ * copies new chunks into the current pack. Full packs are compressed on
+ * the same workers. A boundary is forced at every segment end, which only
+ * costs a chunk's worth of sharing per 16 MB.
+ */
+public class DedupArchiveWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x50554444; // "DDUP"
+
+    public static final int DEFAULT_PACK_SIZE = 4 * 1024 * 1024;
+    static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final OutputStream out;
+    private final FastCdcChunker chunker;
+    private final int packSize;
+    private final CompressionProfile profile;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+
+    // Segments being chunked and packs being compressed, oldest first
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Future<Pack>> packs = new ArrayDeque<>();
+    private final ArrayDeque<Pack> sparePacks = new ArrayDeque<>();
+    private Pack current;
+    private final ChunkIndex index;
+
+    private final SolidArchiveWriter.IndexBuffer packTable = new SolidArchiveWriter.IndexBuffer();
+    private final SolidArchiveWriter.IndexBuffer chunkTable = new SolidArchiveWriter.IndexBuffer();
+    private final SolidArchiveWriter.IndexBuffer entryTable = new SolidArchiveWriter.IndexBuffer();
+    private int packCount;
+    private int entryCount;
+    private byte[] previousName = new byte[0];
+    private long previousTime;
+    private boolean finished;
+
+    private long written;
+    private long logicalBytes;
+    private long uniqueBytes;
+    private long chunkCount;
+
+    /**
+     * Writes the archive header to {@code out}, which is never closed.
+     *
+     * @param workers threads chunking, hashing and compressing; 1 does all
+     *                of it on the calling thread
+     */
+    public DedupArchiveWriter(OutputStream out, FastCdcChunker chunker, int packSize, CompressionProfile profile,
+            int workers) throws IOException {
+        if (packSize < 4 * chunker.getMaxSize() || packSize > SolidArchiveWriter.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Pack size must be between " + 4 * chunker.getMaxSize() + " and "
+                    + SolidArchiveWriter.MAX_BLOCK_SIZE + ": " + packSize);
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.out = out;
+        this.chunker = chunker;
+        this.packSize = packSize;
+        this.profile = profile;
+        this.maxInFlight = workers * 2;
+        this.pool = workers == 1 ? null : Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "dedup-chunk");
+            t.setDaemon(true);
+            return t;
+        });
+        this.index = new ChunkIndex();
+        this.current = new Pack(packSize);
+
+        ByteBuffer header = ByteBuffer.allocate(SolidArchiveWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.put((byte) SolidArchiveWriter.VERSION);
+        write(header.array(), 0, SolidArchiveWriter.HEADER_SIZE);
+    }
+
+    /**
+     * Appends one entry, reading {@code data} to its end. The stream is not
+     * closed.
+     */
+    public void addEntry(String name, long lastModified, InputStream data) throws IOException {
+        if (finished) {
+            throw new IOException("Archive already finished");
+        }
+        PendingEntry entry = new PendingEntry(name, lastModified);
+        boolean last;
+        do {
+            // Sized to the data read, so small entries do not hold a whole segment
+            byte[] segment = data.readNBytes(SEGMENT_SIZE);
+            entry.crc.update(segment);
+            entry.size += segment.length;
+            last = segment.length < SEGMENT_SIZE;
+            submit(new Segment(entry, segment, last));
+        } while (!last);
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    // Bytes of entry data added so far
+    public long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    // Bytes of distinct chunks, before compression
+    public long getUniqueBytes() {
+        return uniqueBytes;
+    }
+
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getUniqueChunkCount() {
+        return index.size();
+    }
+
+    // Bytes written to the archive so far
+    public long getWrittenBytes() {
+        return written;
+    }
+
+    public long getIndexMemoryBytes() {
+        return index.memoryBytes();
+    }
+
+    /**
+     * Writes the last pack, the index and the trailer.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        while (!segments.isEmpty()) {
+            consume(segments.poll());
+        }
+        if (current.length > 0) {
+            submitPack();
+        }
+        while (!packs.isEmpty()) {
+            writePack(await(packs.poll()));
+        }
+        finished = true;
+
+        SolidArchiveWriter.IndexBuffer index = new SolidArchiveWriter.IndexBuffer();
+        index.writeVarLong(packCount);
+        packTable.writeTo(index);
+        chunkTable.writeTo(index);
+        index.writeVarLong(entryCount);
+        entryTable.writeTo(index);
+        byte[] tail = SolidArchiveWriter.encodeIndex(index.toByteArray(), written, SolidArchiveWriter.TRAILER_MAGIC);
+        write(tail, 0, tail.length);
+        out.flush();
+    }
+
+    /**
+     * Releases the worker pool. Work still in flight is discarded, so call
+     * {@link #finish} first to complete the archive.
+     */
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            if (segment.chunks != null) {
+                segment.chunks.cancel(true);
+            }
+        }
+        segments.clear();
+        for (Future<Pack> pending : packs) {
+            pending.cancel(true);
+        }
+        packs.clear();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private void submit(Segment segment) throws IOException {
+        if (pool == null) {
+            segment.result = segment.chunk(chunker);
+            consume(segment);
+            return;
+        }
+        if (segments.size() >= maxInFlight) {
+            consume(segments.poll());
+        }
+        segment.chunks = pool.submit(() -> segment.chunk(chunker));
+        segments.add(segment);
+    }
+
+    // Deduplicates the chunks of a segment, in archive order
+    private void consume(Segment segment) throws IOException {
+        Chunks chunks = segment.result != null ? segment.result : await(segment.chunks);
+        PendingEntry entry = segment.entry;
+        int start = 0;
+        for (int i = 0; i < chunks.count; i++) {
+            int end = chunks.ends[i];
+            int length = end - start;
+            int number = index.putIfAbsent(chunks.high[i], chunks.low[i], index.size());
+            if (number < 0) {
+                number = index.size() - 1;
+                if (current.length + length > packSize) {
+                    submitPack();
+                }
+                System.arraycopy(segment.data, start, current.input, current.length, length);
+                current.length += length;
+                current.chunks++;
+                chunkTable.writeVarLong(length);
+                uniqueBytes += length;
+            }
+            entry.chunkList.writeVarLong(SolidArchiveWriter.zigZag((long) number - entry.previousChunk));
+            entry.previousChunk = number;
+            entry.chunkCount++;
+            start = end;
+        }
+        chunkCount += chunks.count;
+        logicalBytes += segment.data.length;
+        if (segment.last) {
+            writeRecord(entry);
+        }
+    }
+
+    private void writeRecord(PendingEntry entry) {
+        byte[] nameBytes = entry.name.getBytes(StandardCharsets.UTF_8);
+        int shared = 0;
+        int limit = Math.min(nameBytes.length, previousName.length);
+        while (shared < limit && nameBytes[shared] == previousName[shared]) {
+            shared++;
+        }
+        entryTable.writeVarLong(shared);
+        entryTable.writeVarLong(nameBytes.length - shared);
+        entryTable.write(nameBytes, shared, nameBytes.length - shared);
+        entryTable.writeVarLong(entry.size);
+        entryTable.writeVarLong(SolidArchiveWriter.zigZag(entry.lastModified - previousTime));
+        entryTable.writeInt((int) entry.crc.getValue());
+        entryTable.writeVarLong(entry.chunkCount);
+        entry.chunkList.writeTo(entryTable);
+        previousName = nameBytes;
+        previousTime = entry.lastModified;
+        entryCount++;
+    }
+
+    private void submitPack() throws IOException {
+        Pack pack = current;
+        packCount++;
+        if (pool == null) {
+            writePack(pack.compress(profile));
+            pack.length = 0;
+            pack.chunks = 0;
+            return;
+        }
+        if (packs.size() >= maxInFlight) {
+            sparePacks.push(writePack(await(packs.poll())));
+        }
+        packs.add(pool.submit(() -> pack.compress(profile)));
+        current = sparePacks.isEmpty() ? new Pack(packSize) : sparePacks.pop();
+        current.length = 0;
+        current.chunks = 0;
+    }
+
+    private Pack writePack(Pack pack) throws IOException {
+        if (pack.stored) {
+            write(pack.input, 0, pack.length);
+        } else {
+            write(pack.output, 0, pack.compressedLength);
+        }
+        packTable.writeVarLong(pack.stored ? pack.length : pack.compressedLength);
+        packTable.writeVarLong(pack.length);
+        packTable.write(pack.stored ? SolidArchiveWriter.METHOD_STORED : SolidArchiveWriter.METHOD_DEFLATED);
+        packTable.writeInt((int) pack.crc);
+        packTable.writeVarLong(pack.chunks);
+        return pack;
+    }
+
+    private void write(byte[] data, int off, int len) throws IOException {
+        out.write(data, off, len);
+        written += len;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Dedup archive writing interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Dedup archive writing failed", e.getCause());
+        }
+    }
+
+    // An entry whose segments are still being chunked
+    private static final class PendingEntry {
+        final String name;
+        final long lastModified;
+        final CRC32 crc = new CRC32();
+        final SolidArchiveWriter.IndexBuffer chunkList = new SolidArchiveWriter.IndexBuffer();
+        long size;
+        long chunkCount;
+        int previousChunk;
+
+        PendingEntry(String name, long lastModified) {
+            this.name = name;
+            this.lastModified = lastModified;
+        }
+    }
+
+    // Up to SEGMENT_SIZE bytes of one entry
+    private static final class Segment {
+        final PendingEntry entry;
+        final byte[] data;
+        final boolean last;
+        Future<Chunks> chunks;
+        Chunks result;
+
+        Segment(PendingEntry entry, byte[] data, boolean last) {
+            this.entry = entry;
+            this.data = data;
+            this.last = last;
+        }
+
+        Chunks chunk(FastCdcChunker chunker) {
+            MessageDigest sha256 = sha256();
+            Chunks chunks = new Chunks(data.length / chunker.getMinSize() + 1);
+            int start = 0;
+            while (start < data.length) {
+                int end = chunker.nextBoundary(data, start, data.length);
+                sha256.update(data, start, end - start);
+                ByteBuffer digest = ByteBuffer.wrap(sha256.digest());
+                chunks.add(end, digest.getLong(), digest.getLong());
+                start = end;
+            }
+            return chunks;
+        }
+    }
+
+    // Chunk ends and digests of a segment
+    private static final class Chunks {
+        final int[] ends;
+        final long[] high;
+        final long[] low;
+        int count;
+
+        Chunks(int capacity) {
+            ends = new int[capacity];
+            high = new long[capacity];
+            low = new long[capacity];
+        }
+
+        void add(int end, long digestHigh, long digestLow) {
+            ends[count] = end;
+            high[count] = digestHigh;
+            low[count] = digestLow;
+            count++;
+        }
+    }
+
+    // Unique chunks back to back and, once compressed, their deflated form
+    private static final class Pack {
+        final byte[] input;
+        byte[] output;
+        int length;
+        int chunks;
+        int compressedLength;
+        boolean stored;
+        long crc;
+
+        Pack(int capacity) {
+            input = new byte[capacity];
+        }
+
+        Pack compress(CompressionProfile profile) {
+            CRC32 checksum = new CRC32();
+            checksum.update(input, 0, length);
+            crc = checksum.getValue();
+            if (output == null) {
+                output = new byte[input.length];
+            }
+            int n = SolidArchiveWriter.deflateInto(input, length, profile.getLevel(), Deflater.DEFAULT_STRATEGY,
+                    output);
+            stored = n < 0;
+            compressedLength = n;
+            return this;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
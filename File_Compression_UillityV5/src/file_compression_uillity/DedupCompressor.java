@@ -0,0 +1,329 @@
+package file_compression_uillity;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compressor for deduplicating archives (see DedupArchiveWriter).
+ *
+ * Meant for backups full of near-duplicates (VM images, rotated logs,
+ * copied build outputs): content shared between files, or repeated within
+ * one, is stored once whatever its offset.
+ */
+public class DedupCompressor implements Compressor {
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int packSize = DedupArchiveWriter.DEFAULT_PACK_SIZE;
+    private FastCdcChunker chunker = new FastCdcChunker();
+    private CompressionProfile profile = CompressionProfile.BALANCED;
+    // Counts the files and archive read and written by the path-based methods
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    // Threads chunking, hashing and compressing
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Average chunk size, a power of two; chunks range from a quarter of it
+     * to eight times it. Smaller chunks find more duplicates but need a
+     * larger chunk index.
+     */
+    public void setAverageChunkSize(int averageChunkSize) {
+        this.chunker = new FastCdcChunker(averageChunkSize / 4, averageChunkSize, averageChunkSize * 8);
+    }
+
+    public int getAverageChunkSize() {
+        return chunker.getAverageSize();
+    }
+
+    // Uncompressed size of the packs unique chunks are compressed in
+    public void setPackSize(int packSize) {
+        if (packSize < 4 * chunker.getMaxSize() || packSize > SolidArchiveWriter.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Pack size must be between " + 4 * chunker.getMaxSize() + " and "
+                    + SolidArchiveWriter.MAX_BLOCK_SIZE);
+        }
+        this.packSize = packSize;
+    }
+
+    public int getPackSize() {
+        return packSize;
+    }
+
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public CompressionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".dedup";
+    }
+
+    @Override
+    public boolean compress(String filePath) {
+        try {
+            File file = new File(filePath);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePath);
+                return false;
+            }
+
+            // Create the archive in the SAME directory; directories keep their full name
+            String baseName = filePath;
+            if (file.isFile() && file.getName().lastIndexOf('.') > 0) {
+                baseName = filePath.substring(0, filePath.lastIndexOf('.'));
+            }
+            String archivePath = baseName + getExtension();
+
+            System.out.println("Compressing: " + filePath + " to " + archivePath);
+            writeArchive(new File[] { file }, archivePath);
+
+            File archiveFile = new File(archivePath);
+            System.out.println("Dedup archive created successfully: " + archivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                System.out.println("No files provided for compression");
+                return false;
+            }
+
+            System.out.println("Compressing " + filePaths.length + " files to: " + outputArchivePath);
+
+            List<File> files = new ArrayList<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                files.add(file);
+            }
+            writeArchive(files.toArray(new File[0]), outputArchivePath);
+
+            File archiveFile = new File(outputArchivePath);
+            System.out.println("Multi-file dedup archive created successfully: " + outputArchivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Multi-file compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects the regular files and directories below each root, named
+     * relative to the root's parent. Directories are stored as empty
+     * entries ending in '/', so empty ones are restored too.
+     */
+    private void writeArchive(File[] roots, String archivePath) throws IOException {
+        Map<String, Path> paths = new LinkedHashMap<>();
+        for (File root : roots) {
+            Path base = root.toPath().toAbsolutePath().getParent();
+            List<Path> walked;
+            // Symbolic links are not followed, so a link to a parent cannot loop
+            try (Stream<Path> walk = Files.walk(root.toPath().toAbsolutePath())) {
+                walked = walk.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)
+                        || Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)).toList();
+            }
+            for (Path path : walked) {
+                String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    name += "/";
+                }
+                if (paths.putIfAbsent(name, path) != null) {
+                    throw new IOException("duplicate entry: " + name);
+                }
+            }
+        }
+        try (FileOutputStream fos = new FileOutputStream(archivePath);
+             BufferedOutputStream out = new BufferedOutputStream(progress.output(fos), 64 * 1024);
+             DedupArchiveWriter writer = newWriter(out)) {
+            for (Map.Entry<String, Path> entry : paths.entrySet()) {
+                long mtime = Files.getLastModifiedTime(entry.getValue()).toMillis();
+                if (entry.getKey().endsWith("/")) {
+                    writer.addEntry(entry.getKey(), mtime, InputStream.nullInputStream());
+                    continue;
+                }
+                try (InputStream in = progress.input(Files.newInputStream(entry.getValue()))) {
+                    writer.addEntry(entry.getKey(), mtime, in);
+                }
+                progress.entryDone();
+            }
+            writer.finish();
+            printStats(writer);
+        }
+    }
+
+    private DedupArchiveWriter newWriter(OutputStream archive) throws IOException {
+        return new DedupArchiveWriter(archive, chunker, packSize, profile, workerCount);
+    }
+
+    private static void printStats(DedupArchiveWriter writer) {
+        long logical = writer.getLogicalBytes();
+        System.out.println("Chunks: " + writer.getChunkCount() + " (" + writer.getUniqueChunkCount() + " unique)");
+        System.out.println("Data: " + logical + " bytes, " + writer.getUniqueBytes() + " after dedup, "
+                + writer.getWrittenBytes() + " after compression");
+        if (writer.getUniqueBytes() > 0) {
+            System.out.printf("Dedup ratio: %.2f, overall ratio: %.2f%n",
+                    (double) logical / writer.getUniqueBytes(), (double) logical / writer.getWrittenBytes());
+        }
+        System.out.println("Chunk index: " + writer.getIndexMemoryBytes() + " bytes in memory");
+    }
+
+    @Override
+    public boolean decompress(String filePath) {
+        try {
+            File archiveFile = new File(filePath).getAbsoluteFile();
+            String outputDir = archiveFile.getParent();
+
+            // Folder named after the archive without its extension
+            String name = archiveFile.getName();
+            int dot = name.lastIndexOf('.');
+            File extractFolder = new File(outputDir + File.separator
+                    + (dot > 0 ? name.substring(0, dot) : name + "_extracted"));
+            extractFolder.mkdir();
+
+            try (DedupArchiveReader reader = new DedupArchiveReader(archiveFile.toPath())) {
+                reader.setProgress(progress);
+                reader.extract(reader.getEntries(), extractFolder.toPath());
+                System.out.println("Extracted " + reader.getEntries().size() + " entries from "
+                        + reader.getChunkCount() + " unique chunks");
+            }
+
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (DedupArchiveReader reader = new DedupArchiveReader(Path.of(archivePath))) {
+            return new ArrayList<>(reader.getEntries());
+        }
+    }
+
+    @Override
+    public int extractSelected(String archivePath, String pattern, String outputDir) throws IOException {
+        try (DedupArchiveReader reader = new DedupArchiveReader(Path.of(archivePath))) {
+            List<DedupArchiveReader.Entry> selected = reader.getEntries(pattern);
+            reader.extract(selected, Path.of(outputDir));
+            return selected.size();
+        }
+    }
+
+    @Override
+    public VerificationReport verify(String archivePath) throws IOException {
+        try (DedupArchiveReader reader = new DedupArchiveReader(Path.of(archivePath))) {
+            return reader.verify();
+        }
+    }
+
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        try (DedupArchiveWriter writer = newWriter(archive)) {
+            writer.addEntry(entryName, System.currentTimeMillis(), source);
+            writer.finish();
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        long now = System.currentTimeMillis();
+        try (DedupArchiveWriter writer = newWriter(archive)) {
+            for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                try (InputStream in = entry.getValue().open()) {
+                    writer.addEntry(entry.getKey(), now, in);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Reads an archive stream. The index is at the end, so streams that are
+     * not files are first copied to a temporary file.
+     */
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        try (DedupArchiveReader reader = DedupArchiveReader.open(archive)) {
+            reader.read(target);
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        try (DedupArchiveReader reader = DedupArchiveReader.open(archive)) {
+            return new ArrayList<>(reader.getEntries());
+        }
+    }
+
+    @Override
+    public boolean decompress(InputStream archive, String entryName, OutputStream target) throws IOException {
+        try (DedupArchiveReader reader = DedupArchiveReader.open(archive)) {
+            DedupArchiveReader.Entry entry = reader.getEntry(entryName);
+            if (entry == null) {
+                return false;
+            }
+            reader.extract(entry, target);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Chooses STORED or DEFLATED for each archive entry.
+ *
+ * The file type processor gives the first hint: text is always deflated,
+ * everything else is probed by deflating a small sample at BEST_SPEED.
+ * Formats the processor reports as precompressed (JPEG, PNG, MP4...) are
+ * stored unless the sample shrinks noticeably; other binaries, including
+ * BMP, TIFF or AVI, are stored only if the sample hardly shrinks at all.
+ * A smooth BMP therefore still gets deflated, and a ZIP or JAR of unknown
+ * type still gets stored.
+ */
+public class EntryMethodSelector {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 64 * 1024;
+
+    // Store if the sample deflates to at least this fraction of its size
+    public static final double PRECOMPRESSED_RATIO = 0.95;
+    public static final double GENERIC_RATIO = 0.98;
+
+    // Large files are sampled at a few evenly spaced points rather than only at the start
+    private static final int SAMPLE_SLICES = 4;
+
+    private static final int SCRATCH_SIZE = 16 * 1024;
+
+    private final int sampleSize;
+    private final BufferPool bufferPool = BufferPool.getInstance();
+
+    public EntryMethodSelector() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    public EntryMethodSelector(int sampleSize) {
+        if (sampleSize < SAMPLE_SLICES * 1024) {
+            throw new IllegalArgumentException("Sample size must be at least " + SAMPLE_SLICES * 1024
+                    + ": " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Chooses the method for an entry, opening the source once to sample it
+     * when the file type alone does not decide.
+     *
+     * @return ZipEntry.STORED or ZipEntry.DEFLATED
+     */
+    public int chooseMethod(String entryName, EntrySource source) throws IOException {
+        FileTypeProcessor processor = processorFor(entryName);
+        if (!needsProbe(processor)) {
+            return ZipEntry.DEFLATED;
+        }
+        ByteBuffer sample;
+        try (InputStream in = source.open()) {
+            sample = sample(NioCodecEngine.channelOf(in));
+        }
+        try {
+            return decide(entryName, processor, sample);
+        } finally {
+            bufferPool.release(sample);
+        }
+    }
+
+    /**
+     * Chooses the method for an entry read from a file channel. The sample
+     * is taken with positional reads, so the channel position is unchanged.
+     */
+    public int chooseMethod(String entryName, FileChannel source) throws IOException {
+        FileTypeProcessor processor = processorFor(entryName);
+        if (!needsProbe(processor)) {
+            return ZipEntry.DEFLATED;
+        }
+        ByteBuffer sample = sample(source);
+        try {
+            return decide(entryName, processor, sample);
+        } finally {
+            bufferPool.release(sample);
+        }
+    }
+
+    private static FileTypeProcessor processorFor(String entryName) {
+        return FileTypeFactory.getProcessor(FileTypeFactory.getFileExtension(entryName));
+    }
+
+    private static boolean needsProbe(FileTypeProcessor processor) {
+        return !"Text".equals(processor.getFileType());
+    }
+
+    private int decide(String entryName, FileTypeProcessor processor, ByteBuffer sample) {
+        if (!sample.hasRemaining()) {
+            // Empty entries deflate to two bytes; storing them is smaller
+            return ZipEntry.STORED;
+        }
+        double ratio = (double) deflatedSize(sample) / sample.remaining();
+        double limit = processor.isPrecompressed(FileTypeFactory.getFileExtension(entryName))
+                ? PRECOMPRESSED_RATIO : GENERIC_RATIO;
+        if (ratio >= limit) {
+            System.out.println("Storing " + entryName + " uncompressed (" + processor.getFileType()
+                    + ", sample deflates to " + Math.round(ratio * 100) + "%)");
+            return ZipEntry.STORED;
+        }
+        return ZipEntry.DEFLATED;
+    }
+
+    private long deflatedSize(ByteBuffer sample) {
+        Deflater deflater = CodecPool.getInstance().acquireDeflater(Deflater.BEST_SPEED);
+        ByteBuffer scratch = bufferPool.acquire(SCRATCH_SIZE);
+        try {
+            deflater.setInput(sample.duplicate());
+            deflater.finish();
+            while (!deflater.finished()) {
+                scratch.clear();
+                deflater.deflate(scratch);
+            }
+            return deflater.getBytesWritten();
+        } finally {
+            bufferPool.release(scratch);
+            CodecPool.getInstance().release(deflater);
+        }
+    }
+
+    // Reads up to sampleSize bytes from the start of a stream into a pooled buffer
+    private ByteBuffer sample(ReadableByteChannel source) throws IOException {
+        if (source instanceof FileChannel fc) {
+            return sample(fc);
+        }
+        ByteBuffer sample = bufferPool.acquire(sampleSize);
+        while (sample.hasRemaining() && source.read(sample) != -1) {
+            // keep reading until the sample is full or the stream ends
+        }
+        return sample.flip();
+    }
+
+    private ByteBuffer sample(FileChannel source) throws IOException {
+        long start = source.position();
+        long length = Math.max(0, source.size() - start);
+        ByteBuffer sample = bufferPool.acquire(sampleSize);
+        if (length <= sampleSize) {
+            sample.limit((int) length);
+            readFully(source, sample, start);
+            return sample.flip();
+        }
+        int slice = sampleSize / SAMPLE_SLICES;
+        for (int i = 0; i < SAMPLE_SLICES; i++) {
+            // The last slice also takes whatever the division left over
+            int size = i == SAMPLE_SLICES - 1 ? sample.capacity() - sample.position() : slice;
+            sample.limit(sample.position() + size);
+            readFully(source, sample, start + (length - size) * i / (SAMPLE_SLICES - 1));
+        }
+        return sample.flip();
+    }
+
+    private static void readFully(FileChannel source, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = source.read(buffer, offset);
+            if (n == -1) {
+                return;
+            }
+            offset += n;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.function.Predicate;
+
+/**
+ * Helpers for mapping archive entry names to filesystem paths.
+ */
+public final class EntryPaths {
+
+    private EntryPaths() {
+    }
+
+    /**
+     * Builds a predicate matching entry names against a glob such as
+     * "config/*.xml" or "**.log". A null or empty pattern matches everything.
+     */
+    public static Predicate<String> globMatcher(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            return name -> true;
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        return name -> matcher.matches(Path.of(name));
+    }
+
+    /**
+     * Resolves an entry name below the output directory, rejecting names that
+     * would escape it (e.g. "../../etc/passwd").
+     */
+    public static Path resolve(Path outputDir, String entryName) throws IOException {
+        Path base = outputDir.toAbsolutePath().normalize();
+        Path target = base.resolve(entryName).normalize();
+        if (!target.startsWith(base)) {
+            throw new IOException("Entry is outside of the target directory: " + entryName);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,25 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Supplies the content of one archive entry.
+ *
+ * Sources are opened lazily, only when the entry is actually compressed, so
+ * callers can queue thousands of entries without holding thousands of open
+ * file handles.
+ */
+@FunctionalInterface
+public interface EntrySource {
+
+    InputStream open() throws IOException;
+
+    /**
+     * Modification time to record for the entry, in epoch milliseconds.
+     * Sources without one (streams, generated data) get the current time.
+     */
+    default long lastModified() {
+        return System.currentTimeMillis();
+    }
+}
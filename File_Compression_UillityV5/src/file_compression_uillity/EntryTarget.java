@@ -0,0 +1,16 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the entries of an archive during stream-based decompression.
+ *
+ * The returned stream gets the uncompressed entry data and is closed by the
+ * compressor once the entry is done. Returning null skips the entry.
+ */
+@FunctionalInterface
+public interface EntryTarget {
+
+    OutputStream open(ArchiveEntry entry) throws IOException;
+}
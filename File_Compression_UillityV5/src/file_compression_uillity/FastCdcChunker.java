@@ -0,0 +1,118 @@
+package file_compression_uillity;
+
+import java.util.SplittableRandom;
+
+/**
+ * Content-defined chunking with the FastCDC algorithm (Xia et al., USENIX
+ * ATC 2016).
+ *
+ * A gear hash rolls over the data and a chunk ends where the hash matches a
+ * mask, so boundaries depend on the content around them, not on offsets:
+ * inserting a byte into a file changes the chunk holding it, and the chunks
+ * after it are found again. Normalized chunking uses a harder mask before
+ * the average size and an easier one after it, which keeps chunk sizes
+ * close to the average. No boundary is tested before the minimum size.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class FastCdcChunker {
+
+    public static final int DEFAULT_MIN_SIZE = 2 * 1024;
+    public static final int DEFAULT_AVERAGE_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    // Fixed seed: the same data must chunk the same way in every archive
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x46617374434443L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long maskSmall;
+    private final long maskLarge;
+
+    public FastCdcChunker() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param averageSize a power of two between minSize and maxSize
+     */
+    public FastCdcChunker(int minSize, int averageSize, int maxSize) {
+        if (Integer.bitCount(averageSize) != 1 || minSize < 64 || minSize >= averageSize
+                || averageSize >= maxSize) {
+            throw new IllegalArgumentException("Need 64 <= min < average < max and a power-of-two average: "
+                    + minSize + ", " + averageSize + ", " + maxSize);
+        }
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        // Normalization level 2: two bits harder before the average, two easier after it
+        this.maskSmall = mask(bits + 2);
+        this.maskLarge = mask(bits - 2);
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getAverageSize() {
+        return averageSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Finds the end of the chunk starting at {@code start}.
+     *
+     * @param end end of the available data; it is taken as a boundary
+     * @return the exclusive end of the chunk, at most {@code end}
+     */
+    public int nextBoundary(byte[] data, int start, int end) {
+        int length = end - start;
+        if (length <= minSize) {
+            return end;
+        }
+        if (length > maxSize) {
+            length = maxSize;
+        }
+        int normal = Math.min(averageSize, length);
+        long hash = 0;
+        int i = start + minSize;
+        for (int limit = start + normal; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xFF];
+            if ((hash & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (int limit = start + length; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xFF];
+            if ((hash & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return start + length;
+    }
+
+    /**
+     * A mask of {@code bits} one-bits spread over the upper 48 bits. The
+     * shifted gear hash only carries the last 64 bytes, and its high bits
+     * depend on more of them than its low bits do.
+     */
+    private static long mask(int bits) {
+        long mask = 0;
+        for (int i = 0; i < bits; i++) {
+            mask |= 1L << (63 - i * 48 / bits);
+        }
+        return mask;
+    }
+}
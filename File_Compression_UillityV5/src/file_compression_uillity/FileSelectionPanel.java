@@ -61,7 +61,7 @@ public class FileSelectionPanel extends javax.swing.JFrame {
         jLabel2.setFont(new java.awt.Font("Segoe UI", 1, 14)); // NOI18N
         jLabel2.setText("COMPRESSION TYPE :");
 
-        TypeComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "ZIP", "RAR" }));
+        TypeComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "ZIP", "TAR", "TAR.GZ", "TAR.XZ", "LZ4", "BGZF", "SOLID", "DEDUP", "RAR" }));
 
         CompressButton.setText("COMPRESS");
         CompressButton.addActionListener(new java.awt.event.ActionListener() {
@@ -1,5 +1,7 @@
 package file_compression_uillity;
 
+import java.util.zip.Deflater;
+
 /**
  * Factory Pattern Interface for File Type Processing
  * Different implementations handle Text, Image, and Video files differently
@@ -17,4 +19,40 @@ public interface FileTypeProcessor {
      * @return File type name (e.g., "Text", "Image", "Video")
      */
     String getFileType();
+    
+    /**
+     * Whether files with this extension are stored in an already compressed
+     * format (JPEG, PNG, MP4, MKV...), so deflating them gains little.
+     * Uncompressed formats of the same type (BMP, TIFF, AVI) are not.
+     * @param extension File extension without the dot
+     * @return true if the data is probably incompressible
+     */
+    default boolean isPrecompressed(String extension) {
+        return false;
+    }
+    
+    /**
+     * Deflater level for files of this type under a compression profile
+     * @param profile Profile selected for the job
+     * @return Deflater level (1-9)
+     */
+    default int getCompressionLevel(CompressionProfile profile) {
+        return profile.getLevel();
+    }
+    
+    /**
+     * Deflater strategy for files of this type under a compression profile.
+     * Already compressed data has no repeats worth searching for, so only
+     * MAX spends time on match finding; the other profiles use Huffman
+     * coding alone, which is about three times faster for the same size.
+     * @param profile Profile selected for the job
+     * @param extension File extension without the dot
+     * @return Deflater.DEFAULT_STRATEGY, FILTERED or HUFFMAN_ONLY
+     */
+    default int getCompressionStrategy(CompressionProfile profile, String extension) {
+        if (isPrecompressed(extension) && profile != CompressionProfile.MAX) {
+            return Deflater.HUFFMAN_ONLY;
+        }
+        return Deflater.DEFAULT_STRATEGY;
+    }
 }
@@ -3,6 +3,11 @@ package file_compression_uillity;
 public class File_Compression_Uillity {
 
     public static void main(String[] args) {
+        // With arguments, run headless (see CommandLine) without loading Swing
+        if (args.length > 0) {
+            CommandLine.main(args);
+            return;
+        }
         FileSelectionPanel FC = new FileSelectionPanel();
         FC.setVisible(true);
     }
@@ -1,6 +1,7 @@
 package file_compression_uillity;
 
 import java.io.ByteArrayInputStream;
+import java.util.Set;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 
@@ -10,6 +11,9 @@ import java.awt.image.BufferedImage;
  */
 public class ImageProcessor implements FileTypeProcessor {
 
+    // BMP and TIFF usually hold raw pixels, which deflate well
+    private static final Set<String> COMPRESSED_FORMATS = Set.of("png", "jpg", "jpeg", "gif", "webp");
+
     @Override
     public byte[] prepareForCompression(byte[] data) {
         try {
@@ -43,4 +47,9 @@ public class ImageProcessor implements FileTypeProcessor {
     public String getFileType() {
         return "Image";
     }
+
+    @Override
+    public boolean isPrecompressed(String extension) {
+        return COMPRESSED_FORMATS.contains(extension.toLowerCase());
+    }
 }
@@ -0,0 +1,337 @@
+package file_compression_uillity;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Incremental backups on top of any Compressor.
+ *
+ * The first run writes a full archive plus its manifest (ArchiveManifest).
+ * Later runs are given the previous archive as their base: every file is
+ * stat'ed (in parallel) and compared with the base manifest, and only new
+ * or changed files are compressed into a delta archive. Its manifest points
+ * unchanged files at the archive that already holds them, so restoring the
+ * latest delta reads each archive of the chain once and takes every file
+ * from the newest archive that has it; files deleted since are left out.
+ *
+ * Size and modification time decide what changed. With content hashing on,
+ * files whose metadata changed are also hashed, and a file whose content
+ * is the same as before (e.g. after a touch or a copy) is not stored again.
+ *
+ * All archives of a chain live in the same directory.
+ */
+public class IncrementalArchiver {
+
+    // Files per scan task: enough to amortize the task, few enough to balance the workers
+    private static final int SCAN_BATCH = 256;
+
+    private final Compressor compressor;
+    // Stat calls wait on the disk more than on the CPU, so use a few threads even on small machines
+    private int workerCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private boolean hashContent;
+
+    public IncrementalArchiver(Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    // Threads stat'ing and hashing files
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    // Also compare SHA-256 hashes of files whose size or modification time changed
+    public void setHashContent(boolean hashContent) {
+        this.hashContent = hashContent;
+    }
+
+    public boolean isHashContent() {
+        return hashContent;
+    }
+
+    /**
+     * Writes an archive of the new and changed files below the given paths,
+     * and its manifest.
+     *
+     * @param base previous archive of the chain, or null for a full archive
+     * @return the manifest of the new archive
+     */
+    public ArchiveManifest compress(String[] filePaths, Path archive, Path base) throws IOException {
+        archive = archive.toAbsolutePath();
+        ArchiveManifest baseManifest = null;
+        if (base != null) {
+            base = base.toAbsolutePath();
+            if (!base.getParent().equals(archive.getParent())) {
+                throw new IOException("A delta must be written next to its base: " + base.getParent());
+            }
+            baseManifest = ArchiveManifest.load(base);
+            if (!baseManifest.getFormat().equals(compressor.getExtension())) {
+                throw new IOException("Base archive was written as " + baseManifest.getFormat() + ", not "
+                        + compressor.getExtension());
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<String, Path> files = collect(filePaths);
+        String archiveName = archive.getFileName().toString();
+        Map<String, ArchiveManifest.Record> records = scan(files, baseManifest, archiveName);
+
+        Map<String, EntrySource> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, ArchiveManifest.Record> entry : records.entrySet()) {
+            if (entry.getValue().getArchive().equals(archiveName)) {
+                Path path = files.get(entry.getKey());
+                changed.put(entry.getKey(), () -> Files.newInputStream(path));
+            }
+        }
+        int deleted = 0;
+        if (baseManifest != null) {
+            for (String name : baseManifest.getRecords().keySet()) {
+                if (!records.containsKey(name)) {
+                    deleted++;
+                }
+            }
+        }
+        System.out.println("Scanned " + files.size() + " files in " + (System.nanoTime() - start) / 1_000_000
+                + " ms: " + changed.size() + " new or changed, " + (files.size() - changed.size())
+                + " unchanged, " + deleted + " deleted");
+
+        // The manifest is only written once the archive is complete, so a failed run leaves the chain as it was
+        Path temp = archive.resolveSibling(archiveName + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            compressor.compressMultiple(changed, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+        ArchiveManifest manifest = new ArchiveManifest(compressor.getExtension(),
+                base == null ? null : base.getFileName().toString(), records);
+        manifest.save(archive);
+        return manifest;
+    }
+
+    /**
+     * Restores the snapshot of {@code archive} (a full archive or the last
+     * delta of a chain) into {@code outputDir}, with the recorded
+     * modification times.
+     *
+     * @return the number of files restored
+     */
+    public int restore(Path archive, Path outputDir) throws IOException {
+        archive = archive.toAbsolutePath();
+        ArchiveManifest manifest = ArchiveManifest.load(archive);
+        if (!manifest.getFormat().equals(compressor.getExtension())) {
+            throw new IOException("Archive was written as " + manifest.getFormat() + ", not "
+                    + compressor.getExtension());
+        }
+        // Which files each archive of the chain contributes
+        Map<String, Set<String>> byArchive = new LinkedHashMap<>();
+        for (Map.Entry<String, ArchiveManifest.Record> entry : manifest.getRecords().entrySet()) {
+            byArchive.computeIfAbsent(entry.getValue().getArchive(), k -> new HashSet<>()).add(entry.getKey());
+        }
+
+        int restored = 0;
+        for (Map.Entry<String, Set<String>> group : byArchive.entrySet()) {
+            Path source = archive.resolveSibling(group.getKey());
+            Set<String> wanted = group.getValue();
+            Set<String> found = new HashSet<>();
+            try (InputStream in = Files.newInputStream(source)) {
+                compressor.decompress(in, entry -> {
+                    if (!wanted.contains(entry.getName()) || !found.add(entry.getName())) {
+                        return null;
+                    }
+                    Path target = EntryPaths.resolve(outputDir, entry.getName());
+                    Files.createDirectories(target.getParent());
+                    FileTime time = FileTime.fromMillis(manifest.getRecords().get(entry.getName()).getLastModified());
+                    return new FilterOutputStream(Files.newOutputStream(target)) {
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            out.write(b, off, len);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            Files.setLastModifiedTime(target, time);
+                        }
+                    };
+                });
+            }
+            if (found.size() != wanted.size()) {
+                wanted.removeAll(found);
+                throw new IOException(wanted.size() + " files missing from " + source + ", e.g. "
+                        + wanted.iterator().next());
+            }
+            System.out.println("Restored " + found.size() + " files from " + source.getFileName());
+            restored += found.size();
+        }
+        return restored;
+    }
+
+    // Regular files below each path, named relative to the path's parent
+    private static Map<String, Path> collect(String[] filePaths) throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        for (String filePath : filePaths) {
+            Path root = Path.of(filePath).toAbsolutePath();
+            Path base = root.getParent();
+            List<Path> walked;
+            // Symbolic links are not followed, so a link to a parent cannot loop
+            try (Stream<Path> walk = Files.walk(root)) {
+                walked = walk.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)).toList();
+            }
+            for (Path path : walked) {
+                String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+                if (files.putIfAbsent(name, path) != null) {
+                    throw new IOException("duplicate entry: " + name);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Stats (and hashes, if enabled) every file on the worker pool and
+     * builds its new record. New and changed files get {@code archiveName}
+     * as their archive; the others keep the one from the base manifest.
+     */
+    private Map<String, ArchiveManifest.Record> scan(Map<String, Path> files, ArchiveManifest baseManifest,
+            String archiveName) throws IOException {
+        Map<String, ArchiveManifest.Record> previous = baseManifest == null ? Map.of() : baseManifest.getRecords();
+        List<String> names = new ArrayList<>(files.keySet());
+        List<ScanTask> tasks = new ArrayList<>();
+        for (int from = 0; from < names.size(); from += SCAN_BATCH) {
+            List<String> batch = names.subList(from, Math.min(names.size(), from + SCAN_BATCH));
+            tasks.add(() -> {
+                Map<String, ArchiveManifest.Record> scanned = new HashMap<>();
+                for (String name : batch) {
+                    scanned.put(name, scanFile(files.get(name), previous.get(name), archiveName));
+                }
+                return scanned;
+            });
+        }
+
+        Map<String, ArchiveManifest.Record> scanned = new HashMap<>();
+        if (workerCount == 1 || tasks.size() <= 1) {
+            for (ScanTask task : tasks) {
+                scanned.putAll(task.call());
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(workerCount, tasks.size()), r -> {
+                Thread t = new Thread(r, "manifest-scan");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<Map<String, ArchiveManifest.Record>>> futures = new ArrayList<>();
+                for (ScanTask task : tasks) {
+                    futures.add(pool.submit(task::call));
+                }
+                for (Future<Map<String, ArchiveManifest.Record>> future : futures) {
+                    scanned.putAll(await(future));
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        // Keep the walk order, which is also the order of the archive entries
+        Map<String, ArchiveManifest.Record> records = new LinkedHashMap<>();
+        for (String name : names) {
+            records.put(name, scanned.get(name));
+        }
+        return records;
+    }
+
+    private ArchiveManifest.Record scanFile(Path path, ArchiveManifest.Record previous, String archiveName)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        ArchiveManifest.Record current = new ArchiveManifest.Record(attributes.size(),
+                attributes.lastModifiedTime().toMillis(), null, archiveName);
+        if (previous != null && previous.sameMetadata(current)) {
+            return new ArchiveManifest.Record(current.getSize(), current.getLastModified(), previous.getHash(),
+                    previous.getArchive());
+        }
+        if (!hashContent) {
+            return current;
+        }
+        String hash = sha256(path);
+        String archive = previous != null && hash.equals(previous.getHash()) ? previous.getArchive() : archiveName;
+        return new ArchiveManifest.Record(current.getSize(), current.getLastModified(), hash, archive);
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = BufferPool.getInstance().acquire(NioCodecEngine.DEFAULT_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            BufferPool.getInstance().release(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Manifest scan interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Manifest scan failed", e.getCause());
+        }
+    }
+
+    // A batch of files to scan
+    @FunctionalInterface
+    private interface ScanTask {
+        Map<String, ArchiveManifest.Record> call() throws IOException;
+    }
+}
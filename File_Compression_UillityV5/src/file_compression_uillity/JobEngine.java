@@ -0,0 +1,312 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Runs compress, decompress and verify jobs concurrently for any number of
+ * callers. Submitting a job returns a JobHandle at once.
+ *
+ * Every job gets a virtual thread, which checks and measures its input and
+ * then waits for the CPU stage: a fixed pool of cpuWorkers platform threads
+ * that runs the compressor itself. However many jobs are submitted, at most
+ * cpuWorkers of them compress at a time, each with its share of the workers
+ * for its own parallel stages, so throughput stays at what the machine can
+ * do instead of degrading into contention. At most maxJobs jobs are in
+ * flight (queued or running); further submissions are rejected at once
+ * with a REJECTED result, so callers can apply back-pressure.
+ *
+ * Each job uses its own compressor from CompressionFactory, as compressors
+ * keep per-job settings. Errors end up in the job's JobResult.
+ */
+public class JobEngine implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_JOBS = 256;
+
+    // Work of a job on the CPU stage: Boolean for compress and decompress, VerificationReport for verify
+    @FunctionalInterface
+    private interface Body {
+        Object run(Compressor compressor) throws IOException;
+    }
+
+    private final int cpuWorkers;
+    private final int maxJobs;
+    private final ExecutorService jobThreads;
+    private final ExecutorService cpuStage;
+    private final Semaphore slots;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<Long, JobHandle> jobs = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public JobEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_JOBS);
+    }
+
+    public JobEngine(int cpuWorkers, int maxJobs) {
+        if (cpuWorkers < 1) {
+            throw new IllegalArgumentException("CPU worker count must be at least 1: " + cpuWorkers);
+        }
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException("Maximum job count must be at least 1: " + maxJobs);
+        }
+        this.cpuWorkers = cpuWorkers;
+        this.maxJobs = maxJobs;
+        this.slots = new Semaphore(maxJobs);
+        this.jobThreads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("compression-job-", 0).factory());
+        this.cpuStage = Executors.newFixedThreadPool(cpuWorkers, r -> {
+            Thread t = new Thread(r, "compression-cpu");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getCpuWorkers() {
+        return cpuWorkers;
+    }
+
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    // Jobs admitted and not yet ended
+    public int getInFlightCount() {
+        return maxJobs - slots.availablePermits();
+    }
+
+    // Jobs on the CPU stage right now
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    // A job still in flight, or null once it has ended
+    public JobHandle getJob(long id) {
+        return jobs.get(id);
+    }
+
+    public List<JobHandle> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    // Compresses one file (or directory) next to itself; profile and listener may be null
+    public JobHandle submitCompress(String type, String filePath, CompressionProfile profile,
+            ProgressListener listener) {
+        return submit(JobHandle.Type.COMPRESS, type, filePath, new String[] { filePath }, profile, listener,
+                compressor -> compressor.compress(filePath));
+    }
+
+    // Compresses several files into one archive; profile and listener may be null
+    public JobHandle submitCompressFiles(String type, String[] filePaths, String outputArchivePath,
+            CompressionProfile profile, ProgressListener listener) {
+        return submit(JobHandle.Type.COMPRESS_MULTIPLE, type, outputArchivePath, filePaths, profile, listener,
+                compressor -> compressor.compressMultiple(filePaths, outputArchivePath));
+    }
+
+    // Extracts an archive next to itself; listener may be null
+    public JobHandle submitDecompress(String type, String archivePath, ProgressListener listener) {
+        return submit(JobHandle.Type.DECOMPRESS, type, archivePath, new String[] { archivePath }, null, listener,
+                compressor -> compressor.decompress(archivePath));
+    }
+
+    // Checks every entry of an archive; the result carries the VerificationReport
+    public JobHandle submitVerify(String type, String archivePath, ProgressListener listener) {
+        return submit(JobHandle.Type.VERIFY, type, archivePath, new String[] { archivePath }, null, listener,
+                compressor -> compressor.verify(archivePath));
+    }
+
+    private JobHandle submit(JobHandle.Type jobType, String type, String target, String[] inputs,
+            CompressionProfile profile, ProgressListener listener, Body body) {
+        long id = nextId.getAndIncrement();
+        ProgressTracker tracker = new ProgressTracker(listener == null ? event -> {
+        } : listener);
+        JobHandle handle = new JobHandle(id, jobType, target, tracker);
+
+        if (closed) {
+            handle.complete(result(handle, JobResult.Status.REJECTED, "Job engine is closed", null, null));
+            return handle;
+        }
+        if (!slots.tryAcquire()) {
+            handle.complete(result(handle, JobResult.Status.REJECTED,
+                    "Too many jobs in flight (at most " + maxJobs + ")", null, null));
+            return handle;
+        }
+        jobs.put(id, handle);
+        try {
+            jobThreads.execute(() -> {
+                JobResult jobResult;
+                try {
+                    jobResult = run(handle, type, inputs, profile, body);
+                } catch (RuntimeException | Error e) {
+                    jobResult = result(handle, JobResult.Status.FAILED, String.valueOf(e), e, null);
+                } finally {
+                    jobs.remove(id);
+                    slots.release();
+                }
+                handle.complete(jobResult);
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            slots.release();
+            handle.complete(result(handle, JobResult.Status.REJECTED, "Job engine is closed", null, null));
+        }
+        return handle;
+    }
+
+    // Runs on the job's virtual thread
+    private JobResult run(JobHandle handle, String type, String[] inputs, CompressionProfile profile, Body body) {
+        ProgressTracker tracker = handle.getTracker();
+        Compressor compressor;
+        try {
+            compressor = CompressionFactory.createCompressor(type);
+        } catch (IllegalArgumentException e) {
+            return result(handle, JobResult.Status.FAILED, e.getMessage(), e, null);
+        }
+        if (compressor == null) {
+            return result(handle, JobResult.Status.FAILED, "No compression type given", null, null);
+        }
+        if (inputs == null || inputs.length == 0) {
+            return result(handle, JobResult.Status.FAILED, "No input files given", null, null);
+        }
+        if (profile != null) {
+            compressor.setProfile(profile);
+        }
+
+        // Checking and measuring the input is I/O, done here rather than on the CPU stage
+        try {
+            // A compressor that measures its trees as it walks them starts from 0 (see Compressor.measuresTrees)
+            long[] input = measure(inputs,
+                    handle.getType() != JobHandle.Type.COMPRESS_MULTIPLE || !compressor.measuresTrees());
+            tracker.setTotals(input[0], handle.getType() == JobHandle.Type.COMPRESS
+                    || handle.getType() == JobHandle.Type.COMPRESS_MULTIPLE ? input[1] : -1);
+        } catch (IOException e) {
+            return result(handle, JobResult.Status.FAILED, String.valueOf(e), e, null);
+        }
+        if (tracker.isCancelled()) {
+            return result(handle, JobResult.Status.CANCELLED, "Job cancelled", null, null);
+        }
+
+        Future<Object> work = cpuStage.submit(() -> {
+            if (!handle.begin()) {
+                return null;
+            }
+            int active = running.incrementAndGet();
+            try {
+                compressor.setWorkerCount(Math.max(1, cpuWorkers / active));
+                compressor.setProgressTracker(tracker);
+                tracker.start();
+                return body.run(compressor);
+            } finally {
+                running.decrementAndGet();
+                handle.end();
+            }
+        });
+
+        Object outcome = null;
+        Throwable error = null;
+        try {
+            outcome = await(handle, work);
+        } catch (ExecutionException e) {
+            error = e.getCause();
+        }
+        boolean started = handle.getState() != JobHandle.State.QUEUED;
+        boolean success = Boolean.TRUE.equals(outcome)
+                || outcome instanceof VerificationReport && ((VerificationReport) outcome).isOk();
+        if (started) {
+            tracker.finish(success);
+        }
+
+        if (tracker.isCancelled() || error instanceof CancellationException) {
+            return result(handle, JobResult.Status.CANCELLED, "Job cancelled", null, null);
+        }
+        if (error != null) {
+            return result(handle, JobResult.Status.FAILED, String.valueOf(error), error, null);
+        }
+        if (outcome instanceof VerificationReport) {
+            VerificationReport report = (VerificationReport) outcome;
+            return result(handle, success ? JobResult.Status.SUCCEEDED : JobResult.Status.FAILED,
+                    report.toString(), null, report);
+        }
+        if (!success) {
+            Throwable failure = tracker.getFailure();
+            return result(handle, JobResult.Status.FAILED,
+                    failure == null ? "Compressor reported failure" : String.valueOf(failure), failure, null);
+        }
+        return result(handle, JobResult.Status.SUCCEEDED, null, null, null);
+    }
+
+    // Waits for the CPU stage; an interrupt of the job thread cancels the job and keeps waiting for it to stop
+    private static Object await(JobHandle handle, Future<Object> work) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return work.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    handle.cancel();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Total size and number of the regular files at or below the given paths; only checks them unless walkTrees
+    private static long[] measure(String[] paths, boolean walkTrees) throws IOException {
+        long[] total = new long[2];
+        for (String path : paths) {
+            Path start = Path.of(path);
+            if (!Files.exists(start, LinkOption.NOFOLLOW_LINKS)) {
+                throw new NoSuchFileException(path);
+            }
+            if (!walkTrees) {
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(start)) {
+                walk.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)).forEach(p -> {
+                    total[0] += p.toFile().length();
+                    total[1]++;
+                });
+            }
+        }
+        return total;
+    }
+
+    private static JobResult result(JobHandle handle, JobResult.Status status, String message, Throwable error,
+            VerificationReport report) {
+        ProgressEvent progress = status == JobResult.Status.REJECTED ? null : handle.getTracker().snapshot();
+        return new JobResult(handle.getId(), handle.getType(), status, message, error, progress, report);
+    }
+
+    /**
+     * Rejects new jobs, cancels the ones in flight and waits for them to stop.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (JobHandle handle : jobs.values()) {
+            handle.cancel();
+        }
+        jobThreads.close();
+        cpuStage.close();
+    }
+}
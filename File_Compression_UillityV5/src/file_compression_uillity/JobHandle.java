@@ -0,0 +1,132 @@
+package file_compression_uillity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A job submitted to the JobEngine: its id, a future of its result and its
+ * live progress.
+ *
+ * The future always completes normally, with a JobResult saying whether the
+ * job succeeded, failed, was cancelled or was rejected; it is completed only
+ * once the job has stopped using its files. Cancelling the future itself
+ * also cancels the job, but then completes it at once with a
+ * CancellationException, as CompletableFuture does.
+ */
+public class JobHandle {
+
+    public enum Type {
+        COMPRESS,
+        COMPRESS_MULTIPLE,
+        DECOMPRESS,
+        VERIFY
+    }
+
+    public enum State {
+        // Admitted, waiting for its input to be measured or for a CPU worker
+        QUEUED,
+        RUNNING,
+        DONE
+    }
+
+    private final long id;
+    private final Type type;
+    private final String target;
+    private final ProgressTracker tracker;
+    private final CompletableFuture<JobResult> result = new CompletableFuture<>();
+    private volatile State state = State.QUEUED;
+
+    // CPU worker running the job, interrupted on cancel; guarded by this
+    private Thread worker;
+
+    JobHandle(long id, Type type, String target, ProgressTracker tracker) {
+        this.id = id;
+        this.type = type;
+        this.target = target;
+        this.tracker = tracker;
+        result.whenComplete((done, error) -> {
+            if (result.isCancelled()) {
+                cancel();
+            }
+        });
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // File or archive the job works on
+    public String getTarget() {
+        return target;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public CompletableFuture<JobResult> getResult() {
+        return result;
+    }
+
+    // Progress so far; the totals are set once the job's input is measured
+    public ProgressEvent getProgress() {
+        return tracker.snapshot();
+    }
+
+    /**
+     * Cancels the job. A queued job never starts; a running one stops at its
+     * next buffer, or at once if it is blocked on a file channel. Its output
+     * may be left incomplete.
+     *
+     * @return false if the job had already ended
+     */
+    public boolean cancel() {
+        if (state == State.DONE) {
+            return false;
+        }
+        tracker.cancel();
+        synchronized (this) {
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return tracker.isCancelled();
+    }
+
+    ProgressTracker getTracker() {
+        return tracker;
+    }
+
+    // Called on the CPU worker before the job runs; false if it was cancelled meanwhile
+    synchronized boolean begin() {
+        if (tracker.isCancelled()) {
+            return false;
+        }
+        worker = Thread.currentThread();
+        state = State.RUNNING;
+        return true;
+    }
+
+    // Called on the CPU worker after the job; clears an interrupt meant for the job, not the next one
+    synchronized void end() {
+        worker = null;
+        Thread.interrupted();
+    }
+
+    void complete(JobResult jobResult) {
+        state = State.DONE;
+        result.complete(jobResult);
+    }
+
+    @Override
+    public String toString() {
+        return "Job " + id + " (" + type + " " + target + ") " + state;
+    }
+}
@@ -0,0 +1,78 @@
+package file_compression_uillity;
+
+/**
+ * Outcome of a job run by the JobEngine.
+ *
+ * Errors are reported here instead of being printed: a failed job carries
+ * the exception that ended it (an IOException from the compressor, or
+ * NoSuchFileException for a missing input) and its message.
+ */
+public class JobResult {
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        CANCELLED,
+        // Not run: the engine already had its maximum number of jobs, or was closed
+        REJECTED
+    }
+
+    private final long jobId;
+    private final JobHandle.Type type;
+    private final Status status;
+    private final String message;
+    private final Throwable error;
+    private final ProgressEvent progress;
+    private final VerificationReport report;
+
+    public JobResult(long jobId, JobHandle.Type type, Status status, String message, Throwable error,
+            ProgressEvent progress, VerificationReport report) {
+        this.jobId = jobId;
+        this.type = type;
+        this.status = status;
+        this.message = message;
+        this.error = error;
+        this.progress = progress;
+        this.report = report;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    public JobHandle.Type getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCEEDED;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // null unless the job failed
+    public Throwable getError() {
+        return error;
+    }
+
+    // Bytes, entries and time of the job when it ended; null if it never ran
+    public ProgressEvent getProgress() {
+        return progress;
+    }
+
+    // Report of a verify job, also set when it failed because entries are damaged
+    public VerificationReport getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return "Job " + jobId + " (" + type + ") " + status + (message == null ? "" : ": " + message);
+    }
+}
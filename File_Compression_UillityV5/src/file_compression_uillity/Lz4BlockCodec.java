@@ -0,0 +1,339 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * LZ4 block compressor and decompressor (the raw block format inside LZ4
+ * frames).
+ *
+ * Compression is the greedy single-probe search of the reference "fast"
+ * mode. The hash table belongs to the codec and is reused from block to
+ * block, so neither direction allocates; a codec is not thread-safe, so
+ * each worker keeps its own. Stale table entries are harmless: a candidate
+ * is only used if it lies inside the current block and its bytes match.
+ */
+public class Lz4BlockCodec {
+
+    static final int MIN_MATCH = 4;
+    // The last 5 bytes are always literals and the last match starts at least 12 bytes before the end
+    static final int LAST_LITERALS = 5;
+    static final int MF_LIMIT = 12;
+    static final int MAX_DISTANCE = 65535;
+
+    private static final int HASH_LOG = 12;
+    // After 2^SKIP_TRIGGER failed probes the search starts skipping ahead faster
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final int[] table = new int[1 << HASH_LOG];
+
+    /**
+     * Worst-case compressed size of {@code length} input bytes.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src[srcOff, srcOff + srcLen)} into {@code dst}, which
+     * must have room for {@link #maxCompressedLength} bytes.
+     *
+     * @return compressed length
+     */
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        if (dst.length - dstOff < maxCompressedLength(srcLen)) {
+            throw new IllegalArgumentException("Output buffer too small for " + srcLen + " bytes");
+        }
+        int[] hashTable = table;
+        int end = srcOff + srcLen;
+        int matchLimit = end - LAST_LITERALS;
+        int mfLimit = end - MF_LIMIT;
+        int anchor = srcOff;
+        int op = dstOff;
+
+        if (srcLen > MF_LIMIT) {
+            int ip = srcOff;
+            hashTable[hash(readInt(src, ip))] = ip;
+            ip++;
+            search:
+            while (true) {
+                // Find a 4-byte match, skipping faster over incompressible data
+                int ref;
+                int forward = ip;
+                int step = 1;
+                int attempts = 1 << SKIP_TRIGGER;
+                do {
+                    ip = forward;
+                    forward += step;
+                    step = attempts++ >>> SKIP_TRIGGER;
+                    if (forward > mfLimit) {
+                        break search;
+                    }
+                    int h = hash(readInt(src, ip));
+                    ref = hashTable[h];
+                    hashTable[h] = ip;
+                } while (ref < srcOff || ref >= ip || ip - ref > MAX_DISTANCE
+                        || readInt(src, ref) != readInt(src, ip));
+
+                // Extend the match backwards over equal literals
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+
+                int tokenPos = op++;
+                int literals = ip - anchor;
+                int token;
+                if (literals >= 15) {
+                    token = 15 << 4;
+                    op = writeExtraLength(dst, op, literals - 15);
+                } else {
+                    token = literals << 4;
+                }
+                System.arraycopy(src, anchor, dst, op, literals);
+                op += literals;
+
+                while (true) {
+                    dst[op++] = (byte) (ip - ref);
+                    dst[op++] = (byte) ((ip - ref) >>> 8);
+
+                    int matchLength = commonLength(src, ip + MIN_MATCH, ref + MIN_MATCH, matchLimit);
+                    ip += MIN_MATCH + matchLength;
+                    if (matchLength >= 15) {
+                        token |= 15;
+                        op = writeExtraLength(dst, op, matchLength - 15);
+                    } else {
+                        token |= matchLength;
+                    }
+                    dst[tokenPos] = (byte) token;
+                    anchor = ip;
+
+                    if (ip > mfLimit) {
+                        break search;
+                    }
+                    hashTable[hash(readInt(src, ip - 2))] = ip - 2;
+
+                    // A match right after the previous one needs no literals
+                    int h = hash(readInt(src, ip));
+                    ref = hashTable[h];
+                    hashTable[h] = ip;
+                    if (ref >= srcOff && ref < ip && ip - ref <= MAX_DISTANCE
+                            && readInt(src, ref) == readInt(src, ip)) {
+                        tokenPos = op++;
+                        token = 0;
+                        continue;
+                    }
+                    ip++;
+                    continue search;
+                }
+            }
+        }
+
+        // Last literals
+        int literals = end - anchor;
+        if (literals >= 15) {
+            dst[op++] = (byte) (15 << 4);
+            op = writeExtraLength(dst, op, literals - 15);
+        } else {
+            dst[op++] = (byte) (literals << 4);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        return op - dstOff;
+    }
+
+    /**
+     * Decompresses a whole block into {@code dst}, failing if the block is
+     * malformed or would not fit in {@code dstMax} bytes.
+     *
+     * @return decompressed length
+     */
+    public int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstMax)
+            throws IOException {
+        return decompress(src, srcOff, srcLen, dst, dstOff, dstMax, dstOff);
+    }
+
+    /**
+     * Decompresses a block whose matches may also refer to the bytes from
+     * {@code prefixStart} up to {@code dstOff}, the previous output of a
+     * frame with linked blocks.
+     */
+    int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstMax, int prefixStart)
+            throws IOException {
+        int ip = srcOff;
+        int end = srcOff + srcLen;
+        int op = dstOff;
+        int outEnd = dstOff + dstMax;
+        while (ip < end) {
+            int token = src[ip++] & 0xFF;
+
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (ip >= end) {
+                        throw malformed();
+                    }
+                    b = src[ip++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals > end - ip || literals > outEnd - op) {
+                throw malformed();
+            }
+            if (literals <= 16 && end - ip >= 16 && outEnd - op >= 16) {
+                // Short literal runs: two 8-byte copies, the excess is overwritten later
+                LONG_LE.set(dst, op, (long) LONG_LE.get(src, ip));
+                LONG_LE.set(dst, op + 8, (long) LONG_LE.get(src, ip + 8));
+            } else {
+                System.arraycopy(src, ip, dst, op, literals);
+            }
+            ip += literals;
+            op += literals;
+            if (ip == end) {
+                break;
+            }
+
+            if (end - ip < 2) {
+                throw malformed();
+            }
+            int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            int ref = op - offset;
+            if (offset == 0 || ref < prefixStart) {
+                throw malformed();
+            }
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (ip >= end) {
+                        throw malformed();
+                    }
+                    b = src[ip++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (matchLength > outEnd - op) {
+                throw malformed();
+            }
+            if (offset >= 8 && outEnd - op >= matchLength + 8) {
+                // 8-byte steps never read bytes this copy has yet to write
+                for (int i = 0; i < matchLength; i += 8) {
+                    LONG_LE.set(dst, op + i, (long) LONG_LE.get(dst, ref + i));
+                }
+            } else if (offset >= matchLength) {
+                System.arraycopy(dst, ref, dst, op, matchLength);
+            } else {
+                // Overlapping match: the repeated pattern doubles with every copy
+                int copied = 0;
+                while (copied < matchLength) {
+                    int n = Math.min(matchLength - copied, op + copied - ref);
+                    System.arraycopy(dst, ref, dst, op + copied, n);
+                    copied += n;
+                }
+            }
+            op += matchLength;
+        }
+        return op - dstOff;
+    }
+
+    /**
+     * Compresses {@code src} from its position to its limit into
+     * {@code dst}, advancing both positions. Heap buffers are used in place;
+     * other buffers are copied through the given scratch arrays, which
+     * must hold the block and its worst-case compressed size.
+     */
+    public int compress(ByteBuffer src, ByteBuffer dst, byte[] srcScratch, byte[] dstScratch) {
+        int length = src.remaining();
+        byte[] in = src.hasArray() ? src.array() : srcScratch;
+        int inOff = src.hasArray() ? src.arrayOffset() + src.position() : 0;
+        if (!src.hasArray()) {
+            src.get(src.position(), in, 0, length);
+        }
+        int written;
+        if (dst.hasArray() && dst.remaining() >= maxCompressedLength(length)) {
+            written = compress(in, inOff, length, dst.array(), dst.arrayOffset() + dst.position());
+        } else {
+            written = compress(in, inOff, length, dstScratch, 0);
+            dst.put(dst.position(), dstScratch, 0, written);
+        }
+        src.position(src.position() + length);
+        dst.position(dst.position() + written);
+        return written;
+    }
+
+    /**
+     * Decompresses the block in {@code src} (position to limit) into
+     * {@code dst}, advancing both positions. Scratch arrays are used as in
+     * {@link #compress(ByteBuffer, ByteBuffer, byte[], byte[])}.
+     */
+    public int decompress(ByteBuffer src, ByteBuffer dst, byte[] srcScratch, byte[] dstScratch)
+            throws IOException {
+        int length = src.remaining();
+        byte[] in = src.hasArray() ? src.array() : srcScratch;
+        int inOff = src.hasArray() ? src.arrayOffset() + src.position() : 0;
+        if (!src.hasArray()) {
+            src.get(src.position(), in, 0, length);
+        }
+        int written;
+        if (dst.hasArray()) {
+            written = decompress(in, inOff, length, dst.array(), dst.arrayOffset() + dst.position(),
+                    dst.remaining());
+        } else {
+            written = decompress(in, inOff, length, dstScratch, 0, Math.min(dst.remaining(), dstScratch.length));
+            dst.put(dst.position(), dstScratch, 0, written);
+        }
+        src.position(src.position() + length);
+        dst.position(dst.position() + written);
+        return written;
+    }
+
+    private static int writeExtraLength(byte[] dst, int op, int length) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    // Number of equal bytes at a and b, stopping at limit (a is ahead of b)
+    private static int commonLength(byte[] src, int a, int b, int limit) {
+        int start = a;
+        while (a <= limit - 8) {
+            long diff = (long) LONG_LE.get(src, a) ^ (long) LONG_LE.get(src, b);
+            if (diff != 0) {
+                return a - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+            }
+            a += 8;
+            b += 8;
+        }
+        while (a < limit && src[a] == src[b]) {
+            a++;
+            b++;
+        }
+        return a - start;
+    }
+
+    private static int readInt(byte[] src, int index) {
+        return (int) INT_LE.get(src, index);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static IOException malformed() {
+        return new IOException("Malformed LZ4 block");
+    }
+}
@@ -0,0 +1,383 @@
+package file_compression_uillity;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fast compressor using the LZ4 frame format.
+ *
+ * Every entry is stored as one standard LZ4 frame, preceded by a small
+ * skippable frame holding the entry name and modification time. The lz4
+ * command-line tool ignores skippable frames, so "lz4 -d file.txt.lz4"
+ * restores a single-file archive as is; in the other direction, frames
+ * written by lz4 (without a name frame) are read as one entry named after
+ * the archive. Blocks are independent and compressed on a worker pool.
+ */
+public class Lz4Compressor implements Compressor {
+
+    // Skippable frame carrying "<mtime (8 bytes LE)><UTF-8 name>" for the next data frame
+    static final int ENTRY_MAGIC = Lz4FrameOutputStream.SKIPPABLE_MAGIC | 0x0A;
+
+    // Name given to a frame that has no entry frame in the stream API
+    private static final String DEFAULT_ENTRY_NAME = "data";
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int blockSize = Lz4FrameOutputStream.BLOCK_1MB;
+    // Counts the files and archive read and written by the path-based methods
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public Lz4Compressor() {
+    }
+
+    // Threads compressing blocks; 1 compresses on the calling thread
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    // Maximum block size: 64 KB, 256 KB, 1 MB or 4 MB
+    public void setBlockSize(int blockSize) {
+        Lz4FrameOutputStream.blockSizeId(blockSize);
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".lz4";
+    }
+
+    @Override
+    public boolean compress(String filePath) {
+        try {
+            File file = new File(filePath);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePath);
+                return false;
+            }
+
+            // Keep the full file name, as lz4 does: report.txt -> report.txt.lz4
+            String archivePath = filePath + getExtension();
+
+            System.out.println("Compressing: " + filePath + " to " + archivePath);
+            System.out.println("File size: " + file.length() + " bytes");
+            writeArchive(new File[] { file }, archivePath);
+
+            System.out.println("LZ4 file created successfully: " + archivePath);
+            System.out.println("LZ4 file size: " + new File(archivePath).length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                System.out.println("No files provided for compression");
+                return false;
+            }
+
+            System.out.println("Compressing " + filePaths.length + " files to: " + outputArchivePath);
+
+            List<File> files = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                if (names.contains(file.getName())) {
+                    throw new IOException("duplicate entry: " + file.getName());
+                }
+                System.out.println("Adding: " + file.getName() + " (" + file.length() + " bytes)");
+                names.add(file.getName());
+                files.add(file);
+            }
+            writeArchive(files.toArray(new File[0]), outputArchivePath);
+
+            System.out.println("Multi-file LZ4 archive created successfully: " + outputArchivePath);
+            System.out.println("Archive size: " + new File(outputArchivePath).length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Multi-file compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // Writes the archive, or deletes what was written if it fails
+    private void writeArchive(File[] files, String archivePath) throws IOException {
+        if (files.length == 0) {
+            throw new IOException("No files to compress");
+        }
+        for (File file : files) {
+            if (!file.isFile()) {
+                throw new IOException("LZ4 archives hold plain files only: " + file);
+            }
+        }
+        ExecutorService executor = newExecutor();
+        boolean written = false;
+        try {
+            try (OutputStream out = new BufferedOutputStream(progress.output(new FileOutputStream(archivePath)),
+                    256 * 1024)) {
+                for (File file : files) {
+                    try (InputStream in = progress.input(new FileInputStream(file))) {
+                        writeEntry(out, file.getName(), file.lastModified(), file.length(), in, executor);
+                    }
+                    progress.entryDone();
+                }
+            }
+            written = true;
+        } finally {
+            shutdown(executor);
+            if (!written) {
+                Files.deleteIfExists(Path.of(archivePath));
+            }
+        }
+    }
+
+    // Writes the entry frame and the data frame of one entry
+    private void writeEntry(OutputStream out, String name, long mtime, long size, InputStream in,
+            ExecutorService executor) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[16];
+        Lz4FrameOutputStream.writeIntLE(header, 0, ENTRY_MAGIC);
+        Lz4FrameOutputStream.writeIntLE(header, 4, 8 + nameBytes.length);
+        Lz4FrameOutputStream.writeIntLE(header, 8, (int) mtime);
+        Lz4FrameOutputStream.writeIntLE(header, 12, (int) (mtime >>> 32));
+        out.write(header);
+        out.write(nameBytes);
+
+        try (Lz4FrameOutputStream frame = new Lz4FrameOutputStream(out, blockSize, size, executor, workerCount)) {
+            in.transferTo(frame);
+        }
+    }
+
+    @Override
+    public boolean decompress(String filePath) {
+        try {
+            File archiveFile = new File(filePath).getAbsoluteFile();
+            String outputDir = archiveFile.getParent();
+
+            // report.txt.lz4 extracts to the folder "report"
+            String baseName = unnamedEntryName(archiveFile.getName());
+            int dot = baseName.lastIndexOf('.');
+            String folderName = dot > 0 ? baseName.substring(0, dot) : baseName;
+            File extractFolder = new File(outputDir + File.separator + folderName);
+            extractFolder.mkdir();
+
+            Path outputRoot = extractFolder.toPath();
+            try (InputStream in = progress.input(new FileInputStream(archiveFile))) {
+                read(in, baseName, (entry, data) -> {
+                    Path target = EntryPaths.resolve(outputRoot, entry.getName());
+                    Files.createDirectories(target.getParent());
+                    try (OutputStream out = progress.entryOutput(Files.newOutputStream(target))) {
+                        data.transferTo(out);
+                    }
+                    if (entry.getLastModified() > 0) {
+                        Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getLastModified()));
+                    }
+                });
+            }
+
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (InputStream in = new FileInputStream(archivePath)) {
+            return list(in, unnamedEntryName(new File(archivePath).getName()));
+        }
+    }
+
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        ExecutorService executor = newExecutor();
+        try {
+            writeEntry(archive, entryName, System.currentTimeMillis(), -1, source, executor);
+            archive.flush();
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        if (entries.isEmpty()) {
+            throw new IOException("An LZ4 archive needs at least one entry");
+        }
+        ExecutorService executor = newExecutor();
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                try (InputStream in = entry.getValue().open()) {
+                    long size = in instanceof FileInputStream fis ? fis.getChannel().size() : -1;
+                    writeEntry(archive, entry.getKey(), now, size, in, executor);
+                }
+            }
+            archive.flush();
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        read(archive, DEFAULT_ENTRY_NAME, (entry, data) -> {
+            try (OutputStream out = target.open(entry)) {
+                if (out != null) {
+                    data.transferTo(out);
+                }
+            }
+        });
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        return list(archive, DEFAULT_ENTRY_NAME);
+    }
+
+    private List<ArchiveEntry> list(InputStream archive, String unnamed) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        read(archive, unnamed, (entry, data) -> {
+            // Frames written by other tools may not store their size
+            long size = ((Lz4FrameInputStream) data).skipFrame();
+            entries.add(new ArchiveEntry(entry.getName(), size, -1, -1, entry.getLastModified()));
+        });
+        return entries;
+    }
+
+    // Receives each entry with a stream over its data; unread data is skipped
+    @FunctionalInterface
+    private interface EntryHandler {
+        void handle(ArchiveEntry entry, InputStream data) throws IOException;
+    }
+
+    /**
+     * Walks the frames of an archive. Entry frames name the data frame that
+     * follows; other skippable frames are ignored, as LZ4 readers must. An
+     * archive holds at least one frame, so empty input is an error, as is
+     * input ending between an entry frame and its data.
+     */
+    private void read(InputStream archive, String unnamed, EntryHandler handler) throws IOException {
+        InputStream in = new BufferedInputStream(new FilterInputStream(archive) {
+            @Override
+            public void close() {
+                // The caller owns the archive stream
+            }
+        }, 256 * 1024);
+        DataInputStream data = new DataInputStream(in);
+        String name = null;
+        long mtime = -1;
+        byte[] word = new byte[4];
+        for (boolean first = true; ; first = false) {
+            int n = in.readNBytes(word, 0, 4);
+            if (n == 0) {
+                if (first) {
+                    throw new EOFException("Empty LZ4 archive: no frame magic number");
+                }
+                if (name != null) {
+                    throw new EOFException("Unexpected end of LZ4 archive after the header of " + name);
+                }
+                break;
+            }
+            if (n < 4) {
+                throw new EOFException("Unexpected end of LZ4 archive");
+            }
+            int magic = Lz4FrameInputStream.readIntLE(word, 0);
+            if ((magic & Lz4FrameOutputStream.SKIPPABLE_MAGIC_MASK) == Lz4FrameOutputStream.SKIPPABLE_MAGIC) {
+                data.readFully(word);
+                long length = Lz4FrameInputStream.readIntLE(word, 0) & 0xFFFFFFFFL;
+                if (magic == ENTRY_MAGIC && length >= 8 && length <= 64 * 1024) {
+                    byte[] payload = new byte[(int) length];
+                    data.readFully(payload);
+                    mtime = (Lz4FrameInputStream.readIntLE(payload, 0) & 0xFFFFFFFFL)
+                            | (long) Lz4FrameInputStream.readIntLE(payload, 4) << 32;
+                    name = new String(payload, 8, payload.length - 8, StandardCharsets.UTF_8);
+                } else {
+                    in.skipNBytes(length);
+                }
+                continue;
+            }
+            if (magic != Lz4FrameOutputStream.MAGIC) {
+                throw new IOException("Not an LZ4 archive (unknown frame magic " + Integer.toHexString(magic) + ")");
+            }
+            Lz4FrameInputStream frame = new Lz4FrameInputStream(in, true);
+            ArchiveEntry entry = new ArchiveEntry(name != null ? name : unnamed, frame.getContentSize(), -1, -1,
+                    name != null ? mtime : -1);
+            handler.handle(entry, frame);
+            frame.skipFrame();
+            name = null;
+            mtime = -1;
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if (workerCount <= 1) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "lz4-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Name of a frame without entry frame: the archive name minus ".lz4"
+    private static String unnamedEntryName(String archiveName) {
+        if (archiveName.toLowerCase().endsWith(".lz4") && archiveName.length() > 4) {
+            return archiveName.substring(0, archiveName.length() - 4);
+        }
+        return archiveName;
+    }
+}
@@ -0,0 +1,231 @@
+package file_compression_uillity;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads one LZ4 frame, as written by Lz4FrameOutputStream or the lz4
+ * command-line tool.
+ *
+ * Independent and linked blocks, block checksums and the content checksum
+ * are supported; the checksums are verified. The stream ends with its frame
+ * and never reads past it, so whatever follows (another frame, for example)
+ * can be read from the underlying stream afterwards. Closing leaves the
+ * underlying stream open.
+ */
+public class Lz4FrameInputStream extends InputStream {
+
+    // Linked blocks may refer back up to 64 KB into the previous blocks
+    private static final int WINDOW = 64 * 1024;
+
+    private final InputStream in;
+    private final Lz4BlockCodec codec = new Lz4BlockCodec();
+    private final boolean linked;
+    private final boolean blockChecksum;
+    private final boolean contentChecksum;
+    private final long contentSize;
+    private final int blockSize;
+    private final XXHash32 contentHash = new XXHash32();
+
+    private byte[] compressed;
+    private final byte[] buffer;
+    // Start of the current block's data in buffer (after the linked-block window)
+    private final int start;
+    private int position;
+    private int limit;
+    private long total;
+    private boolean finished;
+    private final byte[] word = new byte[8];
+
+    /**
+     * Reads the frame header.
+     *
+     * @param magicRead true if the caller has already consumed the 4-byte
+     *                  magic number
+     */
+    public Lz4FrameInputStream(InputStream in, boolean magicRead) throws IOException {
+        this.in = in;
+        if (!magicRead) {
+            if (in.readNBytes(word, 0, 4) < 4) {
+                throw new EOFException("Missing LZ4 frame magic number");
+            }
+            if (readIntLE(word, 0) != Lz4FrameOutputStream.MAGIC) {
+                throw new IOException("Not an LZ4 frame");
+            }
+        }
+        byte[] descriptor = new byte[15];
+        readFully(descriptor, 0, 2);
+        int flags = descriptor[0] & 0xFF;
+        if ((flags & 0xC0) != Lz4FrameOutputStream.FLAG_VERSION) {
+            throw new IOException("Unsupported LZ4 frame version");
+        }
+        linked = (flags & Lz4FrameOutputStream.FLAG_INDEPENDENT) == 0;
+        blockChecksum = (flags & Lz4FrameOutputStream.FLAG_BLOCK_CHECKSUM) != 0;
+        contentChecksum = (flags & Lz4FrameOutputStream.FLAG_CONTENT_CHECKSUM) != 0;
+        int length = 2;
+        if ((flags & Lz4FrameOutputStream.FLAG_CONTENT_SIZE) != 0) {
+            readFully(descriptor, length, 8);
+            contentSize = (readIntLE(descriptor, 2) & 0xFFFFFFFFL) | (long) readIntLE(descriptor, 6) << 32;
+            length += 8;
+        } else {
+            contentSize = -1;
+        }
+        if ((flags & Lz4FrameOutputStream.FLAG_DICTIONARY_ID) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+        }
+        readFully(descriptor, length, 1);
+        if ((byte) (XXHash32.hash(descriptor, 0, length, 0) >>> 8) != descriptor[length]) {
+            throw new IOException("LZ4 frame header checksum mismatch");
+        }
+
+        int blockSizeId = (descriptor[1] >>> 4) & 7;
+        if (blockSizeId < 4) {
+            throw new IOException("Invalid LZ4 block size");
+        }
+        blockSize = 1 << (8 + 2 * blockSizeId);
+        // Known small contents need no full-size block buffer
+        int capacity = contentSize >= 0 ? (int) Math.min(blockSize, Math.max(1, contentSize)) : blockSize;
+        start = linked ? WINDOW : 0;
+        buffer = new byte[start + capacity];
+        compressed = new byte[capacity];
+        position = start;
+        limit = start;
+    }
+
+    // Uncompressed size from the frame header, or -1 if the frame does not store it
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !nextBlock()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    /**
+     * Skips the rest of the frame. The blocks are still decoded, so the
+     * checksums are verified.
+     *
+     * @return uncompressed size of the whole frame
+     */
+    public long skipFrame() throws IOException {
+        while (nextBlock()) {
+            position = limit;
+        }
+        return total;
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        readFully(word, 0, 4);
+        int size = readIntLE(word, 0);
+        if (size == 0) {
+            finish();
+            return false;
+        }
+        boolean uncompressed = (size & Lz4FrameOutputStream.UNCOMPRESSED_BIT) != 0;
+        size &= ~Lz4FrameOutputStream.UNCOMPRESSED_BIT;
+        int capacity = buffer.length - start;
+        if (size > blockSize) {
+            throw new IOException("LZ4 block larger than the frame's block size");
+        }
+        if (linked) {
+            // Keep the last 64 KB of output in front of the new block
+            int keep = Math.min(WINDOW, limit);
+            System.arraycopy(buffer, limit - keep, buffer, start - keep, keep);
+        }
+
+        int decoded;
+        if (uncompressed) {
+            if (size > capacity) {
+                throw new IOException("LZ4 block larger than the frame's block size");
+            }
+            readFully(buffer, start, size);
+            decoded = size;
+            if (blockChecksum) {
+                verifyBlockChecksum(buffer, start, size);
+            }
+        } else {
+            if (compressed.length < size) {
+                compressed = new byte[size];
+            }
+            readFully(compressed, 0, size);
+            if (blockChecksum) {
+                verifyBlockChecksum(compressed, 0, size);
+            }
+            decoded = codec.decompress(compressed, 0, size, buffer, start, capacity, linked ? 0 : start);
+        }
+        if (contentChecksum) {
+            contentHash.update(buffer, start, decoded);
+        }
+        total += decoded;
+        position = start;
+        limit = start + decoded;
+        return true;
+    }
+
+    private void verifyBlockChecksum(byte[] data, int off, int len) throws IOException {
+        readFully(word, 0, 4);
+        if (readIntLE(word, 0) != XXHash32.hash(data, off, len, 0)) {
+            throw new IOException("LZ4 block checksum mismatch");
+        }
+    }
+
+    private void finish() throws IOException {
+        finished = true;
+        if (contentChecksum) {
+            readFully(word, 0, 4);
+            if (readIntLE(word, 0) != contentHash.getValue()) {
+                throw new IOException("LZ4 content checksum mismatch");
+            }
+        }
+        if (contentSize >= 0 && total != contentSize) {
+            throw new IOException("LZ4 frame has " + total + " bytes but declares " + contentSize);
+        }
+    }
+
+    @Override
+    public void close() {
+        // The underlying stream belongs to the caller
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of LZ4 frame");
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    static int readIntLE(byte[] b, int off) {
+        return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+    }
+}
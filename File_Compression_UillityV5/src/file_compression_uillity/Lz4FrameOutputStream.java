@@ -0,0 +1,255 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes one LZ4 frame (the format of the lz4 command-line tool).
+ *
+ * The frame uses independent blocks and a content checksum, as lz4 does by
+ * default. Because no block refers to another, blocks can be compressed on
+ * an executor: up to two blocks per worker are in flight and their results
+ * are written in order. Without an executor every block is compressed on
+ * the calling thread. A block that does not shrink is stored uncompressed.
+ *
+ * Closing the stream ends the frame but leaves the underlying stream open,
+ * so several frames can follow one another.
+ */
+public class Lz4FrameOutputStream extends OutputStream {
+
+    static final int MAGIC = 0x184D2204;
+    // Skippable frames (0x184D2A50 - 0x184D2A5F) are ignored by LZ4 readers
+    static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    static final int SKIPPABLE_MAGIC = 0x184D2A50;
+
+    // Frame descriptor flags: version 01, independent blocks, content size, content checksum
+    static final int FLAG_VERSION = 0x40;
+    static final int FLAG_INDEPENDENT = 0x20;
+    static final int FLAG_BLOCK_CHECKSUM = 0x10;
+    static final int FLAG_CONTENT_SIZE = 0x08;
+    static final int FLAG_CONTENT_CHECKSUM = 0x04;
+    static final int FLAG_DICTIONARY_ID = 0x01;
+
+    // High bit of a block size: the block is stored uncompressed
+    static final int UNCOMPRESSED_BIT = 0x80000000;
+
+    public static final int BLOCK_64KB = 64 * 1024;
+    public static final int BLOCK_256KB = 256 * 1024;
+    public static final int BLOCK_1MB = 1024 * 1024;
+    public static final int BLOCK_4MB = 4 * 1024 * 1024;
+
+    // Compressors reused by the calling thread and by executor threads
+    private static final ThreadLocal<Lz4BlockCodec> CODECS = ThreadLocal.withInitial(Lz4BlockCodec::new);
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int blockSize;
+    private final XXHash32 contentHash = new XXHash32();
+    private final byte[] sizeBytes = new byte[4];
+
+    private final ArrayDeque<Future<Block>> inFlight = new ArrayDeque<>();
+    // Finished blocks whose arrays can be filled again
+    private final ArrayDeque<Block> spare = new ArrayDeque<>();
+    private Block current;
+    private boolean closed;
+
+    /**
+     * Starts a frame on {@code out}.
+     *
+     * @param blockSize   maximum block size, one of the BLOCK_ constants
+     * @param contentSize total uncompressed size stored in the header, or -1
+     *                    if unknown
+     * @param executor    compresses the blocks, or null to compress inline
+     * @param workers     number of executor threads (ignored without executor)
+     */
+    public Lz4FrameOutputStream(OutputStream out, int blockSize, long contentSize, ExecutorService executor,
+            int workers) throws IOException {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.executor = executor;
+        this.maxInFlight = executor == null ? 0 : Math.max(1, workers) * 2;
+
+        int flags = FLAG_VERSION | FLAG_INDEPENDENT | FLAG_CONTENT_CHECKSUM;
+        if (contentSize >= 0) {
+            flags |= FLAG_CONTENT_SIZE;
+        }
+        byte[] header = new byte[15];
+        writeIntLE(header, 0, MAGIC);
+        header[4] = (byte) flags;
+        header[5] = (byte) (blockSizeId(blockSize) << 4);
+        int length = 6;
+        if (contentSize >= 0) {
+            writeIntLE(header, 6, (int) contentSize);
+            writeIntLE(header, 10, (int) (contentSize >>> 32));
+            length = 14;
+        }
+        // Header checksum: second byte of the xxHash32 of the descriptor
+        header[length] = (byte) (XXHash32.hash(header, 4, length - 4, 0) >>> 8);
+        out.write(header, 0, length + 1);
+
+        // Small inputs get a block buffer of their own size
+        int firstBlock = contentSize >= 0 ? (int) Math.max(1, Math.min(blockSize, contentSize)) : blockSize;
+        current = new Block(firstBlock);
+    }
+
+    public Lz4FrameOutputStream(OutputStream out, int blockSize, long contentSize) throws IOException {
+        this(out, blockSize, contentSize, null, 1);
+    }
+
+    // Descriptor code for the maximum block size (4 = 64 KB ... 7 = 4 MB)
+    static int blockSizeId(int blockSize) {
+        switch (blockSize) {
+            case BLOCK_64KB:
+                return 4;
+            case BLOCK_256KB:
+                return 5;
+            case BLOCK_1MB:
+                return 6;
+            case BLOCK_4MB:
+                return 7;
+            default:
+                throw new IllegalArgumentException("LZ4 block size must be 64 KB, 256 KB, 1 MB or 4 MB: "
+                        + blockSize);
+        }
+    }
+
+    // Input and compressed output of one block
+    private static final class Block {
+        byte[] input;
+        byte[] output;
+        int length;
+        int compressedLength;
+
+        Block(int capacity) {
+            input = new byte[capacity];
+        }
+
+        Block compress() {
+            if (output == null || output.length < Lz4BlockCodec.maxCompressedLength(input.length)) {
+                output = new byte[Lz4BlockCodec.maxCompressedLength(input.length)];
+            }
+            compressedLength = CODECS.get().compress(input, 0, length, output, 0);
+            return this;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        sizeBytes[0] = (byte) b;
+        write(sizeBytes, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        contentHash.update(b, off, len);
+        while (len > 0) {
+            if (current.length == current.input.length && current.input.length < blockSize) {
+                // More data than the size hint announced: grow to a full block
+                current.input = Arrays.copyOf(current.input, blockSize);
+            }
+            int n = Math.min(len, current.input.length - current.length);
+            System.arraycopy(b, off, current.input, current.length, n);
+            current.length += n;
+            off += n;
+            len -= n;
+            if (current.length == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        Block block = current;
+        if (executor == null) {
+            writeBlock(block.compress());
+            block.length = 0;
+            return;
+        }
+        if (inFlight.size() >= maxInFlight) {
+            spare.push(writeBlock(await(inFlight.poll())));
+        }
+        inFlight.add(executor.submit(block::compress));
+        current = spare.isEmpty() ? new Block(blockSize) : spare.pop();
+        current.length = 0;
+    }
+
+    private Block writeBlock(Block block) throws IOException {
+        byte[] size = sizeBytes;
+        if (block.compressedLength < block.length) {
+            writeIntLE(size, 0, block.compressedLength);
+            out.write(size);
+            out.write(block.output, 0, block.compressedLength);
+        } else {
+            writeIntLE(size, 0, block.length | UNCOMPRESSED_BIT);
+            out.write(size);
+            out.write(block.input, 0, block.length);
+        }
+        return block;
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("LZ4 block compression failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes the remaining blocks, the end mark and the content checksum.
+     * The underlying stream is flushed but not closed.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current.length > 0) {
+                if (executor == null) {
+                    writeBlock(current.compress());
+                } else {
+                    inFlight.add(executor.submit(current::compress));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeBlock(await(inFlight.poll()));
+            }
+            byte[] trailer = new byte[8];
+            // End mark (a zero block size), then the content checksum
+            writeIntLE(trailer, 4, contentHash.getValue());
+            out.write(trailer);
+            out.flush();
+        } finally {
+            for (Future<Block> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    static void writeIntLE(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+        b[off + 2] = (byte) (value >>> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,401 @@
+package file_compression_uillity;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * NIO I/O engine for deflate and inflate.
+ *
+ * Data moves through pooled direct buffers straight between channels and
+ * the native Deflater/Inflater, so there is no copy through Java byte arrays
+ * and far fewer system calls than the old 1 KB stream loops. Files at or
+ * above the mmap threshold are memory-mapped and fed to the Deflater
+ * directly from the mapping.
+ *
+ * A ProgressTracker, when set, counts the bytes taken from sources and
+ * handed to sinks in every loop below.
+ */
+public class NioCodecEngine {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final long DEFAULT_MMAP_THRESHOLD = 64L * 1024 * 1024;
+
+    // Largest region mapped at once (a single mapping is limited to 2 GB)
+    private static final long MAX_MAPPING = 1L << 30;
+
+    // Input fed to the Deflater at once from a mapping when progress is tracked
+    private static final int MAPPED_STEP = 8 * 1024 * 1024;
+
+    // Detaches a pooled buffer from a Deflater that would otherwise keep reading it
+    private static final ByteBuffer NO_INPUT = ByteBuffer.allocate(0);
+
+    private final int bufferSize;
+    private final long mmapThreshold;
+    private final BufferPool bufferPool = BufferPool.getInstance();
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public NioCodecEngine() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MMAP_THRESHOLD);
+    }
+
+    public NioCodecEngine(int bufferSize, long mmapThreshold) {
+        if (bufferSize < 4096) {
+            throw new IllegalArgumentException("Buffer size must be at least 4096: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getMmapThreshold() {
+        return mmapThreshold;
+    }
+
+    public void setProgress(ProgressTracker progress) {
+        if (progress == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = progress;
+    }
+
+    public ProgressTracker getProgress() {
+        return progress;
+    }
+
+    /**
+     * Picks a buffer size for a file: the configured size rounded up to a
+     * whole number of the file store's blocks.
+     */
+    public static int bufferSizeFor(Path path, int configured) {
+        try {
+            long blockSize = Files.getFileStore(path).getBlockSize();
+            if (blockSize > 0 && blockSize <= configured) {
+                return (int) ((configured + blockSize - 1) / blockSize * blockSize);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // fall back to the configured size
+        }
+        return configured;
+    }
+
+    /**
+     * Returns the channel behind a stream when there is one, so file streams
+     * can use FileChannel transfers and memory mapping. Other streams get an
+     * adapter that copies through a per-thread array; unlike
+     * Channels.newChannel it does not allocate a new array for every stream.
+     */
+    public static ReadableByteChannel channelOf(InputStream in) {
+        if (in instanceof FileInputStream fis) {
+            return fis.getChannel();
+        }
+        return new StreamChannel(in, null);
+    }
+
+    public static WritableByteChannel channelOf(OutputStream out) {
+        if (out instanceof FileOutputStream fos) {
+            return fos.getChannel();
+        }
+        return new StreamChannel(null, out);
+    }
+
+    /**
+     * Deflates everything from {@code source} into {@code sink}. The
+     * deflater is finished but not ended; its byte counters give the sizes.
+     *
+     * @return CRC32 of the uncompressed data
+     */
+    public long deflate(ReadableByteChannel source, Deflater deflater, WritableByteChannel sink)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer output = bufferPool.acquire(bufferSize);
+        try {
+            if (source instanceof FileChannel fc && fc.size() - fc.position() >= mmapThreshold) {
+                deflateMapped(fc, deflater, crc, output, sink);
+            } else {
+                deflateBuffered(source, deflater, crc, output, sink);
+            }
+            deflater.setInput(NO_INPUT);
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(deflater, output, sink);
+            }
+            return crc.getValue();
+        } finally {
+            bufferPool.release(output);
+        }
+    }
+
+    private void deflateBuffered(ReadableByteChannel source, Deflater deflater, CRC32 crc,
+            ByteBuffer output, WritableByteChannel sink) throws IOException {
+        ByteBuffer input = bufferPool.acquire(bufferSize);
+        try {
+            int n;
+            while ((n = source.read(input)) != -1) {
+                progress.read(n);
+                input.flip();
+                crc.update(input.duplicate());
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    drain(deflater, output, sink);
+                }
+                input.clear();
+            }
+        } finally {
+            bufferPool.release(input);
+        }
+    }
+
+    private void deflateMapped(FileChannel source, Deflater deflater, CRC32 crc,
+            ByteBuffer output, WritableByteChannel sink) throws IOException {
+        long position = source.position();
+        long end = source.size();
+        while (position < end) {
+            long length = Math.min(MAX_MAPPING, end - position);
+            MappedByteBuffer mapped = source.map(FileChannel.MapMode.READ_ONLY, position, length);
+            crc.update(mapped.duplicate());
+            // Fed in steps when tracked, so progress moves during a large mapping
+            int step = progress.isEnabled() ? MAPPED_STEP : (int) length;
+            for (int offset = 0; offset < length; offset += step) {
+                int n = (int) Math.min(step, length - offset);
+                deflater.setInput(mapped.slice(offset, n));
+                while (!deflater.needsInput()) {
+                    drain(deflater, output, sink);
+                }
+                progress.read(n);
+            }
+            position += length;
+        }
+        source.position(end);
+    }
+
+    private void drain(Deflater deflater, ByteBuffer output, WritableByteChannel sink) throws IOException {
+        output.clear();
+        deflater.deflate(output);
+        output.flip();
+        progress.written(output.remaining());
+        writeFully(sink, output);
+    }
+
+    /**
+     * Inflates one raw deflate stream. Compressed bytes are taken from
+     * {@code input} (which must be in read mode and may already hold data)
+     * and refilled from {@code source}; on return {@code input} is positioned
+     * right after the end of the deflate stream.
+     *
+     * @return CRC32 of the inflated data
+     */
+    public long inflate(ReadableByteChannel source, ByteBuffer input, Inflater inflater, WritableByteChannel sink)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer output = bufferPool.acquire(bufferSize);
+        try {
+            while (!inflater.finished()) {
+                if (!input.hasRemaining()) {
+                    input.clear();
+                    int read = source.read(input);
+                    if (read == -1) {
+                        throw new ZipException("Unexpected end of compressed data");
+                    }
+                    progress.read(read);
+                    input.flip();
+                }
+                inflater.setInput(input);
+                output.clear();
+                int n = inflater.inflate(output);
+                if (n == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("Entry requires a preset dictionary");
+                }
+                output.flip();
+                crc.update(output.duplicate());
+                if (sink != null) {
+                    progress.written(n);
+                    writeFully(sink, output);
+                }
+            }
+            return crc.getValue();
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data: " + e.getMessage());
+        } finally {
+            bufferPool.release(output);
+        }
+    }
+
+    /**
+     * Copies exactly {@code length} bytes, taking them from {@code input}
+     * first and then from {@code source}.
+     *
+     * @return CRC32 of the copied data
+     */
+    public long copy(ReadableByteChannel source, ByteBuffer input, long length, WritableByteChannel sink)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        long remaining = length;
+        while (remaining > 0) {
+            if (!input.hasRemaining()) {
+                input.clear();
+                int read = source.read(input);
+                if (read == -1) {
+                    throw new ZipException("Unexpected end of stored data");
+                }
+                progress.read(read);
+                input.flip();
+            }
+            ByteBuffer slice = input.duplicate();
+            int n = (int) Math.min(remaining, slice.remaining());
+            slice.limit(slice.position() + n);
+            crc.update(slice.duplicate());
+            if (sink != null) {
+                progress.written(n);
+                writeFully(sink, slice);
+            }
+            input.position(input.position() + n);
+            remaining -= n;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Copies exactly {@code length} bytes from {@code source} through a
+     * pooled buffer.
+     *
+     * @return CRC32 of the copied data
+     */
+    public long copy(ReadableByteChannel source, long length, WritableByteChannel sink) throws IOException {
+        ByteBuffer input = bufferPool.acquire(bufferSize);
+        try {
+            input.flip();
+            return copy(source, input, length, sink);
+        } finally {
+            bufferPool.release(input);
+        }
+    }
+
+    /**
+     * Copies {@code source} to its end into {@code sink}, feeding every byte
+     * to {@code crc}. A null sink only computes the checksum, as in the CRC
+     * pre-pass of STORED entries, whose local header needs the CRC up front;
+     * such a pass is not counted as progress, as the copy that follows
+     * reads the same bytes again.
+     *
+     * @return number of bytes copied
+     */
+    public long transfer(ReadableByteChannel source, CRC32 crc, WritableByteChannel sink) throws IOException {
+        ByteBuffer input = bufferPool.acquire(bufferSize);
+        try {
+            long total = 0;
+            int n;
+            while ((n = source.read(input)) != -1) {
+                input.flip();
+                crc.update(input.duplicate());
+                if (sink != null) {
+                    progress.read(n);
+                    progress.written(n);
+                    writeFully(sink, input);
+                }
+                input.clear();
+                total += n;
+            }
+            return total;
+        } finally {
+            bufferPool.release(input);
+        }
+    }
+
+    public ByteBuffer acquireBuffer() {
+        return bufferPool.acquire(bufferSize);
+    }
+
+    public void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    static void writeFully(WritableByteChannel sink, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            sink.write(data);
+        }
+    }
+
+    // Channel over a plain stream; direct buffers are copied through a reused per-thread array
+    private static final class StreamChannel implements ReadableByteChannel, WritableByteChannel {
+
+        private static final int TRANSFER_SIZE = 8192;
+        private static final ThreadLocal<byte[]> TRANSFER = ThreadLocal.withInitial(() -> new byte[TRANSFER_SIZE]);
+
+        private final InputStream in;
+        private final OutputStream out;
+        private boolean open = true;
+
+        StreamChannel(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (dst.hasArray()) {
+                int n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+                return n;
+            }
+            byte[] transfer = TRANSFER.get();
+            int n = in.read(transfer, 0, Math.min(transfer.length, dst.remaining()));
+            if (n > 0) {
+                dst.put(transfer, 0, n);
+            }
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = src.remaining();
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), n);
+                src.position(src.limit());
+                return n;
+            }
+            byte[] transfer = TRANSFER.get();
+            while (src.hasRemaining()) {
+                int chunk = Math.min(transfer.length, src.remaining());
+                src.get(transfer, 0, chunk);
+                out.write(transfer, 0, chunk);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            if (in != null) {
+                in.close();
+            } else {
+                out.close();
+            }
+        }
+    }
+}
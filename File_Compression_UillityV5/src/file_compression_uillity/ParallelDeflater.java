@@ -0,0 +1,352 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Parallel (pigz-style) deflate of a single stream.
+ *
+ * The input is split into fixed-size blocks which are deflated on a worker
+ * pool. Each block is primed with the last 32 KB of the previous block as a
+ * preset dictionary, so matches can still reach back across block borders,
+ * and every block but the last ends with a sync flush so the compressed
+ * pieces line up on byte boundaries. Concatenated in order they form one
+ * ordinary raw deflate stream that any inflater can read.
+ *
+ * The CRC32 of every block is computed by its worker and the per-block values
+ * are combined with {@link #combineCrc32} while writing.
+ */
+public class ParallelDeflater {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    public static final int MIN_BLOCK_SIZE = 32 * 1024;
+
+    // Deflate can reference at most 32 KB back
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final int workerCount;
+    private final int blockSize;
+    private final int level;
+    private final int strategy;
+
+    public ParallelDeflater() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelDeflater(int workerCount, int blockSize, int level) {
+        this(workerCount, blockSize, level, Deflater.DEFAULT_STRATEGY);
+    }
+
+    public ParallelDeflater(int workerCount, int blockSize, int level, int strategy) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        if (blockSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + MIN_BLOCK_SIZE + ": " + blockSize);
+        }
+        this.workerCount = workerCount;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.strategy = strategy;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Deflates everything from {@code in} and writes the raw deflate stream
+     * (no zlib/gzip wrapper) to {@code out}.
+     *
+     * @return CRC32 and byte counts of the deflated data
+     */
+    public Result deflate(InputStream in, OutputStream out) throws IOException {
+        try (Output deflating = open(out)) {
+            byte[] buffer = new byte[blockSize];
+            int n;
+            while ((n = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                deflating.write(buffer, 0, n);
+            }
+            return deflating.finish();
+        }
+    }
+
+    /**
+     * Push-style variant of {@link #deflate}: bytes written to the returned
+     * stream are cut into blocks and deflated on the worker pool, and
+     * {@link Output#finish} completes the raw deflate stream. {@code out} is
+     * not closed, so a container format can write its trailer afterwards.
+     */
+    public Output open(OutputStream out) {
+        return new Output(out);
+    }
+
+    /**
+     * Stream returned by {@link #open}. Not thread-safe.
+     */
+    public final class Output extends OutputStream {
+
+        private final OutputStream out;
+        private final ExecutorService pool;
+        // Bound the number of blocks held in memory at once
+        private final int maxInFlight = workerCount * 2;
+        private final ArrayDeque<Future<Block>> inFlight = new ArrayDeque<>();
+        private final Result result = new Result();
+        private byte[] previous;
+        private byte[] current = new byte[blockSize];
+        private int filled;
+        private boolean finished;
+
+        private Output(OutputStream out) {
+            this.out = out;
+            this.pool = Executors.newFixedThreadPool(workerCount, r -> {
+                Thread t = new Thread(r, "parallel-deflate");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Deflate stream already finished");
+            }
+            while (len > 0) {
+                if (filled == current.length) {
+                    // More data follows, so the full block is not the last one
+                    submit(false);
+                }
+                int n = Math.min(len, current.length - filled);
+                System.arraycopy(b, off, current, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Deflates the final block and writes everything still pending.
+         *
+         * @return CRC32 and byte counts of the deflated data
+         */
+        public Result finish() throws IOException {
+            if (!finished) {
+                finished = true;
+                submit(true);
+                while (!inFlight.isEmpty()) {
+                    writeBlock(inFlight.poll(), out, result);
+                }
+            }
+            return result;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        /**
+         * Releases the worker pool. Pending blocks are discarded unless
+         * {@link #finish} was called first; {@code out} stays open.
+         */
+        @Override
+        public void close() {
+            for (Future<Block> pending : inFlight) {
+                pending.cancel(true);
+            }
+            inFlight.clear();
+            pool.shutdownNow();
+        }
+
+        private void submit(boolean last) throws IOException {
+            byte[] input = filled == current.length ? current : Arrays.copyOf(current, filled);
+            byte[] dictionary = previous == null ? null : tail(previous);
+            Block block = new Block(input, dictionary, last);
+            inFlight.add(pool.submit(() -> block.compress(level, strategy)));
+            while (inFlight.size() >= maxInFlight) {
+                writeBlock(inFlight.poll(), out, result);
+            }
+            previous = input;
+            current = new byte[blockSize];
+            filled = 0;
+        }
+    }
+
+    private static void writeBlock(Future<Block> future, OutputStream out, Result result) throws IOException {
+        Block block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel deflate interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Parallel deflate failed", e.getCause());
+        }
+        out.write(block.compressed, 0, block.compressedLength);
+        result.crc = result.bytesIn == 0 ? block.crc : combineCrc32(result.crc, block.crc, block.input.length);
+        result.bytesIn += block.input.length;
+        result.bytesOut += block.compressedLength;
+    }
+
+    private static byte[] tail(byte[] block) {
+        int start = Math.max(0, block.length - DICTIONARY_SIZE);
+        byte[] dictionary = new byte[block.length - start];
+        System.arraycopy(block, start, dictionary, 0, dictionary.length);
+        return dictionary;
+    }
+
+    // One unit of work: a block of input plus the dictionary it is primed with
+    private static final class Block {
+        final byte[] input;
+        final byte[] dictionary;
+        final boolean last;
+        byte[] compressed;
+        int compressedLength;
+        long crc;
+
+        Block(byte[] input, byte[] dictionary, boolean last) {
+            this.input = input;
+            this.dictionary = dictionary;
+            this.last = last;
+        }
+
+        Block compress(int level, int strategy) {
+            CRC32 checksum = new CRC32();
+            checksum.update(input, 0, input.length);
+            crc = checksum.getValue();
+
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(level, strategy);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(input);
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length / 2 + 64);
+                byte[] buf = new byte[Math.max(input.length / 4, 8192)];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(buf);
+                        bos.write(buf, 0, n);
+                    }
+                } else {
+                    int n;
+                    do {
+                        n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                        bos.write(buf, 0, n);
+                    } while (n == buf.length);
+                }
+                compressed = bos.toByteArray();
+                compressedLength = compressed.length;
+                return this;
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+        }
+    }
+
+    /**
+     * Outcome of a deflate run: CRC32 of the uncompressed data and the
+     * uncompressed / compressed byte counts.
+     */
+    public static final class Result {
+        private long crc;
+        private long bytesIn;
+        private long bytesOut;
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+    }
+
+    /**
+     * Combines CRC32 values of two consecutive pieces of data into the CRC32
+     * of their concatenation (the crc32_combine algorithm from zlib).
+     *
+     * @param crc1 CRC32 of the first piece
+     * @param crc2 CRC32 of the second piece
+     * @param len2 length of the second piece in bytes
+     */
+    public static long combineCrc32(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // Operator for one zero bit
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // two zero bits
+        gf2MatrixSquare(odd, even); // four zero bits
+
+        // Apply len2 zero bytes to crc1
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len2 >>= 1;
+            if (len2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len2 >>= 1;
+        } while (len2 != 0);
+
+        return (crc1 ^ crc2) & 0xFFFFFFFFL;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        int i = 0;
+        while (vec != 0) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+            vec >>>= 1;
+            i++;
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts a ZIP archive on a worker pool.
+ *
+ * Work is planned from the central directory of a ZipArchiveReader:
+ * - every directory is created once in a pre-pass, instead of calling
+ *   mkdirs for each entry;
+ * - large entries become tasks of their own, and their output file is
+ *   preallocated to the final size;
+ * - small entries are batched so per-task overhead does not dominate
+ *   archives of many tiny files.
+ * Workers use positional reads on the shared reader, so they never contend
+ * for a file position. Output is byte-identical to sequential extraction.
+ */
+public class ParallelExtractor {
+
+    public static final long DEFAULT_LARGE_ENTRY_SIZE = 4L * 1024 * 1024;
+    public static final long DEFAULT_BATCH_BYTES = 4L * 1024 * 1024;
+    public static final int DEFAULT_BATCH_ENTRIES = 256;
+
+    private final int workers;
+    private final long largeEntrySize;
+    private final long batchBytes;
+    private final int batchEntries;
+
+    public ParallelExtractor(int workers) {
+        this(workers, DEFAULT_LARGE_ENTRY_SIZE, DEFAULT_BATCH_BYTES, DEFAULT_BATCH_ENTRIES);
+    }
+
+    public ParallelExtractor(int workers, long largeEntrySize, long batchBytes, int batchEntries) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.workers = workers;
+        this.largeEntrySize = largeEntrySize;
+        this.batchBytes = batchBytes;
+        this.batchEntries = batchEntries;
+    }
+
+    /**
+     * Extracts the given entries of {@code reader} below {@code outputDir}.
+     */
+    public void extract(ZipArchiveReader reader, List<? extends ZipArchiveReader.Entry> entries, Path outputDir)
+            throws IOException {
+        // Resolve every target first so a bad name fails before anything is written
+        List<Path> targets = new ArrayList<>(entries.size());
+        Set<Path> directories = new LinkedHashSet<>();
+        for (ZipArchiveReader.Entry entry : entries) {
+            Path target = EntryPaths.resolve(outputDir, entry.getName());
+            targets.add(target);
+            directories.add(entry.isDirectory() ? target : target.getParent());
+        }
+        for (Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+
+        // Duplicate names must be written in archive order, so such archives run as one task
+        List<List<Integer>> tasks = new HashSet<>(targets).size() == targets.size()
+                ? plan(entries) : List.of(fileIndexes(entries));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, tasks.size())), r -> {
+            Thread t = new Thread(r, "zip-extract");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (List<Integer> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    for (int index : task) {
+                        extractEntry(reader, entries.get(index), targets.get(index));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the given entries of {@code reader} (see
+     * ZipArchiveReader.verify) without writing anything. A damaged entry is
+     * reported and checking goes on with the others.
+     */
+    public VerificationReport verify(ZipArchiveReader reader, List<? extends ZipArchiveReader.Entry> entries)
+            throws IOException {
+        VerificationReport report = new VerificationReport();
+        List<List<Integer>> tasks = plan(entries);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, tasks.size())), r -> {
+            Thread t = new Thread(r, "zip-verify");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (List<Integer> task : tasks) {
+                futures.add(pool.submit(() -> {
+                    for (int index : task) {
+                        verifyEntry(reader, entries.get(index), report);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    // Groups entry indexes into tasks: one per large entry, batches of small ones
+    private List<List<Integer>> plan(List<? extends ZipArchiveReader.Entry> entries) {
+        List<List<Integer>> tasks = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        long bytes = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            ZipArchiveReader.Entry entry = entries.get(i);
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (entry.getSize() >= largeEntrySize) {
+                tasks.add(List.of(i));
+                continue;
+            }
+            batch.add(i);
+            bytes += entry.getSize();
+            if (batch.size() >= batchEntries || bytes >= batchBytes) {
+                tasks.add(batch);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(batch);
+        }
+        return tasks;
+    }
+
+    private static List<Integer> fileIndexes(List<? extends ZipArchiveReader.Entry> entries) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (!entries.get(i).isDirectory()) {
+                indexes.add(i);
+            }
+        }
+        return indexes;
+    }
+
+    private void extractEntry(ZipArchiveReader reader, ZipArchiveReader.Entry entry, Path target)
+            throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (entry.getSize() >= largeEntrySize) {
+                preallocate(out, entry.getSize());
+            }
+            reader.extract(entry, out);
+        }
+    }
+
+    private static void verifyEntry(ZipArchiveReader reader, ZipArchiveReader.Entry entry,
+            VerificationReport report) {
+        try {
+            reader.verify(entry);
+            report.addEntry(entry.getSize());
+        } catch (IOException | RuntimeException e) {
+            // Damaged headers can also surface as out-of-range sizes or offsets
+            report.addFailure(entry.getName(), entry.getLocalHeaderOffset(), String.valueOf(e.getMessage()));
+        }
+    }
+
+    // Sets the final length up front so the file is not grown on every write
+    private static void preallocate(FileChannel out, long size) throws IOException {
+        out.write(ByteBuffer.allocate(1), size - 1);
+        out.position(0);
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel extraction interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Parallel extraction failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a single gzip member whose deflate stream is produced by a
+ * ParallelDeflater, so compressing large .gz output scales across cores.
+ *
+ * The result is an ordinary gzip file (RFC 1952) that gzip, GZIPInputStream
+ * and any other reader can decompress; the CRC32 in the trailer is combined
+ * from the per-block CRCs.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    // Header: magic, CM=deflate, no flags, no mtime, XFL=0, OS=unknown
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 255 };
+
+    private final OutputStream out;
+    private final ParallelDeflater.Output deflating;
+    private boolean closed;
+
+    public ParallelGzipOutputStream(OutputStream out, int workers, int level) throws IOException {
+        this(out, new ParallelDeflater(workers, ParallelDeflater.DEFAULT_BLOCK_SIZE, level));
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, ParallelDeflater deflater) throws IOException {
+        this.out = out;
+        out.write(HEADER);
+        this.deflating = deflater.open(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        deflating.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        deflating.write(b, off, len);
+    }
+
+    /**
+     * Completes the member (deflate stream and trailer) without closing the
+     * underlying stream.
+     */
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            ParallelDeflater.Result result = deflating.finish();
+            byte[] trailer = new byte[8];
+            writeIntLE(trailer, 0, result.getCrc());
+            // ISIZE is the input size modulo 2^32
+            writeIntLE(trailer, 4, result.getBytesIn());
+            out.write(trailer);
+            out.flush();
+        } finally {
+            closed = true;
+            deflating.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int off, long value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >> 24);
+    }
+}
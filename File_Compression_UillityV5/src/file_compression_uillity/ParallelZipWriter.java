@@ -0,0 +1,220 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Compresses many archive entries at the same time (scatter/gather).
+ *
+ * Each added entry is deflated on a bounded worker pool, with the level and
+ * strategy the compression profile picks for its file type, into its own
+ * ScatterBuffer (memory first, temp file above a threshold). The buffers are
+ * then gathered into the archive strictly in the order the entries were
+ * added, so the resulting layout is deterministic and matches what a single
+ * ZipOutputStream would have written for the same entries.
+ *
+ * At most {@code workers * 2} entries are in flight at once, which keeps
+ * memory bounded no matter how many entries are added.
+ *
+ * With an EntryMethodSelector, incompressible entries are copied into their
+ * buffer as STORED instead; the copy yields the CRC, so no extra pass is needed.
+ * With a ZipDictionary, text entries are deflated against it.
+ */
+public class ParallelZipWriter implements AutoCloseable {
+
+    public static final long DEFAULT_SCATTER_THRESHOLD = 1024 * 1024;
+
+    private final ZipArchiveWriter writer;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final long scatterThreshold;
+    private final CompressionProfile profile;
+    private final NioCodecEngine engine;
+    private final EntryMethodSelector selector;
+    private ZipDictionary dictionary;
+    private final ArrayDeque<Future<ScatteredEntry>> inFlight = new ArrayDeque<>();
+
+    public ParallelZipWriter(ZipArchiveWriter writer, int workers, long scatterThreshold,
+            CompressionProfile profile, NioCodecEngine engine) {
+        this(writer, workers, scatterThreshold, profile, engine, null);
+    }
+
+    // A null selector deflates every entry
+    public ParallelZipWriter(ZipArchiveWriter writer, int workers, long scatterThreshold,
+            CompressionProfile profile, NioCodecEngine engine, EntryMethodSelector selector) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.writer = writer;
+        this.scatterThreshold = scatterThreshold;
+        this.profile = profile;
+        this.engine = engine;
+        this.selector = selector;
+        this.maxInFlight = workers * 2;
+        this.pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "scatter-zip");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Shared dictionary for the text entries added from now on; it must
+     * already be written to the archive.
+     */
+    public void setDictionary(ZipDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Queues an entry for compression. Blocks while the in-flight window is
+     * full, writing finished entries out in order.
+     */
+    public void add(String entryName, EntrySource source) throws IOException {
+        while (inFlight.size() >= maxInFlight) {
+            gather(inFlight.poll());
+        }
+        ZipDictionary entryDictionary = dictionary != null && ZipDictionary.appliesTo(entryName) ? dictionary : null;
+        inFlight.add(pool.submit(() -> scatter(entryName, source, entryDictionary)));
+    }
+
+    /**
+     * Queues an empty STORED entry for a directory (name ending with '/'),
+     * written in order with the other entries.
+     */
+    public void addDirectory(String entryName, long time) throws IOException {
+        while (inFlight.size() >= maxInFlight) {
+            gather(inFlight.poll());
+        }
+        inFlight.add(CompletableFuture.completedFuture(
+                new ScatteredEntry(entryName, ZipEntry.STORED, new ScatterBuffer(0), 0, 0, null, time)));
+    }
+
+    /**
+     * Writes all remaining entries and the central directory.
+     */
+    public void finish() throws IOException {
+        while (!inFlight.isEmpty()) {
+            gather(inFlight.poll());
+        }
+        writer.finish();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Future<ScatteredEntry> pending : inFlight) {
+                // Entries already being compressed are allowed to finish so
+                // their temp files can be released
+                pending.cancel(false);
+                discard(pending);
+            }
+            inFlight.clear();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ScatteredEntry scatter(String entryName, EntrySource source, ZipDictionary dictionary)
+            throws IOException {
+        int method = selector == null ? ZipEntry.DEFLATED : selector.chooseMethod(entryName, source);
+        ScatterBuffer buffer = new ScatterBuffer(scatterThreshold);
+        try (InputStream in = source.open()) {
+            if (method == ZipEntry.STORED) {
+                CRC32 crc = new CRC32();
+                long size = engine.transfer(NioCodecEngine.channelOf(in), crc, NioCodecEngine.channelOf(buffer));
+                return new ScatteredEntry(entryName, method, buffer, crc.getValue(), size, null,
+                        source.lastModified());
+            }
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                profile.configure(deflater, entryName);
+                if (dictionary != null) {
+                    dictionary.apply(deflater);
+                }
+                long crc = engine.deflate(NioCodecEngine.channelOf(in), deflater, NioCodecEngine.channelOf(buffer));
+                return new ScatteredEntry(entryName, method, buffer, crc, deflater.getBytesRead(),
+                        dictionary == null ? null : dictionary.extraField(), source.lastModified());
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    private void gather(Future<ScatteredEntry> future) throws IOException {
+        ScatteredEntry entry = await(future);
+        try {
+            if (entry.method == ZipEntry.STORED) {
+                writer.putNextEntry(entry.name, ZipEntry.STORED, entry.time, entry.crc, entry.size, entry.size);
+            } else {
+                writer.putNextEntry(entry.name, entry.time, entry.extra);
+            }
+            entry.buffer.writeTo(writer.entryStream());
+            writer.closeEntry(entry.crc, entry.size);
+            if (!entry.name.endsWith("/")) {
+                engine.getProgress().entryDone();
+            }
+        } finally {
+            entry.buffer.close();
+        }
+    }
+
+    private static ScatteredEntry await(Future<ScatteredEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel compression interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Parallel compression failed", e.getCause());
+        }
+    }
+
+    // Releases the temp file of an entry that will never be written
+    private static void discard(Future<ScatteredEntry> future) {
+        try {
+            if (!future.isCancelled()) {
+                future.get().buffer.close();
+            }
+        } catch (Exception ignored) {
+            // the entry failed or was cancelled; nothing to release
+        }
+    }
+
+    private static final class ScatteredEntry {
+        final String name;
+        final int method;
+        final ScatterBuffer buffer;
+        final long crc;
+        final long size;
+        final byte[] extra;
+        final long time;
+
+        ScatteredEntry(String name, int method, ScatterBuffer buffer, long crc, long size, byte[] extra,
+                long time) {
+            this.name = name;
+            this.method = method;
+            this.buffer = buffer;
+            this.crc = crc;
+            this.size = size;
+            this.extra = extra;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package file_compression_uillity;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+/**
+ * Shows the progress of a job on a JProgressBar.
+ *
+ * Events arrive on the worker threads; the bar is only touched on the event
+ * dispatch thread, and only when the percentage changes, so even a long job
+ * posts at most about a hundred updates. The bar's text, when painted,
+ * shows the throughput and time left.
+ */
+public class ProgressBarListener implements ProgressListener {
+
+    private final JProgressBar progressBar;
+    private final AtomicInteger shown = new AtomicInteger(-1);
+
+    public ProgressBarListener(JProgressBar progressBar) {
+        this.progressBar = progressBar;
+    }
+
+    @Override
+    public void started(ProgressEvent event) {
+        shown.set(0);
+        SwingUtilities.invokeLater(() -> {
+            progressBar.setValue(0);
+            progressBar.setIndeterminate(event.getPercent() < 0);
+        });
+    }
+
+    @Override
+    public void progress(ProgressEvent event) {
+        int percent = event.getPercent();
+        if (percent >= 0 && shown.getAndSet(percent) != percent) {
+            SwingUtilities.invokeLater(() -> {
+                progressBar.setValue(percent);
+                if (progressBar.isStringPainted()) {
+                    progressBar.setString(event.toString());
+                }
+            });
+        }
+    }
+
+    @Override
+    public void finished(ProgressEvent event, boolean success) {
+        SwingUtilities.invokeLater(() -> {
+            progressBar.setIndeterminate(false);
+            if (success) {
+                progressBar.setValue(100);
+            }
+            if (progressBar.isStringPainted()) {
+                progressBar.setString(null);
+            }
+        });
+    }
+}
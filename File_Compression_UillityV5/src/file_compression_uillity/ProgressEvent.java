@@ -0,0 +1,110 @@
+package file_compression_uillity;
+
+/**
+ * Snapshot of a job's progress (see ProgressTracker).
+ *
+ * Bytes read are the job's input: the files being compressed, or the
+ * archive being extracted. Progress is measured against their total, and
+ * falls back to entries when the byte total is unknown. Bytes written are
+ * the output produced so far.
+ */
+public class ProgressEvent {
+
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long totalBytes;
+    private final long entriesDone;
+    private final long totalEntries;
+    private final long elapsedMillis;
+    private final double throughput;
+
+    public ProgressEvent(long bytesRead, long bytesWritten, long totalBytes, long entriesDone, long totalEntries,
+            long elapsedMillis, double throughput) {
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.totalBytes = totalBytes;
+        this.entriesDone = entriesDone;
+        this.totalEntries = totalEntries;
+        this.elapsedMillis = elapsedMillis;
+        this.throughput = throughput;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // -1 if unknown
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getEntriesDone() {
+        return entriesDone;
+    }
+
+    // -1 if unknown
+    public long getTotalEntries() {
+        return totalEntries;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // Bytes read per second over the last few reporting intervals
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Fraction of the job done, from 0 to 1, or -1 if neither total is known.
+     */
+    public double getFraction() {
+        if (totalBytes > 0) {
+            return Math.min(1.0, (double) bytesRead / totalBytes);
+        }
+        if (totalEntries > 0) {
+            return Math.min(1.0, (double) entriesDone / totalEntries);
+        }
+        return -1;
+    }
+
+    // Whole percent done, or -1 if unknown
+    public int getPercent() {
+        double fraction = getFraction();
+        return fraction < 0 ? -1 : (int) (fraction * 100);
+    }
+
+    /**
+     * Estimated time left at the current throughput, or -1 if it cannot be
+     * estimated yet.
+     */
+    public long getEtaMillis() {
+        if (totalBytes < 0 || throughput <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, totalBytes - bytesRead) * 1000 / throughput);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        int percent = getPercent();
+        if (percent >= 0) {
+            text.append(percent).append("%, ");
+        }
+        text.append(bytesRead).append(totalBytes >= 0 ? "/" + totalBytes : "").append(" bytes read, ");
+        text.append(bytesWritten).append(" written, ");
+        text.append(entriesDone).append(totalEntries >= 0 ? "/" + totalEntries : "").append(" entries, ");
+        text.append(String.format("%.1f MB/s", throughput / (1024 * 1024)));
+        long eta = getEtaMillis();
+        if (eta >= 0) {
+            text.append(", ETA ").append((eta + 999) / 1000).append(" s");
+        }
+        return text.toString();
+    }
+}
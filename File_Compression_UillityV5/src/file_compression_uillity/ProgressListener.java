@@ -0,0 +1,30 @@
+package file_compression_uillity;
+
+/**
+ * Receives the progress of a compression job from a ProgressTracker.
+ *
+ * progress() is called on whichever thread is doing the work, at most once
+ * per reporting interval; it should return quickly and leave anything slow
+ * (such as repainting) to another thread, as ProgressBarListener does.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called once when the job starts, with the totals it is measured against.
+     */
+    default void started(ProgressEvent event) {
+    }
+
+    /**
+     * Called while the job runs, at most once per reporting interval.
+     */
+    void progress(ProgressEvent event);
+
+    /**
+     * Called once when the job ends, whether it succeeded or not.
+     */
+    default void finished(ProgressEvent event, boolean success) {
+        progress(event);
+    }
+}
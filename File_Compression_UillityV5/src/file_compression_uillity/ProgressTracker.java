@@ -0,0 +1,350 @@
+package file_compression_uillity;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work of one job and reports it to a ProgressListener.
+ *
+ * Compressors call read(), written() and entryDone() from their I/O loops,
+ * once per buffer, on any number of threads. A call adds to a LongAdder and
+ * compares the clock with the next reporting time; only once the interval
+ * (100 ms by default) has passed does one calling thread build a
+ * ProgressEvent for the listener. The loops thus pay a few nanoseconds per
+ * buffer, and a job shorter than the interval reports nothing until it
+ * finishes.
+ *
+ * The counting wrappers (input, output, entryOutput, reading, writing)
+ * cover loops that run through plain streams and channels. NONE counts
+ * nothing and its wrappers return what they are given, so untracked jobs
+ * run unchanged.
+ *
+ * A tracker also carries the job's cancellation and failure. Once cancel()
+ * is called, the next count throws CancellationException, so a job stops
+ * within one buffer wherever it is; fail() records the error a compressor
+ * caught before returning false.
+ */
+public class ProgressTracker {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    // Tracker of jobs nobody listens to
+    public static final ProgressTracker NONE = new ProgressTracker();
+
+    // Weight of the latest interval in the smoothed throughput
+    private static final double SMOOTHING = 0.3;
+
+    private final ProgressListener listener;
+    private final long intervalNanos;
+    private final boolean enabled;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder entriesDone = new LongAdder();
+    private volatile long totalBytes = -1;
+    private volatile long totalEntries = -1;
+    private volatile long startNanos = System.nanoTime();
+    private final AtomicLong nextEvent = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile Throwable failure;
+
+    // Throughput state, updated under the lock of snapshot()
+    private long lastNanos;
+    private long lastRead;
+    private double throughput;
+
+    public ProgressTracker(ProgressListener listener) {
+        this(listener, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public ProgressTracker(ProgressListener listener, long intervalMillis) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1 ms: " + intervalMillis);
+        }
+        this.listener = listener;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.enabled = true;
+    }
+
+    private ProgressTracker() {
+        this.listener = null;
+        this.intervalNanos = Long.MAX_VALUE;
+        this.enabled = false;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the totals progress is measured against; -1 leaves one unknown.
+     */
+    public void setTotals(long totalBytes, long totalEntries) {
+        this.totalBytes = totalBytes;
+        this.totalEntries = totalEntries;
+    }
+
+    /**
+     * Adds a file a walk has just found to the totals, for compressors that
+     * measure their input as they go (see Compressor.measuresTrees). The
+     * totals then grow until the walk ends. Called from one thread.
+     */
+    public void discovered(long bytes) {
+        if (enabled) {
+            totalBytes += bytes;
+            totalEntries++;
+        }
+    }
+
+    // For compressors that learn the entry count only once they read the archive
+    public void setTotalEntries(long totalEntries) {
+        this.totalEntries = totalEntries;
+    }
+
+    public long getTotalEntries() {
+        return totalEntries;
+    }
+
+    /**
+     * Starts the clock and tells the listener.
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        synchronized (this) {
+            lastNanos = startNanos;
+        }
+        nextEvent.set(startNanos + intervalNanos);
+        listener.started(snapshot());
+    }
+
+    public void read(long bytes) {
+        if (enabled) {
+            bytesRead.add(bytes);
+            maybeReport();
+        }
+    }
+
+    public void written(long bytes) {
+        if (enabled) {
+            bytesWritten.add(bytes);
+            maybeReport();
+        }
+    }
+
+    public void entryDone() {
+        if (enabled) {
+            entriesDone.increment();
+            maybeReport();
+        }
+    }
+
+    /**
+     * Makes the next count throw CancellationException.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Records the error that ended the job; the first one is kept. Returns
+     * false for NONE, which has nobody to hand the error to, so the caller
+     * still logs it itself.
+     */
+    public boolean fail(Throwable error) {
+        if (!enabled) {
+            return false;
+        }
+        if (failure == null) {
+            failure = error;
+        }
+        return true;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Sends the final event.
+     */
+    public void finish(boolean success) {
+        if (enabled) {
+            listener.finished(snapshot(), success);
+        }
+    }
+
+    // Reports if the interval has passed and no other thread got there first
+    private void maybeReport() {
+        if (cancelled) {
+            throw new CancellationException("Job cancelled");
+        }
+        long now = System.nanoTime();
+        long next = nextEvent.get();
+        if (now - next >= 0 && nextEvent.compareAndSet(next, now + intervalNanos)) {
+            listener.progress(snapshot());
+        }
+    }
+
+    public synchronized ProgressEvent snapshot() {
+        long now = System.nanoTime();
+        long read = bytesRead.sum();
+        if (now > lastNanos) {
+            double current = (read - lastRead) * 1e9 / (now - lastNanos);
+            throughput = lastRead == 0 && throughput == 0 ? current
+                    : SMOOTHING * current + (1 - SMOOTHING) * throughput;
+            lastNanos = now;
+            lastRead = read;
+        }
+        return new ProgressEvent(read, bytesWritten.sum(), totalBytes, entriesDone.sum(), totalEntries,
+                (now - startNanos) / 1_000_000, throughput);
+    }
+
+    // Counting wrappers; NONE returns the argument itself
+
+    public InputStream input(InputStream in) {
+        return enabled ? new CountingInputStream(in) : in;
+    }
+
+    public OutputStream output(OutputStream out) {
+        return enabled ? new CountingOutputStream(out, false) : out;
+    }
+
+    // Output of one extracted entry: also counts the entry as done when closed
+    public OutputStream entryOutput(OutputStream out) {
+        return enabled ? new CountingOutputStream(out, true) : out;
+    }
+
+    public ReadableByteChannel reading(ReadableByteChannel channel) {
+        return enabled ? new CountingChannel(channel, null) : channel;
+    }
+
+    public WritableByteChannel writing(WritableByteChannel channel) {
+        return enabled ? new CountingChannel(null, channel) : channel;
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                ProgressTracker.this.read(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                ProgressTracker.this.read(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            if (skipped > 0) {
+                ProgressTracker.this.read(skipped);
+            }
+            return skipped;
+        }
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        private final boolean entry;
+        private boolean closed;
+
+        CountingOutputStream(OutputStream out, boolean entry) {
+            super(out);
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (entry && !closed) {
+                closed = true;
+                entryDone();
+            }
+        }
+    }
+
+    private final class CountingChannel implements ReadableByteChannel, WritableByteChannel {
+
+        private final ReadableByteChannel source;
+        private final WritableByteChannel sink;
+
+        CountingChannel(ReadableByteChannel source, WritableByteChannel sink) {
+            this.source = source;
+            this.sink = sink;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = source.read(dst);
+            if (n > 0) {
+                ProgressTracker.this.read(n);
+            }
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = sink.write(src);
+            written(n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source != null ? source.isOpen() : sink.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (source != null) {
+                source.close();
+            } else {
+                sink.close();
+            }
+        }
+    }
+}
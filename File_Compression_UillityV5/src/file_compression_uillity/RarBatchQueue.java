@@ -0,0 +1,238 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+//Singleton Pattern
+/**
+ * Coalesces single-file "add to archive" requests into batched rar runs.
+ *
+ * Starting rar costs far more than adding one small file, so requests for
+ * the same archive (and the same rar executable and method) that arrive
+ * within a short linger window, or while an earlier batch for that archive
+ * is still running, are collected and passed to a single
+ * "rar a ... archive @listfile" invocation. Batches for one archive run one
+ * after another, since rar must not update an archive from two processes;
+ * batches for different archives run in parallel, up to the runner's
+ * process cap.
+ */
+public class RarBatchQueue {
+
+    // How long a new batch waits for more requests before it starts
+    public static final long DEFAULT_LINGER_MILLIS = 20;
+
+    private static RarBatchQueue instance;
+
+    private final RarProcessRunner runner;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Batch still accepting requests, per key
+    private final Map<String, Batch> pending = new HashMap<>();
+    // Last batch started per key; the next one starts after it completes
+    private final Map<String, CompletableFuture<Void>> running = new HashMap<>();
+
+    public RarBatchQueue(RarProcessRunner runner, long lingerMillis) {
+        this.runner = runner;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rar-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized RarBatchQueue getInstance() {
+        if (instance == null) {
+            instance = new RarBatchQueue(RarProcessRunner.getInstance(), DEFAULT_LINGER_MILLIS);
+        }
+        return instance;
+    }
+
+    /**
+     * Handle of one queued file.
+     */
+    public class Request {
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final String filePath;
+        private final long timeoutMillis;
+        private Batch batch;
+
+        Request(String filePath, long timeoutMillis) {
+            this.filePath = filePath;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * Waits until the batch holding this file has finished.
+         *
+         * @throws IOException if rar failed, timed out, or the request was cancelled
+         */
+        public void await() throws IOException {
+            try {
+                done.get();
+            } catch (CancellationException e) {
+                throw new IOException("Request was cancelled: " + filePath, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + filePath);
+            }
+        }
+
+        /**
+         * Removes the file from its batch if the batch has not started yet.
+         * Once rar is running the file is shared with other requests, so it
+         * can no longer be withdrawn.
+         *
+         * @return true if the request was withdrawn
+         */
+        public boolean cancel() {
+            synchronized (RarBatchQueue.this) {
+                if (batch.started || !batch.requests.remove(this)) {
+                    return false;
+                }
+            }
+            return done.cancel(false);
+        }
+
+        public boolean isDone() {
+            return done.isDone();
+        }
+    }
+
+    // Requests that will be added by one rar invocation
+    private static final class Batch {
+        final String key;
+        final List<String> command;
+        final List<Request> requests = new ArrayList<>();
+        boolean started;
+
+        Batch(String key, List<String> command) {
+            this.key = key;
+            this.command = command;
+        }
+    }
+
+    /**
+     * Queues {@code filePath} to be added to {@code archivePath}.
+     *
+     * @param commandPrefix the rar command up to the archive name,
+     *                      e.g. [rar, a, -ep, -m3]
+     * @param timeoutMillis time the rar run may take; a batch gets the
+     *                      largest timeout of its requests
+     */
+    public synchronized Request add(List<String> commandPrefix, String archivePath, String filePath,
+            long timeoutMillis) {
+        String key = String.join("\u0000", commandPrefix) + "\u0000" + archivePath;
+        Batch batch = pending.get(key);
+        if (batch == null) {
+            List<String> command = new ArrayList<>(commandPrefix);
+            command.add(archivePath);
+            batch = new Batch(key, command);
+            pending.put(key, batch);
+            Batch scheduled = batch;
+            scheduler.schedule(() -> schedule(scheduled), lingerMillis, TimeUnit.MILLISECONDS);
+        }
+        Request request = new Request(filePath, timeoutMillis);
+        request.batch = batch;
+        batch.requests.add(request);
+        return request;
+    }
+
+    // Linger is over: start the batch once the previous one for its archive is done
+    private synchronized void schedule(Batch batch) {
+        CompletableFuture<Void> previous = running.getOrDefault(batch.key, CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> next = previous.handleAsync((result, failure) -> {
+            start(batch);
+            return null;
+        }, scheduler).thenCompose(ignored -> batch.requests.isEmpty()
+                ? CompletableFuture.<Void>completedFuture(null)
+                : CompletableFuture.allOf(batch.requests.stream()
+                        .map(r -> r.done.handle((result, failure) -> null))
+                        .toArray(CompletableFuture[]::new)));
+        running.put(batch.key, next);
+        next.whenComplete((result, failure) -> {
+            synchronized (RarBatchQueue.this) {
+                running.remove(batch.key, next);
+            }
+        });
+    }
+
+    private void start(Batch batch) {
+        List<Request> requests;
+        long timeoutMillis = 0;
+        synchronized (this) {
+            // From here on new requests for this archive open a new batch
+            batch.started = true;
+            pending.remove(batch.key, batch);
+            requests = List.copyOf(batch.requests);
+            for (Request request : requests) {
+                timeoutMillis = Math.max(timeoutMillis, request.timeoutMillis);
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        Path listFile = null;
+        try {
+            // A list file keeps the command line short however many files are batched
+            listFile = Files.createTempFile("rar-batch", ".lst");
+            List<String> files = new ArrayList<>();
+            for (Request request : requests) {
+                files.add(request.filePath);
+            }
+            Files.write(listFile, files, StandardCharsets.UTF_8);
+            List<String> command = new ArrayList<>(batch.command);
+            // -scfl: the list file is UTF-8
+            command.add(command.size() - 1, "-scfl");
+            command.add("@" + listFile);
+
+            if (requests.size() > 1) {
+                System.out.println("[RAR]: Batching " + requests.size() + " files into "
+                        + batch.command.get(batch.command.size() - 1));
+            }
+            Path submittedList = listFile;
+            listFile = null;
+            runner.submit(command, "[RAR]: ", timeoutMillis).result().whenComplete((output, failure) -> {
+                deleteQuietly(submittedList);
+                if (failure == null) {
+                    requests.forEach(r -> r.done.complete(null));
+                } else {
+                    requests.forEach(r -> r.done.completeExceptionally(failure));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            requests.forEach(r -> r.done.completeExceptionally(e));
+            deleteQuietly(listFile);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package file_compression_uillity;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Adapter Pattern Implementation
@@ -16,25 +26,94 @@ import java.io.InputStreamReader;
  */
 public class RarCompressorAdapter implements Compressor {
 
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
     // Path to the RAR executable (can be configured)
     private String rarExecutablePath;
     private String unrarExecutablePath;
 
+    // RAR compression method switch (-m1 fastest ... -m5 best, -m3 is RAR's default)
+    private String methodSwitch = "-m3";
+
+    // Time a single rar/unrar run may take before it is killed
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    // Shared instances by default, so the process cap and batching apply application-wide
+    private final RarProcessRunner runner;
+    private final RarBatchQueue batchQueue;
+
+    // Only records errors: the progress of the external tool cannot be measured
+    private ProgressTracker progress = ProgressTracker.NONE;
+
     // Default constructor - uses standard WinRAR installation path on Windows
     public RarCompressorAdapter() {
         this.rarExecutablePath = "C:\\Program Files\\WinRAR\\Rar.exe";
         this.unrarExecutablePath = "C:\\Program Files\\WinRAR\\UnRAR.exe";
+        this.runner = RarProcessRunner.getInstance();
+        this.batchQueue = RarBatchQueue.getInstance();
     }
 
     // Constructor with custom paths to executables
     public RarCompressorAdapter(String rarPath, String unrarPath) {
+        this(rarPath, unrarPath, RarProcessRunner.getInstance(), RarBatchQueue.getInstance());
+    }
+
+    // Constructor with a dedicated runner and batch queue (e.g. a different process cap)
+    public RarCompressorAdapter(String rarPath, String unrarPath, RarProcessRunner runner, RarBatchQueue batchQueue) {
         this.rarExecutablePath = rarPath;
         this.unrarExecutablePath = unrarPath;
+        this.runner = runner;
+        this.batchQueue = batchQueue;
+    }
+
+    /**
+     * Sets how long one rar or unrar run may take; a process still running
+     * after that is killed and the operation fails.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    /**
+     * Maps the profile onto RAR's own compression methods.
+     */
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        switch (profile) {
+            case FAST:
+                methodSwitch = "-m1";
+                break;
+            case MAX:
+                methodSwitch = "-m5";
+                break;
+            default:
+                methodSwitch = "-m3";
+                break;
+        }
     }
 
     /**
      * Adapts the external RAR command-line tool to our compress interface.
      * Translates: compress(filePath) -> "rar a archive.rar file"
+     *
+     * Each file gets its own archive, and one rar run writes one archive,
+     * so separate compress calls are not batched together; use
+     * compressMultiple or compressAsync with a shared archive for that.
      */
     @Override
     public boolean compress(String filePath) {
@@ -48,33 +127,32 @@ public class RarCompressorAdapter implements Compressor {
             // Build output archive path (same location, .rar extension)
             String outputPath = filePath + ".rar";
 
-            // Build the RAR command: rar a -ep <archive.rar> <file>
-            // "a" command means "add to archive"
-            // "-ep" excludes paths from names (stores only filenames, not full paths)
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    rarExecutablePath, "a", "-ep", outputPath, filePath);
-
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            // Read and log the output
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[RAR]: " + line);
-            }
-
-            int exitCode = process.waitFor();
-            return exitCode == 0;
+            // Runs as: rar a -ep -m<n> -scfl <archive.rar> @<listfile>
+            compressAsync(filePath, outputPath).await();
+            return true;
 
-        } catch (Exception e) {
+        } catch (IOException e) {
             System.err.println("RAR compression failed: " + e.getMessage());
-            e.printStackTrace();
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
             return false;
         }
     }
 
+    /**
+     * Queues {@code filePath} to be added to {@code archivePath} without
+     * waiting. Requests for the same archive that are queued close together
+     * are added by a single rar run (see RarBatchQueue).
+     */
+    public RarBatchQueue.Request compressAsync(String filePath, String archivePath) {
+        // "a" command means "add to archive"
+        // "-ep" excludes paths from names (stores only filenames, not full paths)
+        // "-m<n>" selects the compression method from the profile
+        return batchQueue.add(Arrays.asList(rarExecutablePath, "a", "-ep", methodSwitch), archivePath,
+                filePath, timeoutMillis);
+    }
+
     /**
      * Adapts the external UNRAR command-line tool to our decompress interface.
      * Translates: decompress(filePath) -> "unrar e archive.rar <folder>/"
@@ -104,31 +182,17 @@ public class RarCompressorAdapter implements Compressor {
 
             // Build the UNRAR command: unrar e <archive.rar> <output_folder>/
             // "e" command means "extract without full path" (flat extraction)
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                    unrarExecutablePath, "e", "-y", filePath, extractFolder.getAbsolutePath() + File.separator);
-
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            // Read and log the output
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[UNRAR]: " + line);
-            }
+            runner.run(Arrays.asList(unrarExecutablePath, "e", "-y", filePath,
+                    extractFolder.getAbsolutePath() + File.separator), "[UNRAR]: ", timeoutMillis);
 
-            int exitCode = process.waitFor();
-
-            if (exitCode == 0) {
-                System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
-            }
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
 
-            return exitCode == 0;
-
-        } catch (Exception e) {
+        } catch (IOException e) {
             System.err.println("RAR decompression failed: " + e.getMessage());
-            e.printStackTrace();
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
             return false;
         }
     }
@@ -155,37 +219,130 @@ public class RarCompressorAdapter implements Compressor {
                 }
             }
 
-            // Build the RAR command with multiple files
-            // Command format: rar a -ep <archive.rar> <file1> <file2> ...
-            // "-ep" excludes paths from names (stores only filenames, not full paths)
-            java.util.List<String> command = new java.util.ArrayList<>();
-            command.add(rarExecutablePath);
-            command.add("a");
-            command.add("-ep");
-            command.add(outputArchivePath);
+            // Queue every file for the same archive; they are added by one batched
+            // run: rar a -ep -m<n> -scfl <archive.rar> @<listfile>
+            List<RarBatchQueue.Request> requests = new ArrayList<>();
             for (String filePath : filePaths) {
-                command.add(filePath);
+                requests.add(compressAsync(filePath, outputArchivePath));
+            }
+            for (RarBatchQueue.Request request : requests) {
+                request.await();
+            }
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("RAR multi-file compression failed: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
             }
+            return false;
+        }
+    }
 
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
+    // Stream-based API
+    // The external RAR tool only works on files, so these methods stage the
+    // data in a temporary directory and run the same commands as above.
 
-            // Read and log the output
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[RAR]: " + line);
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        // Staging must not close the caller's stream
+        InputStream nonClosing = new FilterInputStream(source) {
+            @Override
+            public void close() {
             }
+        };
+        compressMultiple(Map.of(entryName, () -> nonClosing), archive);
+    }
 
-            int exitCode = process.waitFor();
-            return exitCode == 0;
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        Path workDir = Files.createTempDirectory("rar-stream");
+        try {
+            List<String> command = new ArrayList<>(Arrays.asList(rarExecutablePath, "a", "-ep", methodSwitch));
+            Path archivePath = workDir.resolve("archive.rar");
+            command.add(archivePath.toString());
+            for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                Path staged = workDir.resolve("input").resolve(entry.getKey());
+                Files.createDirectories(staged.getParent());
+                try (InputStream in = entry.getValue().open()) {
+                    Files.copy(in, staged);
+                }
+                command.add(staged.toString());
+            }
+            runProcess(command, "[RAR]: ");
+            Files.copy(archivePath, archive);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("RAR multi-file compression failed: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        Path workDir = Files.createTempDirectory("rar-stream");
+        try {
+            Path archivePath = workDir.resolve("archive.rar");
+            Files.copy(archive, archivePath);
+            Path outputDir = Files.createDirectory(workDir.resolve("output"));
+
+            // "x" keeps the stored paths so entry names match list()
+            runProcess(Arrays.asList(unrarExecutablePath, "x", "-y", archivePath.toString(),
+                    outputDir.toString() + File.separator), "[UNRAR]: ");
+
+            List<Path> extracted;
+            try (Stream<Path> files = Files.walk(outputDir)) {
+                extracted = files.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path file : extracted) {
+                String name = outputDir.relativize(file).toString().replace(File.separatorChar, '/');
+                ArchiveEntry entry = new ArchiveEntry(name, Files.size(file), -1, -1,
+                        Files.getLastModifiedTime(file).toMillis());
+                try (OutputStream out = target.open(entry)) {
+                    if (out != null) {
+                        Files.copy(file, out);
+                    }
+                }
+            }
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        Path workDir = Files.createTempDirectory("rar-stream");
+        try {
+            Path archivePath = workDir.resolve("archive.rar");
+            Files.copy(archive, archivePath);
+
+            // "lb" prints bare entry names, one per line
+            List<ArchiveEntry> entries = new ArrayList<>();
+            for (String name : runProcess(Arrays.asList(unrarExecutablePath, "lb", archivePath.toString()), null)) {
+                if (!name.isBlank()) {
+                    entries.add(new ArchiveEntry(name.replace('\\', '/'), -1, -1, -1, -1));
+                }
+            }
+            return entries;
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * Runs an external command through the process runner, logging its
+     * output with the given prefix (or collecting it when the prefix is
+     * null). The process is killed if it outlives the timeout.
+     *
+     * @return the output lines when collecting, otherwise an empty list
+     */
+    private List<String> runProcess(List<String> command, String logPrefix) throws IOException {
+        return runner.run(command, logPrefix, timeoutMillis);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
         }
     }
 }
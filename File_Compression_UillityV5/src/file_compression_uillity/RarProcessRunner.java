@@ -0,0 +1,222 @@
+package file_compression_uillity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+//Singleton Pattern
+/**
+ * Runs the external rar/unrar processes for RarCompressorAdapter.
+ *
+ * Each process runs on a background job: its merged output is drained by a
+ * separate reader thread (so a chatty process never blocks on a full pipe),
+ * it is killed when its timeout expires, and it can be cancelled from
+ * another thread. A semaphore caps how many rar processes run at once,
+ * because every rar process already uses several threads of its own; jobs
+ * beyond the cap wait in line.
+ */
+public class RarProcessRunner {
+
+    // Concurrent processes allowed by the shared instance
+    public static final int DEFAULT_MAX_PROCESSES = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+    // How long the output may keep coming after the process has exited
+    static final long DRAIN_TIMEOUT_MILLIS = 2000;
+
+    private static RarProcessRunner instance;
+
+    private final Semaphore slots;
+    private final ExecutorService jobs;
+
+    public RarProcessRunner(int maxProcesses) {
+        if (maxProcesses < 1) {
+            throw new IllegalArgumentException("At least one process must be allowed");
+        }
+        this.slots = new Semaphore(maxProcesses, true);
+        this.jobs = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "rar-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized RarProcessRunner getInstance() {
+        if (instance == null) {
+            instance = new RarProcessRunner(DEFAULT_MAX_PROCESSES);
+        }
+        return instance;
+    }
+
+    /**
+     * A submitted process. The output lines are collected when the job was
+     * submitted without a log prefix.
+     */
+    public static class Job {
+        private final FutureTask<List<String>> task;
+        private final CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+        Job(Callable<List<String>> work) {
+            this.task = new FutureTask<>(work) {
+                @Override
+                protected void done() {
+                    try {
+                        result.complete(get());
+                    } catch (CancellationException e) {
+                        result.completeExceptionally(new IOException("Process was cancelled", e));
+                    } catch (ExecutionException e) {
+                        result.completeExceptionally(e.getCause());
+                    } catch (InterruptedException e) {
+                        // Not reached: the task is already done
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Waits for the process to exit.
+         *
+         * @return the collected output lines (empty when the output was logged)
+         * @throws IOException if the process failed, timed out or was cancelled
+         */
+        public List<String> await() throws IOException {
+            try {
+                return task.get();
+            } catch (CancellationException e) {
+                throw new IOException("Process was cancelled", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for process");
+            }
+        }
+
+        /**
+         * Completes with the same outcome as {@link #await}, for callers that
+         * must not block a thread on the process.
+         */
+        public CompletableFuture<List<String>> result() {
+            return result;
+        }
+
+        /**
+         * Cancels the job; a process that is already running is killed.
+         */
+        public boolean cancel() {
+            return task.cancel(true);
+        }
+
+        public boolean isDone() {
+            return task.isDone();
+        }
+    }
+
+    /**
+     * Starts {@code command} as soon as a process slot is free.
+     *
+     * @param logPrefix     prefix for logging the output, or null to collect it
+     * @param timeoutMillis time the process may run before it is killed
+     */
+    public Job submit(List<String> command, String logPrefix, long timeoutMillis) {
+        List<String> commandCopy = List.copyOf(command);
+        Job job = new Job(() -> execute(commandCopy, logPrefix, timeoutMillis));
+        jobs.execute(job.task);
+        return job;
+    }
+
+    /**
+     * Runs {@code command} and waits for it, like submit(...).await().
+     */
+    public List<String> run(List<String> command, String logPrefix, long timeoutMillis) throws IOException {
+        Job job = submit(command, logPrefix, timeoutMillis);
+        try {
+            return job.await();
+        } catch (InterruptedIOException e) {
+            // The caller gave up waiting: do not leave the process behind
+            job.cancel();
+            throw e;
+        }
+    }
+
+    private List<String> execute(List<String> command, String logPrefix, long timeoutMillis)
+            throws IOException, InterruptedException {
+        String program = command.get(0);
+        slots.acquire();
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+
+            List<String> output = new ArrayList<>();
+            Thread drainer = new Thread(() -> drain(process, logPrefix, output), "rar-output");
+            drainer.setDaemon(true);
+            drainer.start();
+
+            try {
+                if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    kill(process);
+                    throw new IOException(program + " timed out after " + timeoutMillis + " ms");
+                }
+            } catch (InterruptedException e) {
+                // Cancelled: kill the process, the reader ends with its pipe
+                kill(process);
+                throw e;
+            }
+            // A child the process left running can hold the pipe open; do not wait for it
+            drainer.join(DRAIN_TIMEOUT_MILLIS);
+            if (drainer.isAlive()) {
+                System.out.println(program + " exited but its output is still open; no longer reading it");
+            }
+
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                throw new IOException(program + " exited with code " + exitCode);
+            }
+            synchronized (output) {
+                // A copy, since an abandoned reader may still add lines
+                return List.copyOf(output);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    // Kills the process and anything it started, which may still hold the output pipe
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private static void drain(Process process, String logPrefix, List<String> output) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (logPrefix != null) {
+                    System.out.println(logPrefix + line);
+                } else {
+                    synchronized (output) {
+                        output.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The pipe is closed when a timed-out or cancelled process is killed
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Holds the compressed bytes of one entry until it is its turn to be written
+ * into the archive.
+ *
+ * Data is kept in memory until it grows past the threshold, after which it
+ * is spilled to a temporary file. The temporary file is deleted on
+ * {@link #close()}.
+ */
+public class ScatterBuffer extends OutputStream {
+
+    private final long threshold;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private File spillFile;
+    private OutputStream spill;
+    private long size;
+
+    public ScatterBuffer(long threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (spill == null && memory.size() + len > threshold) {
+            spillFile = File.createTempFile("scatter", ".tmp");
+            spill = new BufferedOutputStream(new FileOutputStream(spillFile), 64 * 1024);
+            memory.writeTo(spill);
+            memory = null;
+        }
+        if (spill != null) {
+            spill.write(b, off, len);
+        } else {
+            memory.write(b, off, len);
+        }
+        size += len;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Copies everything written so far to {@code out}.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (spill == null) {
+            memory.writeTo(out);
+            return;
+        }
+        spill.flush();
+        try (InputStream in = new FileInputStream(spillFile)) {
+            in.transferTo(out);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        memory = null;
+        if (spill != null) {
+            try {
+                spill.close();
+            } finally {
+                spill = null;
+                if (!spillFile.delete()) {
+                    spillFile.deleteOnExit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,739 @@
+package file_compression_uillity;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a solid archive written by SolidArchiveWriter.
+ *
+ * The trailing index is read once when the archive is opened. Extraction
+ * only decompresses the blocks holding the requested entries: entries are
+ * grouped into tasks of consecutive blocks (an entry larger than a block
+ * ties its blocks together), and the tasks run on a worker pool, each
+ * decompressing its blocks once and cutting them into files.
+ *
+ * All reads are positional, so tasks never contend for a file position.
+ */
+public class SolidArchiveReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    // Position of the archive header in the channel
+    private final long base;
+    // False when the channel belongs to a caller's stream
+    private final boolean ownsChannel;
+
+    private final long[] blockOffsets;
+    private final int[] compressedLengths;
+    private final int[] blockLengths;
+    private final byte[] methods;
+    private final int[] blockCrcs;
+    private final int maxBlockLength;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName = new HashMap<>();
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public SolidArchiveReader(Path archive) throws IOException {
+        this(FileChannel.open(archive, StandardOpenOption.READ), 0, true);
+    }
+
+    // The archive starts at {@code base} and runs to the end of the channel
+    SolidArchiveReader(FileChannel channel, long base, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.base = base;
+        this.ownsChannel = ownsChannel;
+        try {
+            Index index = readIndex(channel, base, SolidArchiveWriter.MAGIC, "solid");
+            int blockCount = index.readCount();
+            blockOffsets = new long[blockCount];
+            compressedLengths = new int[blockCount];
+            blockLengths = new int[blockCount];
+            methods = new byte[blockCount];
+            blockCrcs = new int[blockCount];
+            long offset = SolidArchiveWriter.HEADER_SIZE;
+            int maxLength = 0;
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = offset;
+                compressedLengths[i] = index.readLength();
+                blockLengths[i] = index.readLength();
+                methods[i] = index.readByte();
+                blockCrcs[i] = index.readInt();
+                offset += compressedLengths[i];
+                maxLength = Math.max(maxLength, blockLengths[i]);
+            }
+            if (offset != index.offset) {
+                throw new ZipException("Solid archive block table does not match the index offset");
+            }
+            maxBlockLength = maxLength;
+            entries = Collections.unmodifiableList(readEntries(index, blockCount));
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.getName(), entry);
+        }
+    }
+
+    /**
+     * Opens an archive read from a stream. File streams are read in place
+     * (from their current position to the end of the file); anything else
+     * is first copied to a temporary file, since the index comes last. The
+     * stream is read to its end but not closed.
+     */
+    public static SolidArchiveReader open(InputStream in) throws IOException {
+        return open(in, SolidArchiveReader::new);
+    }
+
+    // Creates a reader over the channel of a file stream, or of a spooled copy of any other stream
+    static <T> T open(InputStream in, ChannelReader<T> reader) throws IOException {
+        if (in instanceof FileInputStream fis) {
+            // Positional reads leave the stream's channel open and usable
+            FileChannel channel = fis.getChannel();
+            T result = reader.open(channel, channel.position(), false);
+            channel.position(channel.size());
+            return result;
+        }
+        Path spool = Files.createTempFile("archive", ".tmp");
+        try {
+            Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            return reader.open(FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE),
+                    0, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Entries whose names match a glob pattern (see EntryPaths.globMatcher).
+     */
+    public List<Entry> getEntries(String pattern) {
+        Predicate<String> matcher = EntryPaths.globMatcher(pattern);
+        List<Entry> matching = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (matcher.test(entry.getName())) {
+                matching.add(entry);
+            }
+        }
+        return matching;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    // Counts the blocks read and the files written by extract()
+    public void setProgress(ProgressTracker progress) {
+        if (progress == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = progress;
+    }
+
+    /**
+     * Writes one entry to {@code out}, decompressing only the blocks that
+     * hold it.
+     */
+    public void extract(Entry entry, OutputStream out) throws IOException {
+        run(new Task(List.of(entry), List.of(out)));
+    }
+
+    /**
+     * Hands every entry to {@code target} in archive order, decompressing
+     * each block once.
+     */
+    public void read(EntryTarget target) throws IOException {
+        run(new Task(entries, target));
+    }
+
+    /**
+     * Extracts the given entries below {@code outputDir}, running groups of
+     * blocks on {@code workers} threads.
+     */
+    public void extract(List<Entry> selected, Path outputDir, int workers) throws IOException {
+        // Resolve every target first so a bad name fails before anything is written
+        Set<Path> directories = new LinkedHashSet<>();
+        Map<Entry, Path> targets = new HashMap<>();
+        for (Entry entry : selected) {
+            Path target = EntryPaths.resolve(outputDir, entry.getName());
+            targets.put(entry, target);
+            directories.add(entry.isDirectory() ? target : target.getParent());
+        }
+        for (Path directory : directories) {
+            Files.createDirectories(directory);
+        }
+        EntryTarget files = entry -> entry.isDirectory() ? null
+                : progress.entryOutput(Files.newOutputStream(targets.get(entry)));
+
+        // Duplicate names must be written in archive order, so such archives run as one task
+        List<Task> tasks = new HashSet<>(targets.values()).size() == selected.size()
+                ? plan(selected, files) : List.of(new Task(selected, files));
+        if (workers <= 1 || tasks.size() <= 1) {
+            for (Task task : tasks) {
+                run(task);
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, tasks.size()), r -> {
+            Thread t = new Thread(r, "solid-extract");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                futures.add(pool.submit(() -> {
+                    run(task);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks every entry against its size and CRC without writing anything,
+     * running groups of blocks on {@code workers} threads. After a damaged
+     * entry, checking resumes with the next one.
+     */
+    public VerificationReport verify(int workers) throws IOException {
+        VerificationReport report = new VerificationReport();
+        List<Task> tasks = plan(entries, null);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, tasks.size())), r -> {
+            Thread t = new Thread(r, "solid-verify");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                futures.add(pool.submit(() -> {
+                    verify(task.entries, report);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    // Final: the constructor calls it when the archive cannot be read
+    @Override
+    public final void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    // Splits the entries (in archive order) into tasks that share no block
+    private List<Task> plan(List<Entry> selected, EntryTarget target) {
+        List<Entry> sorted = new ArrayList<>(selected);
+        sorted.sort((a, b) -> Integer.compare(a.index, b.index));
+        List<Task> tasks = new ArrayList<>();
+        List<Entry> group = new ArrayList<>();
+        int groupEnd = -1;
+        for (Entry entry : sorted) {
+            if (!group.isEmpty() && entry.getSize() > 0 && entry.block > groupEnd) {
+                tasks.add(new Task(group, target));
+                group = new ArrayList<>();
+                groupEnd = -1;
+            }
+            group.add(entry);
+            if (entry.getSize() > 0) {
+                groupEnd = Math.max(groupEnd, lastBlock(entry));
+            }
+        }
+        if (!group.isEmpty()) {
+            tasks.add(new Task(group, target));
+        }
+        return tasks;
+    }
+
+    private void verify(List<Entry> group, VerificationReport report) {
+        List<Entry> pending = group;
+        while (!pending.isEmpty()) {
+            // Entries are recorded as their sinks close, which tells how far the run got
+            VerificationReport checked = new VerificationReport();
+            try {
+                run(new Task(pending, entry -> checked.sinkFor(entry, offsetOf((Entry) entry))));
+                pending = List.of();
+            } catch (DamagedBlockException e) {
+                // Every remaining entry with data in the block is lost; the others are checked on
+                int finished = checked.getEntryCount() + checked.getFailures().size();
+                List<Entry> rest = new ArrayList<>();
+                for (Entry entry : pending.subList(finished, pending.size())) {
+                    if (entry.getSize() > 0 && entry.block <= e.block && lastBlock(entry) >= e.block) {
+                        checked.addFailure(entry.getName(), offsetOf(entry), e.getMessage());
+                    } else {
+                        rest.add(entry);
+                    }
+                }
+                pending = rest;
+            } catch (IOException | RuntimeException e) {
+                // An entry failing its own CRC was recorded by its sink; otherwise it is the next one
+                int finished = checked.getEntryCount() + checked.getFailures().size();
+                if (checked.isOk() && finished < pending.size()) {
+                    Entry entry = pending.get(finished);
+                    checked.addFailure(entry.getName(), offsetOf(entry), String.valueOf(e.getMessage()));
+                    finished++;
+                }
+                pending = pending.subList(Math.max(1, finished), pending.size());
+            }
+            report.addAll(checked);
+        }
+    }
+
+    // Position of the block an entry starts in
+    private long offsetOf(Entry entry) {
+        return entry.getSize() == 0 ? -1 : base + blockOffsets[entry.block];
+    }
+
+    // Index of the block holding the last byte of a non-empty entry
+    private int lastBlock(Entry entry) {
+        int block = entry.block;
+        long remaining = entry.getSize() - (blockLengths[block] - entry.offset);
+        while (remaining > 0) {
+            block++;
+            remaining -= blockLengths[block];
+        }
+        return block;
+    }
+
+    /**
+     * Decompresses the blocks of a task in order and copies each entry's
+     * bytes out of them. An entry larger than a block continues at offset 0
+     * of the following block.
+     */
+    private void run(Task task) throws IOException {
+        byte[] compressed = null;
+        byte[] block = null;
+        // Entries do not overlap, so at most one is still open at a block boundary
+        Cursor open = null;
+        List<Entry> list = task.entries;
+        int next = 0;
+        int current = -1;
+        try {
+            while (next < list.size() || open != null) {
+                if (open == null) {
+                    Entry entry = list.get(next);
+                    if (entry.getSize() == 0) {
+                        task.begin(entry).close();
+                        next++;
+                        continue;
+                    }
+                    current = entry.block;
+                } else if (++current >= blockLengths.length) {
+                    throw new ZipException("Entry " + open.entry.getName() + " runs past the last block");
+                }
+                if (compressed == null) {
+                    compressed = new byte[maxBlockLength];
+                    block = new byte[maxBlockLength];
+                }
+                int length = readBlock(current, compressed, block);
+                if (open != null) {
+                    open.write(block, 0, (int) Math.min(open.remaining, length));
+                }
+                while (next < list.size() && (open == null || open.remaining == 0)) {
+                    if (open != null) {
+                        Cursor done = open;
+                        open = null;
+                        done.close();
+                    }
+                    Entry entry = list.get(next);
+                    if (entry.getSize() > 0 && entry.block != current) {
+                        break;
+                    }
+                    next++;
+                    open = task.begin(entry);
+                    open.write(block, entry.offset, (int) Math.min(entry.getSize(), length - entry.offset));
+                }
+                if (open != null && open.remaining == 0) {
+                    Cursor done = open;
+                    open = null;
+                    done.close();
+                }
+            }
+        } finally {
+            if (open != null) {
+                open.abandon();
+            }
+        }
+    }
+
+    /**
+     * Checks the header and trailer of an archive written with
+     * SolidArchiveWriter's layout (magic, version, data, index, trailer)
+     * and returns its inflated, CRC-checked index.
+     */
+    static Index readIndex(FileChannel channel, long base, int magic, String format) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SolidArchiveWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, base);
+        if (header.getInt(0) != magic) {
+            throw new ZipException("Not a " + format + " archive");
+        }
+        if (header.get(4) != SolidArchiveWriter.VERSION) {
+            throw new ZipException("Unsupported " + format + " archive version " + header.get(4));
+        }
+
+        long end = channel.size();
+        if (end - base < SolidArchiveWriter.HEADER_SIZE + SolidArchiveWriter.TRAILER_SIZE) {
+            throw new ZipException("Truncated " + format + " archive");
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(SolidArchiveWriter.TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, trailer, end - SolidArchiveWriter.TRAILER_SIZE);
+        if (trailer.getInt(20) != SolidArchiveWriter.TRAILER_MAGIC) {
+            throw new ZipException("No " + format + " archive index found (truncated archive?)");
+        }
+        long indexOffset = trailer.getLong(0);
+        int indexCompressed = trailer.getInt(8);
+        int indexLength = trailer.getInt(12);
+        int indexCrc = trailer.getInt(16);
+        if (indexOffset < SolidArchiveWriter.HEADER_SIZE || indexCompressed < 0 || indexLength < 0
+                || base + indexOffset + indexCompressed > end - SolidArchiveWriter.TRAILER_SIZE) {
+            throw new ZipException("Invalid " + format + " archive trailer");
+        }
+        byte[] compressed = new byte[indexCompressed];
+        readFully(channel, ByteBuffer.wrap(compressed), base + indexOffset);
+        byte[] raw = indexCompressed == indexLength ? compressed : new byte[indexLength];
+        if (raw != compressed) {
+            inflate(compressed, indexCompressed, raw, indexLength, format + " index");
+        }
+        checkCrc(raw, indexLength, indexCrc, format + " index");
+        return new Index(raw, indexOffset);
+    }
+
+    private int readBlock(int index, byte[] compressed, byte[] block) throws IOException {
+        try {
+            int length = readBlockData(index, compressed, block);
+            progress.read(compressedLengths[index]);
+            return length;
+        } catch (ZipException e) {
+            throw new DamagedBlockException(index, e.getMessage());
+        }
+    }
+
+    private int readBlockData(int index, byte[] compressed, byte[] block) throws IOException {
+        int length = blockLengths[index];
+        int stored = compressedLengths[index];
+        if (methods[index] == SolidArchiveWriter.METHOD_STORED) {
+            readFully(channel, ByteBuffer.wrap(block, 0, length), base + blockOffsets[index]);
+        } else if (methods[index] == SolidArchiveWriter.METHOD_DEFLATED) {
+            readFully(channel, ByteBuffer.wrap(compressed, 0, stored), base + blockOffsets[index]);
+            inflate(compressed, stored, block, length, "solid block " + index);
+        } else {
+            throw new ZipException("Unsupported method " + methods[index] + " for block " + index);
+        }
+        checkCrc(block, length, blockCrcs[index], "solid block " + index);
+        return length;
+    }
+
+    static void inflate(byte[] input, int inputLength, byte[] output, int outputLength, String what)
+            throws IOException {
+        Inflater inflater = CodecPool.getInstance().acquireInflater();
+        try {
+            inflater.setInput(input, 0, inputLength);
+            int n = 0;
+            while (n < outputLength && !inflater.finished()) {
+                int count = inflater.inflate(output, n, outputLength - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != outputLength) {
+                throw new ZipException("Invalid size for " + what);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data in " + what + ": " + e.getMessage());
+        } finally {
+            CodecPool.getInstance().release(inflater);
+        }
+    }
+
+    static void checkCrc(byte[] data, int length, int expected, String what) throws ZipException {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != expected) {
+            throw new ZipException("CRC mismatch for " + what);
+        }
+    }
+
+    private List<Entry> readEntries(Index index, int blockCount) throws ZipException {
+        int count = index.readCount();
+        List<Entry> result = new ArrayList<>(count);
+        byte[] name = new byte[0];
+        long time = 0;
+        int block = 0;
+        for (int i = 0; i < count; i++) {
+            int shared = index.readLength();
+            int suffix = index.readLength();
+            if (shared > name.length) {
+                throw new ZipException("Invalid archive index");
+            }
+            name = Arrays.copyOf(name, shared + suffix);
+            index.readBytes(name, shared, suffix);
+            long size = index.readVarLong();
+            time += unZigZag(index.readVarLong());
+            long crc = index.readInt() & 0xFFFFFFFFL;
+            block += index.readLength();
+            int offset = index.readLength();
+            Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), size, crc, time, i, block, offset);
+            if (size < 0 || (size > 0 && (block >= blockCount || offset >= blockLengths[block]))) {
+                throw new ZipException("Invalid solid archive index entry " + entry.getName());
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new ZipException("Unexpected end of archive");
+            }
+            position += n;
+        }
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Solid extraction interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Solid extraction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Index entry: the public ArchiveEntry information plus the position of
+     * the entry's data.
+     */
+    public static class Entry extends ArchiveEntry {
+
+        private final int index;
+        private final int block;
+        private final int offset;
+
+        Entry(String name, long size, long crc, long lastModified, int index, int block, int offset) {
+            super(name, size, -1, crc, lastModified);
+            this.index = index;
+            this.block = block;
+            this.offset = offset;
+        }
+
+        // Block holding the first byte of the entry
+        public int getBlock() {
+            return block;
+        }
+
+        // Offset of the first byte within the uncompressed block
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    // A block that cannot be read back; every entry with data in it is lost
+    private static final class DamagedBlockException extends ZipException {
+
+        private static final long serialVersionUID = 1L;
+        final int block;
+
+        DamagedBlockException(int block, String message) {
+            super(message);
+            this.block = block;
+        }
+    }
+
+    private static final class Task {
+        final List<Entry> entries;
+        final EntryTarget target;
+        final List<OutputStream> outputs;
+
+        Task(List<Entry> entries, EntryTarget target) {
+            this.entries = entries;
+            this.target = target;
+            this.outputs = null;
+        }
+
+        Task(List<Entry> entries, List<OutputStream> outputs) {
+            this.entries = entries;
+            this.target = null;
+            this.outputs = outputs;
+        }
+
+        Cursor begin(Entry entry) throws IOException {
+            if (outputs != null) {
+                return new Cursor(entry, outputs.get(entries.indexOf(entry)), false);
+            }
+            return new Cursor(entry, target.open(entry), true);
+        }
+    }
+
+    // Progress of one entry being copied out of its blocks
+    private static final class Cursor {
+        final Entry entry;
+        final OutputStream out;
+        final boolean owned;
+        final CRC32 crc = new CRC32();
+        long remaining;
+
+        Cursor(Entry entry, OutputStream out, boolean owned) {
+            this.entry = entry;
+            this.out = out;
+            this.owned = owned;
+            this.remaining = entry.getSize();
+        }
+
+        void write(byte[] data, int off, int len) throws IOException {
+            crc.update(data, off, len);
+            if (out != null) {
+                out.write(data, off, len);
+            }
+            remaining -= len;
+        }
+
+        void close() throws IOException {
+            if (owned && out != null) {
+                out.close();
+            }
+            if (crc.getValue() != entry.getCrc()) {
+                throw new ZipException("CRC mismatch for " + entry.getName());
+            }
+        }
+
+        // Releases the output of an entry that failed midway
+        void abandon() {
+            if (owned && out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // the extraction is failing already
+                }
+            }
+        }
+    }
+
+    // Constructor of a reader over (channel, archive start, whether the reader closes the channel)
+    @FunctionalInterface
+    interface ChannelReader<T> {
+        T open(FileChannel channel, long base, boolean ownsChannel) throws IOException;
+    }
+
+    // Reader for the varint and little-endian fields of the raw index
+    static final class Index {
+        private final byte[] data;
+        private int position;
+        // Position of the index in the archive, right after the last block
+        final long offset;
+
+        Index(byte[] data, long offset) {
+            this.data = data;
+            this.offset = offset;
+        }
+
+        long readVarLong() throws ZipException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte() & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ZipException("Invalid archive index");
+        }
+
+        // A non-negative varint that fits in an int
+        int readLength() throws ZipException {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new ZipException("Invalid archive index");
+            }
+            return (int) value;
+        }
+
+        int readCount() throws ZipException {
+            int count = readLength();
+            // Every record takes at least one byte
+            if (count > data.length - position) {
+                throw new ZipException("Invalid archive index");
+            }
+            return count;
+        }
+
+        byte readByte() throws ZipException {
+            if (position >= data.length) {
+                throw new ZipException("Archive index is truncated");
+            }
+            return data[position++];
+        }
+
+        int readInt() throws ZipException {
+            return (readByte() & 0xFF) | (readByte() & 0xFF) << 8 | (readByte() & 0xFF) << 16
+                    | (readByte() & 0xFF) << 24;
+        }
+
+        void readBytes(byte[] target, int off, int len) throws ZipException {
+            if (len > data.length - position) {
+                throw new ZipException("Archive index is truncated");
+            }
+            System.arraycopy(data, position, target, off, len);
+            position += len;
+        }
+    }
+}
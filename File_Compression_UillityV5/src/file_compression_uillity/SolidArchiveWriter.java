@@ -0,0 +1,368 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a solid archive: the data of all entries concatenated into large
+ * blocks that are compressed independently of each other.
+ *
+ * Layout:
+ * <pre>
+ *   "SOLD" version
+ *   block 0, block 1, ...          raw deflate, or stored if it did not shrink
+ *   index                          raw deflate
+ *   trailer (24 bytes)             index offset, sizes and CRC, "INDX"
+ * </pre>
+ * The index lists every block (sizes, method, CRC) and every entry (name,
+ * size, mtime, CRC, and the block and offset where its data starts). Names
+ * share their prefix with the previous name and numbers are varints, so an
+ * entry costs a dozen bytes plus the new part of its name before the index
+ * is even deflated. Records are appended as entries are added, so millions
+ * of entries need no per-entry objects.
+ *
+ * Compared with ZIP there is no per-entry header and no compressor restart
+ * per entry: small files share the deflate window of their block. Blocks
+ * are compressed on a worker pool, at most two per worker in flight, and
+ * written in order.
+ */
+public class SolidArchiveWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x444C4F53; // "SOLD"
+    static final int TRAILER_MAGIC = 0x58444E49; // "INDX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 5;
+    static final int TRAILER_SIZE = 24;
+
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    public static final int MIN_BLOCK_SIZE = 64 * 1024;
+    public static final int MAX_BLOCK_SIZE = 256 * 1024 * 1024;
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final CompressionProfile profile;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+
+    private final ArrayDeque<Future<Block>> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Block> spare = new ArrayDeque<>();
+    private Block current;
+    private int blockCount;
+    private long written;
+    private boolean finished;
+
+    // Serialized block table and entry records of the index
+    private final IndexBuffer blocks = new IndexBuffer();
+    private final IndexBuffer entries = new IndexBuffer();
+    private int entryCount;
+    private byte[] previousName = new byte[0];
+    private long previousTime;
+    private int previousBlock;
+
+    /**
+     * Writes the archive header to {@code out}, which is never closed.
+     *
+     * @param workers threads compressing blocks; 1 compresses on the
+     *                calling thread
+     */
+    public SolidArchiveWriter(OutputStream out, int blockSize, CompressionProfile profile, int workers)
+            throws IOException {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between " + MIN_BLOCK_SIZE + " and "
+                    + MAX_BLOCK_SIZE + ": " + blockSize);
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.out = out;
+        this.blockSize = blockSize;
+        this.profile = profile;
+        this.maxInFlight = workers * 2;
+        this.pool = workers == 1 ? null : Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "solid-block");
+            t.setDaemon(true);
+            return t;
+        });
+        this.current = new Block(blockSize);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        write(header.array(), 0, HEADER_SIZE);
+    }
+
+    /**
+     * Appends one entry, reading {@code data} to its end. The stream is not
+     * closed.
+     */
+    public void addEntry(String name, long lastModified, InputStream data) throws IOException {
+        if (finished) {
+            throw new IOException("Archive already finished");
+        }
+        if (current.length == 0) {
+            // The first bytes of a block decide its level and strategy
+            current.firstName = name;
+        }
+        int block = blockCount;
+        int offset = current.length;
+        CRC32 crc = new CRC32();
+        long size = 0;
+        int n;
+        while ((n = data.read(current.input, current.length, blockSize - current.length)) != -1) {
+            crc.update(current.input, current.length, n);
+            current.length += n;
+            size += n;
+            if (current.length == blockSize) {
+                submit();
+                current.firstName = name;
+            }
+        }
+        writeRecord(name, lastModified, size, crc.getValue(), block, offset);
+    }
+
+    /**
+     * Starts a new block for the next entry, e.g. where the file type
+     * changes. Does nothing if the current block is empty.
+     */
+    public void endBlock() throws IOException {
+        if (current.length > 0) {
+            submit();
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Writes the last block, the index and the trailer.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        endBlock();
+        while (!inFlight.isEmpty()) {
+            writeBlock(await(inFlight.poll()));
+        }
+        finished = true;
+
+        IndexBuffer index = new IndexBuffer();
+        index.writeVarLong(blockCount);
+        blocks.writeTo(index);
+        index.writeVarLong(entryCount);
+        entries.writeTo(index);
+        byte[] tail = encodeIndex(index.toByteArray(), written, TRAILER_MAGIC);
+        write(tail, 0, tail.length);
+        out.flush();
+    }
+
+    /**
+     * Releases the worker pool. Blocks still in flight are discarded, so
+     * call {@link #finish} first to complete the archive.
+     */
+    @Override
+    public void close() {
+        for (Future<Block> pending : inFlight) {
+            pending.cancel(true);
+        }
+        inFlight.clear();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * The index, deflated unless that does not shrink it (the reader then
+     * sees equal sizes), followed by the trailer pointing at it.
+     */
+    static byte[] encodeIndex(byte[] raw, long indexOffset, int trailerMagic) {
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        byte[] compressed = deflate(raw, raw.length, Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+        if (compressed == null) {
+            compressed = raw;
+        }
+        ByteBuffer tail = ByteBuffer.allocate(compressed.length + TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        tail.put(compressed);
+        tail.putLong(indexOffset);
+        tail.putInt(compressed.length);
+        tail.putInt(raw.length);
+        tail.putInt((int) crc.getValue());
+        tail.putInt(trailerMagic);
+        return tail.array();
+    }
+
+    private void writeRecord(String name, long lastModified, long size, long crc, int block, int offset) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int shared = 0;
+        int limit = Math.min(nameBytes.length, previousName.length);
+        while (shared < limit && nameBytes[shared] == previousName[shared]) {
+            shared++;
+        }
+        entries.writeVarLong(shared);
+        entries.writeVarLong(nameBytes.length - shared);
+        entries.write(nameBytes, shared, nameBytes.length - shared);
+        entries.writeVarLong(size);
+        entries.writeVarLong(zigZag(lastModified - previousTime));
+        entries.writeInt((int) crc);
+        entries.writeVarLong(block - previousBlock);
+        entries.writeVarLong(offset);
+        previousName = nameBytes;
+        previousTime = lastModified;
+        previousBlock = block;
+        entryCount++;
+    }
+
+    private void submit() throws IOException {
+        Block block = current;
+        blockCount++;
+        if (pool == null) {
+            writeBlock(block.compress(profile));
+            block.length = 0;
+            return;
+        }
+        if (inFlight.size() >= maxInFlight) {
+            spare.push(writeBlock(await(inFlight.poll())));
+        }
+        inFlight.add(pool.submit(() -> block.compress(profile)));
+        current = spare.isEmpty() ? new Block(blockSize) : spare.pop();
+        current.length = 0;
+    }
+
+    private Block writeBlock(Block block) throws IOException {
+        if (block.stored) {
+            write(block.input, 0, block.length);
+        } else {
+            write(block.output, 0, block.compressedLength);
+        }
+        blocks.writeVarLong(block.stored ? block.length : block.compressedLength);
+        blocks.writeVarLong(block.length);
+        blocks.write(block.stored ? METHOD_STORED : METHOD_DEFLATED);
+        blocks.writeInt((int) block.crc);
+        return block;
+    }
+
+    private void write(byte[] data, int off, int len) throws IOException {
+        out.write(data, off, len);
+        written += len;
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Solid block compression interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Solid block compression failed", e.getCause());
+        }
+    }
+
+    /**
+     * Raw-deflates {@code length} bytes of {@code data}.
+     *
+     * @return the compressed bytes, or null if they would not be smaller
+     */
+    static byte[] deflate(byte[] data, int length, int level, int strategy) {
+        byte[] output = new byte[Math.max(64, length)];
+        int n = deflateInto(data, length, level, strategy, output);
+        return n < 0 ? null : Arrays.copyOf(output, n);
+    }
+
+    // Deflates into output; -1 if the result does not fit in fewer than length bytes
+    static int deflateInto(byte[] data, int length, int level, int strategy, byte[] output) {
+        Deflater deflater = CodecPool.getInstance().acquireDeflater(level, strategy);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == output.length) {
+                    return -1;
+                }
+                n += deflater.deflate(output, n, output.length - n);
+            }
+            return n < length || length == 0 ? n : -1;
+        } finally {
+            CodecPool.getInstance().release(deflater);
+        }
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // Uncompressed data of one block and, once compressed, its deflated form
+    private static final class Block {
+        final byte[] input;
+        byte[] output;
+        int length;
+        int compressedLength;
+        boolean stored;
+        long crc;
+        String firstName;
+
+        Block(int capacity) {
+            input = new byte[capacity];
+        }
+
+        Block compress(CompressionProfile profile) {
+            CRC32 checksum = new CRC32();
+            checksum.update(input, 0, length);
+            crc = checksum.getValue();
+            if (output == null) {
+                output = new byte[input.length];
+            }
+            int n = deflateInto(input, length, profile.levelFor(firstName), profile.strategyFor(firstName),
+                    output);
+            // Incompressible data (JPEG, video...) is stored as is
+            stored = n < 0;
+            compressedLength = n;
+            return this;
+        }
+    }
+
+    // Growable byte array with the little-endian and varint writers of the index
+    static final class IndexBuffer extends ByteArrayOutputStream {
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeInt(int value) {
+            write(value);
+            write(value >>> 8);
+            write(value >>> 16);
+            write(value >>> 24);
+        }
+
+        void writeTo(IndexBuffer other) {
+            other.write(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package file_compression_uillity;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compressor for solid archives (see SolidArchiveWriter).
+ *
+ * Files are grouped by type before they are packed: the FileTypeFactory
+ * processor first (text, images, video...), then the extension, so that
+ * similar files share blocks and the deflate window, and a new block starts
+ * wherever the processor type changes. Extracting a single file, or a
+ * pattern, only decompresses the blocks holding it.
+ */
+public class SolidCompressor implements Compressor {
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int blockSize = SolidArchiveWriter.DEFAULT_BLOCK_SIZE;
+    private CompressionProfile profile = CompressionProfile.BALANCED;
+    // Counts the files and archive read and written by the path-based methods
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    // Threads compressing and extracting blocks
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Uncompressed size of a block. Larger blocks compress better; smaller
+     * ones make extracting a single file cheaper.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < SolidArchiveWriter.MIN_BLOCK_SIZE || blockSize > SolidArchiveWriter.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between " + SolidArchiveWriter.MIN_BLOCK_SIZE
+                    + " and " + SolidArchiveWriter.MAX_BLOCK_SIZE);
+        }
+        this.blockSize = blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public CompressionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    @Override
+    public String getExtension() {
+        return ".solid";
+    }
+
+    @Override
+    public boolean compress(String filePath) {
+        try {
+            File file = new File(filePath);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePath);
+                return false;
+            }
+
+            // Create the archive in the SAME directory; directories keep their full name
+            String baseName = filePath;
+            if (file.isFile() && file.getName().lastIndexOf('.') > 0) {
+                baseName = filePath.substring(0, filePath.lastIndexOf('.'));
+            }
+            String archivePath = baseName + getExtension();
+
+            System.out.println("Compressing: " + filePath + " to " + archivePath);
+            writeArchive(new File[] { file }, archivePath);
+
+            File archiveFile = new File(archivePath);
+            System.out.println("Solid archive created successfully: " + archivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                System.out.println("No files provided for compression");
+                return false;
+            }
+
+            System.out.println("Compressing " + filePaths.length + " files to: " + outputArchivePath);
+
+            List<File> files = new ArrayList<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                files.add(file);
+            }
+            writeArchive(files.toArray(new File[0]), outputArchivePath);
+
+            File archiveFile = new File(outputArchivePath);
+            System.out.println("Multi-file solid archive created successfully: " + outputArchivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Multi-file compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects the regular files and directories below each root, named
+     * relative to the root's parent. Directories are stored as empty
+     * entries ending in '/', so empty ones are restored too.
+     */
+    private void writeArchive(File[] roots, String archivePath) throws IOException {
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        Map<String, Path> paths = new LinkedHashMap<>();
+        for (File root : roots) {
+            Path base = root.toPath().toAbsolutePath().getParent();
+            List<Path> walked;
+            // Symbolic links are not followed, so a link to a parent cannot loop
+            try (Stream<Path> walk = Files.walk(root.toPath().toAbsolutePath())) {
+                walked = walk.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)
+                        || Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)).toList();
+            }
+            for (Path path : walked) {
+                String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+                EntrySource source = () -> progress.input(Files.newInputStream(path));
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    name += "/";
+                    source = InputStream::nullInputStream;
+                }
+                if (entries.putIfAbsent(name, source) != null) {
+                    throw new IOException("duplicate entry: " + name);
+                }
+                paths.put(name, path);
+            }
+        }
+        try (FileOutputStream fos = new FileOutputStream(archivePath);
+             BufferedOutputStream out = new BufferedOutputStream(progress.output(fos), 64 * 1024)) {
+            write(entries, paths, out);
+        }
+    }
+
+    /**
+     * Writes the entries grouped by file type. {@code paths} gives the
+     * source files, whose modification times are kept; it may be empty.
+     */
+    private void write(Map<String, EntrySource> entries, Map<String, Path> paths, OutputStream archive)
+            throws IOException {
+        List<String> names = new ArrayList<>(entries.keySet());
+        // Stable sort: directories (which hold no data) first, then files of one type in their relative order
+        names.sort(Comparator.comparing((String name) -> !name.endsWith("/"))
+                .thenComparing(SolidCompressor::fileType)
+                .thenComparing(name -> FileTypeFactory.getFileExtension(name).toLowerCase()));
+        long now = System.currentTimeMillis();
+        try (SolidArchiveWriter writer = new SolidArchiveWriter(archive, blockSize, profile, workerCount)) {
+            String previousType = null;
+            for (String name : names) {
+                String type = fileType(name);
+                if (previousType != null && !type.equals(previousType)) {
+                    writer.endBlock();
+                }
+                previousType = type;
+                Path path = paths.get(name);
+                long mtime = path == null ? now : Files.getLastModifiedTime(path).toMillis();
+                try (InputStream in = entries.get(name).open()) {
+                    writer.addEntry(name, mtime, in);
+                }
+                if (!name.endsWith("/")) {
+                    progress.entryDone();
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    private static String fileType(String name) {
+        return FileTypeFactory.getProcessor(FileTypeFactory.getFileExtension(name)).getFileType();
+    }
+
+    @Override
+    public boolean decompress(String filePath) {
+        try {
+            File archiveFile = new File(filePath).getAbsoluteFile();
+            String outputDir = archiveFile.getParent();
+
+            // Folder named after the archive without its extension
+            String name = archiveFile.getName();
+            int dot = name.lastIndexOf('.');
+            File extractFolder = new File(outputDir + File.separator
+                    + (dot > 0 ? name.substring(0, dot) : name + "_extracted"));
+            extractFolder.mkdir();
+
+            try (SolidArchiveReader reader = new SolidArchiveReader(archiveFile.toPath())) {
+                reader.setProgress(progress);
+                reader.extract(reader.getEntries(), extractFolder.toPath(), workerCount);
+                System.out.println("Extracted " + reader.getEntries().size() + " entries from "
+                        + reader.getBlockCount() + " blocks");
+            }
+
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // The index lets these read only the trailer and the blocks they need
+
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (SolidArchiveReader reader = new SolidArchiveReader(Path.of(archivePath))) {
+            return new ArrayList<>(reader.getEntries());
+        }
+    }
+
+    @Override
+    public int extractSelected(String archivePath, String pattern, String outputDir) throws IOException {
+        try (SolidArchiveReader reader = new SolidArchiveReader(Path.of(archivePath))) {
+            List<SolidArchiveReader.Entry> selected = reader.getEntries(pattern);
+            reader.extract(selected, Path.of(outputDir), workerCount);
+            return selected.size();
+        }
+    }
+
+    @Override
+    public VerificationReport verify(String archivePath) throws IOException {
+        try (SolidArchiveReader reader = new SolidArchiveReader(Path.of(archivePath))) {
+            return reader.verify(workerCount);
+        }
+    }
+
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        try (SolidArchiveWriter writer = new SolidArchiveWriter(archive, blockSize, profile, 1)) {
+            writer.addEntry(entryName, System.currentTimeMillis(), source);
+            writer.finish();
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        write(entries, Map.of(), archive);
+    }
+
+    /**
+     * Reads an archive stream. The index is at the end, so streams that are
+     * not files are first copied to a temporary file.
+     */
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        try (SolidArchiveReader reader = SolidArchiveReader.open(archive)) {
+            reader.read(target);
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        try (SolidArchiveReader reader = SolidArchiveReader.open(archive)) {
+            return new ArrayList<>(reader.getEntries());
+        }
+    }
+
+    @Override
+    public boolean decompress(InputStream archive, String entryName, OutputStream target) throws IOException {
+        try (SolidArchiveReader reader = SolidArchiveReader.open(archive)) {
+            SolidArchiveReader.Entry entry = reader.getEntry(entryName);
+            if (entry == null) {
+                return false;
+            }
+            reader.extract(entry, target);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Output channel of a split ZIP archive: the bytes written go to a series
+ * of volume files of at most {@code volumeSize} bytes each, named as the
+ * ZIP specification wants them. For {@code backup.zip} these are
+ * backup.z01, backup.z02, ... and backup.zip itself for the last volume,
+ * the one holding the end of central directory record.
+ *
+ * Each volume has its own channel. As soon as one is full it is closed and
+ * handed to the volume listener, so it can be uploaded or moved elsewhere
+ * while the next one is being written. The listener runs on the writing
+ * thread: slow work should be passed on to an executor of its own.
+ *
+ * ZipArchiveWriter recognises this channel and records entry offsets as a
+ * volume number plus an offset within that volume; it calls keepTogether
+ * before every header so that only entry data ever spans two volumes.
+ * ZipArchiveReader reads the volumes back in place, without joining them.
+ */
+public class SplitZipChannel implements WritableByteChannel {
+
+    // Smallest volume size accepted, as in Info-ZIP
+    public static final long MIN_VOLUME_SIZE = 64 * 1024;
+
+    private final Path archive;
+    private final long volumeSize;
+    private final Consumer<Path> listener;
+    private final List<Path> volumes = new ArrayList<>();
+
+    private FileChannel current;
+    private int disk;
+    private long position;
+    private boolean closed;
+
+    public SplitZipChannel(Path archive, long volumeSize) throws IOException {
+        this(archive, volumeSize, null);
+    }
+
+    /**
+     * @param listener called with each volume once it is complete, the
+     *                 final {@code .zip} included; may be null
+     */
+    public SplitZipChannel(Path archive, long volumeSize, Consumer<Path> listener) throws IOException {
+        if (volumeSize < MIN_VOLUME_SIZE) {
+            throw new IllegalArgumentException("Volume size must be at least " + MIN_VOLUME_SIZE + ": " + volumeSize);
+        }
+        this.archive = archive;
+        this.volumeSize = volumeSize;
+        this.listener = listener;
+        this.current = open(volumePath(archive, 0));
+    }
+
+    /**
+     * Path of volume {@code disk} (counting from 0) of a split archive
+     * whose last volume is {@code archive}: the extension is replaced by
+     * .z01, .z02, ... .z99, .z100, ...
+     */
+    public static Path volumePath(Path archive, int disk) {
+        String name = archive.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return archive.resolveSibling(String.format("%s.z%02d", base, disk + 1));
+    }
+
+    // Whether archive is the last volume of a split archive, judging by its first volume
+    public static boolean isSplit(Path archive) {
+        return Files.exists(volumePath(archive, 0));
+    }
+
+    // Volume the next byte goes to
+    public int getDisk() {
+        return disk;
+    }
+
+    // Offset of the next byte within its volume
+    public long getPosition() {
+        return position;
+    }
+
+    public long getVolumeSize() {
+        return volumeSize;
+    }
+
+    // Volumes completed so far, in order
+    public List<Path> getVolumes() {
+        return Collections.unmodifiableList(volumes);
+    }
+
+    /**
+     * Moves to the next volume unless the following {@code length} bytes
+     * fit in the current one. Used for headers, which readers expect to
+     * find whole; a header longer than a volume still spans.
+     */
+    public void keepTogether(int length) throws IOException {
+        ensureOpen();
+        if (position > 0 && length > volumeSize - position) {
+            nextVolume();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        int total = src.remaining();
+        while (src.hasRemaining()) {
+            if (position == volumeSize) {
+                nextVolume();
+            }
+            int limit = src.limit();
+            if (src.remaining() > volumeSize - position) {
+                src.limit(src.position() + (int) (volumeSize - position));
+            }
+            try {
+                while (src.hasRemaining()) {
+                    position += current.write(src);
+                }
+            } finally {
+                src.limit(limit);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Completes the last volume and renames it to the archive name. Volumes
+     * left over from an earlier, longer archive of the same name are
+     * deleted, since readers would take them for part of this one.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.close();
+        Files.move(volumePath(archive, disk), archive, StandardCopyOption.REPLACE_EXISTING);
+        for (int stale = disk + 1; Files.deleteIfExists(volumePath(archive, stale)); stale++) {
+            System.out.println("Deleted stale volume " + volumePath(archive, stale));
+        }
+        finished(archive);
+    }
+
+    private void nextVolume() throws IOException {
+        current.close();
+        Path volume = volumePath(archive, disk);
+        current = open(volumePath(archive, disk + 1));
+        disk++;
+        position = 0;
+        finished(volume);
+    }
+
+    private void finished(Path volume) {
+        volumes.add(volume);
+        if (listener != null) {
+            listener.accept(volume);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static FileChannel open(Path volume) throws IOException {
+        return FileChannel.open(volume, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+}
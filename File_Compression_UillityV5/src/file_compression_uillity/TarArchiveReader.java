@@ -0,0 +1,315 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequential reader for tar archives over a channel.
+ *
+ * Understands ustar headers (with the 155-byte prefix), pax extended
+ * headers ('x' for the next entry; 'g' global headers are skipped), GNU long
+ * names ('L') and GNU base-256 numbers, so archives written by GNU tar,
+ * bsdtar and TarArchiveWriter all read back. Entry data is streamed to the
+ * target through the NioCodecEngine without buffering whole files.
+ */
+public class TarArchiveReader {
+
+    private static final int BLOCK_SIZE = TarArchiveWriter.BLOCK_SIZE;
+
+    private final NioCodecEngine engine;
+
+    public TarArchiveReader(NioCodecEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * One tar entry: the portable ArchiveEntry view plus tar's own metadata.
+     */
+    public static class Entry extends ArchiveEntry {
+        private final byte type;
+        private final int mode;
+
+        Entry(String name, long size, long lastModified, byte type, int mode) {
+            super(name, size, -1, -1, lastModified);
+            this.type = type;
+            this.mode = mode;
+        }
+
+        // Tar type flag ('0' file, '5' directory, '2' symbolic link, ...)
+        public byte getType() {
+            return type;
+        }
+
+        // Permission bits, e.g. 0644
+        public int getMode() {
+            return mode;
+        }
+
+        public boolean isRegularFile() {
+            return type == TarArchiveWriter.TYPE_FILE || type == 0 || type == '7';
+        }
+    }
+
+    /**
+     * Reads every entry and hands regular files and directories to
+     * {@code target}; other entry types (links, devices) are skipped.
+     */
+    public void read(ReadableByteChannel source, EntryTarget target) throws IOException {
+        ByteBuffer input = engine.acquireBuffer();
+        input.flip();
+        try {
+            Entry entry;
+            while ((entry = nextEntry(source, input)) != null) {
+                WritableByteChannel sink = null;
+                OutputStream out = null;
+                if (entry.isRegularFile() || entry.isDirectory()) {
+                    out = target.open(entry);
+                    sink = out == null ? null : NioCodecEngine.channelOf(out);
+                }
+                try {
+                    readData(source, input, entry.getSize(), sink);
+                } finally {
+                    if (out != null) {
+                        out.close();
+                    }
+                }
+            }
+        } finally {
+            engine.releaseBuffer(input);
+        }
+    }
+
+    /**
+     * Lists every entry, skipping over the data.
+     */
+    public List<ArchiveEntry> list(ReadableByteChannel source) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        ByteBuffer input = engine.acquireBuffer();
+        input.flip();
+        try {
+            Entry entry;
+            while ((entry = nextEntry(source, input)) != null) {
+                readData(source, input, entry.getSize(), null);
+                entries.add(entry);
+            }
+            return entries;
+        } finally {
+            engine.releaseBuffer(input);
+        }
+    }
+
+    // Copies (or skips) an entry's data and the padding after it
+    private void readData(ReadableByteChannel source, ByteBuffer input, long size, WritableByteChannel sink)
+            throws IOException {
+        long padded = (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+        engine.copy(source, input, size, sink);
+        engine.copy(source, input, padded - size, null);
+    }
+
+    private Entry nextEntry(ReadableByteChannel source, ByteBuffer input) throws IOException {
+        Map<String, String> pax = new HashMap<>();
+        String longName = null;
+        byte[] block = new byte[BLOCK_SIZE];
+        while (true) {
+            if (!readBlock(source, input, block)) {
+                // Archives cut off after the last entry are accepted, like tar does
+                return null;
+            }
+            if (isZero(block)) {
+                return null;
+            }
+            verifyChecksum(block);
+            byte type = block[156];
+            long size = parseNumber(block, 124, 12);
+            if (type == TarArchiveWriter.TYPE_PAX || type == 'g') {
+                byte[] data = readExtension(source, input, size);
+                if (type == TarArchiveWriter.TYPE_PAX) {
+                    parsePax(data, pax);
+                }
+                continue;
+            }
+            if (type == 'L' || type == 'K') {
+                byte[] data = readExtension(source, input, size);
+                if (type == 'L') {
+                    longName = cString(data, 0, data.length);
+                }
+                continue;
+            }
+
+            String name = cString(block, 0, 100);
+            if (isUstar(block)) {
+                String prefix = cString(block, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            if (longName != null) {
+                name = longName;
+            }
+            if (pax.containsKey("path")) {
+                name = pax.get("path");
+            }
+            if (pax.containsKey("size")) {
+                size = Long.parseLong(pax.get("size"));
+            }
+            long mtime = parseNumber(block, 136, 12) * 1000;
+            if (pax.containsKey("mtime")) {
+                mtime = (long) (Double.parseDouble(pax.get("mtime")) * 1000);
+            }
+            if (type == TarArchiveWriter.TYPE_DIRECTORY && !name.endsWith("/")) {
+                name = name + "/";
+            }
+            return new Entry(name, size, mtime, type, (int) parseNumber(block, 100, 8));
+        }
+    }
+
+    private byte[] readExtension(ReadableByteChannel source, ByteBuffer input, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - BLOCK_SIZE) {
+            throw new IOException("Extended tar header too large: " + size);
+        }
+        ByteOutput data = new ByteOutput((int) size);
+        readData(source, input, size, data);
+        return data.bytes;
+    }
+
+    private static void parsePax(byte[] data, Map<String, String> pax) throws IOException {
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            if (space == data.length) {
+                break;
+            }
+            int length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII).trim());
+            if (length <= 0 || pos + length > data.length) {
+                throw new IOException("Invalid pax header record");
+            }
+            String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                pax.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            pos += length;
+        }
+    }
+
+    private static boolean readBlock(ReadableByteChannel source, ByteBuffer input, byte[] block) throws IOException {
+        int filled = 0;
+        while (filled < BLOCK_SIZE) {
+            if (!input.hasRemaining()) {
+                input.clear();
+                int n = source.read(input);
+                input.flip();
+                if (n == -1) {
+                    if (filled == 0) {
+                        return false;
+                    }
+                    throw new IOException("Unexpected end of tar archive");
+                }
+            }
+            int n = Math.min(BLOCK_SIZE - filled, input.remaining());
+            input.get(block, filled, n);
+            filled += n;
+        }
+        return true;
+    }
+
+    private static void verifyChecksum(byte[] block) throws IOException {
+        long stored = parseNumber(block, 148, 8);
+        long unsigned = 0;
+        long signed = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            byte b = i >= 148 && i < 156 ? (byte) ' ' : block[i];
+            unsigned += b & 0xFF;
+            signed += b;
+        }
+        // Some old writers summed signed bytes
+        if (stored != unsigned && stored != signed) {
+            throw new IOException("Invalid tar header checksum");
+        }
+    }
+
+    /**
+     * Parses an octal header field, or a GNU base-256 number when the high
+     * bit of the first byte is set.
+     */
+    static long parseNumber(byte[] block, int offset, int length) {
+        if ((block[offset] & 0x80) != 0) {
+            long value = block[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (block[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = block[i];
+            if (b == 0) {
+                break;
+            }
+            if (b >= '0' && b <= '7') {
+                value = (value << 3) + (b - '0');
+            }
+        }
+        return value;
+    }
+
+    private static boolean isUstar(byte[] block) {
+        return block[257] == 'u' && block[258] == 's' && block[259] == 't'
+                && block[260] == 'a' && block[261] == 'r';
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String cString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // Collects a small extended header body
+    private static final class ByteOutput implements WritableByteChannel {
+        final byte[] bytes;
+        int position;
+
+        ByteOutput(int size) {
+            this.bytes = new byte[size];
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.get(bytes, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming writer for POSIX tar archives (ustar headers with pax extended
+ * headers).
+ *
+ * Every entry is a 512-byte header followed by its data padded to a whole
+ * block. The size must be known when the header is written, so callers pass
+ * it up front and then stream the data through {@link #write} or
+ * {@link #entryChannel}; nothing is buffered. Whatever does not fit the
+ * fixed ustar fields (names over 100/155+100 bytes, non-ASCII names, files
+ * of 8 GB and more, large ids) goes into a pax 'x' header before the entry,
+ * as GNU tar and bsdtar write it.
+ */
+public class TarArchiveWriter implements AutoCloseable {
+
+    static final int BLOCK_SIZE = 512;
+    // Archives are padded to whole records of 20 blocks, like tar's default blocking factor
+    static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+    static final byte TYPE_FILE = '0';
+    static final byte TYPE_DIRECTORY = '5';
+    static final byte TYPE_PAX = 'x';
+
+    // Largest values of the octal header fields
+    static final long MAX_OCTAL_SIZE = 077777777777L;
+    static final long MAX_OCTAL_ID = 07777777L;
+
+    private static final byte[] ZERO_BLOCK = new byte[BLOCK_SIZE];
+
+    private final WritableByteChannel out;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+    private final ByteBuffer padding = ByteBuffer.allocate(BLOCK_SIZE);
+
+    private long written;
+    private String currentName;
+    private long currentSize;
+    private long currentWritten;
+    private boolean entryOpen;
+    private boolean finished;
+    private WritableByteChannel entryChannel;
+
+    public TarArchiveWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a regular file entry of exactly {@code size} bytes.
+     *
+     * @param mode   permission bits (e.g. 0644)
+     * @param mtime  modification time in milliseconds since the epoch
+     */
+    public void putNextEntry(String name, long size, int mode, long mtime) throws IOException {
+        putNextEntry(name, TYPE_FILE, size, mode, mtime, 0, 0, "", "");
+    }
+
+    /**
+     * Adds a directory entry. A trailing '/' is appended to the name if
+     * missing.
+     */
+    public void putDirectory(String name, int mode, long mtime) throws IOException {
+        String dirName = name.endsWith("/") ? name : name + "/";
+        putNextEntry(dirName, TYPE_DIRECTORY, 0, mode, mtime, 0, 0, "", "");
+        closeEntry();
+    }
+
+    /**
+     * Starts an entry with full ownership information.
+     */
+    public void putNextEntry(String name, byte type, long size, int mode, long mtime,
+            long uid, long gid, String userName, String groupName) throws IOException {
+        if (finished) {
+            throw new IOException("Archive already finished");
+        }
+        if (entryOpen) {
+            throw new IOException("Entry " + currentName + " was not closed");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Entry size must be known: " + name);
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = ustarSplit(name, nameBytes);
+
+        StringBuilder pax = new StringBuilder();
+        if (split < 0) {
+            addPaxRecord(pax, "path", name);
+        }
+        if (size > MAX_OCTAL_SIZE) {
+            addPaxRecord(pax, "size", Long.toString(size));
+        }
+        if (uid > MAX_OCTAL_ID) {
+            addPaxRecord(pax, "uid", Long.toString(uid));
+        }
+        if (gid > MAX_OCTAL_ID) {
+            addPaxRecord(pax, "gid", Long.toString(gid));
+        }
+        if (pax.length() > 0) {
+            writePaxHeader(name, pax.toString().getBytes(StandardCharsets.UTF_8), mtime);
+        }
+
+        header.clear();
+        header.put(ZERO_BLOCK);
+        if (split >= 0) {
+            putString(0, 100, name.substring(split == 0 ? 0 : split + 1));
+            if (split > 0) {
+                putString(345, 155, name.substring(0, split));
+            }
+        } else {
+            // Readers without pax support still get a usable, truncated name
+            putString(0, 100, asciiFallback(name));
+        }
+        putOctal(100, 8, mode & 07777);
+        putOctal(108, 8, Math.min(uid, MAX_OCTAL_ID));
+        putOctal(116, 8, Math.min(gid, MAX_OCTAL_ID));
+        putOctal(124, 12, Math.min(size, MAX_OCTAL_SIZE));
+        putOctal(136, 12, Math.max(0, mtime / 1000));
+        header.put(156, type);
+        putString(257, 6, "ustar");
+        putString(263, 2, "00");
+        putString(265, 32, userName);
+        putString(297, 32, groupName);
+        writeHeader();
+
+        currentName = name;
+        currentSize = size;
+        currentWritten = 0;
+        entryOpen = true;
+    }
+
+    /**
+     * Writes entry data for the current entry.
+     */
+    public void write(ByteBuffer data) throws IOException {
+        ensureOpenEntry();
+        if (currentWritten + data.remaining() > currentSize) {
+            throw new IOException("Entry " + currentName + " is larger than its declared size " + currentSize);
+        }
+        while (data.hasRemaining()) {
+            int n = out.write(data);
+            currentWritten += n;
+            written += n;
+        }
+    }
+
+    public void write(byte[] data, int off, int len) throws IOException {
+        write(ByteBuffer.wrap(data, off, len));
+    }
+
+    /**
+     * Channel view over the current entry data, created once and reused.
+     */
+    public WritableByteChannel entryChannel() {
+        if (entryChannel == null) {
+            entryChannel = new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    int n = src.remaining();
+                    TarArchiveWriter.this.write(src);
+                    return n;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return out.isOpen();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+        return entryChannel;
+    }
+
+    /**
+     * Closes the current entry, padding its data to a whole block.
+     */
+    public void closeEntry() throws IOException {
+        ensureOpenEntry();
+        if (currentWritten != currentSize) {
+            throw new IOException("Entry " + currentName + " has " + currentWritten
+                    + " bytes but declared " + currentSize);
+        }
+        pad();
+        entryOpen = false;
+    }
+
+    /**
+     * Writes the two zero blocks that end the archive and pads it to a
+     * whole record. The underlying channel is left open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (entryOpen) {
+            throw new IOException("Entry " + currentName + " was not closed");
+        }
+        writeBlock(ZERO_BLOCK);
+        writeBlock(ZERO_BLOCK);
+        while (written % RECORD_SIZE != 0) {
+            writeBlock(ZERO_BLOCK);
+        }
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    public long getBytesWritten() {
+        return written;
+    }
+
+    private void ensureOpenEntry() throws IOException {
+        if (!entryOpen) {
+            throw new IOException("No open entry");
+        }
+    }
+
+    private void writePaxHeader(String name, byte[] records, long mtime) throws IOException {
+        String baseName = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+        baseName = baseName.substring(baseName.lastIndexOf('/') + 1);
+        header.clear();
+        header.put(ZERO_BLOCK);
+        putString(0, 100, asciiFallback("PaxHeaders/" + baseName));
+        putOctal(100, 8, 0644);
+        putOctal(108, 8, 0);
+        putOctal(116, 8, 0);
+        putOctal(124, 12, records.length);
+        putOctal(136, 12, Math.max(0, mtime / 1000));
+        header.put(156, TYPE_PAX);
+        putString(257, 6, "ustar");
+        putString(263, 2, "00");
+        writeHeader();
+        writeFully(ByteBuffer.wrap(records));
+        currentWritten = records.length;
+        pad();
+    }
+
+    // A pax record is "<length> <key>=<value>\n", where length counts the whole record
+    static void addPaxRecord(StringBuilder pax, String key, String value) {
+        int body = 3 + key.getBytes(StandardCharsets.UTF_8).length
+                + value.getBytes(StandardCharsets.UTF_8).length;
+        int length = body + Integer.toString(body).length();
+        if (Integer.toString(length).length() != Integer.toString(body).length()) {
+            length++;
+        }
+        pax.append(length).append(' ').append(key).append('=').append(value).append('\n');
+    }
+
+    /**
+     * Finds where to split a name into the ustar prefix (155 bytes) and name
+     * (100 bytes) fields: 0 if it fits the name field alone, the index of
+     * the separating '/' otherwise, or -1 if it needs a pax header.
+     */
+    private static int ustarSplit(String name, byte[] nameBytes) {
+        if (nameBytes.length != name.length()) {
+            // Non-ASCII names always go to pax, which is defined as UTF-8
+            return -1;
+        }
+        if (nameBytes.length <= 100) {
+            return 0;
+        }
+        for (int i = Math.min(155, name.length() - 1); i > 0; i--) {
+            if (name.charAt(i) == '/' && name.length() - i - 1 <= 100 && name.length() - i - 1 > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String asciiFallback(String name) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < name.length() && b.length() < 100; i++) {
+            char c = name.charAt(i);
+            b.append(c < 0x80 ? c : '_');
+        }
+        return b.toString();
+    }
+
+    private void putString(int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        header.put(offset, bytes, 0, Math.min(bytes.length, length));
+    }
+
+    // Octal digits padded with zeros, followed by a NUL
+    private void putOctal(int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int index = i - (digits - octal.length());
+            header.put(offset + i, (byte) (index < 0 ? '0' : octal.charAt(index)));
+        }
+        header.put(offset + digits, (byte) 0);
+    }
+
+    private void writeHeader() throws IOException {
+        // The checksum is computed with the checksum field itself set to spaces
+        for (int i = 148; i < 156; i++) {
+            header.put(i, (byte) ' ');
+        }
+        long sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += header.get(i) & 0xFF;
+        }
+        String octal = Long.toOctalString(sum);
+        for (int i = 0; i < 6; i++) {
+            int index = i - (6 - octal.length());
+            header.put(148 + i, (byte) (index < 0 ? '0' : octal.charAt(index)));
+        }
+        header.put(154, (byte) 0);
+        header.put(155, (byte) ' ');
+        header.clear();
+        writeFully(header);
+    }
+
+    private void pad() throws IOException {
+        int remainder = (int) (currentWritten % BLOCK_SIZE);
+        if (remainder != 0) {
+            padding.clear().limit(BLOCK_SIZE - remainder);
+            writeFully(padding);
+        }
+    }
+
+    private void writeBlock(byte[] block) throws IOException {
+        writeFully(ByteBuffer.wrap(block));
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            written += out.write(data);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package file_compression_uillity;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compressor for tar archives, optionally gzip- or xz-compressed.
+ *
+ * Directory trees are streamed entry by entry through a TarArchiveWriter,
+ * with POSIX permissions, owner and modification time taken from the files;
+ * no file is ever held in memory. The .tar.gz layer is a
+ * ParallelGzipOutputStream, so gzip compression runs on all cores, and the
+ * .tar.xz layer pipes through the xz tool (see XzProcessAdapter).
+ */
+public class TarCompressor implements Compressor {
+
+    // Outer compression applied to the tar stream
+    public enum Compression {
+        NONE(".tar"),
+        GZIP(".tar.gz"),
+        XZ(".tar.xz");
+
+        private final String extension;
+
+        Compression(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    // Archive name suffixes recognised when extracting into a folder
+    private static final String[] ARCHIVE_SUFFIXES = { ".tar.gz", ".tgz", ".tar.xz", ".txz", ".tar" };
+
+    // Streams of unknown length are spooled up to this size in memory, then to a temp file
+    private static final long SPOOL_THRESHOLD = 1024 * 1024;
+
+    private final Compression compression;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private CompressionProfile profile = CompressionProfile.BALANCED;
+    private String xzExecutablePath = "xz";
+    // Counts the files and archive read and written by the path-based methods
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public TarCompressor() {
+        this(Compression.NONE);
+    }
+
+    public TarCompressor(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    // Threads used by the gzip and xz layers
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public CompressionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    public void setXzExecutablePath(String xzExecutablePath) {
+        this.xzExecutablePath = xzExecutablePath;
+    }
+
+    public String getXzExecutablePath() {
+        return xzExecutablePath;
+    }
+
+    @Override
+    public String getExtension() {
+        return compression.getExtension();
+    }
+
+    @Override
+    public boolean compress(String filePath) {
+        try {
+            File file = new File(filePath);
+            if (!file.exists()) {
+                System.out.println("File does not exist: " + filePath);
+                return false;
+            }
+
+            // Create the archive in the SAME directory; directories keep their full name
+            String baseName = filePath;
+            if (file.isFile() && file.getName().lastIndexOf('.') > 0) {
+                baseName = filePath.substring(0, filePath.lastIndexOf('.'));
+            }
+            String archivePath = baseName + getExtension();
+
+            System.out.println("Compressing: " + filePath + " to " + archivePath);
+            writeArchive(new File[] { file }, archivePath);
+
+            File archiveFile = new File(archivePath);
+            System.out.println("Tar archive created successfully: " + archivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                System.out.println("No files provided for compression");
+                return false;
+            }
+
+            System.out.println("Compressing " + filePaths.length + " files to: " + outputArchivePath);
+
+            List<File> files = new ArrayList<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                files.add(file);
+            }
+            writeArchive(files.toArray(new File[0]), outputArchivePath);
+
+            File archiveFile = new File(outputArchivePath);
+            System.out.println("Multi-file tar archive created successfully: " + outputArchivePath);
+            System.out.println("Archive size: " + archiveFile.length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Multi-file compression error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    // Writes files and directory trees, each under its own name at the top level
+    private void writeArchive(File[] roots, String archivePath) throws IOException {
+        List<String> topLevel = new ArrayList<>();
+        for (File root : roots) {
+            if (topLevel.contains(root.getName())) {
+                throw new IOException("duplicate entry: " + root.getName());
+            }
+            topLevel.add(root.getName());
+        }
+        NioCodecEngine engine = engineFor(archivePath);
+        try (FileOutputStream fos = new FileOutputStream(archivePath);
+             OutputStream out = compressing(progress.output(fos))) {
+            TarArchiveWriter writer = new TarArchiveWriter(NioCodecEngine.channelOf(out));
+            for (File root : roots) {
+                addTree(writer, root.toPath(), engine);
+            }
+            writer.finish();
+        }
+    }
+
+    private void addTree(TarArchiveWriter writer, Path root, NioCodecEngine engine) throws IOException {
+        Path base = root.toAbsolutePath().getParent();
+        List<Path> paths;
+        // Symbolic links are not followed, so a link to a parent cannot loop
+        try (Stream<Path> walk = Files.walk(root.toAbsolutePath())) {
+            paths = walk.toList();
+        }
+        for (Path path : paths) {
+            String name = base.relativize(path).toString().replace(File.separatorChar, '/');
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                addEntry(writer, path, name + "/", TarArchiveWriter.TYPE_DIRECTORY, 0, null, engine);
+            } else if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                try (FileChannel channel = FileChannel.open(path)) {
+                    System.out.println("Adding: " + name + " (" + channel.size() + " bytes)");
+                    addEntry(writer, path, name, TarArchiveWriter.TYPE_FILE, channel.size(),
+                            progress.reading(channel), engine);
+                }
+                progress.entryDone();
+            } else {
+                System.out.println("Skipping link or special file: " + path);
+            }
+        }
+    }
+
+    // Adds one entry with the permissions and ownership of the file, where the filesystem has them
+    private static void addEntry(TarArchiveWriter writer, Path path, String name, byte type, long size,
+            ReadableByteChannel data, NioCodecEngine engine) throws IOException {
+        boolean directory = type == TarArchiveWriter.TYPE_DIRECTORY;
+        int mode = directory ? 0755 : 0644;
+        long uid = 0;
+        long gid = 0;
+        String userName = "";
+        String groupName = "";
+        long mtime = Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+        try {
+            PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            mode = toMode(attributes.permissions());
+            userName = attributes.owner().getName();
+            groupName = attributes.group().getName();
+            uid = ((Number) Files.getAttribute(path, "unix:uid", LinkOption.NOFOLLOW_LINKS)).longValue();
+            gid = ((Number) Files.getAttribute(path, "unix:gid", LinkOption.NOFOLLOW_LINKS)).longValue();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // Not a POSIX filesystem (e.g. Windows): keep the default mode
+        }
+        writer.putNextEntry(name, type, size, mode, mtime, uid, gid, userName, groupName);
+        if (data != null) {
+            engine.copy(data, size, writer.entryChannel());
+        }
+        writer.closeEntry();
+    }
+
+    @Override
+    public boolean decompress(String filePath) {
+        try {
+            File archiveFile = new File(filePath).getAbsoluteFile();
+            String outputDir = archiveFile.getParent();
+
+            // Folder named after the archive without its (double) extension
+            File extractFolder = new File(outputDir + File.separator + stripArchiveSuffix(archiveFile.getName()));
+            extractFolder.mkdir();
+
+            extract(filePath, name -> true, extractFolder.toPath());
+
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public int extractSelected(String archivePath, String pattern, String outputDir) throws IOException {
+        return extract(archivePath, EntryPaths.globMatcher(pattern), Path.of(outputDir));
+    }
+
+    // Extracts the matching entries, restoring permissions and modification times
+    private int extract(String archivePath, Predicate<String> matcher, Path outputRoot) throws IOException {
+        int[] extracted = new int[1];
+        List<Path> directories = new ArrayList<>();
+        List<TarArchiveReader.Entry> directoryEntries = new ArrayList<>();
+        try (FileInputStream fis = new FileInputStream(archivePath);
+             InputStream in = decompressing(progress.input(fis))) {
+            new TarArchiveReader(engineFor(archivePath)).read(NioCodecEngine.channelOf(in), archiveEntry -> {
+                TarArchiveReader.Entry entry = (TarArchiveReader.Entry) archiveEntry;
+                if (!matcher.test(entry.getName())) {
+                    return null;
+                }
+                Path target = EntryPaths.resolve(outputRoot, entry.getName());
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    // Directory times are set last, after their content was written
+                    directories.add(target);
+                    directoryEntries.add(entry);
+                    return null;
+                }
+                Files.createDirectories(target.getParent());
+                extracted[0]++;
+                return new FilterOutputStream(progress.output(new FileOutputStream(target.toFile()))) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        restoreAttributes(target, entry);
+                        progress.entryDone();
+                    }
+                };
+            });
+            readToEnd(in);
+        }
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            restoreAttributes(directories.get(i), directoryEntries.get(i));
+        }
+        return extracted[0];
+    }
+
+    private static void restoreAttributes(Path target, TarArchiveReader.Entry entry) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, toPermissions(entry.getMode()));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX filesystem: permissions cannot be restored
+        }
+        if (entry.getLastModified() > 0) {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(entry.getLastModified()));
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (FileInputStream fis = new FileInputStream(archivePath)) {
+            return list(fis);
+        }
+    }
+
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        try (OutputStream out = compressing(archive)) {
+            TarArchiveWriter writer = new TarArchiveWriter(NioCodecEngine.channelOf(out));
+            addStream(writer, entryName, source, System.currentTimeMillis(), engine());
+            writer.finish();
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        NioCodecEngine engine = engine();
+        long now = System.currentTimeMillis();
+        try (OutputStream out = compressing(archive)) {
+            TarArchiveWriter writer = new TarArchiveWriter(NioCodecEngine.channelOf(out));
+            for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                try (InputStream in = entry.getValue().open()) {
+                    addStream(writer, entry.getKey(), in, now, engine);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    // Adds a stream as a regular file entry; the stream is not closed
+    private static void addStream(TarArchiveWriter writer, String entryName, InputStream in, long mtime,
+            NioCodecEngine engine) throws IOException {
+        ReadableByteChannel source = NioCodecEngine.channelOf(in);
+        if (source instanceof FileChannel fc) {
+            long size = fc.size() - fc.position();
+            writer.putNextEntry(entryName, size, 0644, mtime);
+            engine.copy(fc, size, writer.entryChannel());
+        } else {
+            // The header needs the size before the data, so other streams are spooled first
+            try (ScatterBuffer spool = new ScatterBuffer(SPOOL_THRESHOLD)) {
+                in.transferTo(spool);
+                writer.putNextEntry(entryName, spool.size(), 0644, mtime);
+                spool.writeTo(Channels.newOutputStream(writer.entryChannel()));
+            }
+        }
+        writer.closeEntry();
+    }
+
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        try (InputStream in = decompressing(archive)) {
+            new TarArchiveReader(engine()).read(NioCodecEngine.channelOf(in), target);
+            readToEnd(in);
+        }
+    }
+
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        try (InputStream in = decompressing(archive)) {
+            return new TarArchiveReader(engine()).list(NioCodecEngine.channelOf(in));
+        }
+    }
+
+    @Override
+    public void decompress(ReadableByteChannel archive, EntryTarget target) throws IOException {
+        decompress(Channels.newInputStream(archive), target);
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, WritableByteChannel archive)
+            throws IOException {
+        compressMultiple(entries, Channels.newOutputStream(archive));
+    }
+
+    /**
+     * Wraps the archive stream in the compression layer. Closing the result
+     * completes the compressed stream but leaves {@code archive} open.
+     */
+    private OutputStream compressing(OutputStream archive) throws IOException {
+        OutputStream target = new NonClosingOutputStream(archive);
+        switch (compression) {
+            case GZIP:
+                return new ParallelGzipOutputStream(new BufferedOutputStream(target), workerCount,
+                        profile.getLevel());
+            case XZ:
+                return new BufferedOutputStream(new XzProcessAdapter(xzExecutablePath)
+                        .compressing(target, profile.getLevel(), workerCount));
+            default:
+                return new BufferedOutputStream(target);
+        }
+    }
+
+    /**
+     * Wraps the archive stream in the matching decompression layer. Closing
+     * the result leaves {@code archive} open.
+     */
+    private InputStream decompressing(InputStream archive) throws IOException {
+        InputStream source = new FilterInputStream(archive) {
+            @Override
+            public void close() {
+                // The caller owns the archive stream
+            }
+        };
+        switch (compression) {
+            case GZIP:
+                return new GZIPInputStream(source, 64 * 1024);
+            case XZ:
+                return new XzProcessAdapter(xzExecutablePath).decompressing(source);
+            default:
+                return source;
+        }
+    }
+
+    /**
+     * Reads the rest of a stream after the end-of-archive blocks. The tar
+     * reader stops at those, so without this gzip would never reach its
+     * trailer, and data damaged in the last member would go unnoticed
+     * (deflate itself has no checksum).
+     */
+    private static void readToEnd(InputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private NioCodecEngine engine() {
+        return new NioCodecEngine();
+    }
+
+    private NioCodecEngine engineFor(String filePath) {
+        Path path = Path.of(filePath).toAbsolutePath();
+        return new NioCodecEngine(NioCodecEngine.bufferSizeFor(path.getParent(), NioCodecEngine.DEFAULT_BUFFER_SIZE),
+                NioCodecEngine.DEFAULT_MMAP_THRESHOLD);
+    }
+
+    private static String stripArchiveSuffix(String fileName) {
+        String lower = fileName.toLowerCase();
+        for (String suffix : ARCHIVE_SUFFIXES) {
+            if (lower.endsWith(suffix) && lower.length() > suffix.length()) {
+                return fileName.substring(0, fileName.length() - suffix.length());
+            }
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName + "_extracted";
+    }
+
+    private static int toMode(Set<PosixFilePermission> permissions) {
+        int mode = 0;
+        for (PosixFilePermission permission : permissions) {
+            // OWNER_READ is ordinal 0 and maps to 0400, down to OTHERS_EXECUTE = 0001
+            mode |= 0400 >> permission.ordinal();
+        }
+        return mode;
+    }
+
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PosixFilePermission.values()) {
+            if ((mode & (0400 >> permission.ordinal())) != 0) {
+                permissions.add(permission);
+            }
+        }
+        return permissions;
+    }
+}
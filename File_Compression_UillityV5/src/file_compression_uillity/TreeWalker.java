@@ -0,0 +1,311 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Walks directory trees on a pool of threads and hands out the files it
+ * finds, in a fixed order, while it is still walking.
+ *
+ * Entries come out depth first: the roots in the order given, and the
+ * children of every directory sorted by name, so the same tree always
+ * yields the same sequence and compressors write the same archive. The
+ * walker threads list directories ahead of the consumer: whenever a
+ * directory has been listed, its subdirectories are handed to the pool,
+ * which lists them and stats their children while the consumer is still
+ * busy with earlier entries. Deep or wide trees (and slow or network
+ * filesystems) are thus enumerated concurrently, and a consumer can start
+ * compressing the first file at once. At most lookAhead directories are
+ * listed ahead; beyond that next() lists a directory itself when it gets
+ * there, so memory stays bounded by the look-ahead and the directories on
+ * the current path, not by the number of files.
+ *
+ * Entry names are relative to each root's parent, with '/' separators, so
+ * walking "/data/logs" yields "logs/2024/app.log". Symbolic links and
+ * special files are skipped and passed to the skip listener. Include globs
+ * select the files to keep; exclude globs drop files and prune whole
+ * directories (e.g. "**node_modules"). Both match the entry name (see
+ * EntryPaths.globMatcher). Directory entries are only produced when there
+ * are no include globs.
+ */
+public class TreeWalker implements AutoCloseable {
+
+    public static final int DEFAULT_LOOK_AHEAD = 256;
+
+    /**
+     * A file or directory found by the walk.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        Entry(Path path, String name, boolean directory, long size, long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        // Relative name with '/' separators; directories end with '/'
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    // One child of a listed directory: an entry (with its listing if it is a directory) or a skipped path
+    private static final class Found {
+        final Entry entry;
+        final Listing listing;
+        final Path skipped;
+
+        Found(Entry entry, Listing listing, Path skipped) {
+            this.entry = entry;
+            this.listing = listing;
+            this.skipped = skipped;
+        }
+    }
+
+    // A directory to list, by a walker thread ahead of time or by next() once it gets there
+    private final class Listing {
+        private final Path directory;
+        private final FutureTask<List<Found>> task;
+        private volatile boolean ahead;
+
+        Listing(Path directory, Path base) {
+            this.directory = directory;
+            this.task = new FutureTask<>(() -> list(directory, base));
+        }
+
+        List<Found> await() throws IOException {
+            // Lists the directory here unless a walker thread already has it
+            task.run();
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Directory walk interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Could not list " + directory, e.getCause());
+            } finally {
+                if (ahead) {
+                    listedAhead.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private final int workers;
+    private final int lookAhead;
+    private final List<Predicate<String>> includes = new ArrayList<>();
+    private final List<Predicate<String>> excludes = new ArrayList<>();
+    private final AtomicInteger listedAhead = new AtomicInteger();
+    private final Deque<Iterator<Found>> path = new ArrayDeque<>();
+    private Consumer<Path> skipListener = skipped -> { };
+    private ExecutorService pool;
+    private volatile boolean stopped;
+
+    public TreeWalker(int workers) {
+        this(workers, DEFAULT_LOOK_AHEAD);
+    }
+
+    public TreeWalker(int workers, int lookAhead) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        if (lookAhead < 0) {
+            throw new IllegalArgumentException("Look-ahead must not be negative: " + lookAhead);
+        }
+        this.workers = workers;
+        this.lookAhead = lookAhead;
+    }
+
+    // Keeps only the files matching one of the globs; call before start()
+    public void addInclude(String glob) {
+        includes.add(EntryPaths.globMatcher(glob));
+    }
+
+    // Drops the files and directories matching the glob; call before start()
+    public void addExclude(String glob) {
+        excludes.add(EntryPaths.globMatcher(glob));
+    }
+
+    // Called by next(), in walk order, with every link or special file skipped
+    public void setSkipListener(Consumer<Path> skipListener) {
+        this.skipListener = skipListener;
+    }
+
+    /**
+     * Starts walking the given files and directories. A root that does not
+     * exist fails the walk before anything is found.
+     */
+    public void start(List<Path> roots) throws IOException {
+        if (pool != null) {
+            throw new IllegalStateException("Walk already started");
+        }
+        List<Path> absolute = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+                throw new NoSuchFileException(root.toString());
+            }
+            absolute.add(root.toAbsolutePath().normalize());
+        }
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "tree-walk");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Found> found = new ArrayList<>();
+        for (Path root : absolute) {
+            visit(found, root, root.getParent());
+        }
+        path.push(found.iterator());
+    }
+
+    /**
+     * Takes the next entry, waiting for the walkers if necessary.
+     *
+     * @return null once the walk is complete
+     * @throws IOException if a directory could not be read
+     */
+    public Entry next() throws IOException {
+        while (!path.isEmpty()) {
+            Iterator<Found> siblings = path.peek();
+            if (!siblings.hasNext()) {
+                path.pop();
+                continue;
+            }
+            Found found = siblings.next();
+            if (found.skipped != null) {
+                skipListener.accept(found.skipped);
+                continue;
+            }
+            if (found.listing != null) {
+                path.push(found.listing.await().iterator());
+                if (!includes.isEmpty()) {
+                    continue;
+                }
+            }
+            return found.entry;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        path.clear();
+    }
+
+    // Lists one directory, sorted by name; its subdirectories are handed to the pool
+    private List<Found> list(Path directory, Path base) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        }
+        children.sort(Comparator.comparing(child -> child.getFileName().toString()));
+        List<Found> found = new ArrayList<>(children.size());
+        for (Path child : children) {
+            if (stopped) {
+                break;
+            }
+            visit(found, child, base);
+        }
+        return found;
+    }
+
+    private void visit(List<Found> found, Path path, Path base) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        String name = base == null ? path.toString() : base.relativize(path).toString();
+        name = name.replace(path.getFileSystem().getSeparator(), "/");
+        if (attributes.isDirectory()) {
+            if (matches(excludes, name)) {
+                return;
+            }
+            Listing listing = new Listing(path, base);
+            found.add(new Found(new Entry(path, name + "/", true, 0, attributes.lastModifiedTime().toMillis()),
+                    listing, null));
+            listAhead(listing);
+        } else if (attributes.isRegularFile()) {
+            if ((includes.isEmpty() || matches(includes, name)) && !matches(excludes, name)) {
+                found.add(new Found(new Entry(path, name, false, attributes.size(),
+                        attributes.lastModifiedTime().toMillis()), null, null));
+            }
+        } else {
+            found.add(new Found(null, null, path));
+        }
+    }
+
+    // Hands a directory to the pool unless lookAhead directories are already listed ahead
+    private void listAhead(Listing listing) {
+        if (stopped || listedAhead.incrementAndGet() > lookAhead) {
+            listedAhead.decrementAndGet();
+            return;
+        }
+        listing.ahead = true;
+        try {
+            pool.execute(listing.task);
+        } catch (RejectedExecutionException e) {
+            // Closed while walking
+            listing.ahead = false;
+            listedAhead.decrementAndGet();
+        }
+    }
+
+    private static boolean matches(List<Predicate<String>> globs, String name) {
+        for (Predicate<String> glob : globs) {
+            if (glob.test(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
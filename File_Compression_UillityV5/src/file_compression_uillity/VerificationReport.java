@@ -0,0 +1,184 @@
+package file_compression_uillity;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Outcome of Compressor.verify: how much of an archive was checked and
+ * which entries are damaged.
+ *
+ * Verifiers may run entries on several threads, so the counters and the
+ * failure list are updated under the report's lock.
+ */
+public class VerificationReport {
+
+    private int entryCount;
+    private long byteCount;
+    private final List<Failure> failures = new ArrayList<>();
+
+    // Records an entry that decompressed to its recorded size and CRC
+    public synchronized void addEntry(long size) {
+        entryCount++;
+        byteCount += size;
+    }
+
+    /**
+     * Records a damaged entry.
+     *
+     * @param offset position of the entry (or of the block holding it) in
+     *               the archive, or -1 if the format does not tell
+     */
+    public synchronized void addFailure(String name, long offset, String message) {
+        failures.add(new Failure(name, offset, message));
+    }
+
+    // Adds the results of a report filled by one worker
+    synchronized void addAll(VerificationReport other) {
+        entryCount += other.entryCount;
+        byteCount += other.byteCount;
+        failures.addAll(other.failures);
+    }
+
+    // Entries found intact
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    // Uncompressed bytes of the intact entries
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Damaged entries, by offset in the archive.
+     */
+    public synchronized List<Failure> getFailures() {
+        List<Failure> sorted = new ArrayList<>(failures);
+        sorted.sort(Comparator.comparingLong(Failure::getOffset));
+        return sorted;
+    }
+
+    public synchronized boolean isOk() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Sink for the content of {@code entry} that only counts and checksums
+     * it; closing it records the entry as intact, or as damaged if the size
+     * or CRC differs from the recorded ones (when the format records them).
+     */
+    public OutputStream sinkFor(ArchiveEntry entry) {
+        return newSink(entry);
+    }
+
+    EntrySink newSink(ArchiveEntry entry) {
+        return new EntrySink(entry, -1);
+    }
+
+    // As above, reporting a damaged entry at the given offset
+    public OutputStream sinkFor(ArchiveEntry entry, long offset) {
+        return new EntrySink(entry, offset);
+    }
+
+    // Records a damaged entry in place of what its sink reported on close
+    synchronized void replaceFailure(String name, long offset, String message) {
+        failures.removeIf(failure -> failure.getName().equals(name));
+        failures.add(new Failure(name, offset, message));
+    }
+
+    // Checking sink of one entry; see sinkFor
+    final class EntrySink extends OutputStream {
+
+        private final ArchiveEntry entry;
+        private final long offset;
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private boolean closed;
+        private boolean intact;
+
+        EntrySink(ArchiveEntry entry, long offset) {
+            this.entry = entry;
+            this.offset = offset;
+        }
+
+        ArchiveEntry getEntry() {
+            return entry;
+        }
+
+        // Closed and found to match the recorded size and CRC
+        boolean isIntact() {
+            return closed && intact;
+        }
+
+        @Override
+        public void write(int b) {
+            crc.update(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (entry.getSize() >= 0 && size != entry.getSize()) {
+                addFailure(entry.getName(), offset, "Size " + size + " does not match the recorded "
+                        + entry.getSize());
+            } else if (entry.getCrc() >= 0 && crc.getValue() != entry.getCrc()) {
+                addFailure(entry.getName(), offset, "CRC mismatch");
+            } else {
+                intact = true;
+                addEntry(size);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return entryCount + " entries (" + byteCount + " bytes) intact, " + failures.size() + " damaged";
+    }
+
+    /**
+     * One damaged entry.
+     */
+    public static class Failure {
+
+        private final String name;
+        private final long offset;
+        private final String message;
+
+        public Failure(String name, long offset, String message) {
+            this.name = name;
+            this.offset = offset;
+            this.message = message;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Position in the archive, or -1 if unknown
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return name + (offset >= 0 ? " at offset " + offset : "") + ": " + message;
+        }
+    }
+}
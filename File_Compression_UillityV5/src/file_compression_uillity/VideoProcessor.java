@@ -1,11 +1,16 @@
 package file_compression_uillity;
 
+import java.util.Set;
+
 /**
  * Video File Processor - Factory Pattern Implementation
  * Handles video files with format validation
  */
 public class VideoProcessor implements FileTypeProcessor {
 
+    // AVI can hold uncompressed frames, so it is left to the probe
+    private static final Set<String> COMPRESSED_FORMATS = Set.of("mp4", "mkv", "mov", "wmv", "flv", "webm");
+
     @Override
     public byte[] prepareForCompression(byte[] data) {
         try {
@@ -64,4 +69,9 @@ public class VideoProcessor implements FileTypeProcessor {
     public String getFileType() {
         return "Video";
     }
+
+    @Override
+    public boolean isPrecompressed(String extension) {
+        return COMPRESSED_FORMATS.contains(extension.toLowerCase());
+    }
 }
@@ -0,0 +1,158 @@
+package file_compression_uillity;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash32, the checksum used by the LZ4 frame format for its header,
+ * block and content checksums.
+ *
+ * Use {@link #hash} for a single buffer, or an instance to hash data that
+ * arrives in pieces (update, then getValue).
+ */
+public final class XXHash32 {
+
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final int seed;
+    private final byte[] pending = new byte[16];
+    private int pendingLength;
+    private long totalLength;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
+
+    public XXHash32() {
+        this(0);
+    }
+
+    public XXHash32(int seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        pendingLength = 0;
+        totalLength = 0;
+    }
+
+    public void update(byte[] data, int off, int len) {
+        totalLength += len;
+        if (pendingLength + len < 16) {
+            System.arraycopy(data, off, pending, pendingLength, len);
+            pendingLength += len;
+            return;
+        }
+        int end = off + len;
+        if (pendingLength > 0) {
+            int fill = 16 - pendingLength;
+            System.arraycopy(data, off, pending, pendingLength, fill);
+            stripe(pending, 0);
+            off += fill;
+            pendingLength = 0;
+        }
+        int limit = end - 16;
+        int a = v1;
+        int b = v2;
+        int c = v3;
+        int d = v4;
+        while (off <= limit) {
+            a = round(a, (int) INT_LE.get(data, off));
+            b = round(b, (int) INT_LE.get(data, off + 4));
+            c = round(c, (int) INT_LE.get(data, off + 8));
+            d = round(d, (int) INT_LE.get(data, off + 12));
+            off += 16;
+        }
+        v1 = a;
+        v2 = b;
+        v3 = c;
+        v4 = d;
+        if (off < end) {
+            System.arraycopy(data, off, pending, 0, end - off);
+            pendingLength = end - off;
+        }
+    }
+
+    public int getValue() {
+        int h;
+        if (totalLength >= 16) {
+            h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+                    + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += (int) totalLength;
+        return finish(h, pending, 0, pendingLength);
+    }
+
+    /**
+     * Hashes {@code len} bytes of {@code data} in one call.
+     */
+    public static int hash(byte[] data, int off, int len, int seed) {
+        int end = off + len;
+        int h;
+        if (len >= 16) {
+            int limit = end - 16;
+            int a = seed + PRIME1 + PRIME2;
+            int b = seed + PRIME2;
+            int c = seed;
+            int d = seed - PRIME1;
+            while (off <= limit) {
+                a = round(a, (int) INT_LE.get(data, off));
+                b = round(b, (int) INT_LE.get(data, off + 4));
+                c = round(c, (int) INT_LE.get(data, off + 8));
+                d = round(d, (int) INT_LE.get(data, off + 12));
+                off += 16;
+            }
+            h = Integer.rotateLeft(a, 1) + Integer.rotateLeft(b, 7)
+                    + Integer.rotateLeft(c, 12) + Integer.rotateLeft(d, 18);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += len;
+        return finish(h, data, off, end - off);
+    }
+
+    private void stripe(byte[] data, int off) {
+        v1 = round(v1, (int) INT_LE.get(data, off));
+        v2 = round(v2, (int) INT_LE.get(data, off + 4));
+        v3 = round(v3, (int) INT_LE.get(data, off + 8));
+        v4 = round(v4, (int) INT_LE.get(data, off + 12));
+    }
+
+    private static int round(int acc, int input) {
+        return Integer.rotateLeft(acc + input * PRIME2, 13) * PRIME1;
+    }
+
+    // Mixes in the last (fewer than 16) bytes and avalanches
+    private static int finish(int h, byte[] data, int off, int len) {
+        int end = off + len;
+        while (off + 4 <= end) {
+            h = Integer.rotateLeft(h + (int) INT_LE.get(data, off) * PRIME3, 17) * PRIME4;
+            off += 4;
+        }
+        while (off < end) {
+            h = Integer.rotateLeft(h + (data[off] & 0xFF) * PRIME5, 11) * PRIME1;
+            off++;
+        }
+        h ^= h >>> 15;
+        h *= PRIME2;
+        h ^= h >>> 13;
+        h *= PRIME3;
+        h ^= h >>> 16;
+        return h;
+    }
+}
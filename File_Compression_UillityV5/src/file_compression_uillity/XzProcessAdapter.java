@@ -0,0 +1,151 @@
+package file_compression_uillity;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Adapter Pattern Implementation
+ *
+ * Wraps the external xz command-line tool as plain Java streams, so the tar
+ * compressor can write .tar.xz without an xz library. Data is piped through
+ * the process: one side is written or read by the caller, the other side is
+ * pumped by a background thread.
+ */
+public class XzProcessAdapter {
+
+    private final String xzExecutablePath;
+
+    public XzProcessAdapter(String xzExecutablePath) {
+        this.xzExecutablePath = xzExecutablePath;
+    }
+
+    /**
+     * Returns a stream whose bytes are compressed by "xz -z -c" into
+     * {@code target}. Closing it waits for xz to finish; {@code target}
+     * is left open.
+     *
+     * @param level   xz preset (0-9)
+     * @param threads number of xz worker threads (-T)
+     */
+    public OutputStream compressing(OutputStream target, int level, int threads) throws IOException {
+        Process process = start(xzExecutablePath, "-z", "-c", "-" + level, "-T" + threads);
+        Pump pump = new Pump(process.getInputStream(), target, false);
+        pump.start();
+        return new FilterOutputStream(process.getOutputStream()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                pump.await();
+                waitFor(process);
+            }
+        };
+    }
+
+    /**
+     * Returns the output of "xz -d -c" fed from {@code source}. The exit code
+     * of xz is checked when the end of the stream is reached.
+     */
+    public InputStream decompressing(InputStream source) throws IOException {
+        Process process = start(xzExecutablePath, "-d", "-c");
+        Pump pump = new Pump(source, process.getOutputStream(), true);
+        pump.start();
+        return new FilterInputStream(process.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                return checkEnd(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checkEnd(in.read(b, off, len));
+            }
+
+            private int checkEnd(int n) throws IOException {
+                if (n == -1) {
+                    pump.await();
+                    waitFor(process);
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    process.destroy();
+                }
+            }
+        };
+    }
+
+    private static Process start(String... command) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        // xz only writes diagnostics to stderr; let them reach the console
+        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return processBuilder.start();
+    }
+
+    private static void waitFor(Process process) throws IOException {
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("xz failed with exit code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for xz");
+        }
+    }
+
+    // Copies one side of the pipe on a background thread
+    private static final class Pump extends Thread {
+        private final InputStream from;
+        private final OutputStream to;
+        private final boolean closeTarget;
+        private volatile IOException failure;
+
+        Pump(InputStream from, OutputStream to, boolean closeTarget) {
+            super("xz-pump");
+            setDaemon(true);
+            this.from = from;
+            this.to = to;
+            this.closeTarget = closeTarget;
+        }
+
+        @Override
+        public void run() {
+            try {
+                from.transferTo(to);
+                if (closeTarget) {
+                    to.close();
+                } else {
+                    to.flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        void await() throws IOException {
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for xz");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
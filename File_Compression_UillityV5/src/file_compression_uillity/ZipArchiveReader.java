@@ -0,0 +1,508 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Random-access ZIP reader.
+ *
+ * The central directory is read once from the end of the file, which gives
+ * the full entry listing (names, sizes, CRCs) without touching the entry
+ * data. Single entries are then extracted by seeking straight to their
+ * local header, so pulling one small file out of a huge archive only reads
+ * that file's bytes.
+ *
+ * All reads are positional, so one reader can be shared by several threads
+ * extracting different entries at the same time.
+ *
+ * Split archives are opened through their last volume (the .zip file);
+ * the other volumes are found next to it and read in place, see ZipVolumes.
+ *
+ * A shared dictionary (see ZipDictionary) is loaded when the archive is
+ * opened and applied to the entries that need it; the dictionary entry
+ * itself is not listed.
+ */
+public final class ZipArchiveReader implements AutoCloseable {
+
+    // End record is 22 bytes, preceded by up to 64 KB of comment
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final Path archive;
+    // Only the last volume until the end record tells how many there are
+    private ZipVolumes volumes;
+    private final NioCodecEngine engine;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+    private final ZipDictionary dictionary;
+    // Where the central directory starts (as a position in the volumes) and how long it is
+    private long centralDirectoryOffset;
+    private long centralDirectorySize;
+
+    public ZipArchiveReader(Path archive) throws IOException {
+        this(archive, new NioCodecEngine());
+    }
+
+    public ZipArchiveReader(Path archive, NioCodecEngine engine) throws IOException {
+        this.archive = archive;
+        this.volumes = new ZipVolumes(FileChannel.open(archive, StandardOpenOption.READ));
+        this.engine = engine;
+        try {
+            List<Entry> all = readCentralDirectory();
+            this.dictionary = readDictionary(all);
+            this.entries = Collections.unmodifiableList(dictionary == null ? all : all.subList(1, all.size()));
+        } catch (IOException | RuntimeException e) {
+            volumes.close();
+            throw e;
+        }
+        this.entriesByName = new HashMap<>();
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.getName(), entry);
+        }
+    }
+
+    /**
+     * All entries in central directory order.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    // Shared dictionary of the archive, or null if it has none
+    public ZipDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Entries whose names match a glob pattern (see EntryPaths.globMatcher).
+     */
+    public List<Entry> getEntries(String pattern) {
+        Predicate<String> matcher = EntryPaths.globMatcher(pattern);
+        List<Entry> matching = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (matcher.test(entry.getName())) {
+                matching.add(entry);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Inflates one entry into {@code sink}, checking its CRC and sizes. A
+     * null sink only checks the data.
+     */
+    public void extract(Entry entry, WritableByteChannel sink) throws IOException {
+        long dataStart = getDataOffset(entry);
+        ReadableByteChannel data = new RegionChannel(volumes, dataStart, entry.getCompressedSize());
+        ByteBuffer input = engine.acquireBuffer();
+        input.flip();
+        long crc;
+        try {
+            if (entry.getMethod() == ZipEntry.DEFLATED) {
+                Inflater inflater = CodecPool.getInstance().acquireInflater();
+                try {
+                    if (entry.getDictionaryId() != -1) {
+                        dictionaryFor(entry).apply(inflater);
+                    }
+                    crc = engine.inflate(data, input, inflater, sink);
+                    if (inflater.getBytesWritten() != entry.getSize()) {
+                        throw new ZipException("Invalid size for " + entry.getName());
+                    }
+                    if (inflater.getBytesRead() != entry.getCompressedSize()) {
+                        throw new ZipException("Invalid compressed size for " + entry.getName());
+                    }
+                } finally {
+                    CodecPool.getInstance().release(inflater);
+                }
+            } else if (entry.getMethod() == ZipEntry.STORED) {
+                crc = engine.copy(data, input, entry.getSize(), sink);
+            } else {
+                throw new ZipException("Unsupported compression method " + entry.getMethod()
+                        + " for " + entry.getName());
+            }
+        } finally {
+            engine.releaseBuffer(input);
+        }
+        if (crc != entry.getCrc()) {
+            throw new ZipException("CRC mismatch for " + entry.getName());
+        }
+        engine.getProgress().entryDone();
+    }
+
+    /**
+     * Checks one entry without writing it anywhere: its local header must
+     * agree with the central directory, and its data must decompress to the
+     * recorded sizes and CRC.
+     */
+    public void verify(Entry entry) throws IOException {
+        long headerStart = headerPosition(entry);
+        ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, headerStart);
+        if (header.getInt(0) != ZipArchiveWriter.LOCSIG) {
+            throw new ZipException("Invalid local header for " + entry.getName());
+        }
+        if ((header.getShort(8) & 0xFFFF) != entry.getMethod()) {
+            throw new ZipException("Local header method differs from the central directory for "
+                    + entry.getName());
+        }
+        ByteBuffer name = ByteBuffer.allocate(header.getShort(26) & 0xFFFF);
+        readFully(name, headerStart + 30);
+        if (!new String(name.array(), StandardCharsets.UTF_8).equals(entry.getName())) {
+            throw new ZipException("Local header name differs from the central directory for "
+                    + entry.getName());
+        }
+        extract(entry, (WritableByteChannel) null);
+    }
+
+    /**
+     * Extracts one entry to a file, creating parent directories as needed.
+     */
+    public void extract(Entry entry, Path target) throws IOException {
+        if (entry.isDirectory()) {
+            Files.createDirectories(target);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            extract(entry, out);
+        }
+    }
+
+    /**
+     * Extracts every entry matching a glob pattern below {@code outputDir}.
+     *
+     * @return the number of entries extracted
+     */
+    public int extractMatching(String pattern, Path outputDir) throws IOException {
+        List<Entry> selected = getEntries(pattern);
+        for (Entry entry : selected) {
+            extract(entry, EntryPaths.resolve(outputDir, entry.getName()));
+        }
+        return selected.size();
+    }
+
+    /**
+     * Offset of the first data byte of an entry, found by reading the
+     * variable-length part of its local header. In a split archive this
+     * counts from the start of the first volume.
+     */
+    public long getDataOffset(Entry entry) throws IOException {
+        long headerStart = headerPosition(entry);
+        ByteBuffer header = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, headerStart);
+        if (header.getInt(0) != ZipArchiveWriter.LOCSIG) {
+            throw new ZipException("Invalid local header for " + entry.getName()
+                    + " at offset " + entry.getLocalHeaderOffset()
+                    + (volumes.getCount() > 1 ? " of volume " + (entry.getDisk() + 1) : ""));
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        return headerStart + 30 + nameLength + extraLength;
+    }
+
+    private long headerPosition(Entry entry) throws ZipException {
+        return volumes.position(entry.getDisk(), entry.getLocalHeaderOffset());
+    }
+
+    private ZipDictionary dictionaryFor(Entry entry) throws ZipException {
+        if (dictionary == null || dictionary.getId() != (int) entry.getDictionaryId()) {
+            throw new ZipException("Missing the shared dictionary needed by " + entry.getName());
+        }
+        return dictionary;
+    }
+
+    // The dictionary is the first entry: STORED, reserved name, marked with its own ID
+    private ZipDictionary readDictionary(List<Entry> all) throws IOException {
+        if (all.isEmpty()) {
+            return null;
+        }
+        Entry first = all.get(0);
+        if (!first.getName().equals(ZipDictionary.ENTRY_NAME) || first.getMethod() != ZipEntry.STORED
+                || first.getDictionaryId() == -1 || first.getSize() > ZipDictionary.MAX_SIZE) {
+            return null;
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream((int) first.getSize());
+        extract(first, NioCodecEngine.channelOf(data));
+        ZipDictionary result = new ZipDictionary(data.toByteArray());
+        if (result.getId() != (int) first.getDictionaryId()) {
+            throw new ZipException("Shared dictionary is corrupt");
+        }
+        return result;
+    }
+
+    // Number of volume files: 1 unless the archive is split
+    public int getVolumeCount() {
+        return volumes.getCount();
+    }
+
+    long getCentralDirectoryOffset() {
+        return centralDirectoryOffset;
+    }
+
+    long getCentralDirectorySize() {
+        return centralDirectorySize;
+    }
+
+    NioCodecEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        volumes.close();
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        // Until the end record is found, the only volume open is the last one
+        long fileSize = volumes.size();
+        int tailLength = (int) Math.min(fileSize, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        long tailStart = fileSize - tailLength;
+        readFully(tail, tailStart);
+
+        int endPos = -1;
+        for (int i = tailLength - END_HEADER_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == ZipArchiveWriter.ENDSIG
+                    && i + END_HEADER_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailLength) {
+                endPos = i;
+                break;
+            }
+        }
+        if (endPos < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int lastDisk = tail.getShort(endPos + 4) & 0xFFFF;
+        int cenDisk = tail.getShort(endPos + 6) & 0xFFFF;
+        long count = tail.getShort(endPos + 10) & 0xFFFF;
+        long cenSize = tail.getInt(endPos + 12) & 0xFFFFFFFFL;
+        long cenOffset = tail.getInt(endPos + 16) & 0xFFFFFFFFL;
+
+        // ZIP64 end record, located through the locator just before the end record
+        ByteBuffer locator = null;
+        long locatorPos = tailStart + endPos - 20;
+        if (locatorPos >= 0) {
+            locator = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(locator, locatorPos);
+            if (locator.getInt(0) == ZipArchiveWriter.ZIP64_LOCSIG) {
+                lastDisk = locator.getInt(16) - 1;
+            } else {
+                locator = null;
+            }
+        }
+        if (lastDisk < 0) {
+            throw new ZipException("Invalid volume count in the ZIP64 end of central directory locator");
+        }
+        if (lastDisk > 0) {
+            volumes = ZipVolumes.open(archive, lastDisk, volumes.getLast());
+        }
+        if (locator != null) {
+            ByteBuffer end64 = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(end64, volumes.position(locator.getInt(4), locator.getLong(8)));
+            if (end64.getInt(0) != ZipArchiveWriter.ZIP64_ENDSIG) {
+                throw new ZipException("Invalid ZIP64 end of central directory record");
+            }
+            cenDisk = end64.getInt(20);
+            count = end64.getLong(32);
+            cenSize = end64.getLong(40);
+            cenOffset = end64.getLong(48);
+        }
+        cenOffset = volumes.position(cenDisk, cenOffset);
+
+        if (cenSize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large: " + cenSize + " bytes");
+        }
+        centralDirectoryOffset = cenOffset;
+        centralDirectorySize = cenSize;
+        ByteBuffer cen = ByteBuffer.allocate((int) cenSize).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(cen, cenOffset);
+        cen.flip();
+
+        List<Entry> result = new ArrayList<>((int) Math.min(count, 1 << 20));
+        for (long i = 0; i < count; i++) {
+            result.add(readCentralHeader(cen));
+        }
+        return result;
+    }
+
+    private static Entry readCentralHeader(ByteBuffer cen) throws ZipException {
+        if (cen.remaining() < 46 || cen.getInt() != ZipArchiveWriter.CENSIG) {
+            throw new ZipException("Invalid central directory header");
+        }
+        cen.getShort(); // version made by
+        cen.getShort(); // version needed
+        int flag = cen.getShort() & 0xFFFF;
+        int method = cen.getShort() & 0xFFFF;
+        long dosTime = cen.getInt() & 0xFFFFFFFFL;
+        long crc = cen.getInt() & 0xFFFFFFFFL;
+        long compressedSize = cen.getInt() & 0xFFFFFFFFL;
+        long size = cen.getInt() & 0xFFFFFFFFL;
+        int nameLength = cen.getShort() & 0xFFFF;
+        int extraLength = cen.getShort() & 0xFFFF;
+        int commentLength = cen.getShort() & 0xFFFF;
+        int disk = cen.getShort() & 0xFFFF;
+        cen.getShort(); // internal attributes
+        cen.getInt(); // external attributes
+        long offset = cen.getInt() & 0xFFFFFFFFL;
+        if (nameLength + extraLength + commentLength > cen.remaining()) {
+            throw new ZipException("Invalid central directory header");
+        }
+
+        byte[] name = new byte[nameLength];
+        cen.get(name);
+        int extraEnd = cen.position() + extraLength;
+
+        // ZIP64 extra: only the fields that overflowed are present, in this order
+        long dictionaryId = -1;
+        while (cen.position() + 4 <= extraEnd) {
+            int id = cen.getShort() & 0xFFFF;
+            int length = cen.getShort() & 0xFFFF;
+            int next = cen.position() + length;
+            if (next > extraEnd) {
+                throw new ZipException("Invalid extra field in the central directory");
+            }
+            if (id == ZipArchiveWriter.ZIP64_EXTID) {
+                if (size == ZipArchiveWriter.ZIP64_MAGICVAL && cen.position() + 8 <= next) {
+                    size = cen.getLong();
+                }
+                if (compressedSize == ZipArchiveWriter.ZIP64_MAGICVAL && cen.position() + 8 <= next) {
+                    compressedSize = cen.getLong();
+                }
+                if (offset == ZipArchiveWriter.ZIP64_MAGICVAL && cen.position() + 8 <= next) {
+                    offset = cen.getLong();
+                }
+                if (disk == 0xFFFF && cen.position() + 4 <= next) {
+                    disk = cen.getInt();
+                }
+            } else if (id == ZipDictionary.EXTRA_ID && length == 4) {
+                dictionaryId = cen.getInt() & 0xFFFFFFFFL;
+            }
+            cen.position(next);
+        }
+        cen.position(extraEnd + commentLength);
+
+        String entryName = new String(name, StandardCharsets.UTF_8);
+        return new Entry(entryName, size, compressedSize, crc, ZipArchiveWriter.dosToJavaTime(dosTime),
+                method, flag, offset, disk, dictionaryId);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = volumes.read(buffer, position);
+            if (n < 0) {
+                throw new ZipException("Unexpected end of archive");
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Central directory entry: the public ArchiveEntry information plus what
+     * is needed to locate and decode the entry data.
+     */
+    public static class Entry extends ArchiveEntry {
+
+        private final int method;
+        private final int flag;
+        private final long localHeaderOffset;
+        private final int disk;
+        private final long dictionaryId;
+
+        Entry(String name, long size, long compressedSize, long crc, long lastModified,
+                int method, int flag, long localHeaderOffset, int disk, long dictionaryId) {
+            super(name, size, compressedSize, crc, lastModified);
+            this.method = method;
+            this.flag = flag;
+            this.localHeaderOffset = localHeaderOffset;
+            this.disk = disk;
+            this.dictionaryId = dictionaryId;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public int getFlag() {
+            return flag;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        // Volume number the entry starts on (0 for single-file archives)
+        public int getDisk() {
+            return disk;
+        }
+
+        // Adler-32 of the shared dictionary the entry was deflated with, or -1
+        public long getDictionaryId() {
+            return dictionaryId;
+        }
+    }
+
+    // Read-only channel over a byte range of the archive, using positional reads
+    private static final class RegionChannel implements ReadableByteChannel {
+        private final ZipVolumes volumes;
+        private long position;
+        private final long end;
+
+        RegionChannel(ZipVolumes volumes, long start, long length) {
+            this.volumes = volumes;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > end - position) {
+                dst.limit(dst.position() + (int) (end - position));
+            }
+            try {
+                int n = volumes.read(dst, position);
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return volumes.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
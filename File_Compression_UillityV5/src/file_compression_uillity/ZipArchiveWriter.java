@@ -0,0 +1,593 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Low-level ZIP archive writer.
+ *
+ * ZipOutputStream only accepts uncompressed bytes and deflates them itself,
+ * so it cannot be used when the compressed data is produced elsewhere
+ * (e.g. by ParallelDeflater). This writer takes already-compressed entry data
+ * and writes the local headers, data descriptors and central directory using
+ * the same layout as ZipOutputStream, so archives written by either are
+ * interchangeable for every reader.
+ *
+ * ZIP64 records are written automatically when sizes, offsets or the entry
+ * count exceed the classic 32-bit / 16-bit limits. Callers may add extra
+ * fields of their own (see ZipDictionary); they are written to both the
+ * local and the central header, after any ZIP64 field.
+ *
+ * Given a SplitZipChannel, the archive is written as a split archive: it
+ * starts with the spanning signature, offsets are recorded as a volume
+ * number plus an offset within that volume, and headers are never cut
+ * between two volumes.
+ */
+public class ZipArchiveWriter implements AutoCloseable {
+
+    static final int LOCSIG = 0x04034b50;
+    static final int EXTSIG = 0x08074b50;
+    static final int CENSIG = 0x02014b50;
+    static final int ENDSIG = 0x06054b50;
+    static final int ZIP64_ENDSIG = 0x06064b50;
+    static final int ZIP64_LOCSIG = 0x07064b50;
+    static final int ZIP64_EXTID = 0x0001;
+    static final long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+    static final int ZIP64_MAGICCOUNT = 0xFFFF;
+
+    static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    static final int FLAG_UTF8 = 0x800;
+
+    private final WritableByteChannel out;
+    // Set when writing a split archive
+    private final SplitZipChannel volumes;
+    private final ByteBuffer header = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Record> records = new ArrayList<>();
+
+    private long written;
+    // Central directory records of entries kept from an archive being updated, written before the new ones
+    private final byte[] keptCentral;
+    private final int keptCount;
+    private Record current;
+    private long currentDataStart;
+    private boolean finished;
+
+    // Views over the current entry, created once and reused for every entry
+    private OutputStream entryStream;
+    private WritableByteChannel entryChannel;
+
+    public ZipArchiveWriter(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    public ZipArchiveWriter(WritableByteChannel out) {
+        this(out, 0, new byte[0], 0);
+    }
+
+    /**
+     * Continues an existing archive (see ZipUpdater): {@code out} is
+     * positioned at {@code startOffset}, where the old central directory
+     * began, and {@code keptCentral} holds the raw central directory
+     * records of the {@code keptCount} entries that stay. Their data does
+     * not move, so the records are written back unchanged.
+     */
+    ZipArchiveWriter(WritableByteChannel out, long startOffset, byte[] keptCentral, int keptCount) {
+        this.out = out;
+        this.volumes = out instanceof SplitZipChannel split ? split : null;
+        this.written = startOffset;
+        this.keptCentral = keptCentral;
+        this.keptCount = keptCount;
+    }
+
+    /**
+     * Starts a DEFLATED entry whose sizes and CRC are not known yet.
+     * They are written in a data descriptor by {@link #closeEntry}.
+     */
+    public void putNextEntry(String name, long time) throws IOException {
+        putNextEntry(name, time, null);
+    }
+
+    /**
+     * Starts a DEFLATED entry with additional extra fields (complete
+     * header ID / length / data records), or null for none.
+     */
+    public void putNextEntry(String name, long time, byte[] extra) throws IOException {
+        Record record = new Record(name, ZipEntry.DEFLATED, time, extra);
+        record.flag = FLAG_DATA_DESCRIPTOR | FLAG_UTF8;
+        beginEntry(record);
+    }
+
+    /**
+     * Starts an entry whose CRC and sizes are already known, so they go
+     * straight into the local header (required for STORED entries).
+     */
+    public void putNextEntry(String name, int method, long time, long crc, long size, long compressedSize)
+            throws IOException {
+        putNextEntry(name, method, time, crc, size, compressedSize, null);
+    }
+
+    public void putNextEntry(String name, int method, long time, long crc, long size, long compressedSize,
+            byte[] extra) throws IOException {
+        Record record = new Record(name, method, time, extra);
+        record.flag = FLAG_UTF8;
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = compressedSize;
+        beginEntry(record);
+    }
+
+    /**
+     * Writes compressed entry data for the current entry.
+     */
+    public void write(byte[] data, int off, int len) throws IOException {
+        writeFully(ByteBuffer.wrap(data, off, len));
+    }
+
+    public void write(ByteBuffer data) throws IOException {
+        writeFully(data);
+    }
+
+    /**
+     * OutputStream view over the current entry data, for code that produces
+     * compressed bytes through the stream API.
+     */
+    public OutputStream entryStream() {
+        if (entryStream == null) {
+            entryStream = createEntryStream();
+        }
+        return entryStream;
+    }
+
+    private OutputStream createEntryStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                ZipArchiveWriter.this.write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ZipArchiveWriter.this.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Channel view over the current entry data, so NIO code can write
+     * compressed buffers without copying them into arrays.
+     */
+    public WritableByteChannel entryChannel() {
+        if (entryChannel == null) {
+            entryChannel = createEntryChannel();
+        }
+        return entryChannel;
+    }
+
+    private WritableByteChannel createEntryChannel() {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int n = src.remaining();
+                ZipArchiveWriter.this.write(src);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return out.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Closes an entry started with {@link #putNextEntry(String, long)},
+     * writing its data descriptor.
+     */
+    public void closeEntry(long crc, long size) throws IOException {
+        ensureOpenEntry();
+        Record record = current;
+        long compressedSize = written - currentDataStart;
+        if ((record.flag & FLAG_DATA_DESCRIPTOR) != 0) {
+            record.crc = crc;
+            record.size = size;
+            record.compressedSize = compressedSize;
+            writeDataDescriptor(record);
+        } else if (record.crc != crc || record.size != size || record.compressedSize != compressedSize) {
+            throw new IOException("Entry " + record.name + " does not match the sizes in its local header");
+        }
+        records.add(record);
+        current = null;
+    }
+
+    /**
+     * Closes an entry started with the known-size variant of putNextEntry.
+     */
+    public void closeEntry() throws IOException {
+        ensureOpenEntry();
+        closeEntry(current.crc, current.size);
+    }
+
+    /**
+     * Writes the central directory and end records. The underlying channel
+     * is left open.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (current != null) {
+            throw new IOException("Entry " + current.name + " was not closed");
+        }
+        writeSplitMarker();
+        long cenStart = written;
+        int cenDisk = disk();
+        long cenOffset = offset();
+        writeFully(ByteBuffer.wrap(keptCentral));
+        for (Record record : records) {
+            writeCentralHeader(record);
+        }
+        if (keptCount == 0 && !records.isEmpty()) {
+            // The first header may have moved to a new volume
+            cenDisk = records.get(0).centralDisk;
+            cenOffset = records.get(0).centralOffset;
+        }
+        writeEnd(cenDisk, cenOffset, written - cenStart);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    public long getBytesWritten() {
+        return written;
+    }
+
+    public int getEntryCount() {
+        return keptCount + records.size();
+    }
+
+    private void beginEntry(Record record) throws IOException {
+        if (finished) {
+            throw new IOException("Archive already finished");
+        }
+        if (current != null) {
+            throw new IOException("Entry " + current.name + " was not closed");
+        }
+        writeSplitMarker();
+        writeLocalHeader(record);
+        current = record;
+        currentDataStart = written;
+    }
+
+    private void ensureOpenEntry() throws IOException {
+        if (current == null) {
+            throw new IOException("No open entry");
+        }
+    }
+
+    private void writeLocalHeader(Record e) throws IOException {
+        ByteBuffer b = headerBuffer(30 + e.nameBytes.length + 20 + e.extra.length);
+        boolean hasZip64 = false;
+        b.putInt(LOCSIG);
+        if ((e.flag & FLAG_DATA_DESCRIPTOR) != 0) {
+            b.putShort((short) version(e));
+            b.putShort((short) e.flag);
+            b.putShort((short) e.method);
+            b.putInt((int) e.dosTime);
+            b.putInt(0);
+            b.putInt(0);
+            b.putInt(0);
+        } else {
+            if (e.compressedSize >= ZIP64_MAGICVAL || e.size >= ZIP64_MAGICVAL) {
+                hasZip64 = true;
+                b.putShort((short) 45);
+            } else {
+                b.putShort((short) version(e));
+            }
+            b.putShort((short) e.flag);
+            b.putShort((short) e.method);
+            b.putInt((int) e.dosTime);
+            b.putInt((int) e.crc);
+            if (hasZip64) {
+                b.putInt((int) ZIP64_MAGICVAL);
+                b.putInt((int) ZIP64_MAGICVAL);
+            } else {
+                b.putInt((int) e.compressedSize);
+                b.putInt((int) e.size);
+            }
+        }
+        b.putShort((short) e.nameBytes.length);
+        b.putShort((short) ((hasZip64 ? 20 : 0) + e.extra.length));
+        b.put(e.nameBytes);
+        if (hasZip64) {
+            b.putShort((short) ZIP64_EXTID);
+            b.putShort((short) 16);
+            b.putLong(e.size);
+            b.putLong(e.compressedSize);
+        }
+        b.put(e.extra);
+        b.flip();
+        keepTogether(b.remaining());
+        e.disk = disk();
+        e.offset = offset();
+        writeFully(b);
+    }
+
+    private void writeDataDescriptor(Record e) throws IOException {
+        ByteBuffer b = headerBuffer(24);
+        b.putInt(EXTSIG);
+        b.putInt((int) e.crc);
+        if (e.compressedSize >= ZIP64_MAGICVAL || e.size >= ZIP64_MAGICVAL) {
+            b.putLong(e.compressedSize);
+            b.putLong(e.size);
+        } else {
+            b.putInt((int) e.compressedSize);
+            b.putInt((int) e.size);
+        }
+        flushHeader(b);
+    }
+
+    private void writeCentralHeader(Record e) throws IOException {
+        long csize = e.compressedSize;
+        long size = e.size;
+        long offset = e.offset;
+        int disk = e.disk;
+        int zip64Len = 0;
+        if (csize >= ZIP64_MAGICVAL) {
+            csize = ZIP64_MAGICVAL;
+            zip64Len += 8;
+        }
+        if (size >= ZIP64_MAGICVAL) {
+            size = ZIP64_MAGICVAL;
+            zip64Len += 8;
+        }
+        if (offset >= ZIP64_MAGICVAL) {
+            offset = ZIP64_MAGICVAL;
+            zip64Len += 8;
+        }
+        if (disk >= ZIP64_MAGICCOUNT) {
+            disk = ZIP64_MAGICCOUNT;
+            zip64Len += 4;
+        }
+        boolean hasZip64 = zip64Len > 0;
+
+        ByteBuffer b = headerBuffer(46 + e.nameBytes.length + 28 + e.extra.length);
+        b.putInt(CENSIG);
+        int version = hasZip64 ? 45 : version(e);
+        b.putShort((short) version);
+        b.putShort((short) version);
+        b.putShort((short) e.flag);
+        b.putShort((short) e.method);
+        b.putInt((int) e.dosTime);
+        b.putInt((int) e.crc);
+        b.putInt((int) csize);
+        b.putInt((int) size);
+        b.putShort((short) e.nameBytes.length);
+        b.putShort((short) ((hasZip64 ? zip64Len + 4 : 0) + e.extra.length));
+        b.putShort((short) 0); // comment length
+        b.putShort((short) disk); // starting disk number
+        b.putShort((short) 0); // internal file attributes
+        b.putInt(0); // external file attributes
+        b.putInt((int) offset);
+        b.put(e.nameBytes);
+        if (hasZip64) {
+            b.putShort((short) ZIP64_EXTID);
+            b.putShort((short) zip64Len);
+            if (size == ZIP64_MAGICVAL) {
+                b.putLong(e.size);
+            }
+            if (csize == ZIP64_MAGICVAL) {
+                b.putLong(e.compressedSize);
+            }
+            if (offset == ZIP64_MAGICVAL) {
+                b.putLong(e.offset);
+            }
+            if (disk == ZIP64_MAGICCOUNT) {
+                b.putInt(e.disk);
+            }
+        }
+        b.put(e.extra);
+        b.flip();
+        keepTogether(b.remaining());
+        e.centralDisk = disk();
+        e.centralOffset = offset();
+        writeFully(b);
+    }
+
+    private void writeEnd(int cenDisk, long cenOffset, long cenLength) throws IOException {
+        // All end records go to the last volume
+        keepTogether(56 + 20 + 22);
+        int disk = disk();
+        boolean hasZip64 = disk >= ZIP64_MAGICCOUNT || cenDisk >= ZIP64_MAGICCOUNT;
+        long xlen = cenLength;
+        long xoff = cenOffset;
+        long total = keptCount + records.size();
+        long count = total;
+        // Central directory headers held by the last volume
+        long onDisk = total;
+        if (volumes != null) {
+            onDisk = 0;
+            for (Record record : records) {
+                if (record.centralDisk == disk) {
+                    onDisk++;
+                }
+            }
+        }
+        long countOnDisk = onDisk;
+        if (xlen >= ZIP64_MAGICVAL) {
+            xlen = ZIP64_MAGICVAL;
+            hasZip64 = true;
+        }
+        if (xoff >= ZIP64_MAGICVAL) {
+            xoff = ZIP64_MAGICVAL;
+            hasZip64 = true;
+        }
+        if (count >= ZIP64_MAGICCOUNT) {
+            count = ZIP64_MAGICCOUNT;
+            hasZip64 = true;
+        }
+        if (countOnDisk >= ZIP64_MAGICCOUNT) {
+            countOnDisk = ZIP64_MAGICCOUNT;
+            hasZip64 = true;
+        }
+
+        ByteBuffer b = headerBuffer(56 + 20 + 22);
+        if (hasZip64) {
+            long zip64EndOffset = offset();
+            b.putInt(ZIP64_ENDSIG);
+            b.putLong(56 - 12);
+            b.putShort((short) 45);
+            b.putShort((short) 45);
+            b.putInt(disk);
+            b.putInt(cenDisk);
+            b.putLong(onDisk);
+            b.putLong(total);
+            b.putLong(cenLength);
+            b.putLong(cenOffset);
+
+            b.putInt(ZIP64_LOCSIG);
+            b.putInt(disk);
+            b.putLong(zip64EndOffset);
+            b.putInt(disk + 1);
+        }
+        b.putInt(ENDSIG);
+        b.putShort((short) Math.min(disk, ZIP64_MAGICCOUNT));
+        b.putShort((short) Math.min(cenDisk, ZIP64_MAGICCOUNT));
+        b.putShort((short) countOnDisk);
+        b.putShort((short) count);
+        b.putInt((int) xlen);
+        b.putInt((int) xoff);
+        b.putShort((short) 0); // comment length
+        flushHeader(b);
+    }
+
+    private ByteBuffer headerBuffer(int capacity) {
+        if (capacity > header.capacity()) {
+            return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        header.clear();
+        return header;
+    }
+
+    private void flushHeader(ByteBuffer b) throws IOException {
+        b.flip();
+        keepTogether(b.remaining());
+        writeFully(b);
+    }
+
+    // A split archive starts with the data descriptor signature, as the spanning marker
+    private void writeSplitMarker() throws IOException {
+        if (volumes != null && written == 0) {
+            ByteBuffer b = headerBuffer(4);
+            b.putInt(EXTSIG);
+            flushHeader(b);
+        }
+    }
+
+    // In a split archive, starts a new volume unless the next length bytes fit in the current one
+    private void keepTogether(int length) throws IOException {
+        if (volumes != null) {
+            volumes.keepTogether(length);
+        }
+    }
+
+    // Volume the next byte goes to
+    private int disk() {
+        return volumes == null ? 0 : volumes.getDisk();
+    }
+
+    // Offset of the next byte within its volume
+    private long offset() {
+        return volumes == null ? written : volumes.getPosition();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            written += out.write(data);
+        }
+    }
+
+    private static int version(Record e) {
+        return e.method == ZipEntry.STORED ? 10 : 20;
+    }
+
+    /**
+     * Converts Java time to the MS-DOS date/time format used in ZIP headers.
+     */
+    static long javaToDosTime(long time) {
+        java.time.LocalDateTime ldt = java.time.LocalDateTime.ofInstant(
+                java.time.Instant.ofEpochMilli(time), java.time.ZoneId.systemDefault());
+        int year = ldt.getYear() - 1980;
+        if (year < 0) {
+            return (1 << 21) | (1 << 16);
+        }
+        if (year > 127) {
+            year = 127;
+        }
+        return ((long) year << 25 | ldt.getMonthValue() << 21 | ldt.getDayOfMonth() << 16
+                | ldt.getHour() << 11 | ldt.getMinute() << 5 | ldt.getSecond() >> 1) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Converts an MS-DOS date/time from a ZIP header to Java time.
+     */
+    static long dosToJavaTime(long dosTime) {
+        java.time.LocalDateTime ldt = java.time.LocalDateTime.of(
+                (int) (((dosTime >> 25) & 0x7f) + 1980),
+                (int) Math.max(1, Math.min(12, (dosTime >> 21) & 0x0f)),
+                (int) Math.max(1, Math.min(31, (dosTime >> 16) & 0x1f)),
+                (int) Math.min(23, (dosTime >> 11) & 0x1f),
+                (int) Math.min(59, (dosTime >> 5) & 0x3f),
+                (int) Math.min(59, (dosTime << 1) & 0x3e));
+        try {
+            return ldt.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (java.time.DateTimeException e) {
+            return -1;
+        }
+    }
+
+    // Central directory information kept for each written entry
+    private static final class Record {
+        final String name;
+        final byte[] nameBytes;
+        final int method;
+        final long dosTime;
+        final byte[] extra;
+        int flag;
+        long crc;
+        long size;
+        long compressedSize;
+        // Volume and offset of the local header
+        int disk;
+        long offset;
+        // Volume and offset of the central directory header
+        int centralDisk;
+        long centralOffset;
+
+        Record(String name, int method, long time, byte[] extra) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.dosTime = javaToDosTime(time);
+            this.extra = extra == null ? new byte[0] : extra;
+        }
+    }
+}
@@ -1,12 +1,263 @@
 package file_compression_uillity;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.zip.*;
 
 public class ZipCompressor implements Compressor{
-       
-   
-    
+
+    // Parallel (pigz-style) deflate settings for single-file compression
+    private boolean parallel;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private int blockSize = ParallelDeflater.DEFAULT_BLOCK_SIZE;
+
+    // Compressed entries larger than this spill to a temp file in compressMultiple
+    private long scatterThreshold = ParallelZipWriter.DEFAULT_SCATTER_THRESHOLD;
+
+    // NIO engine settings: direct buffer size and the file size from which input is memory-mapped
+    private int bufferSize = NioCodecEngine.DEFAULT_BUFFER_SIZE;
+    private long mmapThreshold = NioCodecEngine.DEFAULT_MMAP_THRESHOLD;
+
+    // Level and strategy profile; each entry's file type refines it
+    private CompressionProfile profile = CompressionProfile.BALANCED;
+
+    // Store entries that would not shrink (JPEG, MP4, ...) instead of deflating them
+    private boolean autoStored = true;
+
+    // Deflate the text entries of compressMultiple against one shared preset dictionary
+    private boolean sharedDictionary;
+    // 0 takes the size from the profile
+    private int dictionarySize;
+
+    // Split archives into volumes of this many bytes; 0 writes a single file
+    private long volumeSize;
+
+    // Globs selecting the files of compressMultiple by their entry names
+    private List<String> includes = List.of();
+    private List<String> excludes = List.of();
+
+    // Counted by the engines of the following jobs
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public ZipCompressor() {
+    }
+
+    // Constructor selecting parallel deflate with the given worker count and block size
+    public ZipCompressor(int workerCount, int blockSize) {
+        this.parallel = true;
+        this.workerCount = checkWorkerCount(workerCount);
+        this.blockSize = checkBlockSize(blockSize);
+    }
+
+    /**
+     * Selects parallel deflate for compress(String). The entry is still one
+     * standard DEFLATED entry, but its blocks are compressed on a worker pool.
+     * (compressMultiple compresses whole entries concurrently whenever more
+     * than one worker is configured.)
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    // Worker count shared by parallel deflate, concurrent compressMultiple and parallel extraction
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = checkWorkerCount(workerCount);
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = checkBlockSize(blockSize);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    private static int checkWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        return workerCount;
+    }
+
+    private static int checkBlockSize(int blockSize) {
+        if (blockSize < ParallelDeflater.MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException(
+                    "Block size must be at least " + ParallelDeflater.MIN_BLOCK_SIZE + ": " + blockSize);
+        }
+        return blockSize;
+    }
+
+    public void setScatterThreshold(long scatterThreshold) {
+        this.scatterThreshold = scatterThreshold;
+    }
+
+    public long getScatterThreshold() {
+        return scatterThreshold;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setMmapThreshold(long mmapThreshold) {
+        this.mmapThreshold = mmapThreshold;
+    }
+
+    public long getMmapThreshold() {
+        return mmapThreshold;
+    }
+
+    @Override
+    public void setProfile(CompressionProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("Profile must not be null");
+        }
+        this.profile = profile;
+    }
+
+    public CompressionProfile getProfile() {
+        return profile;
+    }
+
+    @Override
+    public void setProgressTracker(ProgressTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("Progress tracker must not be null");
+        }
+        this.progress = tracker;
+    }
+
+    /**
+     * Enables the automatic STORED mode: entries are sampled before
+     * compression and kept uncompressed when deflating would gain almost
+     * nothing. On by default.
+     */
+    public void setAutoStored(boolean autoStored) {
+        this.autoStored = autoStored;
+    }
+
+    public boolean isAutoStored() {
+        return autoStored;
+    }
+
+    /**
+     * Enables the shared dictionary for compressMultiple: a dictionary is
+     * sampled from the text entries (JSON, XML, logs...), stored as the
+     * first entry, and every text entry is deflated against it. Pays off
+     * on many small, similar files. Off by default, since other ZIP tools
+     * cannot read the dependent entries.
+     */
+    public void setSharedDictionary(boolean sharedDictionary) {
+        this.sharedDictionary = sharedDictionary;
+    }
+
+    public boolean isSharedDictionary() {
+        return sharedDictionary;
+    }
+
+    // Overrides the dictionary size of the profile; 0 restores it
+    public void setDictionarySize(int dictionarySize) {
+        if (dictionarySize != 0 && (dictionarySize < 256 || dictionarySize > ZipDictionary.MAX_SIZE)) {
+            throw new IllegalArgumentException("Dictionary size must be between 256 and "
+                    + ZipDictionary.MAX_SIZE + ": " + dictionarySize);
+        }
+        this.dictionarySize = dictionarySize;
+    }
+
+    public int getDictionarySize() {
+        return dictionarySize != 0 ? dictionarySize : profile.getDictionarySize();
+    }
+
+    /**
+     * Writes the archives of compress and compressMultiple as split
+     * archives (name.z01, name.z02, ... name.zip) of at most
+     * {@code volumeSize} bytes per volume; 0 turns splitting off.
+     */
+    public void setVolumeSize(long volumeSize) {
+        if (volumeSize != 0 && volumeSize < SplitZipChannel.MIN_VOLUME_SIZE) {
+            throw new IllegalArgumentException("Volume size must be 0 or at least "
+                    + SplitZipChannel.MIN_VOLUME_SIZE + ": " + volumeSize);
+        }
+        this.volumeSize = volumeSize;
+    }
+
+    public long getVolumeSize() {
+        return volumeSize;
+    }
+
+    /**
+     * Restricts compressMultiple to the files whose entry names (such as
+     * "project/src/Main.java") match one of the globs; none keeps every file.
+     */
+    public void setIncludes(String... globs) {
+        this.includes = List.of(globs);
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    // Leaves out the files and whole directories whose entry names match one of the globs
+    public void setExcludes(String... globs) {
+        this.excludes = List.of(globs);
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    // Output of the path-based methods: one file, or a split archive if a volume size is set
+    private WritableByteChannel openArchive(String archivePath) throws IOException {
+        if (volumeSize > 0) {
+            return new SplitZipChannel(Path.of(archivePath), volumeSize,
+                    volume -> System.out.println("Volume complete: " + volume));
+        }
+        return FileChannel.open(Path.of(archivePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private EntryMethodSelector selector() {
+        return autoStored ? new EntryMethodSelector() : null;
+    }
+
+    private NioCodecEngine engine() {
+        NioCodecEngine engine = new NioCodecEngine(bufferSize, mmapThreshold);
+        engine.setProgress(progress);
+        return engine;
+    }
+
+    // Engine whose buffers are sized for the device holding the given file
+    private NioCodecEngine engineFor(String filePath) {
+        Path path = Path.of(filePath).toAbsolutePath();
+        NioCodecEngine engine = new NioCodecEngine(NioCodecEngine.bufferSizeFor(path.getParent(), bufferSize),
+                mmapThreshold);
+        engine.setProgress(progress);
+        return engine;
+    }
+
     @Override
     public boolean compress(String filePath) {
         try {
@@ -21,23 +272,14 @@ public class ZipCompressor implements Compressor{
             
             System.out.println("Compressing: " + filePath + " to " + zipFilePath);
             System.out.println("File size: " + file.length() + " bytes");
+            if (parallel) {
+                System.out.println("Parallel deflate: " + workerCount + " workers, " + blockSize + " byte blocks");
+            }
             
-            try (FileOutputStream fos = new FileOutputStream(zipFilePath);
-                 ZipOutputStream zos = new ZipOutputStream(fos);
-                 FileInputStream fis = new FileInputStream(file)) {
-                
-                // Create zip entry with the original filename
-                ZipEntry zipEntry = new ZipEntry(file.getName());
-                zos.putNextEntry(zipEntry);
-                
-                // Copy file content to zip
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) > 0) {
-                    zos.write(buffer, 0, bytesRead);
-                }
-                
-                zos.closeEntry();
+            // Path-based API is a thin adapter over the channel API
+            try (FileInputStream fis = new FileInputStream(file);
+                 WritableByteChannel out = openArchive(zipFilePath)) {
+                compress(file.getName(), fis.getChannel(), out, engineFor(filePath));
             }
             
             // Verify the zip file was created
@@ -53,68 +295,171 @@ public class ZipCompressor implements Compressor{
             
         } catch (IOException e) {
             System.err.println("Compression error: " + e.getMessage());
-            e.printStackTrace();
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
             return false;
         }
     }
     
+    @Override
+    public void compress(String entryName, InputStream source, OutputStream archive) throws IOException {
+        compress(entryName, NioCodecEngine.channelOf(source), NioCodecEngine.channelOf(archive));
+    }
+    
+    @Override
+    public void compress(String entryName, ReadableByteChannel source, WritableByteChannel archive)
+            throws IOException {
+        compress(entryName, source, archive, engine());
+    }
+    
+    private void compress(String entryName, ReadableByteChannel source, WritableByteChannel archive,
+            NioCodecEngine engine) throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(archive);
+        // Only a file can be read twice (CRC pre-pass, then copy), which STORED needs
+        if (autoStored && source instanceof FileChannel fc
+                && selector().chooseMethod(entryName, fc) == ZipEntry.STORED) {
+            store(writer, entryName, fc, engine);
+            engine.getProgress().entryDone();
+            writer.finish();
+            return;
+        }
+        writer.putNextEntry(entryName, System.currentTimeMillis());
+        if (parallel) {
+            // Deflates the input on a worker pool as a single DEFLATED entry
+            ParallelDeflater deflater = new ParallelDeflater(workerCount, blockSize,
+                    profile.levelFor(entryName), profile.strategyFor(entryName));
+            ProgressTracker tracker = engine.getProgress();
+            OutputStream entryOut = new BufferedOutputStream(
+                    tracker.output(Channels.newOutputStream(writer.entryChannel())), bufferSize);
+            ParallelDeflater.Result result = deflater.deflate(
+                    new BufferedInputStream(Channels.newInputStream(tracker.reading(source)), blockSize), entryOut);
+            entryOut.flush();
+            writer.closeEntry(result.getCrc(), result.getBytesIn());
+        } else {
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                profile.configure(deflater, entryName);
+                long crc = engine.deflate(source, deflater, writer.entryChannel());
+                writer.closeEntry(crc, deflater.getBytesRead());
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+        }
+        engine.getProgress().entryDone();
+        writer.finish();
+    }
     
     @Override
-   public boolean decompress(String filePath) {
-    try {
-        File zipFile = new File(filePath);
-        String outputDir = zipFile.getParent();
-        
-        // Get zip file name without extension
-        String zipFileName = zipFile.getName();
-        String folderName = zipFileName.substring(0, zipFileName.lastIndexOf('.'));
-        
-        // Create folder with the same name as the zip file
-        File extractFolder = new File(outputDir + File.separator + folderName);
-        extractFolder.mkdir();
-        
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-            ZipEntry zipEntry = zis.getNextEntry();
+    public boolean decompress(String filePath) {
+        try {
+            File zipFile = new File(filePath);
+            String outputDir = zipFile.getParent();
             
-            while (zipEntry != null) {
-                String fileName = zipEntry.getName();
-                File newFile = new File(extractFolder + File.separator + fileName);
-                
-                // Create parent directories if needed
-                new File(newFile.getParent()).mkdirs();
-                
-                // Skip directories
-                if (!zipEntry.isDirectory()) {
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
-                        byte[] buffer = new byte[1024];
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
+            // Get zip file name without extension
+            String zipFileName = zipFile.getName();
+            String folderName = zipFileName.substring(0, zipFileName.lastIndexOf('.'));
+            
+            // Create folder with the same name as the zip file
+            File extractFolder = new File(outputDir + File.separator + folderName);
+            extractFolder.mkdir();
+            
+            // Split archives are only readable through the central directory
+            if (workerCount > 1 || SplitZipChannel.isSplit(zipFile.toPath())) {
+                // Spread the entries over a worker pool using the central directory
+                try (ZipArchiveReader reader = new ZipArchiveReader(zipFile.toPath(), engineFor(filePath))) {
+                    progress.setTotalEntries(reader.getEntries().stream().filter(e -> !e.isDirectory()).count());
+                    new ParallelExtractor(workerCount).extract(reader, reader.getEntries(), extractFolder.toPath());
+                }
+            } else {
+                try (FileInputStream fis = new FileInputStream(zipFile)) {
+                    new ZipStreamReader(engineFor(filePath)).read(fis.getChannel(), entry -> {
+                        // Rejects names such as "../../etc/passwd" that would escape the folder
+                        File newFile = EntryPaths.resolve(extractFolder.toPath(), entry.getName()).toFile();
+                        
+                        // Create parent directories if needed
+                        new File(newFile.getParent()).mkdirs();
+                        
+                        // Directories only need to exist, so empty ones are restored too
+                        if (entry.isDirectory()) {
+                            newFile.mkdirs();
+                            return null;
                         }
-                    }
+                        return new FileOutputStream(newFile);
+                    });
                 }
-                
-                zipEntry = zis.getNextEntry();
             }
-            zis.closeEntry();
+            
+            System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
+            return true;
+            
+        } catch (IOException e) {
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+    
+    @Override
+    public void decompress(InputStream archive, EntryTarget target) throws IOException {
+        decompress(NioCodecEngine.channelOf(archive), target);
+    }
+    
+    @Override
+    public void decompress(ReadableByteChannel archive, EntryTarget target) throws IOException {
+        new ZipStreamReader(engine()).read(archive, target);
+    }
+    
+    @Override
+    public List<ArchiveEntry> list(InputStream archive) throws IOException {
+        return list(NioCodecEngine.channelOf(archive));
+    }
+    
+    @Override
+    public List<ArchiveEntry> list(ReadableByteChannel archive) throws IOException {
+        return new ZipStreamReader(engine()).list(archive);
+    }
+    
+    // Random-access listing: reads only the central directory
+    @Override
+    public List<ArchiveEntry> list(String archivePath) throws IOException {
+        try (ZipArchiveReader reader = new ZipArchiveReader(Path.of(archivePath), engineFor(archivePath))) {
+            return List.copyOf(reader.getEntries());
+        }
+    }
+    
+    // Random-access extraction: seeks straight to the selected entries
+    @Override
+    public int extractSelected(String archivePath, String pattern, String outputDir) throws IOException {
+        try (ZipArchiveReader reader = new ZipArchiveReader(Path.of(archivePath), engineFor(archivePath))) {
+            if (workerCount <= 1) {
+                return reader.extractMatching(pattern, Path.of(outputDir));
+            }
+            List<ZipArchiveReader.Entry> selected = reader.getEntries(pattern);
+            new ParallelExtractor(workerCount).extract(reader, selected, Path.of(outputDir));
+            return selected.size();
+        }
+    }
+    
+    // Random-access verification: entries are checked independently on the worker pool
+    @Override
+    public VerificationReport verify(String archivePath) throws IOException {
+        try (ZipArchiveReader reader = new ZipArchiveReader(Path.of(archivePath), engineFor(archivePath))) {
+            return new ParallelExtractor(workerCount).verify(reader, reader.getEntries());
         }
-        
-        System.out.println("Files extracted to: " + extractFolder.getAbsolutePath());
-        return true;
-        
-    } catch (IOException e) {
-        e.printStackTrace();
-        return false;
     }
-}
-
-
     
     @Override
     public String getExtension() {
         return ".zip";
     }
 
+    @Override
+    public boolean measuresTrees() {
+        return true;
+    }
+
     @Override
     public boolean compressMultiple(String[] filePaths, String outputArchivePath) {
         try {
@@ -125,35 +470,33 @@ public class ZipCompressor implements Compressor{
             
             System.out.println("Compressing " + filePaths.length + " files to: " + outputArchivePath);
             
-            try (FileOutputStream fos = new FileOutputStream(outputArchivePath);
-                 ZipOutputStream zos = new ZipOutputStream(fos)) {
+            // Files and directory trees, each under its own name at the top level
+            List<Path> roots = new ArrayList<>();
+            Set<String> topLevel = new HashSet<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
                 
-                for (String filePath : filePaths) {
-                    File file = new File(filePath);
-                    
-                    if (!file.exists()) {
-                        System.out.println("Skipping non-existent file: " + filePath);
-                        continue;
-                    }
-                    
-                    // Create unique entry name (use just filename, or full path if needed)
-                    String entryName = file.getName();
-                    
-                    System.out.println("Adding: " + file.getName() + " (" + file.length() + " bytes)");
-                    
-                    try (FileInputStream fis = new FileInputStream(file)) {
-                        ZipEntry zipEntry = new ZipEntry(entryName);
-                        zos.putNextEntry(zipEntry);
-                        
-                        byte[] buffer = new byte[1024];
-                        int bytesRead;
-                        while ((bytesRead = fis.read(buffer)) > 0) {
-                            zos.write(buffer, 0, bytesRead);
-                        }
-                        
-                        zos.closeEntry();
-                    }
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                if (!topLevel.add(file.getName())) {
+                    throw new ZipException("duplicate entry: " + file.getName());
                 }
+                roots.add(file.toPath());
+            }
+            
+            try (TreeWalker walker = new TreeWalker(workerCount);
+                 WritableByteChannel out = openArchive(outputArchivePath)) {
+                walker.setSkipListener(path -> System.out.println("Skipping link or special file: " + path));
+                for (String glob : includes) {
+                    walker.addInclude(glob);
+                }
+                for (String glob : excludes) {
+                    walker.addExclude(glob);
+                }
+                walker.start(roots);
+                writeTree(new ZipArchiveWriter(out), walker, engineFor(outputArchivePath));
             }
             
             // Verify the zip file was created
@@ -169,9 +512,270 @@ public class ZipCompressor implements Compressor{
             
         } catch (IOException e) {
             System.err.println("Multi-file compression error: " + e.getMessage());
-            e.printStackTrace();
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, OutputStream archive) throws IOException {
+        compressMultiple(entries, NioCodecEngine.channelOf(archive));
+    }
+
+    @Override
+    public void compressMultiple(Map<String, EntrySource> entries, WritableByteChannel archive)
+            throws IOException {
+        compressMultiple(entries, archive, engine());
+    }
+
+    private void compressMultiple(Map<String, EntrySource> entries, WritableByteChannel archive,
+            NioCodecEngine engine) throws IOException {
+        ZipArchiveWriter writer = new ZipArchiveWriter(archive);
+        writeEntries(writer, entries, writeDictionary(writer, entries), engine);
+    }
+
+    /**
+     * Compresses the files of a walk while it is still running, so the first
+     * entries are written before the whole tree has been listed. A shared
+     * dictionary has to sample the text entries first, so with one the walk
+     * is collected before anything is written. The files are added to the
+     * progress totals as the walk finds them (see measuresTrees).
+     */
+    private void writeTree(ZipArchiveWriter writer, TreeWalker walker, NioCodecEngine engine) throws IOException {
+        if (sharedDictionary) {
+            Map<String, EntrySource> entries = new LinkedHashMap<>();
+            for (TreeWalker.Entry entry = next(walker); entry != null; entry = next(walker)) {
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), sourceOf(entry));
+                }
+            }
+            writeEntries(writer, entries, writeDictionary(writer, entries), engine);
+            return;
+        }
+        if (workerCount > 1) {
+            try (ParallelZipWriter parallelWriter = new ParallelZipWriter(writer, workerCount,
+                    scatterThreshold, profile, engine, selector())) {
+                for (TreeWalker.Entry entry = next(walker); entry != null; entry = next(walker)) {
+                    if (entry.isDirectory()) {
+                        parallelWriter.addDirectory(entry.getName(), entry.getLastModified());
+                    } else {
+                        parallelWriter.add(entry.getName(), sourceOf(entry));
+                    }
+                }
+                parallelWriter.finish();
+            }
+        } else {
+            EntryMethodSelector selector = selector();
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                for (TreeWalker.Entry entry = next(walker); entry != null; entry = next(walker)) {
+                    if (entry.isDirectory()) {
+                        writer.putNextEntry(entry.getName(), ZipEntry.STORED, entry.getLastModified(), 0, 0, 0);
+                        writer.closeEntry(0, 0);
+                    } else {
+                        writeEntry(writer, entry.getName(), sourceOf(entry), null, selector, deflater, engine);
+                    }
+                }
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+            writer.finish();
+        }
+    }
+
+    // Next entry of the walk, counted into the progress totals
+    private TreeWalker.Entry next(TreeWalker walker) throws IOException {
+        TreeWalker.Entry entry = walker.next();
+        if (entry != null && !entry.isDirectory()) {
+            progress.discovered(entry.getSize());
+        }
+        return entry;
+    }
+
+    private static EntrySource sourceOf(TreeWalker.Entry entry) {
+        File file = entry.getPath().toFile();
+        return new EntrySource() {
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public long lastModified() {
+                return entry.getLastModified();
+            }
+        };
+    }
+
+    // Adds the entries after whatever the writer already holds, then finishes the archive
+    private void writeEntries(ZipArchiveWriter writer, Map<String, EntrySource> entries, ZipDictionary dictionary,
+            NioCodecEngine engine) throws IOException {
+        if (workerCount > 1) {
+            // Deflates the entries concurrently and gathers them into the archive in order
+            try (ParallelZipWriter parallelWriter = new ParallelZipWriter(writer, workerCount,
+                    scatterThreshold, profile, engine, selector())) {
+                parallelWriter.setDictionary(dictionary);
+                for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                    parallelWriter.add(entry.getKey(), entry.getValue());
+                }
+                parallelWriter.finish();
+            }
+        } else {
+            // Adds the entries one after another
+            EntryMethodSelector selector = selector();
+            Deflater deflater = CodecPool.getInstance().acquireDeflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+                    writeEntry(writer, entry.getKey(), entry.getValue(), dictionary, selector, deflater, engine);
+                }
+            } finally {
+                CodecPool.getInstance().release(deflater);
+            }
+            writer.finish();
+        }
+    }
+
+    // Adds one entry on the calling thread, stored or deflated with the given (reset) deflater
+    private void writeEntry(ZipArchiveWriter writer, String entryName, EntrySource source, ZipDictionary dictionary,
+            EntryMethodSelector selector, Deflater deflater, NioCodecEngine engine) throws IOException {
+        if (selector != null && selector.chooseMethod(entryName, source) == ZipEntry.STORED) {
+            store(writer, entryName, source, engine);
+            engine.getProgress().entryDone();
+            return;
+        }
+        try (InputStream in = source.open()) {
+            deflater.reset();
+            profile.configure(deflater, entryName);
+            byte[] extra = null;
+            if (dictionary != null && ZipDictionary.appliesTo(entryName)) {
+                dictionary.apply(deflater);
+                extra = dictionary.extraField();
+            }
+            writer.putNextEntry(entryName, source.lastModified(), extra);
+            long crc = engine.deflate(NioCodecEngine.channelOf(in), deflater, writer.entryChannel());
+            writer.closeEntry(crc, deflater.getBytesRead());
+        }
+        engine.getProgress().entryDone();
+    }
+
+    /**
+     * Adds files to an existing archive in place, replacing entries with the
+     * same name (see ZipUpdater). Only the new data and the central
+     * directory are written, however large the archive is.
+     */
+    public boolean updateArchive(String archivePath, String[] filePaths) {
+        try {
+            if (filePaths == null || filePaths.length == 0) {
+                System.out.println("No files provided for update");
+                return false;
+            }
+
+            Map<String, EntrySource> entries = new LinkedHashMap<>();
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.exists()) {
+                    System.out.println("Skipping non-existent file: " + filePath);
+                    continue;
+                }
+                String entryName = file.getName();
+                if (entries.containsKey(entryName)) {
+                    throw new ZipException("duplicate entry: " + entryName);
+                }
+                System.out.println("Adding: " + file.getName() + " (" + file.length() + " bytes)");
+                entries.put(entryName, () -> new FileInputStream(file));
+            }
+
+            update(Path.of(archivePath), entries, Set.of());
+            System.out.println("Archive updated: " + archivePath);
+            System.out.println("Archive size: " + new File(archivePath).length() + " bytes");
+            return true;
+
+        } catch (IOException e) {
+            System.err.println("Update error: " + e.getMessage());
+            if (!progress.fail(e)) {
+                e.printStackTrace();
+            }
             return false;
         }
     }
 
+    /**
+     * Adds or replaces the given entries of an existing archive and removes
+     * the named ones, without rewriting the entries that stay. New entries
+     * are compressed as in compressMultiple, but without a shared
+     * dictionary. If anything fails the archive is rolled back.
+     */
+    public void update(Path archive, Map<String, EntrySource> entries, Set<String> removed) throws IOException {
+        if (entries.containsKey(ZipDictionary.ENTRY_NAME)) {
+            throw new ZipException("Entry name reserved for the shared dictionary: " + ZipDictionary.ENTRY_NAME);
+        }
+        Set<String> dropped = new HashSet<>(entries.keySet());
+        dropped.addAll(removed);
+        try (ZipUpdater updater = ZipUpdater.begin(archive, dropped)) {
+            writeEntries(updater.getWriter(), entries, null, engineFor(archive.toString()));
+            updater.commit();
+            System.out.println("Kept " + updater.getKeptCount() + " entries, replaced or removed "
+                    + updater.getDroppedCount() + ", added " + entries.size());
+            if (updater.getUnreferencedBytes() > 0) {
+                System.out.println(updater.getUnreferencedBytes()
+                        + " bytes of replaced entries remain in the archive until it is recompressed");
+            }
+        }
+    }
+
+    // Samples the text entries and writes the dictionary as the first entry; null if not worth it
+    private ZipDictionary writeDictionary(ZipArchiveWriter writer, Map<String, EntrySource> entries)
+            throws IOException {
+        if (!sharedDictionary) {
+            return null;
+        }
+        if (entries.containsKey(ZipDictionary.ENTRY_NAME)) {
+            throw new ZipException("Entry name reserved for the shared dictionary: " + ZipDictionary.ENTRY_NAME);
+        }
+        List<EntrySource> textSources = new ArrayList<>();
+        for (Map.Entry<String, EntrySource> entry : entries.entrySet()) {
+            if (ZipDictionary.appliesTo(entry.getKey())) {
+                textSources.add(entry.getValue());
+            }
+        }
+        if (textSources.size() < ZipDictionary.MIN_ENTRIES) {
+            return null;
+        }
+        ZipDictionary dictionary = ZipDictionary.build(textSources, getDictionarySize());
+        if (dictionary == null) {
+            return null;
+        }
+        System.out.println("Shared dictionary: " + dictionary.size() + " bytes sampled from "
+                + textSources.size() + " text entries");
+        dictionary.writeTo(writer);
+        return dictionary;
+    }
+
+    // Writes a STORED entry from a file: one pass for the CRC the local header needs, one to copy
+    private static void store(ZipArchiveWriter writer, String entryName, FileChannel source,
+            NioCodecEngine engine) throws IOException {
+        long start = source.position();
+        CRC32 crc = new CRC32();
+        long size = engine.transfer(source, crc, null);
+        source.position(start);
+        writer.putNextEntry(entryName, ZipEntry.STORED, System.currentTimeMillis(), crc.getValue(), size, size);
+        writer.closeEntry(engine.copy(source, size, writer.entryChannel()), size);
+    }
+
+    private static void store(ZipArchiveWriter writer, String entryName, EntrySource source,
+            NioCodecEngine engine) throws IOException {
+        CRC32 crc = new CRC32();
+        long size;
+        try (InputStream in = source.open()) {
+            size = engine.transfer(NioCodecEngine.channelOf(in), crc, null);
+        }
+        writer.putNextEntry(entryName, ZipEntry.STORED, source.lastModified(), crc.getValue(), size, size);
+        try (InputStream in = source.open()) {
+            // closeEntry rejects the entry if the source changed between the two passes
+            writer.closeEntry(engine.copy(NioCodecEngine.channelOf(in), size, writer.entryChannel()), size);
+        }
+    }
+
 }
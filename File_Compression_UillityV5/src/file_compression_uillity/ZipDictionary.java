@@ -0,0 +1,262 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Preset deflate dictionary shared by the small text entries of an archive.
+ *
+ * Deflate starts every entry with an empty 32 KB window, so a 1 KB JSON
+ * file cannot refer to the keys and boilerplate it shares with thousands of
+ * siblings. A dictionary built from samples of those files is loaded into
+ * the window first (Deflater.setDictionary) and the same bytes must be
+ * loaded again before inflating (Inflater.setDictionary).
+ *
+ * Archive layout: the dictionary is the first entry, STORED under the
+ * reserved name {@link #ENTRY_NAME}. It and every entry compressed against
+ * it carry an extra field ({@link #EXTRA_ID}) holding the Adler-32 of the
+ * dictionary, so a reader knows which entries need it. ZipArchiveReader and
+ * ZipStreamReader hide the dictionary entry and apply it automatically;
+ * other ZIP tools see the dictionary as a plain file but cannot inflate the
+ * dependent entries.
+ */
+public class ZipDictionary {
+
+    public static final String ENTRY_NAME = ".zipdict";
+    // Private extra field: 4-byte Adler-32 of the dictionary
+    public static final int EXTRA_ID = 0x6444;
+    // The deflate window; bytes in front of the last 32 KB are never referenced
+    public static final int MAX_SIZE = 32 * 1024;
+    // Fewer text entries than this do not repay the dictionary's own size
+    public static final int MIN_ENTRIES = 16;
+
+    // Sampling limits: files visited, bytes read per file and in total
+    private static final int MAX_SAMPLE_FILES = 4096;
+    private static final int MAX_SAMPLE_BYTES_PER_FILE = 8 * 1024;
+    private static final int MAX_SAMPLE_BYTES = 2 * 1024 * 1024;
+
+    // A dictionary is made of segments; each is scored by the k-mers it covers
+    private static final int K = 8;
+    private static final int SEGMENT_SIZE = 64;
+    private static final int SEGMENT_STEP = 16;
+    private static final int FREQUENCY_LOG = 18;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] data;
+    private final int id;
+
+    public ZipDictionary(byte[] data) {
+        this.data = data;
+        Adler32 adler = new Adler32();
+        adler.update(data);
+        this.id = (int) adler.getValue();
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int size() {
+        return data.length;
+    }
+
+    // Adler-32 of the dictionary, the value zlib itself uses as dictionary ID
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Whether entries of this name are compressed against the dictionary:
+     * the file types handled by TextProcessor.
+     */
+    public static boolean appliesTo(String entryName) {
+        return "Text".equals(FileTypeFactory.getProcessor(FileTypeFactory.getFileExtension(entryName))
+                .getFileType());
+    }
+
+    // Call after the deflater is reset and configured, before its first input
+    public void apply(Deflater deflater) {
+        // The level and strategy just configured must be in effect before the dictionary
+        CodecPool.applyParameters(deflater);
+        deflater.setDictionary(data);
+    }
+
+    // Call after the inflater is reset, before its first input
+    public void apply(Inflater inflater) {
+        inflater.setDictionary(data);
+    }
+
+    /**
+     * Writes the dictionary as a STORED entry; it must be the first entry
+     * of the archive.
+     */
+    public void writeTo(ZipArchiveWriter writer) throws IOException {
+        if (writer.getEntryCount() != 0) {
+            throw new IOException("The shared dictionary must be the first entry");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writer.putNextEntry(ENTRY_NAME, ZipEntry.STORED, System.currentTimeMillis(), crc.getValue(),
+                data.length, data.length, extraField());
+        writer.write(data, 0, data.length);
+        writer.closeEntry();
+    }
+
+    // Extra field marking an entry as compressed against this dictionary
+    public byte[] extraField() {
+        ByteBuffer b = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        b.putShort((short) EXTRA_ID);
+        b.putShort((short) 4);
+        b.putInt(id);
+        return b.array();
+    }
+
+    /**
+     * Builds a dictionary of at most {@code size} bytes from the start of
+     * the given sources.
+     *
+     * The samples are cut into overlapping segments, and each segment is
+     * scored by how many samples contain its 8-byte substrings. Segments
+     * are picked greedily by score; substrings a picked segment covers no
+     * longer count for the others, so the dictionary does not fill up with
+     * copies of the same boilerplate. The best segments go last, where the
+     * distances to the entry data are shortest.
+     *
+     * @return the dictionary, or null if the samples share nothing
+     */
+    public static ZipDictionary build(List<EntrySource> sources, int size) throws IOException {
+        List<byte[]> samples = sample(sources);
+        int[] frequency = new int[1 << FREQUENCY_LOG];
+        int[] lastSample = new int[1 << FREQUENCY_LOG];
+        for (int s = 0; s < samples.size(); s++) {
+            byte[] sample = samples.get(s);
+            for (int i = 0; i + K <= sample.length; i++) {
+                int h = hash(sample, i);
+                // Count each substring once per sample: frequent means shared between files
+                if (lastSample[h] != s + 1) {
+                    lastSample[h] = s + 1;
+                    frequency[h]++;
+                }
+            }
+        }
+        for (int h = 0; h < frequency.length; h++) {
+            if (frequency[h] < 2) {
+                frequency[h] = 0;
+            }
+        }
+
+        PriorityQueue<Segment> queue = new PriorityQueue<>();
+        int[] seen = new int[1 << FREQUENCY_LOG];
+        int mark = 0;
+        for (byte[] sample : samples) {
+            for (int start = 0; start + K <= sample.length; start += SEGMENT_STEP) {
+                Segment segment = new Segment(sample, start, Math.min(SEGMENT_SIZE, sample.length - start));
+                segment.score = score(segment, frequency, seen, ++mark);
+                if (segment.score > 0) {
+                    queue.add(segment);
+                }
+            }
+        }
+
+        // Lazy greedy selection: a segment is taken once its refreshed score still leads
+        List<Segment> picked = new ArrayList<>();
+        int total = 0;
+        while (!queue.isEmpty() && total < size) {
+            Segment segment = queue.poll();
+            long score = score(segment, frequency, seen, ++mark);
+            if (score <= 0) {
+                continue;
+            }
+            if (!queue.isEmpty() && score < queue.peek().score) {
+                segment.score = score;
+                queue.add(segment);
+                continue;
+            }
+            int length = Math.min(segment.length, size - total);
+            for (int i = segment.start; i + K <= segment.start + segment.length; i++) {
+                frequency[hash(segment.sample, i)] = 0;
+            }
+            picked.add(new Segment(segment.sample, segment.start, length));
+            total += length;
+        }
+        if (picked.isEmpty()) {
+            return null;
+        }
+
+        byte[] dictionary = new byte[total];
+        int end = total;
+        for (Segment segment : picked) {
+            end -= segment.length;
+            System.arraycopy(segment.sample, segment.start, dictionary, end, segment.length);
+        }
+        return new ZipDictionary(dictionary);
+    }
+
+    // Reads the start of evenly spaced sources, within the sampling limits
+    private static List<byte[]> sample(List<EntrySource> sources) throws IOException {
+        int files = Math.min(sources.size(), MAX_SAMPLE_FILES);
+        int perFile = files == 0 ? 0 : Math.min(MAX_SAMPLE_BYTES_PER_FILE, MAX_SAMPLE_BYTES / files);
+        List<byte[]> samples = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            EntrySource source = sources.get((int) ((long) i * sources.size() / files));
+            try (InputStream in = source.open()) {
+                byte[] sample = in.readNBytes(perFile);
+                if (sample.length >= K) {
+                    samples.add(sample);
+                }
+            }
+        }
+        return samples;
+    }
+
+    // Sum of the frequencies of the distinct substrings in a segment
+    private static long score(Segment segment, int[] frequency, int[] seen, int mark) {
+        long score = 0;
+        for (int i = segment.start; i + K <= segment.start + segment.length; i++) {
+            int h = hash(segment.sample, i);
+            if (seen[h] != mark) {
+                seen[h] = mark;
+                score += frequency[h];
+            }
+        }
+        return score;
+    }
+
+    private static int hash(byte[] data, int index) {
+        long value = (long) LONG_LE.get(data, index);
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - FREQUENCY_LOG));
+    }
+
+    // A candidate byte range of one sample; ordered best first
+    private static final class Segment implements Comparable<Segment> {
+        final byte[] sample;
+        final int start;
+        final int length;
+        long score;
+
+        Segment(byte[] sample, int start, int length) {
+            this.sample = sample;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            return Long.compare(other.score, score);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Sequential ZIP reader over a channel.
+ *
+ * Walks the local file headers front to back, the way ZipInputStream does,
+ * so it also works on pipes and sockets that cannot seek. Entry data is
+ * inflated with Inflater.inflate(ByteBuffer) through the NioCodecEngine and
+ * checked against the CRC and sizes from the header or data descriptor.
+ *
+ * A shared dictionary (see ZipDictionary) comes first in the archive, so it
+ * is read before any entry needs it; it is applied, not handed out.
+ */
+public class ZipStreamReader {
+
+    private final NioCodecEngine engine;
+
+    public ZipStreamReader(NioCodecEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Reads every entry and hands it to {@code target}.
+     */
+    public void read(ReadableByteChannel source, EntryTarget target) throws IOException {
+        ByteBuffer input = engine.acquireBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        input.flip();
+        Inflater inflater = CodecPool.getInstance().acquireInflater();
+        try {
+            LocalHeader header;
+            ZipDictionary dictionary = null;
+            boolean first = true;
+            while ((header = readLocalHeader(source, input)) != null) {
+                if (first && header.isDictionary()) {
+                    dictionary = readDictionary(source, input, header, inflater);
+                    first = false;
+                    continue;
+                }
+                first = false;
+                // Entries with a data descriptor only reveal CRC and sizes after their data
+                ArchiveEntry entry = header.toArchiveEntry(
+                        (header.flag & ZipArchiveWriter.FLAG_DATA_DESCRIPTOR) == 0);
+                try (OutputStream out = target.open(entry)) {
+                    readEntryData(source, input, header, inflater, dictionary,
+                            out == null ? null : NioCodecEngine.channelOf(out));
+                }
+                if (!entry.isDirectory()) {
+                    engine.getProgress().entryDone();
+                }
+            }
+        } finally {
+            CodecPool.getInstance().release(inflater);
+            engine.releaseBuffer(input.order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    /**
+     * Lists every entry. The data has to be read anyway to reach the next
+     * header, so the listing carries verified sizes and CRCs.
+     */
+    public List<ArchiveEntry> list(ReadableByteChannel source) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        ByteBuffer input = engine.acquireBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        input.flip();
+        Inflater inflater = CodecPool.getInstance().acquireInflater();
+        try {
+            LocalHeader header;
+            ZipDictionary dictionary = null;
+            boolean first = true;
+            while ((header = readLocalHeader(source, input)) != null) {
+                if (first && header.isDictionary()) {
+                    dictionary = readDictionary(source, input, header, inflater);
+                    first = false;
+                    continue;
+                }
+                first = false;
+                readEntryData(source, input, header, inflater, dictionary, null);
+                entries.add(header.toArchiveEntry(true));
+            }
+            return entries;
+        } finally {
+            CodecPool.getInstance().release(inflater);
+            engine.releaseBuffer(input.order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    private ZipDictionary readDictionary(ReadableByteChannel source, ByteBuffer input, LocalHeader header,
+            Inflater inflater) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream((int) header.size);
+        readEntryData(source, input, header, inflater, null, NioCodecEngine.channelOf(data));
+        ZipDictionary dictionary = new ZipDictionary(data.toByteArray());
+        if (dictionary.getId() != (int) header.dictionaryId) {
+            throw new ZipException("Shared dictionary is corrupt");
+        }
+        return dictionary;
+    }
+
+    private void readEntryData(ReadableByteChannel source, ByteBuffer input, LocalHeader header,
+            Inflater inflater, ZipDictionary dictionary, WritableByteChannel sink) throws IOException {
+        long crc;
+        long size;
+        if (header.method == ZipEntry.DEFLATED) {
+            inflater.reset();
+            if (header.dictionaryId != -1) {
+                if (dictionary == null || dictionary.getId() != (int) header.dictionaryId) {
+                    throw new ZipException("Missing the shared dictionary needed by " + header.name);
+                }
+                dictionary.apply(inflater);
+            }
+            crc = engine.inflate(source, input, inflater, sink);
+            size = inflater.getBytesWritten();
+            if ((header.flag & ZipArchiveWriter.FLAG_DATA_DESCRIPTOR) != 0) {
+                readDataDescriptor(source, input, header, inflater);
+            }
+            if (header.compressedSize != inflater.getBytesRead()) {
+                throw new ZipException("Invalid compressed size for " + header.name);
+            }
+        } else if (header.method == ZipEntry.STORED) {
+            if ((header.flag & ZipArchiveWriter.FLAG_DATA_DESCRIPTOR) != 0) {
+                throw new ZipException("STORED entry with data descriptor: " + header.name);
+            }
+            crc = engine.copy(source, input, header.size, sink);
+            size = header.size;
+        } else {
+            throw new ZipException("Unsupported compression method " + header.method + " for " + header.name);
+        }
+        if (header.size != size) {
+            throw new ZipException("Invalid size for " + header.name);
+        }
+        if (header.crc != crc) {
+            throw new ZipException("CRC mismatch for " + header.name);
+        }
+    }
+
+    private void readDataDescriptor(ReadableByteChannel source, ByteBuffer input, LocalHeader header,
+            Inflater inflater) throws IOException {
+        // ZIP64 descriptors are used exactly when a size does not fit in 32 bits
+        boolean zip64 = inflater.getBytesRead() >= ZipArchiveWriter.ZIP64_MAGICVAL
+                || inflater.getBytesWritten() >= ZipArchiveWriter.ZIP64_MAGICVAL;
+        int sizesLength = zip64 ? 16 : 8;
+        fill(source, input, 4);
+        if (input.getInt(input.position()) == ZipArchiveWriter.EXTSIG) {
+            // The descriptor signature is optional
+            input.getInt();
+        }
+        fill(source, input, 4 + sizesLength);
+        header.crc = input.getInt() & 0xFFFFFFFFL;
+        header.compressedSize = zip64 ? input.getLong() : input.getInt() & 0xFFFFFFFFL;
+        header.size = zip64 ? input.getLong() : input.getInt() & 0xFFFFFFFFL;
+    }
+
+    private LocalHeader readLocalHeader(ReadableByteChannel source, ByteBuffer input) throws IOException {
+        if (!tryFill(source, input, 4)) {
+            return null;
+        }
+        int signature = input.getInt(input.position());
+        if (signature != ZipArchiveWriter.LOCSIG) {
+            // Central directory (or anything else) ends the entry sequence
+            return null;
+        }
+        fill(source, input, 30);
+        input.getInt();
+        LocalHeader header = new LocalHeader();
+        input.getShort(); // version needed
+        header.flag = input.getShort() & 0xFFFF;
+        header.method = input.getShort() & 0xFFFF;
+        header.dosTime = input.getInt() & 0xFFFFFFFFL;
+        header.crc = input.getInt() & 0xFFFFFFFFL;
+        header.compressedSize = input.getInt() & 0xFFFFFFFFL;
+        header.size = input.getInt() & 0xFFFFFFFFL;
+        int nameLength = input.getShort() & 0xFFFF;
+        int extraLength = input.getShort() & 0xFFFF;
+
+        fill(source, input, nameLength + extraLength);
+        byte[] name = new byte[nameLength];
+        input.get(name);
+        header.name = new String(name, StandardCharsets.UTF_8);
+        byte[] extra = new byte[extraLength];
+        input.get(extra);
+        header.readExtra(extra);
+        return header;
+    }
+
+    // Ensures at least n bytes are available in input, compacting as needed
+    private static void fill(ReadableByteChannel source, ByteBuffer input, int n) throws IOException {
+        if (!tryFill(source, input, n)) {
+            throw new ZipException("Unexpected end of ZIP stream");
+        }
+    }
+
+    private static boolean tryFill(ReadableByteChannel source, ByteBuffer input, int n) throws IOException {
+        if (n > input.capacity()) {
+            throw new ZipException("Header too large: " + n + " bytes");
+        }
+        if (input.remaining() >= n) {
+            return true;
+        }
+        input.compact();
+        try {
+            while (input.position() < n) {
+                if (source.read(input) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            input.flip();
+        }
+    }
+
+    // Fields of a local file header
+    private static final class LocalHeader {
+        String name;
+        int flag;
+        int method;
+        long dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        long dictionaryId = -1;
+
+        // ZIP64 sizes and the shared dictionary marker
+        void readExtra(byte[] extra) {
+            ByteBuffer b = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.remaining() >= 4) {
+                int id = b.getShort() & 0xFFFF;
+                int length = b.getShort() & 0xFFFF;
+                if (length > b.remaining()) {
+                    return;
+                }
+                int next = b.position() + length;
+                if (id == ZipArchiveWriter.ZIP64_EXTID && length >= 16) {
+                    size = b.getLong();
+                    compressedSize = b.getLong();
+                } else if (id == ZipDictionary.EXTRA_ID && length == 4) {
+                    dictionaryId = b.getInt() & 0xFFFFFFFFL;
+                }
+                b.position(next);
+            }
+        }
+
+        boolean isDictionary() {
+            return name.equals(ZipDictionary.ENTRY_NAME) && method == ZipEntry.STORED && dictionaryId != -1
+                    && size <= ZipDictionary.MAX_SIZE;
+        }
+
+        ArchiveEntry toArchiveEntry(boolean sizesKnown) {
+            long time = ZipArchiveWriter.dosToJavaTime(dosTime);
+            if (!sizesKnown) {
+                return new ArchiveEntry(name, -1, -1, -1, time);
+            }
+            return new ArchiveEntry(name, size, compressedSize, crc, time);
+        }
+    }
+}
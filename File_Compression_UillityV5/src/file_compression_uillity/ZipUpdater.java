@@ -0,0 +1,340 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Adds, replaces and removes entries of an existing ZIP archive in place.
+ *
+ * Entry data never moves. New entries are written over the old central
+ * directory, followed by a fresh one listing the kept entries and the new
+ * ones, so an update costs the bytes added plus one central directory
+ * instead of a rewrite of the whole archive. The central records of kept
+ * entries are copied byte for byte, since their offsets do not change.
+ * Replaced and removed entries stay in the file, unreferenced, until the
+ * archive is recompressed.
+ *
+ * Overwriting the old central directory is the only destructive step, so
+ * the old tail of the archive (central directory and end records) is first
+ * copied to {@code <archive>.journal} and synced. commit() deletes the
+ * journal once the new tail is synced; if the process dies in between, the
+ * next update (or recover()) writes the old tail back. The archive is thus
+ * always either the old one or the new one.
+ *
+ * Usage: begin(), write the new entries to getWriter(), commit(), close().
+ * Closing without committing rolls the archive back.
+ */
+public class ZipUpdater implements AutoCloseable {
+
+    public static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final int JOURNAL_MAGIC = 0x5A4A4E4C; // "ZJNL"
+    // Magic, old archive length, old central directory offset, tail length, tail CRC
+    private static final int JOURNAL_HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+    // Fixed part of a central directory record
+    private static final int CEN_HEADER_SIZE = 46;
+
+    private final Path archive;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final long oldLength;
+    private final long cenOffset;
+    private final byte[] oldTail;
+    private final int keptCount;
+    private final int droppedCount;
+    private final long droppedBytes;
+    private final ZipArchiveWriter writer;
+    private boolean committed;
+    private boolean closed;
+
+    private ZipUpdater(Path archive, FileChannel channel, FileLock lock, long oldLength, long cenOffset,
+            byte[] oldTail, byte[] keptCentral, int keptCount, int droppedCount, long droppedBytes) {
+        this.archive = archive;
+        this.channel = channel;
+        this.lock = lock;
+        this.oldLength = oldLength;
+        this.cenOffset = cenOffset;
+        this.oldTail = oldTail;
+        this.keptCount = keptCount;
+        this.droppedCount = droppedCount;
+        this.droppedBytes = droppedBytes;
+        this.writer = new ZipArchiveWriter(channel, cenOffset, keptCentral, keptCount);
+    }
+
+    /**
+     * Starts an update of {@code archive}, first rolling back any update
+     * that was interrupted.
+     *
+     * @param dropped names of the entries to leave out of the new central
+     *                directory: the ones being replaced and the ones being
+     *                removed
+     */
+    public static ZipUpdater begin(Path archive, Set<String> dropped) throws IOException {
+        if (dropped.contains(ZipDictionary.ENTRY_NAME)) {
+            throw new ZipException("Entry name reserved for the shared dictionary: " + ZipDictionary.ENTRY_NAME);
+        }
+        FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = lock(channel, archive);
+            recover(archive, channel);
+
+            long cenOffset;
+            long cenSize;
+            long droppedBytes = 0;
+            try (ZipArchiveReader reader = new ZipArchiveReader(archive)) {
+                if (reader.getVolumeCount() > 1) {
+                    throw new ZipException("Split archives cannot be updated in place: " + archive);
+                }
+                for (ZipArchiveReader.Entry entry : reader.getEntries()) {
+                    if (dropped.contains(entry.getName())) {
+                        droppedBytes += entry.getCompressedSize();
+                    }
+                }
+                cenOffset = reader.getCentralDirectoryOffset();
+                cenSize = reader.getCentralDirectorySize();
+            }
+
+            long oldLength = channel.size();
+            if (cenOffset + cenSize > oldLength) {
+                throw new ZipException("Central directory extends past the end of " + archive);
+            }
+            if (oldLength - cenOffset > Integer.MAX_VALUE - JOURNAL_HEADER_SIZE) {
+                throw new ZipException("Central directory too large to update in place: " + archive);
+            }
+            byte[] oldTail = new byte[(int) (oldLength - cenOffset)];
+            readFully(channel, ByteBuffer.wrap(oldTail), cenOffset);
+
+            // Keeps the raw central records of the entries that stay
+            ByteBuffer cen = ByteBuffer.wrap(oldTail, 0, (int) cenSize).order(ByteOrder.LITTLE_ENDIAN);
+            ByteArrayOutputStream kept = new ByteArrayOutputStream((int) cenSize);
+            int keptCount = 0;
+            int droppedCount = 0;
+            while (cen.hasRemaining()) {
+                int start = cen.position();
+                if (cen.remaining() < CEN_HEADER_SIZE || cen.getInt(start) != ZipArchiveWriter.CENSIG) {
+                    throw new ZipException("Invalid central directory header");
+                }
+                int nameLength = cen.getShort(start + 28) & 0xFFFF;
+                int length = CEN_HEADER_SIZE + nameLength + (cen.getShort(start + 30) & 0xFFFF)
+                        + (cen.getShort(start + 32) & 0xFFFF);
+                if (length > cen.remaining()) {
+                    throw new ZipException("Invalid central directory header");
+                }
+                String name = new String(oldTail, start + CEN_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+                if (dropped.contains(name)) {
+                    droppedCount++;
+                } else {
+                    kept.write(oldTail, start, length);
+                    keptCount++;
+                }
+                cen.position(start + length);
+            }
+
+            writeJournal(journalFor(archive), oldLength, cenOffset, oldTail);
+            channel.position(cenOffset);
+            return new ZipUpdater(archive, channel, lock, oldLength, cenOffset, oldTail, kept.toByteArray(),
+                    keptCount, droppedCount, droppedBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rolls back an update of {@code archive} that was interrupted before
+     * it committed.
+     *
+     * @return true if there was one to roll back
+     */
+    public static boolean recover(Path archive) throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = lock(channel, archive);
+            try {
+                return recover(archive, channel);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    public static Path journalFor(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    // Only called with the archive locked, so the journal cannot belong to a running update
+    private static boolean recover(Path archive, FileChannel channel) throws IOException {
+        Path journal = journalFor(archive);
+        // A journal that was never renamed into place means the archive was not touched yet
+        Files.deleteIfExists(tempFor(journal));
+        if (!Files.exists(journal)) {
+            return false;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if (data.remaining() < JOURNAL_HEADER_SIZE || data.getInt() != JOURNAL_MAGIC) {
+            throw new ZipException("Not an update journal: " + journal);
+        }
+        long oldLength = data.getLong();
+        long cenOffset = data.getLong();
+        int tailLength = data.getInt();
+        int tailCrc = data.getInt();
+        if (tailLength != data.remaining() || cenOffset + tailLength != oldLength) {
+            throw new ZipException("Truncated update journal: " + journal);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != tailCrc) {
+            throw new ZipException("CRC mismatch in update journal: " + journal);
+        }
+
+        restoreTail(channel, data, cenOffset, oldLength);
+        Files.delete(journal);
+        syncDirectory(journal);
+        System.out.println("Rolled back interrupted update of " + archive);
+        return true;
+    }
+
+    /**
+     * Writer positioned where the old central directory began; entries
+     * written to it are added to the archive on commit().
+     */
+    public ZipArchiveWriter getWriter() {
+        return writer;
+    }
+
+    // Entries kept from the archive
+    public int getKeptCount() {
+        return keptCount;
+    }
+
+    // Entries replaced or removed
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    // Compressed data of the replaced and removed entries, left in the file unreferenced
+    public long getUnreferencedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * Writes the new central directory and makes the update durable.
+     */
+    public void commit() throws IOException {
+        if (closed || committed) {
+            throw new IllegalStateException("Update already finished");
+        }
+        writer.finish();
+        // The new tail may be shorter than the old one
+        channel.truncate(writer.getBytesWritten());
+        channel.force(true);
+        Path journal = journalFor(archive);
+        Files.delete(journal);
+        syncDirectory(journal);
+        committed = true;
+    }
+
+    /**
+     * Releases the archive, rolling it back unless the update was committed.
+     * If the rollback itself fails, the journal stays for recover().
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!committed) {
+                restoreTail(channel, ByteBuffer.wrap(oldTail), cenOffset, oldLength);
+                Path journal = journalFor(archive);
+                Files.delete(journal);
+                syncDirectory(journal);
+            }
+        } finally {
+            try {
+                lock.release();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static FileLock lock(FileChannel channel, Path archive) throws IOException {
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            throw new IOException("Archive is being updated by another process: " + archive);
+        }
+        return lock;
+    }
+
+    private static void writeJournal(Path journal, long oldLength, long cenOffset, byte[] tail)
+            throws IOException {
+        Path temp = tempFor(journal);
+        CRC32 crc = new CRC32();
+        crc.update(tail);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putLong(oldLength).putLong(cenOffset).putInt(tail.length)
+                .putInt((int) crc.getValue()).flip();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = { header, ByteBuffer.wrap(tail) };
+            while (buffers[1].hasRemaining()) {
+                out.write(buffers);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        // Only a complete, synced journal ever carries the final name
+        Files.move(temp, journal, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(journal);
+    }
+
+    private static void restoreTail(FileChannel channel, ByteBuffer tail, long cenOffset, long oldLength)
+            throws IOException {
+        long position = cenOffset;
+        while (tail.hasRemaining()) {
+            position += channel.write(tail, position);
+        }
+        channel.truncate(oldLength);
+        channel.force(true);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new ZipException("Unexpected end of archive");
+            }
+            position += n;
+        }
+    }
+
+    private static Path tempFor(Path journal) {
+        return journal.resolveSibling(journal.getFileName() + ".tmp");
+    }
+
+    // Makes the creation or removal of a file durable
+    private static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on every platform; the rename is still atomic there
+        }
+    }
+}
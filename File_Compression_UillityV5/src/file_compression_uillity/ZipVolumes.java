@@ -0,0 +1,136 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * The volume files of a ZIP archive, read as one address space.
+ *
+ * Split archives (see SplitZipChannel) locate everything by volume number
+ * and offset within the volume. Here each volume is placed right after the
+ * previous one, so a (disk, offset) pair maps to a single position and
+ * entry data that spans volumes reads as one region. The files are opened
+ * once and never joined on disk. A single-file archive is the one-volume
+ * case.
+ *
+ * Reads are positional, so one instance can be shared by threads.
+ */
+final class ZipVolumes implements AutoCloseable {
+
+    private final FileChannel[] channels;
+    // Position of each volume's first byte, followed by the total size
+    private final long[] starts;
+
+    ZipVolumes(FileChannel... channels) throws IOException {
+        this.channels = channels;
+        this.starts = new long[channels.length + 1];
+        for (int i = 0; i < channels.length; i++) {
+            starts[i + 1] = starts[i] + channels[i].size();
+        }
+    }
+
+    /**
+     * Opens the volumes before {@code last}, the already open last volume
+     * (disk number {@code lastDisk}) of {@code archive}.
+     */
+    static ZipVolumes open(Path archive, int lastDisk, FileChannel last) throws IOException {
+        FileChannel[] channels = new FileChannel[lastDisk + 1];
+        channels[lastDisk] = last;
+        try {
+            for (int disk = 0; disk < lastDisk; disk++) {
+                channels[disk] = FileChannel.open(SplitZipChannel.volumePath(archive, disk), StandardOpenOption.READ);
+            }
+            return new ZipVolumes(channels);
+        } catch (IOException e) {
+            for (int disk = 0; disk < lastDisk; disk++) {
+                if (channels[disk] != null) {
+                    channels[disk].close();
+                }
+            }
+            throw e;
+        }
+    }
+
+    FileChannel getLast() {
+        return channels[channels.length - 1];
+    }
+
+    int getCount() {
+        return channels.length;
+    }
+
+    long size() {
+        return starts[channels.length];
+    }
+
+    /**
+     * Position of byte {@code offset} of volume {@code disk}.
+     */
+    long position(int disk, long offset) throws ZipException {
+        if (disk < 0 || disk >= channels.length) {
+            throw new ZipException("Archive has no volume " + (disk + 1) + " (it has " + channels.length + ")");
+        }
+        return starts[disk] + offset;
+    }
+
+    /**
+     * Reads from the volume holding {@code position}, stopping at its end.
+     *
+     * @return the number of bytes read, or -1 past the last volume
+     */
+    int read(ByteBuffer dst, long position) throws IOException {
+        if (position >= size()) {
+            return -1;
+        }
+        int disk = volumeAt(position);
+        long offset = position - starts[disk];
+        int limit = dst.limit();
+        long left = starts[disk + 1] - position;
+        if (dst.remaining() > left) {
+            dst.limit(dst.position() + (int) left);
+        }
+        try {
+            return channels[disk].read(dst, offset);
+        } finally {
+            dst.limit(limit);
+        }
+    }
+
+    boolean isOpen() {
+        return channels[channels.length - 1].isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Last volume starting at or before position (empty volumes are skipped)
+    private int volumeAt(long position) {
+        int low = 0;
+        int high = channels.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
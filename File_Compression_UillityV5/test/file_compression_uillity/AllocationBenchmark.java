@@ -0,0 +1,134 @@
+package file_compression_uillity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Heap allocated per entry when zipping and reading many small files, to
+ * check the Deflater/Inflater and buffer pools (CodecPool, BufferPool).
+ *
+ * The entries are 4 KB each, half text-like and half random, held in
+ * memory so that only the codec path is measured. Each worker count runs
+ * three times and the last run is reported: time, bytes allocated per
+ * entry by all threads, and garbage collections. Not a JUnit test; run
+ * with the test classes on the class path:
+ *
+ *   java -cp build/classes:build/test/classes file_compression_uillity.AllocationBenchmark
+ *           [entries=100000] [extension=txt] [workers=1,2]
+ *
+ * A "dat" extension makes ZipCompressor probe every entry for STORED.
+ */
+public class AllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String extension = args.length > 1 ? args[1] : "txt";
+        String[] workers = (args.length > 2 ? args[2] : "1,2").split(",");
+
+        Map<String, EntrySource> entries = entries(count, extension);
+        Path archive = Files.createTempFile("allocation", ".zip");
+        PrintStream out = System.out;
+        // ZipCompressor reports every entry
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (String worker : workers) {
+                int workerCount = Integer.parseInt(worker);
+                for (int run = 1; run <= 3; run++) {
+                    Measurement write = new Measurement();
+                    ZipCompressor compressor = new ZipCompressor();
+                    compressor.setWorkerCount(workerCount);
+                    try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                        compressor.compressMultiple(entries, channel);
+                    }
+                    write.stop();
+
+                    Measurement read = new Measurement();
+                    try (ZipArchiveReader reader = new ZipArchiveReader(archive)) {
+                        WritableByteChannel sink = Channels.newChannel(OutputStream.nullOutputStream());
+                        for (ZipArchiveReader.Entry entry : reader.getEntries()) {
+                            reader.extract(entry, sink);
+                        }
+                    }
+                    read.stop();
+
+                    if (run == 3) {
+                        out.printf("%s, %d workers: write %s | read %s%n", extension, workerCount,
+                                write.format(count), read.format(count));
+                    }
+                }
+            }
+        } finally {
+            System.setOut(out);
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    static Map<String, EntrySource> entries(int count, String extension) {
+        Random random = new Random(1);
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[4096];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (i % 2 == 0 ? 'a' + random.nextInt(8) : random.nextInt());
+            }
+            entries.put(String.format("f%06d.%s", i, extension), () -> new ByteArrayInputStream(data));
+        }
+        return entries;
+    }
+
+    static long allocatedBytes() {
+        return THREADS.getTotalThreadAllocatedBytes();
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+        }
+        return count;
+    }
+
+    // Time, allocation and collections from construction to stop()
+    private static final class Measurement {
+        private final long startNanos;
+        private final long startBytes;
+        private final long startCollections;
+        private long nanos;
+        private long bytes;
+        private long gcs;
+
+        Measurement() {
+            System.gc();
+            startCollections = collections();
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            nanos = System.nanoTime() - startNanos;
+            bytes = allocatedBytes() - startBytes;
+            gcs = collections() - startCollections;
+        }
+
+        String format(int entries) {
+            return String.format("%,d ms, %,d B/entry, %d GCs", nanos / 1_000_000, bytes / entries, gcs);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BgzfCompressorTest {
+
+    private Path dir;
+    private Path input;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-bgzf-test");
+        input = dir.resolve("app.log");
+        data = TestFiles.text(1_000_000).getBytes(StandardCharsets.UTF_8);
+        Files.write(input, data);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private Path compress(int workers) {
+        BgzfCompressor compressor = new BgzfCompressor();
+        compressor.setWorkerCount(workers);
+        assertTrue(compressor.compress(input.toString()));
+        return dir.resolve("app.log.gz");
+    }
+
+    @Test
+    public void roundTripIsPlainGzip() throws IOException {
+        for (int workers : new int[] { 1, 4 }) {
+            Path archive = compress(workers);
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+            BgzfCompressor compressor = new BgzfCompressor();
+            compressor.setWorkerCount(workers);
+            assertTrue(compressor.decompress(archive.toString()));
+            assertArrayEquals(data, Files.readAllBytes(dir.resolve("app").resolve("app.log")));
+            assertEquals(data.length, compressor.list(archive.toString()).get(0).getSize());
+        }
+    }
+
+    @Test
+    public void channelReadsAnyRange() throws IOException {
+        Path archive = compress(2);
+        try (SeekableByteChannel channel = new BgzfCompressor().open(archive.toString())) {
+            assertEquals(data.length, channel.size());
+            // Inside a block, across a block boundary (64 KB) and at the end
+            for (int offset : new int[] { 1000, 65_536 - 100, data.length - 50 }) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.min(300, data.length - offset));
+                channel.position(offset);
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // Reads may stop at a block boundary
+                }
+                assertArrayEquals(Arrays.copyOfRange(data, offset, offset + buffer.capacity()), buffer.array());
+            }
+        }
+    }
+
+    @Test
+    public void savedIndexMatchesScannedIndex() throws IOException {
+        Path archive = compress(4);
+        BgzfIndex saved = BgzfIndex.load(archive);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            BgzfIndex scanned = BgzfIndex.scan(channel);
+            assertEquals(scanned.getBlockCount(), saved.getBlockCount());
+            for (int i = 0; i < saved.getBlockCount(); i++) {
+                assertEquals(scanned.getCompressedOffset(i), saved.getCompressedOffset(i));
+            }
+        }
+    }
+
+    @Test
+    public void streamRoundTrip() throws IOException {
+        BgzfCompressor compressor = new BgzfCompressor();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(input)) {
+            compressor.compress("app.log", in, archive);
+        }
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        compressor.decompress(new ByteArrayInputStream(archive.toByteArray()), entry -> restored);
+        assertArrayEquals(data, restored.toByteArray());
+    }
+
+    @Test
+    public void damagedAndTruncatedFilesFailVerify() throws IOException {
+        Path archive = compress(2);
+        byte[] bytes = Files.readAllBytes(archive);
+        BgzfCompressor compressor = new BgzfCompressor();
+        assertTrue(compressor.verify(archive.toString()).isOk());
+
+        Path damaged = dir.resolve("damaged.gz");
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length / 2] ^= 0x55;
+        Files.write(damaged, flipped);
+        assertFalse(verify(compressor, damaged));
+
+        Path truncated = dir.resolve("truncated.gz");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+        assertFalse(verify(compressor, truncated));
+
+        Path empty = dir.resolve("empty.gz");
+        Files.write(empty, new byte[0]);
+        assertFalse(verify(compressor, empty));
+    }
+
+    @Test
+    public void directoryInputLeavesNoArchive() throws IOException {
+        Path folder = Files.createDirectories(dir.resolve("folder"));
+        Files.writeString(folder.resolve("x.txt"), "x");
+        BgzfCompressor compressor = new BgzfCompressor();
+        Path archive = dir.resolve("folder.gz");
+        assertFalse(compressor.compressMultiple(new String[] { folder.toString() }, archive.toString()));
+        assertFalse(Files.exists(archive));
+        assertFalse(Files.exists(BgzfIndex.pathFor(archive)));
+        assertFalse(compressor.compress(folder.toString()));
+        assertFalse(Files.exists(archive));
+    }
+
+    @Test
+    public void failedIndexLeavesNoArchive() throws IOException {
+        // A directory in the way of the index's temp file fails the save after the data is written
+        Path archive = dir.resolve("app.log.gz");
+        Files.createDirectories(dir.resolve("app.log.gz.gzi.tmp"));
+        assertFalse(new BgzfCompressor().compress(input.toString()));
+        assertFalse(Files.exists(archive));
+        assertFalse(Files.exists(BgzfIndex.pathFor(archive)));
+    }
+
+    // A file that cannot be opened as BGZF at all throws instead of reporting
+    private static boolean verify(BgzfCompressor compressor, Path file) {
+        try {
+            return compressor.verify(file.toString()).isOk();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
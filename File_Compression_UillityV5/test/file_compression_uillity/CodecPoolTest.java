@@ -0,0 +1,125 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodecPoolTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-pool-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void releasedCodecsAreReused() {
+        CodecPool pool = CodecPool.getInstance();
+        Deflater deflater = pool.acquireDeflater(6);
+        pool.release(deflater);
+        // Other tests may have left idle codecs ahead of it
+        List<Deflater> deflaters = new ArrayList<>();
+        for (int i = 0; i < CodecPool.MAX_POOLED; i++) {
+            deflaters.add(pool.acquireDeflater(1));
+        }
+        assertTrue(deflaters.contains(deflater));
+        deflaters.forEach(pool::release);
+
+        Inflater inflater = pool.acquireInflater();
+        pool.release(inflater);
+        List<Inflater> inflaters = new ArrayList<>();
+        for (int i = 0; i < CodecPool.MAX_POOLED; i++) {
+            inflaters.add(pool.acquireInflater());
+        }
+        assertTrue(inflaters.contains(inflater));
+        inflaters.forEach(pool::release);
+    }
+
+    @Test
+    public void reusedDeflaterTakesNewLevelAndDictionary() throws DataFormatException {
+        CodecPool pool = CodecPool.getInstance();
+        byte[] data = TestFiles.text(100_000).getBytes(StandardCharsets.UTF_8);
+        byte[] dictionary = Arrays.copyOf(data, 32 * 1024);
+        for (int level : new int[] { 9, 1, Deflater.NO_COMPRESSION, 6 }) {
+            Deflater deflater = pool.acquireDeflater(level, Deflater.FILTERED);
+            deflater.setDictionary(dictionary);
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] compressed = new byte[data.length + 1024];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            pool.release(deflater);
+
+            Inflater inflater = pool.acquireInflater();
+            inflater.setDictionary(dictionary);
+            inflater.setInput(compressed, 0, length);
+            byte[] restored = new byte[data.length];
+            int n = 0;
+            while (n < restored.length && !inflater.finished()) {
+                n += inflater.inflate(restored, n, restored.length - n);
+            }
+            pool.release(inflater);
+            assertArrayEquals("level " + level, data, restored);
+        }
+    }
+
+    @Test
+    public void smallEntriesAllocateLittleOnceWarm() throws IOException {
+        long probe = AllocationBenchmark.allocatedBytes();
+        Assume.assumeTrue("allocation counting not supported", probe > 0);
+        int count = 5_000;
+        Map<String, EntrySource> entries = AllocationBenchmark.entries(count, "txt");
+        Path archive = dir.resolve("small.zip");
+        ZipCompressor compressor = new ZipCompressor();
+        compressor.setWorkerCount(1);
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // The first run fills the pools
+            zip(compressor, entries, archive);
+            long before = AllocationBenchmark.allocatedBytes();
+            zip(compressor, entries, archive);
+            long perEntry = (AllocationBenchmark.allocatedBytes() - before) / count;
+            // About 0.5 KB when measured; 9 KB without the pools
+            assertTrue(perEntry + " bytes per entry", perEntry < 4096);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void zip(ZipCompressor compressor, Map<String, EntrySource> entries, Path archive)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            compressor.compressMultiple(entries, channel);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * CommandLine run as scripts run it: in its own JVM, with stdin and stdout
+ * redirected to files, checking the exit status and that stdout carries
+ * nothing but data.
+ */
+public class CommandLineTest {
+
+    private Path dir;
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-cli-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(100_000));
+        Files.writeString(Files.createDirectories(input.resolve("logs")).resolve("b.log"), TestFiles.text(20_000));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    // Exit status, stdout and stderr of one run
+    private static final class Run {
+        private final int status;
+        private final byte[] out;
+        private final String err;
+
+        Run(int status, byte[] out, String err) {
+            this.status = status;
+            this.out = out;
+            this.err = err;
+        }
+
+        String text() {
+            return new String(out, StandardCharsets.UTF_8);
+        }
+    }
+
+    private Run fcu(Path stdin, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), CommandLine.class.getName()));
+        command.addAll(List.of(args));
+        Path out = Files.createTempFile(dir, "stdout", null);
+        Path err = Files.createTempFile(dir, "stderr", null);
+        ProcessBuilder builder = new ProcessBuilder(command).directory(dir.toFile())
+                .redirectOutput(out.toFile()).redirectError(err.toFile());
+        if (stdin != null) {
+            builder.redirectInput(stdin.toFile());
+        }
+        Process process = builder.start();
+        if (stdin == null) {
+            // An empty stdin
+            process.getOutputStream().close();
+        }
+        assertTrue("fcu " + String.join(" ", args) + " timed out", process.waitFor(60, TimeUnit.SECONDS));
+        Run run = new Run(process.exitValue(), Files.readAllBytes(out), Files.readString(err));
+        Files.delete(out);
+        Files.delete(err);
+        return run;
+    }
+
+    @Test
+    public void pipesArchivesThroughStdinAndStdout() throws IOException, InterruptedException {
+        Run compress = fcu(null, "compress", "-o", "-", "input");
+        assertEquals(compress.err, 0, compress.status);
+        // Nothing but the archive went to stdout
+        Path archive = Files.write(dir.resolve("piped.zip"), compress.out);
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(2, zip.size());
+        }
+
+        Run list = fcu(archive, "list", "-");
+        assertEquals(list.err, 0, list.status);
+        assertTrue(list.text(), list.text().contains("input/a.txt") && list.text().contains("input/logs/b.log"));
+
+        Run entry = fcu(archive, "extract", "-p", "input/logs/b.log", "-");
+        assertEquals(entry.err, 0, entry.status);
+        assertArrayEquals(Files.readAllBytes(input.resolve("logs/b.log")), entry.out);
+
+        Run missing = fcu(archive, "extract", "-p", "input/none.txt", "-");
+        assertEquals(1, missing.status);
+    }
+
+    @Test
+    public void typeFollowsTheExtension() throws IOException, InterruptedException {
+        Run compress = fcu(null, "-q", "compress", "-o", "test.tar.gz", "-l", "FAST", "input");
+        assertEquals(compress.err, 0, compress.status);
+        assertEquals(0, compress.out.length);
+        Path archive = dir.resolve("test.tar.gz");
+        // A TarCompressor reads what the command line wrote
+        assertEquals(2, new TarCompressor(TarCompressor.Compression.GZIP).list(archive.toString()).stream()
+                .filter(e -> !e.isDirectory()).count());
+
+        Run verify = fcu(null, "verify", "test.tar.gz");
+        assertEquals(verify.err, 0, verify.status);
+        Run extract = fcu(null, "extract", "-C", "out", "-e", "**.log", "test.tar.gz");
+        assertEquals(extract.err, 0, extract.status);
+        assertArrayEquals(Files.readAllBytes(input.resolve("logs/b.log")),
+                Files.readAllBytes(dir.resolve("out/input/logs/b.log")));
+        assertTrue(Files.notExists(dir.resolve("out/input/a.txt")));
+
+        byte[] damaged = Files.readAllBytes(archive);
+        damaged[damaged.length / 2] ^= 0x55;
+        Files.write(archive, damaged);
+        assertEquals(1, fcu(null, "verify", "test.tar.gz").status);
+    }
+
+    @Test
+    public void usageErrorsExitWithTwo() throws IOException, InterruptedException {
+        Run none = fcu(null);
+        assertEquals(2, none.status);
+        assertTrue(none.err, none.err.startsWith("Usage: fcu"));
+        assertEquals(0, fcu(null, "--help").status);
+        assertEquals(2, fcu(null, "unpack", "test.zip").status);
+        assertEquals(2, fcu(null, "list", "archive.unknown").status);
+        assertEquals(2, fcu(null, "compress", "-t", "TAR", "-i", "**.txt", "-o", "test.tar", "input").status);
+        assertEquals(2, fcu(null, "compress", "input", "-o").status);
+        assertEquals(2, fcu(null, "compress", "a.txt", "b.txt").status);
+    }
+
+    @Test
+    public void selftestPasses() throws IOException, InterruptedException {
+        Run selftest = fcu(null, "selftest");
+        assertEquals(selftest.err, 0, selftest.status);
+        assertTrue(selftest.err, selftest.err.contains("selftest: ok"));
+    }
+}
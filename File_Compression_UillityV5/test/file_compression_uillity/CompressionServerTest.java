@@ -0,0 +1,156 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressionServerTest {
+
+    private Path dir;
+    private CompressionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-server-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        TestFiles.delete(dir);
+    }
+
+    private void start(CompressionServer started) {
+        server = started;
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "compression-server-test");
+        serving.setDaemon(true);
+        serving.start();
+    }
+
+    private CompressionClient connectTcp() throws IOException {
+        return CompressionClient.connect(((InetSocketAddress) server.getAddress()).getPort());
+    }
+
+    @Test(timeout = 30000)
+    public void compressAndExtractRoundTripOverUnixSocket() throws IOException {
+        Path socket = dir.resolve("server.sock");
+        start(CompressionServer.bind(socket, 1));
+        byte[] data = TestFiles.text(100_000).getBytes(StandardCharsets.UTF_8);
+        try (CompressionClient client = CompressionClient.connect(socket)) {
+            ByteArrayOutputStream archive = new ByteArrayOutputStream();
+            assertTrue(client.call(CompressionProtocol.COMPRESS, "ZIP", "notes.txt",
+                    new ByteArrayInputStream(data), archive).isOk());
+            assertTrue(archive.size() < data.length);
+
+            ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+            assertTrue(client.call(CompressionProtocol.DECOMPRESS, "ZIP", "notes.txt",
+                    new ByteArrayInputStream(archive.toByteArray()), extracted).isOk());
+            assertArrayEquals(data, extracted.toByteArray());
+
+            ByteArrayOutputStream listing = new ByteArrayOutputStream();
+            assertTrue(client.call(CompressionProtocol.LIST, "ZIP", null,
+                    new ByteArrayInputStream(archive.toByteArray()), listing).isOk());
+            assertEquals(data.length + "\tnotes.txt\n", listing.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        start(CompressionServer.bind(0, 1));
+        int count = 50;
+        try (CompressionClient client = connectTcp()) {
+            Thread sender = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        byte[] data = ("request " + i).getBytes(StandardCharsets.UTF_8);
+                        client.send(CompressionProtocol.COMPRESS, "LZ4", "entry" + i, new ByteArrayInputStream(data));
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            sender.start();
+            for (int i = 0; i < count; i++) {
+                ByteArrayOutputStream archive = new ByteArrayOutputStream();
+                assertTrue(client.receive(archive).isOk());
+                ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+                Compressor lz4 = CompressionFactory.createCompressor("LZ4");
+                lz4.decompress(new ByteArrayInputStream(archive.toByteArray()), entry -> extracted);
+                assertEquals("request " + i, extracted.toString(StandardCharsets.UTF_8));
+            }
+            sender.join();
+        }
+        assertEquals(count, server.getRequestCount());
+    }
+
+    @Test(timeout = 30000)
+    public void failedRequestLeavesConnectionUsable() throws IOException {
+        start(CompressionServer.bind(0, 1));
+        try (CompressionClient client = connectTcp()) {
+            byte[] garbage = TestFiles.text(10_000).getBytes(StandardCharsets.UTF_8);
+            CompressionClient.Response failed = client.call(CompressionProtocol.DECOMPRESS, "LZ4", null,
+                    new ByteArrayInputStream(garbage), null);
+            assertFalse(failed.isOk());
+            assertFalse(failed.getMessage().isEmpty());
+
+            CompressionClient.Response pong = client.call(CompressionProtocol.PING, null, null, null, null);
+            assertTrue(pong.isOk());
+            assertEquals("pong", pong.getMessage());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void stalledClientDoesNotBlockOtherConnections() throws Exception {
+        // One CPU slot, taken by a job whose client never reads its result
+        start(CompressionServer.bind(0, 1));
+        byte[] incompressible = new byte[16 * 1024 * 1024];
+        new Random(1).nextBytes(incompressible);
+        CompressionClient stalled = connectTcp();
+        Thread sender = new Thread(() -> {
+            try {
+                stalled.send(CompressionProtocol.COMPRESS, "ZIP", "random.bin",
+                        new ByteArrayInputStream(incompressible));
+            } catch (IOException e) {
+                // Closed by the test
+            }
+        });
+        sender.setDaemon(true);
+        sender.start();
+        while (server.getRequestCount() == 0) {
+            Thread.sleep(10);
+        }
+        // Lets the stalled job fill the socket and block
+        Thread.sleep(1000);
+
+        try (CompressionClient client = connectTcp()) {
+            byte[] data = TestFiles.text(10_000).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream archive = new ByteArrayOutputStream();
+            assertTrue(client.call(CompressionProtocol.COMPRESS, "ZIP", "notes.txt",
+                    new ByteArrayInputStream(data), archive).isOk());
+            assertTrue(client.call(CompressionProtocol.PING, null, null, null, null).isOk());
+        } finally {
+            stalled.close();
+        }
+    }
+}
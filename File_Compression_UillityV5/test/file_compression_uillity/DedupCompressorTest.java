@@ -0,0 +1,115 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DedupCompressorTest {
+
+    private Path dir;
+    private Path input;
+    private byte[] image;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-dedup-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        image = new byte[1_000_000];
+        new Random(5).nextBytes(image);
+        Files.write(input.resolve("image.bin"), image);
+        // A copy with a few bytes inserted near the start: shifted, but mostly the same chunks
+        byte[] shifted = new byte[image.length + 7];
+        System.arraycopy(image, 0, shifted, 0, 1000);
+        System.arraycopy(image, 1000, shifted, 1007, image.length - 1000);
+        Files.write(Files.createDirectories(input.resolve("backup")).resolve("image.bin"), shifted);
+        Files.writeString(input.resolve("notes.txt"), TestFiles.text(50_000));
+        Files.createDirectories(input.resolve("empty"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private Path archive(int workers) {
+        DedupCompressor compressor = new DedupCompressor();
+        compressor.setWorkerCount(workers);
+        Path archive = dir.resolve("out.dedup");
+        assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+        return archive;
+    }
+
+    @Test
+    public void roundTripKeepsFilesAndEmptyDirectories() throws IOException {
+        for (int workers : new int[] { 1, 4 }) {
+            Path archive = archive(workers);
+            DedupCompressor compressor = new DedupCompressor();
+            compressor.setWorkerCount(workers);
+            assertTrue(compressor.decompress(archive.toString()));
+            Path restored = dir.resolve("out").resolve("input");
+            for (String name : new String[] { "image.bin", "backup/image.bin", "notes.txt" }) {
+                assertArrayEquals(name, Files.readAllBytes(input.resolve(name)),
+                        Files.readAllBytes(restored.resolve(name)));
+            }
+            assertTrue(Files.isDirectory(restored.resolve("empty")));
+            assertTrue(compressor.verify(archive.toString()).isOk());
+            TestFiles.delete(dir.resolve("out"));
+        }
+    }
+
+    @Test
+    public void sharedContentIsStoredOnce() throws IOException {
+        // Two copies of 1 MB of random data: well under 2 MB once deduplicated
+        long size = Files.size(archive(2));
+        assertTrue("archive size " + size, size < image.length * 13L / 10);
+    }
+
+    @Test
+    public void extractsSelectedEntries() throws IOException {
+        Path archive = archive(2);
+        Path output = dir.resolve("selected");
+        assertEquals(1, new DedupCompressor().extractSelected(archive.toString(), "**notes.txt", output.toString()));
+        assertArrayEquals(Files.readAllBytes(input.resolve("notes.txt")),
+                Files.readAllBytes(output.resolve("input/notes.txt")));
+        assertFalse(Files.exists(output.resolve("input/image.bin")));
+    }
+
+    @Test
+    public void damagedPackFailsVerify() throws IOException {
+        byte[] bytes = Files.readAllBytes(archive(2));
+        bytes[bytes.length / 4] ^= 0x55;
+        Path damaged = dir.resolve("damaged.dedup");
+        Files.write(damaged, bytes);
+        assertFalse(verify(damaged));
+        assertFalse(new DedupCompressor().decompress(damaged.toString()));
+    }
+
+    @Test
+    public void truncatedAndEmptyArchivesFail() throws IOException {
+        byte[] bytes = Files.readAllBytes(archive(2));
+        for (int length : new int[] { 0, 10, bytes.length / 2, bytes.length - 1 }) {
+            Path cut = dir.resolve("cut.dedup");
+            Files.write(cut, Arrays.copyOf(bytes, length));
+            assertFalse("cut at " + length, verify(cut));
+        }
+    }
+
+    // An archive whose index cannot be read throws instead of reporting
+    private static boolean verify(Path archive) {
+        try {
+            return new DedupCompressor().verify(archive.toString()).isOk();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalArchiverTest {
+
+    private Path dir;
+    private Path input;
+    private PrintStream out;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-incremental-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(50_000));
+        Files.writeString(Files.createDirectories(input.resolve("sub")).resolve("b.txt"), "version 1");
+        Files.writeString(input.resolve("c.txt"), "deleted later");
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        System.setOut(out);
+        TestFiles.delete(dir);
+    }
+
+    // Moves the modification time well away from the recorded one, whatever the filesystem's resolution
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+    }
+
+    private static Set<String> namesIn(Compressor compressor, Path archive) throws IOException {
+        Set<String> names = new HashSet<>();
+        for (ArchiveEntry entry : compressor.list(archive.toString())) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void deltaHoldsOnlyChangesAndRestoresTheSnapshot() throws IOException {
+        for (Compressor compressor : new Compressor[] { new ZipCompressor(), new TarCompressor() }) {
+            IncrementalArchiver archiver = new IncrementalArchiver(compressor);
+            String[] paths = { input.toString() };
+            Path full = dir.resolve("full" + compressor.getExtension());
+            archiver.compress(paths, full, null);
+
+            Files.writeString(input.resolve("sub/b.txt"), "version 2, longer");
+            touch(input.resolve("sub/b.txt"));
+            Files.writeString(input.resolve("d.txt"), "added");
+            Path c = input.resolve("c.txt");
+            byte[] deleted = Files.readAllBytes(c);
+            FileTime deletedTime = Files.getLastModifiedTime(c);
+            Files.delete(c);
+
+            Path delta = dir.resolve("delta" + compressor.getExtension());
+            ArchiveManifest manifest = archiver.compress(paths, delta, full);
+            assertEquals(full.getFileName().toString(), manifest.getBase());
+            Map<String, ArchiveManifest.Record> records = manifest.getRecords();
+            assertEquals(Set.of("input/a.txt", "input/sub/b.txt", "input/d.txt"), records.keySet());
+            assertEquals(full.getFileName().toString(), records.get("input/a.txt").getArchive());
+            assertEquals(delta.getFileName().toString(), records.get("input/d.txt").getArchive());
+            assertEquals(Set.of("input/sub/b.txt", "input/d.txt"), namesIn(compressor, delta));
+            // The manifest is read back as written
+            assertEquals(records.keySet(), ArchiveManifest.load(delta).getRecords().keySet());
+
+            Path restored = dir.resolve("restored");
+            assertEquals(3, archiver.restore(delta, restored));
+            for (String name : new String[] { "a.txt", "sub/b.txt", "d.txt" }) {
+                assertArrayEquals(name, Files.readAllBytes(input.resolve(name)),
+                        Files.readAllBytes(restored.resolve("input").resolve(name)));
+                assertEquals(name, Files.getLastModifiedTime(input.resolve(name)).toMillis(),
+                        Files.getLastModifiedTime(restored.resolve("input").resolve(name)).toMillis());
+            }
+            assertFalse(Files.exists(restored.resolve("input/c.txt")));
+
+            TestFiles.delete(restored);
+            Files.write(c, deleted);
+            Files.setLastModifiedTime(c, deletedTime);
+            Files.delete(input.resolve("d.txt"));
+        }
+    }
+
+    @Test
+    public void hashingSkipsFilesWithTheSameContent() throws IOException {
+        for (boolean hashContent : new boolean[] { false, true }) {
+            IncrementalArchiver archiver = new IncrementalArchiver(new ZipCompressor());
+            archiver.setHashContent(hashContent);
+            String[] paths = { input.toString() };
+            Path full = dir.resolve("full.zip");
+            archiver.compress(paths, full, null);
+            touch(input.resolve("a.txt"));
+
+            Path delta = dir.resolve("delta.zip");
+            ArchiveManifest manifest = archiver.compress(paths, delta, full);
+            String expected = hashContent ? "full.zip" : "delta.zip";
+            assertEquals("hash " + hashContent, expected, manifest.getRecords().get("input/a.txt").getArchive());
+            if (hashContent) {
+                assertEquals(64, manifest.getRecords().get("input/a.txt").getHash().length());
+            } else {
+                assertNull(manifest.getRecords().get("input/a.txt").getHash());
+            }
+        }
+    }
+
+    @Test
+    public void deltaMustBeNextToItsBase() throws IOException {
+        IncrementalArchiver archiver = new IncrementalArchiver(new ZipCompressor());
+        String[] paths = { input.toString() };
+        Path full = dir.resolve("full.zip");
+        archiver.compress(paths, full, null);
+        Path elsewhere = Files.createDirectories(dir.resolve("elsewhere"));
+        try {
+            archiver.compress(paths, elsewhere.resolve("delta.zip"), full);
+            fail("Delta written away from its base");
+        } catch (IOException expected) {
+            // Restoring reads the chain from one directory
+        }
+        try {
+            new IncrementalArchiver(new TarCompressor()).compress(paths, dir.resolve("delta.tar"), full);
+            fail("Delta written in another format than its base");
+        } catch (IOException expected) {
+            // Every archive of a chain is read by the same compressor
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Lz4CompressorTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-lz4-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void blockRoundTrip() throws IOException {
+        Lz4BlockCodec codec = new Lz4BlockCodec();
+        byte[] text = TestFiles.text(300_000).getBytes(StandardCharsets.UTF_8);
+        for (int length : new int[] { 0, 1, 12, 13, 100, 65_536, 300_000 }) {
+            for (byte[] source : new byte[][] { Arrays.copyOf(text, length), random(length, length),
+                    new byte[length] }) {
+                byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(length)];
+                int compressedLength = codec.compress(source, 0, length, compressed, 0);
+                byte[] restored = new byte[length];
+                assertEquals(length, codec.decompress(compressed, 0, compressedLength, restored, 0, length));
+                assertArrayEquals(source, restored);
+            }
+        }
+    }
+
+    @Test
+    public void truncatedBlockIsRejected() {
+        Lz4BlockCodec codec = new Lz4BlockCodec();
+        byte[] source = TestFiles.text(10_000).getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = new byte[Lz4BlockCodec.maxCompressedLength(source.length)];
+        int compressedLength = codec.compress(source, 0, source.length, compressed, 0);
+        try {
+            codec.decompress(compressed, 0, compressedLength / 2, new byte[source.length], 0, source.length);
+            fail("Truncated block decompressed");
+        } catch (IOException expected) {
+            // Malformed input is reported, not read past
+        }
+    }
+
+    @Test
+    public void frameRoundTripInlineAndParallel() throws IOException {
+        byte[] data = TestFiles.text(1_000_000).getBytes(StandardCharsets.UTF_8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (ExecutorService blocks : new ExecutorService[] { null, executor }) {
+                for (long contentSize : new long[] { data.length, -1 }) {
+                    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+                    try (Lz4FrameOutputStream out = new Lz4FrameOutputStream(frame, Lz4FrameOutputStream.BLOCK_64KB,
+                            contentSize, blocks, 4)) {
+                        out.write(data);
+                    }
+                    try (InputStream in = new Lz4FrameInputStream(new ByteArrayInputStream(frame.toByteArray()),
+                            false)) {
+                        assertArrayEquals(data, in.readAllBytes());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void damagedFrameFailsItsChecksum() throws IOException {
+        byte[] data = TestFiles.text(200_000).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        try (Lz4FrameOutputStream out = new Lz4FrameOutputStream(frame, Lz4FrameOutputStream.BLOCK_64KB,
+                data.length)) {
+            out.write(data);
+        }
+        byte[] damaged = frame.toByteArray();
+        damaged[damaged.length / 2] ^= 0x55;
+        try (InputStream in = new Lz4FrameInputStream(new ByteArrayInputStream(damaged), false)) {
+            in.readAllBytes();
+            fail("Damaged frame read without error");
+        } catch (IOException expected) {
+            // Block data or checksum mismatch
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void emptyFrameInputIsAnError() throws IOException {
+        new Lz4FrameInputStream(new ByteArrayInputStream(new byte[0]), false).close();
+    }
+
+    @Test
+    public void archiveRoundTrip() throws IOException {
+        Path a = dir.resolve("a.txt");
+        Path b = dir.resolve("b.bin");
+        Files.writeString(a, TestFiles.text(500_000));
+        Files.write(b, random(300_000, 7));
+        Lz4Compressor compressor = new Lz4Compressor();
+        compressor.setWorkerCount(4);
+        String archive = dir.resolve("out.lz4").toString();
+        assertTrue(compressor.compressMultiple(new String[] { a.toString(), b.toString() }, archive));
+
+        List<ArchiveEntry> entries = compressor.list(archive);
+        assertEquals(2, entries.size());
+        assertEquals("a.txt", entries.get(0).getName());
+        assertEquals("b.bin", entries.get(1).getName());
+
+        Map<String, ByteArrayOutputStream> extracted = new HashMap<>();
+        try (InputStream in = Files.newInputStream(Path.of(archive))) {
+            compressor.decompress(in, entry -> extracted.computeIfAbsent(entry.getName(),
+                    name -> new ByteArrayOutputStream()));
+        }
+        assertArrayEquals(Files.readAllBytes(a), extracted.get("a.txt").toByteArray());
+        assertArrayEquals(Files.readAllBytes(b), extracted.get("b.bin").toByteArray());
+        assertTrue(compressor.verify(archive).isOk());
+    }
+
+    @Test
+    public void damagedAndTruncatedArchivesFailVerify() throws IOException {
+        Path a = dir.resolve("a.txt");
+        Files.writeString(a, TestFiles.text(200_000));
+        Lz4Compressor compressor = new Lz4Compressor();
+        String archive = dir.resolve("out.lz4").toString();
+        assertTrue(compressor.compressMultiple(new String[] { a.toString() }, archive));
+        byte[] bytes = Files.readAllBytes(Path.of(archive));
+
+        Path damaged = dir.resolve("damaged.lz4");
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length / 2] ^= 0x55;
+        Files.write(damaged, flipped);
+        assertFalse(compressor.verify(damaged.toString()).isOk());
+
+        Path truncated = dir.resolve("truncated.lz4");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+        assertFalse(compressor.verify(truncated.toString()).isOk());
+
+        // Entry header only, its data frame missing
+        Path headerOnly = dir.resolve("header.lz4");
+        Files.write(headerOnly, Arrays.copyOf(bytes, 8 + 8 + "a.txt".length()));
+        assertFalse(compressor.verify(headerOnly.toString()).isOk());
+
+        Path empty = dir.resolve("empty.lz4");
+        Files.write(empty, new byte[0]);
+        assertFalse(compressor.verify(empty.toString()).isOk());
+    }
+
+    @Test
+    public void directoryInputLeavesNoArchive() throws IOException {
+        Path folder = Files.createDirectories(dir.resolve("folder"));
+        Files.writeString(folder.resolve("x.txt"), "x");
+        Lz4Compressor compressor = new Lz4Compressor();
+        Path archive = dir.resolve("folder.lz4");
+        assertFalse(compressor.compressMultiple(new String[] { folder.toString() }, archive.toString()));
+        assertFalse(Files.exists(archive));
+        assertFalse(compressor.compress(folder.toString()));
+        assertFalse(Files.exists(dir.resolve("folder.lz4")));
+    }
+}
@@ -0,0 +1,108 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * RarProcessRunner and the batching of RarCompressorAdapter, run against
+ * shell commands and tools/fake-rar.sh (so Unix-like systems only).
+ */
+public class RarProcessRunnerTest {
+
+    private static final Path FAKE_RAR = Path.of("tools/fake-rar.sh").toAbsolutePath();
+
+    private Path dir;
+    private RarProcessRunner runner;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Files.isExecutable(Path.of("/bin/sh")));
+        dir = Files.createTempDirectory("fcu-rar-test");
+        runner = new RarProcessRunner(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private static List<String> sh(String script) {
+        return List.of("/bin/sh", "-c", script);
+    }
+
+    @Test
+    public void collectsOutput() throws IOException {
+        assertEquals(List.of("one", "two"), runner.run(sh("echo one; echo two >&2"), null, 10_000));
+    }
+
+    @Test
+    public void failsOnExitCode() {
+        try {
+            runner.run(sh("exit 3"), null, 10_000);
+            fail("Exit code 3 succeeded");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("code 3"));
+        }
+    }
+
+    @Test
+    public void killsProcessAfterTimeout() {
+        long start = System.nanoTime();
+        try {
+            runner.run(sh("sleep 30"), null, 300);
+            fail("Hanging process succeeded");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("timed out"));
+        }
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 10_000);
+    }
+
+    @Test
+    public void doesNotWaitForChildHoldingTheOutput() throws IOException {
+        // The shell exits at once but leaves a child with its stdout open
+        long start = System.nanoTime();
+        List<String> output = runner.run(sh("sleep 30 & echo started"), null, 10_000);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(List.of("started"), output);
+        assertTrue(millis + " ms", millis < RarProcessRunner.DRAIN_TIMEOUT_MILLIS + 5_000);
+    }
+
+    @Test
+    public void filesForOneArchiveRunAsOneBatch() throws IOException {
+        Assume.assumeTrue(Files.isRegularFile(FAKE_RAR));
+        // Wraps the stand-in to log every invocation
+        Path log = dir.resolve("invocations.log");
+        Path rar = dir.resolve("rar.sh");
+        Files.writeString(rar, "#!/bin/sh\nFAKE_RAR_LOG='" + log + "' exec /bin/sh '" + FAKE_RAR + "' \"$@\"\n");
+        assertTrue(rar.toFile().setExecutable(true));
+
+        String[] files = new String[5];
+        for (int i = 0; i < files.length; i++) {
+            Path file = dir.resolve("file" + i + ".txt");
+            Files.writeString(file, TestFiles.text(1000 + i));
+            files[i] = file.toString();
+        }
+        RarCompressorAdapter adapter = new RarCompressorAdapter(rar.toString(), rar.toString(), runner,
+                new RarBatchQueue(runner, 200));
+        Path archive = dir.resolve("out.rar");
+        assertTrue(adapter.compressMultiple(files, archive.toString()));
+        assertEquals(1, Files.readAllLines(log).size());
+
+        assertTrue(adapter.decompress(archive.toString()));
+        for (int i = 0; i < files.length; i++) {
+            assertArrayEquals(Files.readAllBytes(Path.of(files[i])),
+                    Files.readAllBytes(dir.resolve("out").resolve("file" + i + ".txt")));
+        }
+    }
+}
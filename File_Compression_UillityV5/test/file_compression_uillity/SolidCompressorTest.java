@@ -0,0 +1,117 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SolidCompressorTest {
+
+    private Path dir;
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-solid-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(300_000));
+        Files.writeString(Files.createDirectories(input.resolve("logs")).resolve("b.log"),
+                TestFiles.text(200_000).toUpperCase());
+        byte[] random = new byte[150_000];
+        new Random(3).nextBytes(random);
+        Files.write(input.resolve("c.bin"), random);
+        Files.createDirectories(input.resolve("empty/nested"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private Path archive(int workers) {
+        SolidCompressor compressor = new SolidCompressor();
+        compressor.setWorkerCount(workers);
+        // Small blocks, so entries span several of them
+        compressor.setBlockSize(SolidArchiveWriter.MIN_BLOCK_SIZE);
+        Path archive = dir.resolve("out.solid");
+        assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+        return archive;
+    }
+
+    @Test
+    public void roundTripKeepsFilesAndEmptyDirectories() throws IOException {
+        for (int workers : new int[] { 1, 4 }) {
+            Path archive = archive(workers);
+            SolidCompressor compressor = new SolidCompressor();
+            compressor.setWorkerCount(workers);
+            assertTrue(compressor.decompress(archive.toString()));
+            Path restored = dir.resolve("out").resolve("input");
+            for (String name : new String[] { "a.txt", "logs/b.log", "c.bin" }) {
+                assertArrayEquals(name, Files.readAllBytes(input.resolve(name)),
+                        Files.readAllBytes(restored.resolve(name)));
+            }
+            assertTrue(Files.isDirectory(restored.resolve("empty/nested")));
+            assertTrue(compressor.verify(archive.toString()).isOk());
+            TestFiles.delete(dir.resolve("out"));
+        }
+    }
+
+    @Test
+    public void extractsSelectedEntries() throws IOException {
+        Path archive = archive(2);
+        SolidCompressor compressor = new SolidCompressor();
+        Path output = dir.resolve("selected");
+        assertEquals(1, compressor.extractSelected(archive.toString(), "**.log", output.toString()));
+        assertArrayEquals(Files.readAllBytes(input.resolve("logs/b.log")),
+                Files.readAllBytes(output.resolve("input/logs/b.log")));
+        assertFalse(Files.exists(output.resolve("input/a.txt")));
+
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(archive)) {
+            assertTrue(compressor.decompress(in, "input/c.bin", single));
+        }
+        assertArrayEquals(Files.readAllBytes(input.resolve("c.bin")), single.toByteArray());
+    }
+
+    @Test
+    public void damagedBlockFailsVerify() throws IOException {
+        byte[] bytes = Files.readAllBytes(archive(2));
+        // Inside the block data, well before the trailing index
+        bytes[bytes.length / 4] ^= 0x55;
+        Path damaged = dir.resolve("damaged.solid");
+        Files.write(damaged, bytes);
+        VerificationReport report = new SolidCompressor().verify(damaged.toString());
+        assertFalse(report.isOk());
+        assertFalse(new SolidCompressor().decompress(damaged.toString()));
+    }
+
+    @Test
+    public void truncatedAndEmptyArchivesFail() throws IOException {
+        byte[] bytes = Files.readAllBytes(archive(2));
+        for (int length : new int[] { 0, 10, bytes.length / 2, bytes.length - 1 }) {
+            Path cut = dir.resolve("cut.solid");
+            Files.write(cut, Arrays.copyOf(bytes, length));
+            assertFalse("cut at " + length, verify(cut));
+        }
+    }
+
+    // An archive whose index cannot be read throws instead of reporting
+    private static boolean verify(Path archive) {
+        try {
+            return new SolidCompressor().verify(archive.toString()).isOk();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
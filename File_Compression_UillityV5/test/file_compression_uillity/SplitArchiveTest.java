@@ -0,0 +1,113 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Split ZIP archives written by ZipCompressor with a volume size, and read
+ * back in place from their volumes.
+ */
+public class SplitArchiveTest {
+
+    private static final long VOLUME_SIZE = SplitZipChannel.MIN_VOLUME_SIZE;
+
+    private Path dir;
+    private Path input;
+    private Path archive;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-split-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(200_000));
+        Path sub = Files.createDirectories(input.resolve("sub"));
+        Random random = new Random(5);
+        // Incompressible, so STORED and larger than a volume
+        for (String name : new String[] { "r1.dat", "r2.dat" }) {
+            byte[] data = new byte[150_000];
+            random.nextBytes(data);
+            Files.write(sub.resolve(name), data);
+        }
+
+        archive = dir.resolve("split.zip");
+        ZipCompressor compressor = new ZipCompressor();
+        compressor.setVolumeSize(VOLUME_SIZE);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void volumesAreNamedAndSized() throws IOException {
+        int volumes;
+        try (ZipArchiveReader reader = new ZipArchiveReader(archive)) {
+            volumes = reader.getVolumeCount();
+        }
+        assertTrue(volumes + " volumes", volumes >= 3);
+        for (int i = 1; i < volumes; i++) {
+            Path volume = dir.resolve(String.format("split.z%02d", i));
+            assertTrue(volume.toString(), Files.size(volume) <= VOLUME_SIZE);
+        }
+        assertFalse(Files.exists(dir.resolve(String.format("split.z%02d", volumes))));
+        assertTrue(Files.size(archive) <= VOLUME_SIZE);
+        assertTrue(SplitZipChannel.isSplit(archive));
+    }
+
+    @Test
+    public void selectedEntriesAreReadAcrossVolumes() throws IOException {
+        for (int workers : new int[] { 1, 2 }) {
+            ZipCompressor compressor = new ZipCompressor();
+            compressor.setWorkerCount(workers);
+            Path output = dir.resolve("selected" + workers);
+            assertEquals(2, compressor.extractSelected(archive.toString(), "**.dat", output.toString()));
+            for (String name : new String[] { "r1.dat", "r2.dat" }) {
+                assertArrayEquals(name, Files.readAllBytes(input.resolve("sub").resolve(name)),
+                        Files.readAllBytes(output.resolve("input/sub").resolve(name)));
+            }
+            assertFalse(Files.exists(output.resolve("input/a.txt")));
+        }
+    }
+
+    @Test
+    public void wholeArchiveIsExtractedAndVerified() throws IOException {
+        for (int workers : new int[] { 1, 2 }) {
+            ZipCompressor compressor = new ZipCompressor();
+            compressor.setWorkerCount(workers);
+            assertTrue(compressor.verify(archive.toString()).isOk());
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                assertTrue(compressor.decompress(archive.toString()));
+            } finally {
+                System.setOut(out);
+            }
+            Path restored = dir.resolve("split").resolve("input");
+            for (String name : new String[] { "a.txt", "sub/r1.dat", "sub/r2.dat" }) {
+                assertArrayEquals(name, Files.readAllBytes(input.resolve(name)),
+                        Files.readAllBytes(restored.resolve(name)));
+            }
+            TestFiles.delete(dir.resolve("split"));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TarCompressorTest {
+
+    // Too long for the ustar name field and with no '/' to split it at, so it needs a pax header
+    private static final String LONG_NAME = "n".repeat(150) + ".txt";
+    private static final String[] FILES = { "a.txt", "sub/random.dat", "sub/" + LONG_NAME };
+
+    private Path dir;
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-tar-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(300_000));
+        byte[] random = new byte[100_000];
+        new Random(3).nextBytes(random);
+        Files.write(Files.createDirectories(input.resolve("sub")).resolve("random.dat"), random);
+        Files.writeString(input.resolve("sub").resolve(LONG_NAME), TestFiles.text(5_000));
+        Files.createDirectories(input.resolve("empty"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void roundTripTarAndTarGz() throws IOException {
+        boolean posix = Files.getFileStore(input).supportsFileAttributeView("posix");
+        if (posix) {
+            Files.setPosixFilePermissions(input.resolve("a.txt"), PosixFilePermissions.fromString("rwxr-x---"));
+        }
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (TarCompressor.Compression compression : TarCompressor.Compression.values()) {
+                if (compression == TarCompressor.Compression.XZ) {
+                    continue;
+                }
+                TarCompressor compressor = new TarCompressor(compression);
+                Path archive = dir.resolve("test" + compressor.getExtension());
+                assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+
+                List<String> names = new ArrayList<>();
+                for (ArchiveEntry entry : compressor.list(archive.toString())) {
+                    names.add(entry.getName());
+                }
+                for (String file : FILES) {
+                    assertTrue(compression + " " + file, names.contains("input/" + file));
+                }
+                assertTrue(compression + " " + names, names.contains("input/empty/"));
+
+                assertTrue(compressor.decompress(archive.toString()));
+                Path restored = dir.resolve("test").resolve("input");
+                for (String file : FILES) {
+                    assertArrayEquals(compression + " " + file, Files.readAllBytes(input.resolve(file)),
+                            Files.readAllBytes(restored.resolve(file)));
+                }
+                assertTrue(Files.isDirectory(restored.resolve("empty")));
+                if (posix) {
+                    assertEquals("rwxr-x---",
+                            PosixFilePermissions.toString(Files.getPosixFilePermissions(restored.resolve("a.txt"))));
+                }
+                TestFiles.delete(dir.resolve("test"));
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    public void damagedTarGzIsDetected() throws IOException {
+        TarCompressor compressor = new TarCompressor(TarCompressor.Compression.GZIP);
+        Path archive = dir.resolve("test.tar.gz");
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+            byte[] bytes = Files.readAllBytes(archive);
+            // Deflate has no checksum: damage inside the data is only caught by the gzip trailer
+            Path damaged = dir.resolve("damaged.tar.gz");
+            for (int position = 0; position < bytes.length; position += bytes.length / 40) {
+                byte[] copy = bytes.clone();
+                copy[position] ^= 0x55;
+                Files.write(damaged, copy);
+                assertFalse("verify, byte " + position, verifies(compressor, damaged));
+                assertFalse("decompress, byte " + position, compressor.decompress(damaged.toString()));
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+
+    private static boolean verifies(Compressor compressor, Path archive) {
+        try {
+            return compressor.verify(archive.toString()).isOk();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void systemTarReadsPaxNames() throws IOException, InterruptedException {
+        Assume.assumeTrue(Files.isExecutable(Path.of("/usr/bin/tar")) || Files.isExecutable(Path.of("/bin/tar")));
+        Path archive = dir.resolve("test.tar.gz");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            assertTrue(new TarCompressor(TarCompressor.Compression.GZIP)
+                    .compressMultiple(new String[] { input.toString() }, archive.toString()));
+        } finally {
+            System.setOut(out);
+        }
+        Process tar = new ProcessBuilder("tar", "-tzf", archive.toString()).redirectErrorStream(true).start();
+        String listing = new String(tar.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(listing, 0, tar.waitFor());
+        List<String> names = List.of(listing.split("\n"));
+        for (String file : FILES) {
+            assertTrue(file + " in " + names, names.contains("input/" + file));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package file_compression_uillity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Helpers shared by the tests: sample data and temp dir cleanup.
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    // Compressible text of about the given length, the same on every call
+    static String text(int length) {
+        StringBuilder text = new StringBuilder(length + 64);
+        for (int i = 0; text.length() < length; i++) {
+            text.append(i).append(" line of sample text for the compressors, number ").append(i % 97).append('\n');
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> paths = walk.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreeWalkerTest {
+
+    private Path dir;
+    private Path tree;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-walk-test");
+        tree = dir.resolve("tree");
+        // Created out of name order, so listing order alone would not sort them
+        for (String name : new String[] { "b/z.txt", "b/a.txt", "a/deep/x/y.log", "c.txt", "a/m.txt",
+                "node_modules/lib.js", "a/node_modules/lib.js" }) {
+            Path file = tree.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, TestFiles.text(2000) + name);
+        }
+        Files.createDirectories(tree.resolve("empty"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private static List<String> walk(TreeWalker walker, List<Path> roots) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (walker) {
+            walker.start(roots);
+            for (TreeWalker.Entry entry = walker.next(); entry != null; entry = walker.next()) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void walksDepthFirstInNameOrder() throws IOException {
+        List<String> expected = List.of("tree/", "tree/a/", "tree/a/deep/", "tree/a/deep/x/", "tree/a/deep/x/y.log",
+                "tree/a/m.txt", "tree/a/node_modules/", "tree/a/node_modules/lib.js", "tree/b/", "tree/b/a.txt",
+                "tree/b/z.txt", "tree/c.txt", "tree/empty/", "tree/node_modules/", "tree/node_modules/lib.js");
+        // Listing ahead or not must not change the order
+        assertEquals(expected, walk(new TreeWalker(4), List.of(tree)));
+        assertEquals(expected, walk(new TreeWalker(1, 0), List.of(tree)));
+    }
+
+    @Test
+    public void keepsRootOrder() throws IOException {
+        List<String> names = walk(new TreeWalker(2), List.of(tree.resolve("c.txt"), tree.resolve("b")));
+        assertEquals(List.of("c.txt", "b/", "b/a.txt", "b/z.txt"), names);
+    }
+
+    @Test
+    public void includesAndExcludes() throws IOException {
+        TreeWalker walker = new TreeWalker(2);
+        walker.addInclude("**.txt");
+        walker.addInclude("**.js");
+        walker.addExclude("**node_modules");
+        assertEquals(List.of("tree/a/m.txt", "tree/b/a.txt", "tree/b/z.txt", "tree/c.txt"),
+                walk(walker, List.of(tree)));
+    }
+
+    @Test
+    public void reportsSkippedLinks() throws IOException {
+        Path link = tree.resolve("b/link");
+        try {
+            Files.createSymbolicLink(link, tree.resolve("c.txt"));
+        } catch (UnsupportedOperationException | IOException e) {
+            return;
+        }
+        TreeWalker walker = new TreeWalker(2);
+        List<Path> skipped = new ArrayList<>();
+        walker.setSkipListener(skipped::add);
+        List<String> names = walk(walker, List.of(tree.resolve("b")));
+        assertEquals(List.of("b/", "b/a.txt", "b/z.txt"), names);
+        assertEquals(List.of(link.toAbsolutePath()), skipped);
+    }
+
+    @Test(expected = IOException.class)
+    public void missingRootFails() throws IOException {
+        walk(new TreeWalker(1), List.of(dir.resolve("missing")));
+    }
+
+    @Test
+    public void zipOfTreeIsDeterministic() throws IOException {
+        byte[] first = zip(4, "first.zip");
+        byte[] second = zip(4, "second.zip");
+        byte[] sequential = zip(1, "sequential.zip");
+        assertArrayEquals(first, second);
+        assertArrayEquals(first, sequential);
+    }
+
+    @Test
+    public void zipOfTreeKeepsModificationTimes() throws IOException {
+        long time = 1_600_000_000_000L;
+        Files.setLastModifiedTime(tree.resolve("b/a.txt"), FileTime.fromMillis(time));
+        Files.setLastModifiedTime(tree.resolve("b"), FileTime.fromMillis(time));
+        zip(4, "times.zip");
+        try (ZipFile zip = new ZipFile(dir.resolve("times.zip").toFile())) {
+            for (String name : new String[] { "tree/b/a.txt", "tree/b/" }) {
+                ZipEntry entry = zip.getEntry(name);
+                // DOS times have a 2 second resolution
+                assertTrue(name, Math.abs(entry.getTime() - time) <= 2000);
+            }
+        }
+    }
+
+    @Test
+    public void zipOfTreeCountsFilesAsFound() throws IOException {
+        ProgressTracker tracker = new ProgressTracker(event -> { });
+        tracker.setTotals(0, 0);
+        ZipCompressor compressor = new ZipCompressor();
+        compressor.setProgressTracker(tracker);
+        tracker.start();
+        assertTrue(compressor.compressMultiple(new String[] { tree.toString() },
+                dir.resolve("progress.zip").toString()));
+        ProgressEvent done = tracker.snapshot();
+        assertEquals(7, done.getTotalEntries());
+        assertEquals(7, done.getEntriesDone());
+        assertEquals(done.getBytesRead(), done.getTotalBytes());
+    }
+
+    private byte[] zip(int workers, String name) throws IOException {
+        ZipCompressor compressor = new ZipCompressor();
+        compressor.setWorkerCount(workers);
+        Path archive = dir.resolve(name);
+        assertTrue(compressor.compressMultiple(new String[] { tree.toString() }, archive.toString()));
+        return Files.readAllBytes(archive);
+    }
+}
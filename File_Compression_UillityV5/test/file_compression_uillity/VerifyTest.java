@@ -0,0 +1,113 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compressor.verify on intact, damaged, truncated and empty archives of the
+ * streamed formats (the default verify) and of ZIP.
+ */
+public class VerifyTest {
+
+    private Path dir;
+    private Path input;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-verify-test");
+        input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(300_000));
+        Files.writeString(input.resolve("b.txt"), TestFiles.text(100_000).toUpperCase());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private Path archive(String type) throws IOException {
+        Compressor compressor = CompressionFactory.createCompressor(type);
+        Path archive = dir.resolve("test" + compressor.getExtension());
+        assertTrue(compressor.compressMultiple(new String[] { input.resolve("a.txt").toString(),
+                input.resolve("b.txt").toString() }, archive.toString()));
+        return archive;
+    }
+
+    // An archive that cannot be opened at all (no ZIP central directory) throws instead of reporting
+    private static boolean verify(String type, byte[] bytes, Path file) throws IOException {
+        Files.write(file, bytes);
+        try {
+            return CompressionFactory.createCompressor(type).verify(file.toString()).isOk();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void intactArchivesPass() throws IOException {
+        for (String type : new String[] { "ZIP", "TAR", "TAR.GZ", "LZ4" }) {
+            VerificationReport report = CompressionFactory.createCompressor(type).verify(archive(type).toString());
+            assertTrue(type + ": " + report, report.isOk());
+            assertEquals(type, 2, report.getEntryCount());
+        }
+    }
+
+    @Test
+    public void emptyArchivesFail() throws IOException {
+        for (String type : new String[] { "ZIP", "TAR", "TAR.GZ", "LZ4" }) {
+            assertFalse(type, verify(type, new byte[0], dir.resolve("empty-" + type)));
+        }
+    }
+
+    @Test
+    public void truncatedArchivesFail() throws IOException {
+        for (String type : new String[] { "ZIP", "TAR", "TAR.GZ", "LZ4" }) {
+            byte[] bytes = Files.readAllBytes(archive(type));
+            // Cut inside the first entry and just after the start of the archive
+            for (int length : new int[] { bytes.length / 4, 600 }) {
+                assertFalse(type + " cut at " + length,
+                        verify(type, Arrays.copyOf(bytes, length), dir.resolve("cut-" + type)));
+            }
+        }
+    }
+
+    @Test
+    public void damagedArchivesFail() throws IOException {
+        for (String type : new String[] { "ZIP", "TAR.GZ", "LZ4" }) {
+            byte[] bytes = Files.readAllBytes(archive(type));
+            bytes[bytes.length / 3] ^= 0x55;
+            assertFalse(type, verify(type, bytes, dir.resolve("damaged-" + type)));
+        }
+    }
+
+    @Test
+    public void corruptCentralDirectoryFails() throws IOException {
+        byte[] bytes = Files.readAllBytes(archive("ZIP"));
+        int header = bytes.length - 4;
+        // The last central directory header signature, PK\1\2
+        while (!(bytes[header] == 'P' && bytes[header + 1] == 'K'
+                && bytes[header + 2] == 1 && bytes[header + 3] == 2)) {
+            header--;
+        }
+        // Name, extra or comment of the last header running past the directory
+        for (int field : new int[] { 28, 30, 32 }) {
+            byte[] corrupt = bytes.clone();
+            corrupt[header + field] = (byte) 0xFF;
+            corrupt[header + field + 1] = (byte) 0xFF;
+            assertFalse("length at " + field, verify("ZIP", corrupt, dir.resolve("corrupt.zip")));
+        }
+        // Four bytes of extra area, read as a field header whose length runs past it
+        byte[] corrupt = bytes.clone();
+        corrupt[header + 30] = 4;
+        assertFalse("extra field", verify("ZIP", corrupt, dir.resolve("corrupt.zip")));
+    }
+}
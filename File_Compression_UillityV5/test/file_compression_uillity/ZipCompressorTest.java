@@ -0,0 +1,277 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipCompressorTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-zip-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    @Test
+    public void roundTripSequentialAndParallel() throws IOException {
+        Path input = Files.createDirectories(dir.resolve("input"));
+        Files.writeString(input.resolve("a.txt"), TestFiles.text(400_000));
+        Files.createDirectories(input.resolve("empty"));
+        for (int workers : new int[] { 1, 4 }) {
+            ZipCompressor compressor = new ZipCompressor();
+            compressor.setWorkerCount(workers);
+            Path archive = dir.resolve("out" + workers + ".zip");
+            assertTrue(compressor.compressMultiple(new String[] { input.toString() }, archive.toString()));
+            assertTrue(compressor.decompress(archive.toString()));
+            Path restored = dir.resolve("out" + workers).resolve("input");
+            assertArrayEquals(Files.readAllBytes(input.resolve("a.txt")),
+                    Files.readAllBytes(restored.resolve("a.txt")));
+            assertTrue(Files.isDirectory(restored.resolve("empty")));
+        }
+    }
+
+    @Test
+    public void entriesOutsideTheFolderAreRejected() throws IOException {
+        Path archive = dir.resolve("evil.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("ok.txt"));
+            zip.write("ok".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("../../escaped.txt"));
+            zip.write("escaped".getBytes(StandardCharsets.UTF_8));
+        }
+        Files.createDirectories(dir.resolve("a"));
+        Path nested = Files.move(archive, dir.resolve("a").resolve("evil.zip"));
+        // Sequential (stream) and parallel (central directory) extraction
+        for (int workers : new int[] { 1, 4 }) {
+            ZipCompressor compressor = new ZipCompressor();
+            compressor.setWorkerCount(workers);
+            assertFalse(compressor.decompress(nested.toString()));
+            assertFalse(Files.exists(dir.resolve("escaped.txt")));
+        }
+    }
+
+    @Test
+    public void combinedCrcMatchesCrcOfConcatenation() {
+        byte[] data = new byte[200_000];
+        new Random(9).nextBytes(data);
+        for (int split : new int[] { 0, 1, 4096, 65_536, 131_071, data.length }) {
+            CRC32 first = new CRC32();
+            first.update(data, 0, split);
+            CRC32 second = new CRC32();
+            second.update(data, split, data.length - split);
+            CRC32 whole = new CRC32();
+            whole.update(data);
+            assertEquals("split at " + split, whole.getValue(),
+                    ParallelDeflater.combineCrc32(first.getValue(), second.getValue(), data.length - split));
+        }
+    }
+
+    @Test
+    public void parallelDeflateWritesOneStandardEntry() throws IOException {
+        Path input = dir.resolve("big.log");
+        byte[] data = TestFiles.text(1_500_000).getBytes(StandardCharsets.UTF_8);
+        Files.write(input, data);
+        // Smallest blocks and more workers than cores, so blocks finish out of order
+        ZipCompressor compressor = new ZipCompressor(4, ParallelDeflater.MIN_BLOCK_SIZE);
+        assertTrue(compressor.compress(input.toString()));
+        Path archive = dir.resolve("big.zip");
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zip.getEntry("big.log");
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            assertEquals(crc.getValue(), entry.getCrc());
+            try (InputStream in = zip.getInputStream(entry)) {
+                // java.util.zip checks the CRC at the end of the entry
+                assertArrayEquals(data, in.readAllBytes());
+            }
+        }
+        assertTrue(compressor.verify(archive.toString()).isOk());
+
+        byte[] damaged = Files.readAllBytes(archive);
+        damaged[damaged.length / 2] ^= 0x55;
+        Files.write(archive, damaged);
+        assertFalse(compressor.verify(archive.toString()).isOk());
+    }
+
+    @Test
+    public void manyEntriesUseZip64EndRecords() throws IOException {
+        // More entries than the 16-bit count of the classic end record holds
+        int count = 0x10000 + 10;
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] data = ("entry " + i).getBytes(StandardCharsets.UTF_8);
+            entries.put("e" + i + ".txt", () -> new ByteArrayInputStream(data));
+        }
+        Path archive = dir.resolve("many.zip");
+        ZipCompressor compressor = new ZipCompressor();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            compressor.compressMultiple(entries, channel);
+        } finally {
+            System.setOut(out);
+        }
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(count, zip.size());
+            try (InputStream in = zip.getInputStream(zip.getEntry("e65545.txt"))) {
+                assertEquals("entry 65545", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        try (ZipArchiveReader reader = new ZipArchiveReader(archive)) {
+            assertEquals(count, reader.getEntries().size());
+        }
+    }
+
+    // An uncompressed 512x512 24-bit BMP of smooth gradients: 786,486 bytes that deflate well
+    static byte[] smoothBmp() {
+        byte[] bmp = new byte[54 + 512 * 512 * 3];
+        bmp[0] = 'B';
+        bmp[1] = 'M';
+        int i = 54;
+        for (int y = 0; y < 512; y++) {
+            for (int x = 0; x < 512; x++) {
+                bmp[i++] = (byte) (x / 2);
+                bmp[i++] = (byte) (y / 2);
+                bmp[i++] = (byte) ((x + y) / 4);
+            }
+        }
+        return bmp;
+    }
+
+    @Test
+    public void uncompressedImagesShrinkOnEveryPath() throws IOException {
+        byte[] bmp = smoothBmp();
+        Path image = dir.resolve("img.bmp");
+        Files.write(image, bmp);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (CompressionProfile profile : CompressionProfile.values()) {
+                ZipCompressor single = new ZipCompressor();
+                single.setProfile(profile);
+                assertTrue(single.compress(image.toString()));
+                assertShrinks(profile + " compress", dir.resolve("img.zip"), bmp.length);
+
+                Path stream = dir.resolve("stream.zip");
+                try (InputStream in = new ByteArrayInputStream(bmp);
+                     OutputStream archive = Files.newOutputStream(stream)) {
+                    single.compress("img.bmp", in, archive);
+                }
+                assertShrinks(profile + " stream", stream, bmp.length);
+
+                for (int workers : new int[] { 1, 2 }) {
+                    ZipCompressor multiple = new ZipCompressor();
+                    multiple.setProfile(profile);
+                    multiple.setWorkerCount(workers);
+                    Path archive = dir.resolve("multiple" + workers + ".zip");
+                    assertTrue(multiple.compressMultiple(new String[] { image.toString() }, archive.toString()));
+                    assertShrinks(profile + " " + workers + " workers", archive, bmp.length);
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void assertShrinks(String message, Path archive, long size) throws IOException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zip.entries().nextElement();
+            assertEquals(message, ZipEntry.DEFLATED, entry.getMethod());
+            // About 265 KB at levels 6 and 9 and 290 KB at level 1; Huffman coding alone gave 677 KB
+            assertTrue(message + ": " + entry.getCompressedSize(), entry.getCompressedSize() < size / 2);
+        }
+    }
+
+    @Test
+    public void incompressibleEntriesAreStored() throws IOException {
+        byte[] random = new byte[200_000];
+        new Random(11).nextBytes(random);
+        byte[] text = TestFiles.text(200_000).getBytes(StandardCharsets.UTF_8);
+        byte[] bmp = smoothBmp();
+        Map<String, byte[]> inputs = new LinkedHashMap<>();
+        inputs.put("random.dat", random);
+        inputs.put("photo.jpg", random);
+        inputs.put("notes.txt", text);
+        inputs.put("image.bmp", bmp);
+        inputs.put("numbers.dat", text);
+
+        EntryMethodSelector selector = new EntryMethodSelector();
+        Map<String, Integer> expected = Map.of("random.dat", ZipEntry.STORED, "photo.jpg", ZipEntry.STORED,
+                "notes.txt", ZipEntry.DEFLATED, "image.bmp", ZipEntry.DEFLATED, "numbers.dat", ZipEntry.DEFLATED);
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (Map.Entry<String, byte[]> input : inputs.entrySet()) {
+                byte[] data = input.getValue();
+                entries.put(input.getKey(), () -> new ByteArrayInputStream(data));
+                assertEquals(input.getKey(), (int) expected.get(input.getKey()),
+                        selector.chooseMethod(input.getKey(), entries.get(input.getKey())));
+            }
+            Path archive = dir.resolve("methods.zip");
+            try (OutputStream zip = Files.newOutputStream(archive)) {
+                new ZipCompressor().compressMultiple(entries, zip);
+            }
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                for (Map.Entry<String, byte[]> input : inputs.entrySet()) {
+                    ZipEntry entry = zip.getEntry(input.getKey());
+                    assertEquals(input.getKey(), (int) expected.get(input.getKey()), entry.getMethod());
+                    if (entry.getMethod() == ZipEntry.DEFLATED) {
+                        assertTrue(input.getKey() + ": " + entry.getCompressedSize(),
+                                entry.getCompressedSize() < input.getValue().length / 2);
+                    }
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        assertArrayEquals(input.getKey(), input.getValue(), in.readAllBytes());
+                    }
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    public void onlyCompressedFormatsUseHuffmanCoding() {
+        for (String name : new String[] { "a.jpg", "a.PNG", "a.mp4", "a.webm" }) {
+            assertEquals(name, Deflater.HUFFMAN_ONLY, CompressionProfile.BALANCED.strategyFor(name));
+            assertEquals(name, Deflater.DEFAULT_STRATEGY, CompressionProfile.MAX.strategyFor(name));
+        }
+        for (String name : new String[] { "a.bmp", "a.tiff", "a.avi", "a.txt", "a.dat", "noextension" }) {
+            for (CompressionProfile profile : CompressionProfile.values()) {
+                assertEquals(profile + " " + name, Deflater.DEFAULT_STRATEGY, profile.strategyFor(name));
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Archives of many small text files written with a shared dictionary, and
+ * read back by ZipArchiveReader and ZipStreamReader.
+ */
+public class ZipDictionaryTest {
+
+    private Path dir;
+    private Map<String, byte[]> contents;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-dictionary-test");
+        // Small JSON records that share their keys but not their values
+        contents = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            String json = "{\"id\": " + i + ", \"name\": \"customer-" + (i * 7919 % 1000)
+                    + "\", \"email\": \"user" + i + "@example.com\", \"status\": \"" + (i % 3 == 0 ? "active" : "idle")
+                    + "\", \"address\": {\"street\": \"" + (i * 31) + " Main Street\", \"city\": \"Springfield\","
+                    + " \"postalCode\": \"" + (10_000 + i * 13) + "\"}, \"tags\": [\"retail\", \"newsletter\"]}\n";
+            contents.put("records/r" + i + ".json", json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private Path write(String name, boolean sharedDictionary) throws IOException {
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        contents.forEach((entryName, data) -> entries.put(entryName, () -> new ByteArrayInputStream(data)));
+        ZipCompressor compressor = new ZipCompressor();
+        compressor.setSharedDictionary(sharedDictionary);
+        Path archive = dir.resolve(name);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (OutputStream zip = Files.newOutputStream(archive)) {
+            compressor.compressMultiple(entries, zip);
+        } finally {
+            System.setOut(out);
+        }
+        return archive;
+    }
+
+    @Test
+    public void readerAppliesTheDictionary() throws IOException {
+        Path archive = write("dict.zip", true);
+        // Other tools see the dictionary as the first, STORED entry
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            ZipEntry first = zip.entries().nextElement();
+            assertEquals(ZipDictionary.ENTRY_NAME, first.getName());
+            assertEquals(ZipEntry.STORED, first.getMethod());
+        }
+
+        try (ZipArchiveReader reader = new ZipArchiveReader(archive)) {
+            assertEquals(contents.size(), reader.getEntries().size());
+            assertNull(reader.getEntry(ZipDictionary.ENTRY_NAME));
+            for (Map.Entry<String, byte[]> expected : contents.entrySet()) {
+                ZipArchiveReader.Entry entry = reader.getEntry(expected.getKey());
+                assertNotEquals(expected.getKey(), -1, entry.getDictionaryId());
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                reader.extract(entry, NioCodecEngine.channelOf(data));
+                assertArrayEquals(expected.getKey(), expected.getValue(), data.toByteArray());
+            }
+        }
+        assertTrue(new ZipCompressor().verify(archive.toString()).isOk());
+    }
+
+    @Test
+    public void dictionaryMakesSmallEntriesSmaller() throws IOException {
+        long plain = Files.size(write("plain.zip", false));
+        long shared = Files.size(write("dict.zip", true));
+        // 49,236 against 55,831 bytes when measured; headers and names are much of both
+        assertTrue(shared + " bytes with the dictionary, " + plain + " without", shared < plain);
+    }
+
+    @Test
+    public void sequentialAndParallelExtraction() throws IOException {
+        Path archive = write("dict.zip", true);
+        // One worker streams through ZipStreamReader, more read the central directory
+        for (int workers : new int[] { 1, 2 }) {
+            ZipCompressor compressor = new ZipCompressor();
+            compressor.setWorkerCount(workers);
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                assertTrue(compressor.decompress(archive.toString()));
+            } finally {
+                System.setOut(out);
+            }
+            Path restored = dir.resolve("dict");
+            for (Map.Entry<String, byte[]> expected : contents.entrySet()) {
+                assertArrayEquals(workers + " " + expected.getKey(), expected.getValue(),
+                        Files.readAllBytes(restored.resolve(expected.getKey())));
+            }
+            assertTrue(Files.notExists(restored.resolve(ZipDictionary.ENTRY_NAME)));
+            TestFiles.delete(restored);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package file_compression_uillity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipUpdaterTest {
+
+    private static final byte[] REPLACEMENT = "replaced content".getBytes(StandardCharsets.UTF_8);
+
+    private Path dir;
+    private Path archive;
+    private Map<String, byte[]> contents;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("fcu-update-test");
+        archive = dir.resolve("test.zip");
+        contents = new LinkedHashMap<>();
+        contents.put("a.txt", TestFiles.text(100_000).getBytes(StandardCharsets.UTF_8));
+        contents.put("b.txt", TestFiles.text(50_000).toUpperCase().getBytes(StandardCharsets.UTF_8));
+        contents.put("c.txt", TestFiles.text(20_000).getBytes(StandardCharsets.UTF_8));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try (OutputStream zip = Files.newOutputStream(archive)) {
+            new ZipCompressor().compressMultiple(sources(contents), zip);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestFiles.delete(dir);
+    }
+
+    private static Map<String, EntrySource> sources(Map<String, byte[]> contents) {
+        Map<String, EntrySource> entries = new LinkedHashMap<>();
+        contents.forEach((name, data) -> entries.put(name, () -> new ByteArrayInputStream(data)));
+        return entries;
+    }
+
+    // Replaces b.txt and removes c.txt
+    private void update() throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            new ZipCompressor().update(archive, sources(Map.of("b.txt", REPLACEMENT)), Set.of("c.txt"));
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    public void updateReplacesAndRemovesEntries() throws IOException {
+        long before = Files.size(archive);
+        update();
+        assertFalse(Files.exists(ZipUpdater.journalFor(archive)));
+        // a.txt was not rewritten, and the old b.txt and c.txt stay unreferenced
+        assertTrue(Files.size(archive) > before);
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            assertEquals(2, zip.size());
+            assertNull(zip.getEntry("c.txt"));
+            for (Map.Entry<String, byte[]> expected : Map.of("a.txt", contents.get("a.txt"),
+                    "b.txt", REPLACEMENT).entrySet()) {
+                try (InputStream in = zip.getInputStream(zip.getEntry(expected.getKey()))) {
+                    assertArrayEquals(expected.getKey(), expected.getValue(), in.readAllBytes());
+                }
+            }
+        }
+        assertTrue(new ZipCompressor().verify(archive.toString()).isOk());
+    }
+
+    @Test
+    public void unzipAcceptsUpdatedArchive() throws IOException, InterruptedException {
+        Assume.assumeTrue(Files.isExecutable(Path.of("/usr/bin/unzip")));
+        update();
+        Process unzip = new ProcessBuilder("/usr/bin/unzip", "-t", archive.toString())
+                .redirectErrorStream(true).start();
+        String output = new String(unzip.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(output, 0, unzip.waitFor());
+        assertTrue(output, output.contains("b.txt") && !output.contains("c.txt"));
+    }
+
+    // Starts an update that replaces b.txt and writes its new data, without committing
+    private static ZipUpdater uncommittedUpdate(Path archive) throws IOException {
+        ZipUpdater updater = ZipUpdater.begin(archive, Set.of("b.txt"));
+        CRC32 crc = new CRC32();
+        crc.update(REPLACEMENT);
+        ZipArchiveWriter writer = updater.getWriter();
+        writer.putNextEntry("b.txt", ZipEntry.STORED, System.currentTimeMillis(), crc.getValue(),
+                REPLACEMENT.length, REPLACEMENT.length);
+        writer.write(REPLACEMENT, 0, REPLACEMENT.length);
+        writer.closeEntry();
+        return updater;
+    }
+
+    @Test
+    public void closeWithoutCommitRollsBack() throws IOException {
+        byte[] original = Files.readAllBytes(archive);
+        try (ZipUpdater updater = uncommittedUpdate(archive)) {
+            assertTrue(Files.exists(ZipUpdater.journalFor(archive)));
+        }
+        assertArrayEquals(original, Files.readAllBytes(archive));
+        assertFalse(Files.exists(ZipUpdater.journalFor(archive)));
+    }
+
+    @Test
+    public void interruptedUpdateIsRecovered() throws IOException {
+        byte[] original = Files.readAllBytes(archive);
+        // A copy of the archive and journal taken mid-update stands in for a crashed process
+        Path crashed = dir.resolve("crashed.zip");
+        try (ZipUpdater updater = uncommittedUpdate(archive)) {
+            Files.copy(archive, crashed);
+            Files.copy(ZipUpdater.journalFor(archive), ZipUpdater.journalFor(crashed));
+        }
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            assertTrue(ZipUpdater.recover(crashed));
+        } finally {
+            System.setOut(out);
+        }
+        assertArrayEquals(original, Files.readAllBytes(crashed));
+        assertFalse(Files.exists(ZipUpdater.journalFor(crashed)));
+        assertFalse(ZipUpdater.recover(crashed));
+    }
+}
@@ -0,0 +1,81 @@
+#!/bin/sh
+# Scriptable stand-in for rar/UnRAR, for testing and benchmarking
+# RarCompressorAdapter on machines without WinRAR.
+#
+# Archives are plain tar files. Supported commands:
+#   a [switches] <archive> <files...|@listfile>   add files (paths dropped, like -ep)
+#   e [switches] <archive> <dir>/                 extract without paths
+#   x [switches] <archive> <dir>/                 extract with paths
+#   lb <archive>                                  list bare names
+#
+# Behaviour can be scripted through environment variables:
+#   FAKE_RAR_DELAY  seconds to sleep before working (simulates startup cost)
+#   FAKE_RAR_EXIT   exit with this code without doing anything
+#   FAKE_RAR_HANG   if set, never exit (for timeout and cancellation tests)
+#   FAKE_RAR_LOG    file that receives one line per invocation
+#
+# Usage: new RarCompressorAdapter("tools/fake-rar.sh", "tools/fake-rar.sh")
+
+if [ -n "$FAKE_RAR_LOG" ]; then
+    echo "$$ $*" >> "$FAKE_RAR_LOG"
+fi
+if [ -n "$FAKE_RAR_HANG" ]; then
+    while :; do sleep 1; done
+fi
+if [ -n "$FAKE_RAR_DELAY" ]; then
+    sleep "$FAKE_RAR_DELAY"
+fi
+if [ -n "$FAKE_RAR_EXIT" ]; then
+    echo "Simulated failure"
+    exit "$FAKE_RAR_EXIT"
+fi
+
+command=$1
+shift
+# Skip switches such as -ep, -m3, -y, -scfl
+while [ $# -gt 0 ]; do
+    case "$1" in
+        -*) shift ;;
+        *) break ;;
+    esac
+done
+archive=$1
+shift
+
+add() {
+    echo "Adding    $1    OK"
+    tar -rf "$archive" -C "$(dirname "$1")" "$(basename "$1")" || exit 2
+}
+
+case "$command" in
+    a)
+        echo "Creating archive $archive"
+        for arg in "$@"; do
+            case "$arg" in
+                @*)
+                    while IFS= read -r file; do
+                        [ -n "$file" ] && add "$file"
+                    done < "${arg#@}"
+                    ;;
+                *) add "$arg" ;;
+            esac
+        done
+        echo "Done"
+        ;;
+    e)
+        mkdir -p "$1" && tar -xf "$archive" -C "$1" --transform 's,.*/,,' || exit 2
+        echo "All OK"
+        ;;
+    x)
+        mkdir -p "$1" && tar -xf "$archive" -C "$1" || exit 2
+        echo "All OK"
+        ;;
+    lb)
+        tar -tf "$archive" || exit 2
+        ;;
+    *)
+        echo "Unknown command: $command"
+        exit 7
+        ;;
+esac
+exit 0